@@ -0,0 +1,168 @@
+package com.fulfilment.application.monolith.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JSON bodies of list responses, serialized once and kept as bytes, so a hit is written out as is.
+ * The cache is bounded by the total size of the bodies and drops the least recently used ones first.
+ * <p>
+ * Every committed change of the listed entity calls {@link #invalidate()}, which empties the cache
+ * and starts a new generation. A reader takes the generation before it queries and {@link #put}
+ * refuses the body if the generation moved in between, so a list read before a commit is never
+ * cached after that commit's invalidation.
+ */
+public class ListResponseCache implements MeterBinder {
+
+  private final String name;
+  private final ObjectMapper objectMapper;
+  private final long maxBytes;
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLong clock = new AtomicLong();
+  private volatile long generation;
+  private long bytes; // guarded by this
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final AtomicLong invalidations = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * @param name metric prefix, e.g. {@code store} for {@code store.list_cache.hits}
+   * @param maxBytes total size of the cached bodies; 0 turns caching off, bodies are still serialized
+   */
+  public ListResponseCache(String name, ObjectMapper objectMapper, long maxBytes) {
+    this.name = name;
+    this.objectMapper = objectMapper;
+    this.maxBytes = maxBytes;
+  }
+
+  /** Cache key of a list request; distinguishes a missing parameter from an empty or "null" one. */
+  public static String key(Object... parameters) {
+    StringBuilder key = new StringBuilder();
+    for (Object parameter : parameters) {
+      if (parameter == null) {
+        key.append('-');
+      } else {
+        String value = parameter.toString();
+        key.append(value.length()).append(':').append(value);
+      }
+    }
+    return key.toString();
+  }
+
+  /** The body cached for {@code key}, or null. */
+  public byte[] get(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    entry.lastUsed = clock.incrementAndGet();
+    hits.increment();
+    return entry.body;
+  }
+
+  /** To be read before the query whose result is passed to {@link #put}. */
+  public long generation() {
+    return generation;
+  }
+
+  /**
+   * Serializes {@code body} and caches it under {@code key} unless the cache was invalidated since
+   * {@code generation} was read. Returns the serialized body either way.
+   */
+  public byte[] put(String key, long generation, Object body) {
+    byte[] json = serialize(body);
+    if (json.length > maxBytes) {
+      return json;
+    }
+    synchronized (this) {
+      if (generation != this.generation) {
+        return json;
+      }
+      Entry previous = entries.put(key, new Entry(json, clock.incrementAndGet()));
+      bytes += json.length - (previous == null ? 0 : previous.body.length);
+      while (bytes > maxBytes) {
+        evictLeastRecentlyUsed();
+      }
+    }
+    return json;
+  }
+
+  /** The JSON body of a response that is not to be cached. */
+  public byte[] serialize(Object body) {
+    try {
+      return objectMapper.writeValueAsBytes(body);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Drops every cached body; reads that started before are not cached. */
+  public synchronized void invalidate() {
+    generation++;
+    entries.clear();
+    bytes = 0;
+    invalidations.incrementAndGet();
+  }
+
+  // only runs when a put overflows the bound, so a scan over the few cached pages is fine
+  private void evictLeastRecentlyUsed() {
+    Map.Entry<String, Entry> oldest = null;
+    for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+      if (oldest == null || candidate.getValue().lastUsed < oldest.getValue().lastUsed) {
+        oldest = candidate;
+      }
+    }
+    entries.remove(oldest.getKey());
+    bytes -= oldest.getValue().body.length;
+    evictions.incrementAndGet();
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  public synchronized long bytes() {
+    return bytes;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(name + ".list_cache.hits", hits, LongAdder::sum)
+        .description("List responses served from serialized bytes").register(registry);
+    FunctionCounter.builder(name + ".list_cache.misses", misses, LongAdder::sum)
+        .description("List responses read from the database and serialized").register(registry);
+    FunctionCounter.builder(name + ".list_cache.invalidations", invalidations, AtomicLong::get)
+        .description("Cache clears caused by committed changes").register(registry);
+    FunctionCounter.builder(name + ".list_cache.evictions", evictions, AtomicLong::get)
+        .description("Bodies dropped to stay within the size bound").register(registry);
+    Gauge.builder(name + ".list_cache.bytes", this, ListResponseCache::bytes)
+        .description("Size of the cached bodies").register(registry);
+  }
+
+  private static final class Entry {
+    final byte[] body;
+    volatile long lastUsed;
+
+    Entry(byte[] body, long lastUsed) {
+      this.body = body;
+      this.lastUsed = lastUsed;
+    }
+  }
+}
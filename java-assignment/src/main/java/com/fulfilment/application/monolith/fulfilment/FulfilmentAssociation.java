@@ -0,0 +1,44 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * A warehouse fulfilling a product for a store. Product and store are foreign keys (see import.sql);
+ * the warehouse is its business unit code, upper-cased, which a replacement warehouse takes over.
+ */
+@Entity
+@Table(
+    name = "fulfilment_association",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_fulfilment_association", columnNames = {"product_id", "store_id", "warehouse_code"}),
+    indexes = {
+        @Index(name = "ix_fulfilment_association_store", columnList = "store_id"),
+        @Index(name = "ix_fulfilment_association_warehouse", columnList = "warehouse_code")
+    })
+public class FulfilmentAssociation {
+
+  @Id @GeneratedValue public Long id;
+
+  @Column(name = "product_id", nullable = false)
+  public long productId;
+
+  @Column(name = "store_id", nullable = false)
+  public long storeId;
+
+  @Column(name = "warehouse_code", nullable = false, length = 40)
+  public String warehouseBusinessUnitCode;
+
+  public FulfilmentAssociation() {}
+
+  public FulfilmentAssociation(long productId, long storeId, String warehouseBusinessUnitCode) {
+    this.productId = productId;
+    this.storeId = storeId;
+    this.warehouseBusinessUnitCode = warehouseBusinessUnitCode;
+  }
+}
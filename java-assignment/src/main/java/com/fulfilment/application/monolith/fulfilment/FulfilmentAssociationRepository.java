@@ -0,0 +1,101 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Parameters;
+import io.quarkus.panache.common.Sort;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.transaction.Transactional;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.hibernate.Session;
+
+/**
+ * Fulfilment associations in the database. Deletes go straight to JDBC: they must not flush the
+ * session, because they run before the product, store or warehouse delete that triggered them is
+ * flushed, which the foreign keys require.
+ */
+@ApplicationScoped
+public class FulfilmentAssociationRepository implements PanacheRepository<FulfilmentAssociation> {
+
+  private static final String ALL_SQL = "SELECT id, product_id, store_id, warehouse_code FROM fulfilment_association";
+  private static final String RETURNING = " RETURNING id, product_id, store_id, warehouse_code";
+  private static final int FETCH_SIZE = 10_000;
+
+  /** Hands every association to {@code sink}, streamed. */
+  @Transactional
+  public void forEach(Consumer<FulfilmentAssociation> sink) {
+    getEntityManager().unwrap(Session.class).doWork(connection -> {
+      try (Statement statement = connection.createStatement()) {
+        statement.setFetchSize(FETCH_SIZE);
+        try (ResultSet rows = statement.executeQuery(ALL_SQL)) {
+          while (rows.next()) {
+            FulfilmentAssociation association =
+                new FulfilmentAssociation(rows.getLong(2), rows.getLong(3), rows.getString(4));
+            association.id = rows.getLong(1);
+            sink.accept(association);
+          }
+        }
+      }
+    });
+  }
+
+  /** Up to {@code limit} associations matching the filters that are set, by id. */
+  public List<FulfilmentAssociation> search(Long productId, Long storeId, String warehouse, int limit) {
+    List<String> conditions = new ArrayList<>();
+    Parameters parameters = new Parameters();
+    if (productId != null) {
+      conditions.add("productId = :productId");
+      parameters.and("productId", productId);
+    }
+    if (storeId != null) {
+      conditions.add("storeId = :storeId");
+      parameters.and("storeId", storeId);
+    }
+    if (warehouse != null) {
+      conditions.add("warehouseBusinessUnitCode = :warehouse");
+      parameters.and("warehouse", warehouse);
+    }
+    return find(String.join(" and ", conditions), Sort.by("id"), parameters).page(0, limit).list();
+  }
+
+  /** Deletes one association in the current transaction; null when there is none with that id. */
+  public FulfilmentAssociation deleteReturning(long id) {
+    List<FulfilmentAssociation> deleted = deleteWhere("id = ?", id);
+    return deleted.isEmpty() ? null : deleted.get(0);
+  }
+
+  public List<FulfilmentAssociation> deleteByProduct(long productId) {
+    return deleteWhere("product_id = ?", productId);
+  }
+
+  public List<FulfilmentAssociation> deleteByStore(long storeId) {
+    return deleteWhere("store_id = ?", storeId);
+  }
+
+  public List<FulfilmentAssociation> deleteByWarehouse(String warehouse) {
+    return deleteWhere("warehouse_code = ?", warehouse);
+  }
+
+  private List<FulfilmentAssociation> deleteWhere(String condition, Object value) {
+    List<FulfilmentAssociation> deleted = new ArrayList<>();
+    getEntityManager().unwrap(Session.class).doWork(connection -> {
+      try (PreparedStatement delete =
+               connection.prepareStatement("DELETE FROM fulfilment_association WHERE " + condition + RETURNING)) {
+        delete.setObject(1, value);
+        try (ResultSet rows = delete.executeQuery()) {
+          while (rows.next()) {
+            FulfilmentAssociation association =
+                new FulfilmentAssociation(rows.getLong(2), rows.getLong(3), rows.getString(4));
+            association.id = rows.getLong(1);
+            deleted.add(association);
+          }
+        }
+      }
+    });
+    return deleted;
+  }
+}
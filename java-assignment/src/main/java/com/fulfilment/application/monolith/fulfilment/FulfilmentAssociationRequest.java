@@ -0,0 +1,9 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+/** Body of {@code POST /fulfilment}. */
+public class FulfilmentAssociationRequest {
+
+  public Long productId;
+  public Long storeId;
+  public String warehouseBusinessUnitCode;
+}
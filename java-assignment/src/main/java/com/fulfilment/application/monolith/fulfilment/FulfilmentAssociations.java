@@ -0,0 +1,339 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import com.fulfilment.application.monolith.products.Product;
+import com.fulfilment.application.monolith.products.ProductChangeEvent;
+import com.fulfilment.application.monolith.stores.Store;
+import com.fulfilment.application.monolith.stores.StoreChangeEvent;
+import com.fulfilment.application.monolith.stores.StoreChangeType;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseChangeEvent;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Which warehouses fulfil which products for which stores, within three limits: warehouses per
+ * product and store, warehouses per store and products per warehouse. The associations live in
+ * {@code fulfilment_association}; the limits are checked against {@link FulfilmentIndex}, loaded
+ * from it once at startup, so a write never counts rows.
+ * <p>
+ * An association counts from the moment it is admitted and is taken back if its transaction rolls
+ * back; a removed one only frees its slot once the removal commits. Deleting a product, store or
+ * warehouse deletes its associations in the same transaction. The counters are per node and only
+ * ever see this node's writes: with several writer nodes each would admit up to the limits on its
+ * own, so association writes must all go to one node.
+ * <p>
+ * Committed associations are also the routing candidates of {@link #route}, answered from
+ * {@link FulfilmentRoutes}. A transaction's warehouse changes are applied to the routes together once
+ * it commits, so a replacement, which archives a warehouse and creates its successor under the
+ * same business unit code, moves the routes to the successor in one step. Other nodes' associations
+ * and warehouse changes reach the routes when they are rebuilt from the database, every
+ * {@code routes.refresh-interval-ms}; until then this node routes on what it last read. Commits of
+ * this node that land during a rebuild are applied to the new routes as well before they are used.
+ */
+@ApplicationScoped
+public class FulfilmentAssociations implements MeterBinder {
+
+  private static final Logger LOGGER = Logger.getLogger(FulfilmentAssociations.class.getName());
+  // transaction resource key of the warehouse changes waiting for the commit
+  private static final Object PENDING_WAREHOUSES = new Object();
+
+  private final FulfilmentAssociationRepository repository;
+  private final EntityManager entityManager;
+  private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+  private final WarehouseStore warehouseStore;
+  private final FulfilmentIndex index;
+  private final long routesRefreshIntervalMs;
+  private final Object routesLock = new Object();
+  // swapped whole by a rebuild, so lookups never see a half-loaded one
+  private volatile FulfilmentRoutes routes = new FulfilmentRoutes();
+  // this node's committed route changes while a rebuild reads the database; null otherwise
+  private List<Consumer<FulfilmentRoutes>> routeChangesDuringRebuild;
+  private ScheduledExecutorService refresher;
+
+  @Inject
+  public FulfilmentAssociations(
+      FulfilmentAssociationRepository repository,
+      EntityManager entityManager,
+      TransactionSynchronizationRegistry transactionSynchronizationRegistry,
+      WarehouseStore warehouseStore,
+      @ConfigProperty(name = "fulfilment.max-warehouses-per-product-and-store", defaultValue = "2") int maxWarehousesPerProductAndStore,
+      @ConfigProperty(name = "fulfilment.max-warehouses-per-store", defaultValue = "3") int maxWarehousesPerStore,
+      @ConfigProperty(name = "fulfilment.max-products-per-warehouse", defaultValue = "5") int maxProductsPerWarehouse,
+      @ConfigProperty(name = "fulfilment.routes.refresh-interval-ms", defaultValue = "60000") long routesRefreshIntervalMs) {
+    this.repository = repository;
+    this.entityManager = entityManager;
+    this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+    this.warehouseStore = warehouseStore;
+    this.index = new FulfilmentIndex(maxWarehousesPerProductAndStore, maxWarehousesPerStore, maxProductsPerWarehouse);
+    this.routesRefreshIntervalMs = routesRefreshIntervalMs;
+  }
+
+  void onStart(@Observes StartupEvent event) {
+    load();
+    if (routesRefreshIntervalMs <= 0) {
+      return;
+    }
+    refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "fulfilment-routes-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+    refresher.scheduleWithFixedDelay(this::refresh, routesRefreshIntervalMs, routesRefreshIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  void onStop(@Observes ShutdownEvent event) {
+    if (refresher != null) {
+      refresher.shutdownNow();
+    }
+  }
+
+  private void refresh() {
+    try {
+      refreshRoutes();
+    } catch (RuntimeException e) {
+      LOGGER.errorf(e, "Failed to refresh the fulfilment routes");
+    }
+  }
+
+  /**
+   * Rebuilds the counters and the routes from the database. The warehouses and the associations are
+   * read in one transaction on one connection, rather than each in its own.
+   */
+  @Transactional
+  public synchronized void load() {
+    long started = System.nanoTime();
+    index.clear();
+    int warehouses = rebuildRoutes(true);
+    LOGGER.infof("fulfilment.load associations=%d warehouses=%d tookMs=%d", index.size(), warehouses,
+        (System.nanoTime() - started) / 1_000_000);
+  }
+
+  /** Rebuilds the routes from the database, picking up other nodes' changes; the counters are kept. */
+  @Transactional
+  public synchronized void refreshRoutes() {
+    long started = System.nanoTime();
+    int warehouses = rebuildRoutes(false);
+    LOGGER.debugf("fulfilment.refresh warehouses=%d tookMs=%d", warehouses, (System.nanoTime() - started) / 1_000_000);
+  }
+
+  private int rebuildRoutes(boolean countAssociations) {
+    FulfilmentRoutes rebuilt = new FulfilmentRoutes();
+    synchronized (routesLock) {
+      routeChangesDuringRebuild = new ArrayList<>();
+    }
+    int warehouses = 0;
+    try {
+      for (Warehouse warehouse : warehouseStore.getAll()) {
+        if (warehouse.archivedAt == null) {
+          rebuilt.warehouse(code(warehouse.businessUnitCode), warehouse);
+          warehouses++;
+        }
+      }
+      repository.forEach(association -> {
+        if (countAssociations) {
+          index.load(association.productId, association.storeId, association.warehouseBusinessUnitCode);
+        }
+        rebuilt.add(association.id, association.productId, association.storeId, association.warehouseBusinessUnitCode);
+      });
+      synchronized (routesLock) {
+        // adding and removing are idempotent, so a change the read already saw does no harm
+        routeChangesDuringRebuild.forEach(change -> change.accept(rebuilt));
+        routes = rebuilt;
+      }
+    } finally {
+      synchronized (routesLock) {
+        routeChangesDuringRebuild = null;
+      }
+    }
+    return warehouses;
+  }
+
+  // applies a committed change to the current routes and, during a rebuild, to the rebuilt ones too
+  private void changeRoutes(Consumer<FulfilmentRoutes> change) {
+    synchronized (routesLock) {
+      change.accept(routes);
+      if (routeChangesDuringRebuild != null) {
+        routeChangesDuringRebuild.add(change);
+      }
+    }
+  }
+
+  /**
+   * Lets the warehouse fulfil the product for the store.
+   *
+   * @throws NoSuchElementException when the product, the store or an active warehouse with that code
+   *     does not exist
+   * @throws IllegalStateException when the association exists already or would break a limit
+   */
+  @Transactional
+  public FulfilmentAssociation associate(long productId, long storeId, String warehouseBusinessUnitCode) {
+    String warehouse = code(warehouseBusinessUnitCode);
+    if (entityManager.find(Product.class, productId) == null) {
+      throw new NoSuchElementException("Product with id of " + productId + " does not exist.");
+    }
+    if (entityManager.find(Store.class, storeId) == null) {
+      throw new NoSuchElementException("Store with id of " + storeId + " does not exist.");
+    }
+    if (!routes.isActive(warehouse)) {
+      throw new NoSuchElementException("Warehouse " + warehouse + " does not exist or is archived.");
+    }
+    String refused = index.tryAdd(productId, storeId, warehouse);
+    if (refused != null) {
+      throw new IllegalStateException(refused);
+    }
+    FulfilmentAssociation association = new FulfilmentAssociation(productId, storeId, warehouse);
+    afterCompletion(committed -> {
+      if (committed) {
+        changeRoutes(target -> target.add(association.id, productId, storeId, warehouse));
+      } else {
+        index.remove(productId, storeId, warehouse);
+      }
+    });
+    try {
+      repository.persist(association);
+      repository.flush();
+    } catch (PersistenceException e) {
+      // another node wrote the same association, or the product or store was deleted meanwhile
+      throw new IllegalStateException("Product " + productId + ", store " + storeId + " or warehouse " + warehouse
+          + " changed concurrently; retry.", e);
+    }
+    return association;
+  }
+
+  /** Removes an association; false when there is none with that id. */
+  @Transactional
+  public boolean dissociate(long id) {
+    FulfilmentAssociation removed = repository.deleteReturning(id);
+    if (removed == null) {
+      return false;
+    }
+    releaseAfterCommit(List.of(removed));
+    return true;
+  }
+
+  /**
+   * The active warehouse that fulfils the product for the store: of its associated warehouses the
+   * one with the most stock, the oldest association among equals. Null when there is none.
+   */
+  public FulfilmentRoute route(long productId, long storeId) {
+    return routes.route(productId, storeId);
+  }
+
+  /** Up to {@code limit} associations by id, narrowed by the filters that are set. */
+  public List<FulfilmentAssociation> search(Long productId, Long storeId, String warehouseBusinessUnitCode, int limit) {
+    return repository.search(productId, storeId,
+        warehouseBusinessUnitCode == null ? null : code(warehouseBusinessUnitCode), limit);
+  }
+
+  // the product, store and warehouse deletes are fired before their flush, in their transaction
+
+  void onProductChange(@Observes ProductChangeEvent event) {
+    if (event.type == ProductChangeEvent.Type.DELETE) {
+      releaseAfterCommit(repository.deleteByProduct(event.product.id));
+    }
+  }
+
+  void onStoreChange(@Observes StoreChangeEvent event) {
+    if (event.type == StoreChangeType.DELETE) {
+      releaseAfterCommit(repository.deleteByStore(event.store.id));
+    }
+  }
+
+  // archiving keeps the associations: a replacement warehouse takes over the business unit code
+  void onWarehouseChange(@Observes WarehouseChangeEvent event) {
+    String warehouse = code(event.businessUnitCode());
+    if (event.after == null) {
+      releaseAfterCommit(repository.deleteByWarehouse(warehouse));
+    }
+    routeAfterCommit(warehouse, event.after != null && event.after.archivedAt == null ? event.after : null);
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("fulfilment.associations", index, FulfilmentIndex::size)
+        .description("Fulfilment associations counted against the limits").register(registry);
+  }
+
+  FulfilmentIndex index() {
+    return index;
+  }
+
+  private void releaseAfterCommit(List<FulfilmentAssociation> removed) {
+    if (removed.isEmpty()) {
+      return;
+    }
+    afterCompletion(committed -> {
+      if (committed) {
+        for (FulfilmentAssociation association : removed) {
+          index.remove(association.productId, association.storeId, association.warehouseBusinessUnitCode);
+        }
+        changeRoutes(target -> removed.forEach(association ->
+            target.remove(association.productId, association.storeId, association.warehouseBusinessUnitCode)));
+      }
+    });
+  }
+
+  // the last change of each code in the transaction wins; an archive followed by a create is a move
+  @SuppressWarnings("unchecked")
+  private void routeAfterCommit(String warehouse, Warehouse active) {
+    Map<String, Warehouse> pending =
+        (Map<String, Warehouse>) transactionSynchronizationRegistry.getResource(PENDING_WAREHOUSES);
+    if (pending == null) {
+      Map<String, Warehouse> changes = new LinkedHashMap<>();
+      transactionSynchronizationRegistry.putResource(PENDING_WAREHOUSES, changes);
+      afterCompletion(committed -> {
+        if (committed) {
+          changeRoutes(target -> changes.forEach(target::warehouse));
+        }
+      });
+      pending = changes;
+    }
+    pending.put(warehouse, active);
+  }
+
+  private interface Completion {
+    void completed(boolean committed);
+  }
+
+  private void afterCompletion(Completion completion) {
+    transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+      @Override
+      public void beforeCompletion() {
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        completion.completed(status == Status.STATUS_COMMITTED);
+      }
+    });
+  }
+
+  private static String code(String businessUnitCode) {
+    return businessUnitCode.trim().toUpperCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,175 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters behind the three fulfilment limits: distinct warehouses per product and store, distinct
+ * warehouses per store and distinct products per warehouse. Each is a map to a small counted set, at
+ * most a limit's worth of entries, so a check or an update costs one map operation and a scan of
+ * at most five entries whatever the number of associations.
+ * <p>
+ * An add is admitted one limit at a time, each inside its key's {@code compute}, and undone when a
+ * later limit refuses it. Two writers racing for the last slot can therefore both be refused, but
+ * never both admitted.
+ */
+final class FulfilmentIndex {
+
+  private final int maxWarehousesPerProductAndStore;
+  private final int maxWarehousesPerStore;
+  private final int maxProductsPerWarehouse;
+
+  private final ConcurrentHashMap<ProductStore, Counted<String>> warehousesByProductAndStore = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Long, Counted<String>> warehousesByStore = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Counted<Long>> productsByWarehouse = new ConcurrentHashMap<>();
+  private final AtomicLong size = new AtomicLong();
+
+  FulfilmentIndex(int maxWarehousesPerProductAndStore, int maxWarehousesPerStore, int maxProductsPerWarehouse) {
+    this.maxWarehousesPerProductAndStore = maxWarehousesPerProductAndStore;
+    this.maxWarehousesPerStore = maxWarehousesPerStore;
+    this.maxProductsPerWarehouse = maxProductsPerWarehouse;
+  }
+
+  /** Adds the association unless it exists or breaks a limit; returns why not, or null when added. */
+  String tryAdd(long productId, long storeId, String warehouse) {
+    String[] refused = new String[1];
+    ProductStore pair = new ProductStore(productId, storeId);
+    warehousesByProductAndStore.compute(pair, (key, warehouses) -> {
+      if (warehouses != null && warehouses.count(warehouse) > 0) {
+        refused[0] = "Product " + productId + " is already fulfilled by warehouse " + warehouse + " for store " + storeId + ".";
+        return warehouses;
+      }
+      if (warehouses != null && warehouses.distinct() >= maxWarehousesPerProductAndStore) {
+        refused[0] = "Product " + productId + " is already fulfilled by " + maxWarehousesPerProductAndStore
+            + " warehouses for store " + storeId + ".";
+        return warehouses;
+      }
+      return Counted.add(warehouses, warehouse);
+    });
+    if (refused[0] != null) {
+      return refused[0];
+    }
+    warehousesByStore.compute(storeId, (key, warehouses) -> {
+      if (warehouses != null && warehouses.count(warehouse) == 0 && warehouses.distinct() >= maxWarehousesPerStore) {
+        refused[0] = "Store " + storeId + " is already fulfilled by " + maxWarehousesPerStore + " warehouses.";
+        return warehouses;
+      }
+      return Counted.add(warehouses, warehouse);
+    });
+    if (refused[0] != null) {
+      warehousesByProductAndStore.computeIfPresent(pair, (key, warehouses) -> warehouses.remove(warehouse));
+      return refused[0];
+    }
+    productsByWarehouse.compute(warehouse, (key, products) -> {
+      if (products != null && products.count(productId) == 0 && products.distinct() >= maxProductsPerWarehouse) {
+        refused[0] = "Warehouse " + warehouse + " already stores " + maxProductsPerWarehouse + " products.";
+        return products;
+      }
+      return Counted.add(products, productId);
+    });
+    if (refused[0] != null) {
+      warehousesByProductAndStore.computeIfPresent(pair, (key, warehouses) -> warehouses.remove(warehouse));
+      warehousesByStore.computeIfPresent(storeId, (key, warehouses) -> warehouses.remove(warehouse));
+      return refused[0];
+    }
+    size.incrementAndGet();
+    return null;
+  }
+
+  /** Adds an association read from the database, limits or not. */
+  void load(long productId, long storeId, String warehouse) {
+    warehousesByProductAndStore.compute(new ProductStore(productId, storeId), (key, warehouses) -> Counted.add(warehouses, warehouse));
+    warehousesByStore.compute(storeId, (key, warehouses) -> Counted.add(warehouses, warehouse));
+    productsByWarehouse.compute(warehouse, (key, products) -> Counted.add(products, productId));
+    size.incrementAndGet();
+  }
+
+  /** Takes out an association added or loaded before. */
+  void remove(long productId, long storeId, String warehouse) {
+    warehousesByProductAndStore.computeIfPresent(new ProductStore(productId, storeId), (key, warehouses) -> warehouses.remove(warehouse));
+    warehousesByStore.computeIfPresent(storeId, (key, warehouses) -> warehouses.remove(warehouse));
+    productsByWarehouse.computeIfPresent(warehouse, (key, products) -> products.remove(productId));
+    size.decrementAndGet();
+  }
+
+  void clear() {
+    warehousesByProductAndStore.clear();
+    warehousesByStore.clear();
+    productsByWarehouse.clear();
+    size.set(0);
+  }
+
+  long size() {
+    return size.get();
+  }
+
+  int warehousesOf(long productId, long storeId) {
+    Counted<String> warehouses = warehousesByProductAndStore.get(new ProductStore(productId, storeId));
+    return warehouses == null ? 0 : warehouses.distinct();
+  }
+
+  int warehousesOf(long storeId) {
+    Counted<String> warehouses = warehousesByStore.get(storeId);
+    return warehouses == null ? 0 : warehouses.distinct();
+  }
+
+  int productsOf(String warehouse) {
+    Counted<Long> products = productsByWarehouse.get(warehouse);
+    return products == null ? 0 : products.distinct();
+  }
+
+  // a few distinct keys with a count each; only ever touched inside its map entry's compute
+  private static final class Counted<K> {
+    private Object[] keys = new Object[2];
+    private int[] counts = new int[2];
+    private int distinct;
+
+    static <K> Counted<K> add(Counted<K> counted, K key) {
+      Counted<K> target = counted == null ? new Counted<>() : counted;
+      for (int i = 0; i < target.distinct; i++) {
+        if (Objects.equals(target.keys[i], key)) {
+          target.counts[i]++;
+          return target;
+        }
+      }
+      if (target.distinct == target.keys.length) {
+        target.keys = Arrays.copyOf(target.keys, target.distinct * 2);
+        target.counts = Arrays.copyOf(target.counts, target.distinct * 2);
+      }
+      target.keys[target.distinct] = key;
+      target.counts[target.distinct++] = 1;
+      return target;
+    }
+
+    // null once empty, which drops the map entry
+    Counted<K> remove(K key) {
+      for (int i = 0; i < distinct; i++) {
+        if (Objects.equals(keys[i], key)) {
+          if (--counts[i] == 0) {
+            distinct--;
+            keys[i] = keys[distinct];
+            counts[i] = counts[distinct];
+            keys[distinct] = null;
+          }
+          break;
+        }
+      }
+      return distinct == 0 ? null : this;
+    }
+
+    int count(K key) {
+      for (int i = 0; i < distinct; i++) {
+        if (Objects.equals(keys[i], key)) {
+          return counts[i];
+        }
+      }
+      return 0;
+    }
+
+    int distinct() {
+      return distinct;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Warehouses as fulfilment units of products for stores. A product is fulfilled by at most 2
+ * warehouses per store, a store by at most 3 warehouses, and a warehouse holds at most 5 products;
+ * an association that would break one of them is refused with 409.
+ * <p>
+ * {@code /fulfilment/route} tells which of those warehouses fulfils a product for a store right
+ * now, answered from memory.
+ */
+@Path("fulfilment")
+@ApplicationScoped
+@Produces("application/json")
+@Consumes("application/json")
+public class FulfilmentResource {
+
+  private static final int MAX_PAGE_SIZE = 1000;
+  private static final int MAX_ROUTE_BATCH = 1000;
+
+  @Inject FulfilmentAssociations fulfilmentAssociations;
+
+  /** Associations of a product, a store and/or a warehouse; at least one filter is required. */
+  @GET
+  public List<FulfilmentAssociation> search(
+      @QueryParam("productId") Long productId,
+      @QueryParam("storeId") Long storeId,
+      @QueryParam("warehouse") String warehouse,
+      @QueryParam("limit") @DefaultValue("100") int limit) {
+    if (productId == null && storeId == null && (warehouse == null || warehouse.isBlank())) {
+      throw new WebApplicationException("Filter by productId, storeId or warehouse.", 400);
+    }
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new WebApplicationException("limit must be between 1 and " + MAX_PAGE_SIZE + ".", 400);
+    }
+    return fulfilmentAssociations.search(productId, storeId, warehouse == null || warehouse.isBlank() ? null : warehouse, limit);
+  }
+
+  @POST
+  public Response associate(FulfilmentAssociationRequest request) {
+    if (request == null || request.productId == null || request.storeId == null
+        || request.warehouseBusinessUnitCode == null || request.warehouseBusinessUnitCode.isBlank()) {
+      throw new WebApplicationException("productId, storeId and warehouseBusinessUnitCode are required.", 422);
+    }
+    try {
+      FulfilmentAssociation association = fulfilmentAssociations.associate(
+          request.productId, request.storeId, request.warehouseBusinessUnitCode);
+      return Response.ok(association).status(201).build();
+    } catch (NoSuchElementException e) {
+      throw new WebApplicationException(e.getMessage(), 404);
+    } catch (IllegalStateException e) {
+      throw new WebApplicationException(e.getMessage(), 409);
+    }
+  }
+
+  /** The active warehouse with the most stock among those fulfilling the product for the store. */
+  @GET
+  @Path("route")
+  public FulfilmentRoute route(@QueryParam("productId") Long productId, @QueryParam("storeId") Long storeId) {
+    if (productId == null || storeId == null) {
+      throw new WebApplicationException("productId and storeId are required.", 400);
+    }
+    FulfilmentRoute route = fulfilmentAssociations.route(productId, storeId);
+    if (route == null) {
+      throw new WebApplicationException(
+          "No active warehouse fulfils product " + productId + " for store " + storeId + ".", 404);
+    }
+    return route;
+  }
+
+  /** Routes for up to 1000 products and stores, in request order; unrouted ones have no warehouse. */
+  @POST
+  @Path("route")
+  public List<FulfilmentRoute> routes(List<FulfilmentRouteRequest> requests) {
+    if (requests == null || requests.isEmpty() || requests.size() > MAX_ROUTE_BATCH) {
+      throw new WebApplicationException("Send between 1 and " + MAX_ROUTE_BATCH + " products and stores.", 422);
+    }
+    List<FulfilmentRoute> routes = new ArrayList<>(requests.size());
+    for (FulfilmentRouteRequest request : requests) {
+      if (request == null || request.productId == null || request.storeId == null) {
+        throw new WebApplicationException("productId and storeId are required.", 422);
+      }
+      FulfilmentRoute route = fulfilmentAssociations.route(request.productId, request.storeId);
+      routes.add(route != null ? route : new FulfilmentRoute(request.productId, request.storeId, null, null, null));
+    }
+    return routes;
+  }
+
+  @DELETE
+  @Path("{id}")
+  public Response dissociate(Long id) {
+    if (!fulfilmentAssociations.dissociate(id)) {
+      throw new WebApplicationException("Fulfilment association with id of " + id + " does not exist.", 404);
+    }
+    return Response.status(204).build();
+  }
+}
@@ -0,0 +1,22 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+/**
+ * The warehouse that fulfils a product for a store right now. The warehouse fields are null when
+ * no active warehouse is associated with the product and store.
+ */
+public final class FulfilmentRoute {
+
+  public final long productId;
+  public final long storeId;
+  public final String warehouseBusinessUnitCode;
+  public final String location;
+  public final Integer stock;
+
+  public FulfilmentRoute(long productId, long storeId, String warehouseBusinessUnitCode, String location, Integer stock) {
+    this.productId = productId;
+    this.storeId = storeId;
+    this.warehouseBusinessUnitCode = warehouseBusinessUnitCode;
+    this.location = location;
+    this.stock = stock;
+  }
+}
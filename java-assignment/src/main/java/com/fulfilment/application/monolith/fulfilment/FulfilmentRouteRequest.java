@@ -0,0 +1,8 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+/** One product and store in the body of {@code POST /fulfilment/route}. */
+public class FulfilmentRouteRequest {
+
+  public Long productId;
+  public Long storeId;
+}
@@ -0,0 +1,113 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routing candidates: for every product and store, the committed associations, oldest first. Each
+ * candidate points at the {@link Site} of its business unit code, shared by every route through
+ * that code, so archiving, replacing or restocking a warehouse is a single write to its site and
+ * never touches the candidates. A lookup reads one map entry and at most a limit's worth of sites.
+ */
+final class FulfilmentRoutes {
+
+  private final ConcurrentHashMap<String, Site> sites = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<ProductStore, Candidate[]> candidates = new ConcurrentHashMap<>();
+
+  /**
+   * The active candidate with the most stock, the oldest association among equals; null when the
+   * product and store have no active candidate.
+   */
+  FulfilmentRoute route(long productId, long storeId) {
+    Candidate[] route = candidates.get(new ProductStore(productId, storeId));
+    if (route == null) {
+      return null;
+    }
+    Site best = null;
+    Warehouse bestWarehouse = null;
+    for (Candidate candidate : route) {
+      Warehouse warehouse = candidate.site.warehouse;
+      if (warehouse != null && (bestWarehouse == null || stock(warehouse) > stock(bestWarehouse))) {
+        best = candidate.site;
+        bestWarehouse = warehouse;
+      }
+    }
+    return best == null ? null
+        : new FulfilmentRoute(productId, storeId, best.code, bestWarehouse.location, bestWarehouse.stock);
+  }
+
+  /** Points every route through {@code code} at {@code active}, or at nothing when null. */
+  void warehouse(String code, Warehouse active) {
+    sites.computeIfAbsent(code, Site::new).warehouse = active;
+  }
+
+  boolean isActive(String code) {
+    Site site = sites.get(code);
+    return site != null && site.warehouse != null;
+  }
+
+  void add(long associationId, long productId, long storeId, String code) {
+    Candidate added = new Candidate(associationId, sites.computeIfAbsent(code, Site::new));
+    candidates.compute(new ProductStore(productId, storeId), (key, route) -> {
+      if (route == null) {
+        return new Candidate[] {added};
+      }
+      int at = route.length;
+      for (int i = 0; i < route.length; i++) {
+        if (route[i].site == added.site) {
+          return route;
+        }
+        if (route[i].associationId > associationId && at == route.length) {
+          at = i;
+        }
+      }
+      Candidate[] grown = new Candidate[route.length + 1];
+      System.arraycopy(route, 0, grown, 0, at);
+      grown[at] = added;
+      System.arraycopy(route, at, grown, at + 1, route.length - at);
+      return grown;
+    });
+  }
+
+  void remove(long productId, long storeId, String code) {
+    candidates.computeIfPresent(new ProductStore(productId, storeId), (key, route) -> {
+      for (int i = 0; i < route.length; i++) {
+        if (route[i].site.code.equals(code)) {
+          if (route.length == 1) {
+            return null;
+          }
+          Candidate[] shrunk = Arrays.copyOf(route, route.length - 1);
+          System.arraycopy(route, i + 1, shrunk, i, route.length - i - 1);
+          return shrunk;
+        }
+      }
+      return route;
+    });
+  }
+
+  private static int stock(Warehouse warehouse) {
+    return warehouse.stock == null ? 0 : warehouse.stock;
+  }
+
+  // one per business unit code, kept for the life of these routes so candidates never point at a stale one
+  private static final class Site {
+    final String code;
+    // the active warehouse with this code, a detached copy from its change event; null when there is none
+    volatile Warehouse warehouse;
+
+    Site(String code) {
+      this.code = code;
+    }
+  }
+
+  private static final class Candidate {
+    final long associationId;
+    final Site site;
+
+    Candidate(long associationId, Site site) {
+      this.associationId = associationId;
+      this.site = site;
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+/** A product and a store, as a map key. */
+final class ProductStore {
+
+  final long productId;
+  final long storeId;
+
+  ProductStore(long productId, long storeId) {
+    this.productId = productId;
+    this.storeId = storeId;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof ProductStore
+        && ((ProductStore) other).productId == productId
+        && ((ProductStore) other).storeId == storeId;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(productId) * 31 + Long.hashCode(storeId);
+  }
+}
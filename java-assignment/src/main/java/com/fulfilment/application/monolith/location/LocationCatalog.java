@@ -0,0 +1,192 @@
+package com.fulfilment.application.monolith.location;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Location;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the location catalog, indexed by upper-cased identifier.
+ * A new snapshot is built on every reload and swapped in atomically by {@link LocationGateway}.
+ */
+public final class LocationCatalog {
+
+  private final List<Location> locations;
+  private final Map<String, Location> byId;
+  private final String version;
+
+  public LocationCatalog(List<Location> locations) {
+    Map<String, Location> index = new HashMap<>(Math.max(16, locations.size() * 4 / 3 + 1));
+    List<Location> ordered = new ArrayList<>(locations.size());
+    for (Location location : locations) {
+      if (index.put(key(location.identification), location) != null) {
+        throw new IllegalArgumentException(
+            "Duplicate location identifier '" + location.identification + "'.");
+      }
+      ordered.add(location);
+    }
+    this.locations = Collections.unmodifiableList(ordered);
+    this.byId = index;
+    this.version = fingerprint(ordered);
+  }
+
+  static LocationCatalog defaults() {
+    List<Location> locations = new ArrayList<>();
+    locations.add(new Location("ZWOLLE-001", 1, 40, "OVERIJSSEL"));
+    locations.add(new Location("ZWOLLE-002", 2, 50, "OVERIJSSEL"));
+    locations.add(new Location("AMSTERDAM-001", 5, 100, "NOORD-HOLLAND"));
+    locations.add(new Location("AMSTERDAM-002", 3, 75, "NOORD-HOLLAND"));
+    locations.add(new Location("TILBURG-001", 1, 40, "NOORD-BRABANT"));
+    locations.add(new Location("HELMOND-001", 1, 45, "NOORD-BRABANT"));
+    locations.add(new Location("EINDHOVEN-001", 2, 70, "NOORD-BRABANT"));
+    locations.add(new Location("VETSBY-001", 1, 90));
+    return new LocationCatalog(locations);
+  }
+
+  /**
+   * Reads a catalog file with one {@code identifier,maxNumberOfWarehouses,maxCapacity[,region]} entry
+   * per line. Blank lines and lines starting with {@code #} are ignored.
+   */
+  public static LocationCatalog parse(Path file) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return parse(reader);
+    }
+  }
+
+  public static LocationCatalog parse(Reader source) throws IOException {
+    BufferedReader reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+    List<Location> locations = new ArrayList<>();
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+        continue;
+      }
+      String[] parts = trimmed.split(",");
+      if (parts.length < 3 || parts.length > 4 || parts[0].isBlank()) {
+        throw new IllegalArgumentException("Malformed location entry at line " + lineNumber + ": '" + line + "'.");
+      }
+      try {
+        String region = parts.length == 4 && !parts[3].isBlank() ? parts[3].trim() : null;
+        locations.add(new Location(
+            parts[0].trim(), Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim()), region));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Malformed location limits at line " + lineNumber + ": '" + line + "'.", e);
+      }
+    }
+    return new LocationCatalog(locations);
+  }
+
+  public Location find(String identifier) {
+    return identifier == null ? null : byId.get(key(identifier));
+  }
+
+  public List<Location> all() {
+    return locations;
+  }
+
+  public int size() {
+    return locations.size();
+  }
+
+  /** Content fingerprint; equal catalogs have equal versions across restarts. */
+  public String version() {
+    return version;
+  }
+
+  /**
+   * Identifiers (upper-cased) that are new in {@code next} or whose limits differ from this snapshot.
+   * Runs in a single pass over {@code next} with one hash lookup per entry.
+   */
+  public Set<String> changedIn(LocationCatalog next) {
+    Set<String> changed = new LinkedHashSet<>();
+    if (next.version.equals(version)) {
+      return changed;
+    }
+    for (Location candidate : next.locations) {
+      String id = key(candidate.identification);
+      Location current = byId.get(id);
+      if (current == null
+          || current.maxNumberOfWarehouses != candidate.maxNumberOfWarehouses
+          || current.maxCapacity != candidate.maxCapacity) {
+        changed.add(id);
+      }
+    }
+    return changed;
+  }
+
+  /** Identifiers (upper-cased) present in this snapshot but missing from {@code next}. */
+  public Set<String> removedIn(LocationCatalog next) {
+    Set<String> removed = new LinkedHashSet<>();
+    if (next.version.equals(version)) {
+      return removed;
+    }
+    for (String id : byId.keySet()) {
+      if (!next.byId.containsKey(id)) {
+        removed.add(id);
+      }
+    }
+    return removed;
+  }
+
+  static String key(String identifier) {
+    return identifier.trim().toUpperCase(Locale.ROOT);
+  }
+
+  /** City part of a {@code CITY-NNN} identifier; identifiers without a site suffix are their own city. */
+  static String cityOf(String identifier) {
+    String id = key(identifier);
+    int dash = id.lastIndexOf('-');
+    return dash > 0 ? id.substring(0, dash) : id;
+  }
+
+  // first 128 bits of SHA-256 over every entry's full text and limits; it is the catalog's ETag and
+  // the reload no-op check, so two different catalogs must practically never share it
+  private static String fingerprint(List<Location> locations) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    ByteBuffer entry = ByteBuffer.allocate(8);
+    for (Location location : locations) {
+      update(digest, key(location.identification));
+      entry.clear();
+      entry.putInt(location.maxNumberOfWarehouses).putInt(location.maxCapacity);
+      digest.update(entry.array());
+      if (location.region == null) {
+        digest.update((byte) 0);
+      } else {
+        digest.update((byte) 1);
+        update(digest, location.region);
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest(), 0, 16) + "-" + locations.size();
+  }
+
+  // length-prefixed, so no two different entry sequences feed the digest the same bytes
+  private static void update(MessageDigest digest, String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+    digest.update(bytes);
+  }
+}
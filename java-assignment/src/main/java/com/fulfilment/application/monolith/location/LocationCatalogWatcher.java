@@ -0,0 +1,79 @@
+package com.fulfilment.application.monolith.location;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the configured catalog file and reloads {@link LocationGateway} whenever it changes.
+ * Without {@code location.catalog.path} the built-in catalog stays in place.
+ */
+@ApplicationScoped
+public class LocationCatalogWatcher {
+
+  private static final Logger LOGGER = Logger.getLogger(LocationCatalogWatcher.class.getName());
+
+  @Inject LocationGateway locationGateway;
+
+  @ConfigProperty(name = "location.catalog.path")
+  Optional<String> catalogPath;
+
+  @ConfigProperty(name = "location.catalog.poll-interval-ms", defaultValue = "5000")
+  long pollIntervalMs;
+
+  private ScheduledExecutorService scheduler;
+  private long lastModified = Long.MIN_VALUE;
+  private long lastSize = -1;
+
+  void onStart(@Observes StartupEvent event) {
+    if (catalogPath.isEmpty()) {
+      return;
+    }
+    poll();
+    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "location-catalog-watcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  void onStop(@Observes ShutdownEvent event) {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /** Reloads the catalog if the file changed since the last poll; returns the report or null. */
+  synchronized LocationReloadReport poll() {
+    Path file = Path.of(catalogPath.orElseThrow());
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      long modified = attributes.lastModifiedTime().toMillis();
+      if (modified == lastModified && attributes.size() == lastSize) {
+        return null;
+      }
+      // remember the attempt even if parsing fails, so a broken file is reported once per edit
+      lastModified = modified;
+      lastSize = attributes.size();
+      LocationCatalog next = LocationCatalog.parse(file);
+      return locationGateway.reload(next);
+    } catch (Exception e) {
+      // keep serving the previous catalog; a broken edit must not take the resolver down
+      LOGGER.errorf(e, "Failed to reload location catalog from %s", file);
+      return null;
+    }
+  }
+}
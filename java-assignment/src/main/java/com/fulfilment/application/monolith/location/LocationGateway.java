@@ -1,28 +1,29 @@
 package com.fulfilment.application.monolith.location;
 
 import com.fulfilment.application.monolith.warehouses.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
 import com.fulfilment.application.monolith.warehouses.domain.ports.LocationResolver;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ApplicationScoped
 public class LocationGateway implements LocationResolver {
 
-  private static final List<Location> locations = new ArrayList<>();
-
-  static {
-    locations.add(new Location("ZWOLLE-001", 1, 40));
-    locations.add(new Location("ZWOLLE-002", 2, 50));
-    locations.add(new Location("AMSTERDAM-001", 5, 100));
-    locations.add(new Location("AMSTERDAM-002", 3, 75));
-    locations.add(new Location("TILBURG-001", 1, 40));
-    locations.add(new Location("HELMOND-001", 1, 45));
-    locations.add(new Location("EINDHOVEN-001", 2, 70));
-    locations.add(new Location("VETSBY-001", 1, 90));
-  }
+  private static final Logger LOGGER = Logger.getLogger(LocationGateway.class.getName());
+
+  private final AtomicReference<LocationCatalog> catalog = new AtomicReference<>(LocationCatalog.defaults());
+
+  @Inject WarehouseStore warehouseStore;
 
   @Override
   public Location resolveByIdentifier(String identifier) {
@@ -30,14 +31,93 @@ public class LocationGateway implements LocationResolver {
       if (identifier == null || identifier.isBlank()) {
           return null;
       }
-      for (Location location : locations) {
-          if (identifier.equalsIgnoreCase(location.identification)) {
-              return location;
-          }
+      Location location = catalog.get().find(identifier);
+      if (location != null) {
+          return location;
       }
 
       throw new NoSuchElementException(
               String.format("Location not found for identifier '%s'.", identifier));
 
   }
+
+  @Override
+  public List<Location> resolveAll() {
+    return catalog.get().all();
+  }
+
+  @Override
+  public String catalogVersion() {
+    return catalog.get().version();
+  }
+
+  public LocationCatalog currentCatalog() {
+    return catalog.get();
+  }
+
+  /**
+   * Re-validates only the locations whose limits changed against the currently active warehouses,
+   * then swaps in {@code next}. Unchanged locations are never looked at, so the cost is one pass
+   * over the new catalog plus one warehouse query restricted to the changed identifiers. When the
+   * validation cannot run, the exception propagates and the previous catalog stays in place.
+   */
+  public synchronized LocationReloadReport reload(LocationCatalog next) {
+    LocationCatalog previous = catalog.get();
+    Set<String> changed = previous.changedIn(next);
+    Set<String> removed = previous.removedIn(next);
+
+    Map<String, long[]> usage = usageByLocation(changed, removed);
+
+    List<LocationReloadReport.Violation> newlyOverLimit = new ArrayList<>();
+    for (String id : changed) {
+      long[] used = usage.getOrDefault(id, EMPTY_USAGE);
+      Location now = next.find(id);
+      Location before = previous.find(id);
+      if (isOverLimit(now, used) && (before == null || !isOverLimit(before, used))) {
+        newlyOverLimit.add(new LocationReloadReport.Violation(
+            now.identification, used[0], now.maxNumberOfWarehouses, used[1], now.maxCapacity));
+      }
+    }
+    List<String> orphaned = new ArrayList<>();
+    for (String id : removed) {
+      if (usage.containsKey(id)) {
+        orphaned.add(id);
+      }
+    }
+
+    LocationReloadReport report = new LocationReloadReport(
+        previous.version(), next.version(), changed.size(), orphaned, newlyOverLimit);
+    catalog.set(next);
+    if (report.hasViolations()) {
+      LOGGER.warnf("Location catalog %s loaded with violations: over limit %s, removed but still in use %s",
+          report.version, report.newlyOverLimit, report.removedLocations);
+    } else {
+      LOGGER.infof("Location catalog %s loaded (%d locations, %d changed)",
+          report.version, next.size(), report.changedLocations);
+    }
+    return report;
+  }
+
+  private static final long[] EMPTY_USAGE = new long[2];
+
+  // [activeWarehouses, usedCapacity] per upper-cased location id, restricted to the given ids
+  private Map<String, long[]> usageByLocation(Set<String> changed, Set<String> removed) {
+    Map<String, long[]> usage = new HashMap<>();
+    if (changed.isEmpty() && removed.isEmpty()) {
+      return usage;
+    }
+    List<String> ids = new ArrayList<>(changed.size() + removed.size());
+    ids.addAll(changed);
+    ids.addAll(removed);
+    for (Warehouse warehouse : warehouseStore.findActiveByLocations(ids)) {
+      long[] used = usage.computeIfAbsent(LocationCatalog.key(warehouse.location), k -> new long[2]);
+      used[0]++;
+      used[1] += warehouse.capacity == null ? 0 : warehouse.capacity;
+    }
+    return usage;
+  }
+
+  private static boolean isOverLimit(Location location, long[] used) {
+    return used[0] > location.maxNumberOfWarehouses || used[1] > location.maxCapacity;
+  }
 }
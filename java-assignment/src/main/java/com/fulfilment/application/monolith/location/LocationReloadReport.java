@@ -0,0 +1,52 @@
+package com.fulfilment.application.monolith.location;
+
+import java.util.List;
+
+/**
+ * Outcome of a catalog reload: which locations changed and which of them are now over their limits
+ * given the currently active warehouses.
+ */
+public final class LocationReloadReport {
+
+  public final String previousVersion;
+  public final String version;
+  public final int changedLocations;
+  public final List<String> removedLocations;
+  public final List<Violation> newlyOverLimit;
+
+  public LocationReloadReport(String previousVersion, String version, int changedLocations,
+                              List<String> removedLocations, List<Violation> newlyOverLimit) {
+    this.previousVersion = previousVersion;
+    this.version = version;
+    this.changedLocations = changedLocations;
+    this.removedLocations = List.copyOf(removedLocations);
+    this.newlyOverLimit = List.copyOf(newlyOverLimit);
+  }
+
+  public boolean hasViolations() {
+    return !newlyOverLimit.isEmpty() || !removedLocations.isEmpty();
+  }
+
+  public static final class Violation {
+    public final String location;
+    public final long activeWarehouses;
+    public final int maxNumberOfWarehouses;
+    public final long usedCapacity;
+    public final int maxCapacity;
+
+    public Violation(String location, long activeWarehouses, int maxNumberOfWarehouses,
+                     long usedCapacity, int maxCapacity) {
+      this.location = location;
+      this.activeWarehouses = activeWarehouses;
+      this.maxNumberOfWarehouses = maxNumberOfWarehouses;
+      this.usedCapacity = usedCapacity;
+      this.maxCapacity = maxCapacity;
+    }
+
+    @Override
+    public String toString() {
+      return location + " [warehouses=" + activeWarehouses + "/" + maxNumberOfWarehouses
+          + ", capacity=" + usedCapacity + "/" + maxCapacity + "]";
+    }
+  }
+}
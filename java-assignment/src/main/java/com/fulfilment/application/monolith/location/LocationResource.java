@@ -0,0 +1,137 @@
+package com.fulfilment.application.monolith.location;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.ports.LocationResolver;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+/**
+ * Read-only view of the location catalog. Every response carries the catalog version as ETag so
+ * clients can cache the catalog, validate warehouse payloads locally and revalidate with
+ * {@code If-None-Match} instead of probing the write endpoints.
+ */
+@Path("location")
+@ApplicationScoped
+@Produces(MediaType.APPLICATION_JSON)
+public class LocationResource {
+
+  // lookups larger than this should fetch the full catalog instead
+  static final int MAX_BULK_IDS = 500;
+
+  @Inject LocationResolver locationResolver;
+
+  @Inject LocationRollup locationRollup;
+
+  @ConfigProperty(name = "location.api.max-age-seconds", defaultValue = "3600")
+  int maxAgeSeconds;
+
+  @GET
+  public Response list(@Context Request request) {
+    return cacheable(request, () -> locationResolver.resolveAll());
+  }
+
+  @GET
+  @Path("{id}")
+  public Response getSingle(@PathParam("id") String id, @Context Request request) {
+    return cacheable(request, () -> {
+      Location location = resolveOrNull(id);
+      if (location == null) {
+        throw new WebApplicationException("Location with id of " + id + " does not exist.", 404);
+      }
+      return location;
+    });
+  }
+
+  /** Bulk variant: {@code GET /location/lookup?id=ZWOLLE-001&id=TILBURG-001}. */
+  @GET
+  @Path("lookup")
+  public Response lookup(@QueryParam("id") List<String> ids, @Context Request request) {
+    if (ids == null || ids.isEmpty()) {
+      throw new WebApplicationException("At least one id query parameter is required.", 400);
+    }
+    if (ids.size() > MAX_BULK_IDS) {
+      throw new WebApplicationException("At most " + MAX_BULK_IDS + " ids can be looked up at once.", 400);
+    }
+    return cacheable(request, () -> {
+      LocationLookup result = new LocationLookup();
+      for (String id : ids) {
+        Location location = resolveOrNull(id);
+        if (location != null) {
+          result.locations.add(location);
+        } else {
+          result.missing.add(id);
+        }
+      }
+      return result;
+    });
+  }
+
+  /** Totals over all regions. */
+  @GET
+  @Path("rollup")
+  public LocationRollup.LocationRollupView rollup() {
+    return locationRollup.view(LocationRollup.Level.ALL, null);
+  }
+
+  /** Totals of one subtree, e.g. {@code /location/rollup/city/ZWOLLE} or {@code /location/rollup/site/ZWOLLE-001}. */
+  @GET
+  @Path("rollup/{level}/{key}")
+  public LocationRollup.LocationRollupView rollup(@PathParam("level") String level, @PathParam("key") String key) {
+    LocationRollup.Level parsed;
+    try {
+      parsed = LocationRollup.Level.valueOf(level.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new WebApplicationException("Unknown rollup level '" + level + "'; use site, city or region.", 400);
+    }
+    LocationRollup.LocationRollupView view = locationRollup.view(parsed, key);
+    if (view == null) {
+      throw new WebApplicationException("No " + level + " named " + key + " in the location hierarchy.", 404);
+    }
+    return view;
+  }
+
+  private Response cacheable(Request request, Supplier<Object> body) {
+    // the tag is taken before the body, so a concurrent reload can only make the tag older, never newer
+    EntityTag etag = new EntityTag(locationResolver.catalogVersion());
+    CacheControl cacheControl = new CacheControl();
+    cacheControl.setMaxAge(maxAgeSeconds);
+
+    Response.ResponseBuilder notModified = request == null ? null : request.evaluatePreconditions(etag);
+    if (notModified != null) {
+      return notModified.tag(etag).cacheControl(cacheControl).build();
+    }
+    return Response.ok(body.get()).tag(etag).cacheControl(cacheControl).build();
+  }
+
+  private Location resolveOrNull(String id) {
+    try {
+      return locationResolver.resolveByIdentifier(id);
+    } catch (NoSuchElementException e) {
+      return null;
+    }
+  }
+
+  public static class LocationLookup {
+    public List<Location> locations = new ArrayList<>();
+    public List<String> missing = new ArrayList<>();
+  }
+}
@@ -0,0 +1,204 @@
+package com.fulfilment.application.monolith.location;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseChangeEvent;
+import com.fulfilment.application.monolith.warehouses.domain.ports.LocationResolver;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Aggregates active warehouses over the site → city → region hierarchy. Every node keeps its own
+ * totals, so any subtree is answered with one map lookup. Warehouse writes adjust only the four
+ * nodes on the affected site's path; the tree is rebuilt from the store only on first use and after
+ * the location catalog changes.
+ */
+@ApplicationScoped
+public class LocationRollup {
+
+  public enum Level { SITE, CITY, REGION, ALL }
+
+  static final String UNASSIGNED_REGION = "UNASSIGNED";
+
+  @Inject WarehouseStore warehouseStore;
+
+  @Inject LocationResolver locationResolver;
+
+  private final Map<String, Node> nodes = new HashMap<>();
+  // active contribution per upper-cased business unit code; makes re-applied events idempotent
+  private final Map<String, Contribution> contributions = new HashMap<>();
+  private String builtForCatalog;
+
+  public synchronized LocationRollupView view(Level level, String key) {
+    ensureBuilt();
+    Node node = nodes.get(nodeKey(level, level == Level.ALL ? "" : key));
+    return node == null ? null : node.view();
+  }
+
+  void onWarehouseChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) WarehouseChangeEvent event) {
+    apply(event);
+  }
+
+  synchronized void apply(WarehouseChangeEvent event) {
+    if (builtForCatalog == null) {
+      return; // not built yet: the initial scan reads committed state, including this change
+    }
+    String code = event.businessUnitCode().toUpperCase(Locale.ROOT);
+    Warehouse after = event.after;
+    if (after != null && after.archivedAt == null) {
+      replaceContribution(code, new Contribution(after));
+      return;
+    }
+    Warehouse gone = after != null ? after : event.before;
+    Contribution current = contributions.get(code);
+    // only drop the active contribution when the event is about that same warehouse incarnation
+    if (current != null && (current.createdAt == null || Objects.equals(current.createdAt, gone.createdAt))) {
+      replaceContribution(code, null);
+    }
+  }
+
+  private void ensureBuilt() {
+    String catalogVersion = locationResolver.catalogVersion();
+    if (catalogVersion.equals(builtForCatalog)) {
+      return;
+    }
+    nodes.clear();
+    contributions.clear();
+    nodes.put(nodeKey(Level.ALL, ""), new Node(Level.ALL, "", null));
+    for (Location location : locationResolver.resolveAll()) {
+      site(location.identification).addLimits(location.maxCapacity);
+    }
+    for (Warehouse warehouse : warehouseStore.getAll()) {
+      if (warehouse.archivedAt == null) {
+        replaceContribution(warehouse.businessUnitCode.toUpperCase(Locale.ROOT), new Contribution(warehouse));
+      }
+    }
+    builtForCatalog = catalogVersion;
+  }
+
+  private void replaceContribution(String code, Contribution next) {
+    Contribution previous = next == null ? contributions.remove(code) : contributions.put(code, next);
+    if (previous != null) {
+      site(previous.location).add(-1, -previous.capacity, -previous.stock);
+    }
+    if (next != null) {
+      site(next.location).add(1, next.capacity, next.stock);
+    }
+  }
+
+  private Node site(String identifier) {
+    String siteKey = LocationCatalog.key(identifier);
+    Node site = nodes.get(nodeKey(Level.SITE, siteKey));
+    if (site != null) {
+      return site;
+    }
+    Node region = child(nodes.get(nodeKey(Level.ALL, "")), Level.REGION, regionOf(siteKey));
+    Node city = child(region, Level.CITY, LocationCatalog.cityOf(siteKey));
+    return child(city, Level.SITE, siteKey);
+  }
+
+  private Node child(Node parent, Level level, String key) {
+    return nodes.computeIfAbsent(nodeKey(level, key), k -> {
+      parent.children.add(key);
+      return new Node(level, key, parent);
+    });
+  }
+
+  private String regionOf(String siteKey) {
+    try {
+      Location location = locationResolver.resolveByIdentifier(siteKey);
+      return location == null || location.region == null ? UNASSIGNED_REGION : location.region.toUpperCase(Locale.ROOT);
+    } catch (NoSuchElementException e) {
+      return UNASSIGNED_REGION;
+    }
+  }
+
+  private static String nodeKey(Level level, String key) {
+    return level.name() + ':' + (key == null ? "" : key.trim().toUpperCase(Locale.ROOT));
+  }
+
+  private static final class Contribution {
+    final String location;
+    final int capacity;
+    final int stock;
+    final LocalDateTime createdAt;
+
+    Contribution(Warehouse warehouse) {
+      this.location = warehouse.location;
+      this.capacity = warehouse.capacity == null ? 0 : warehouse.capacity;
+      this.stock = warehouse.stock == null ? 0 : warehouse.stock;
+      this.createdAt = warehouse.createdAt;
+    }
+  }
+
+  private static final class Node {
+    final Level level;
+    final String key;
+    final Node parent;
+    final TreeSet<String> children = new TreeSet<>();
+    int warehouses;
+    long capacity;
+    long stock;
+    long maxCapacity;
+
+    Node(Level level, String key, Node parent) {
+      this.level = level;
+      this.key = key;
+      this.parent = parent;
+    }
+
+    void add(int warehouseDelta, long capacityDelta, long stockDelta) {
+      for (Node node = this; node != null; node = node.parent) {
+        node.warehouses += warehouseDelta;
+        node.capacity += capacityDelta;
+        node.stock += stockDelta;
+      }
+    }
+
+    void addLimits(long maxCapacityDelta) {
+      for (Node node = this; node != null; node = node.parent) {
+        node.maxCapacity += maxCapacityDelta;
+      }
+    }
+
+    LocationRollupView view() {
+      return new LocationRollupView(level.name(), key, warehouses, capacity, stock, maxCapacity,
+          new ArrayList<>(children));
+    }
+  }
+
+  public static final class LocationRollupView {
+    public final String level;
+    public final String key;
+    public final int warehouses;
+    public final long capacity;
+    public final long stock;
+    // sum of the catalog maxCapacity of all sites in the subtree
+    public final long maxCapacity;
+    public final List<String> children;
+
+    LocationRollupView(String level, String key, int warehouses, long capacity, long stock,
+                       long maxCapacity, List<String> children) {
+      this.level = level;
+      this.key = key;
+      this.warehouses = warehouses;
+      this.capacity = capacity;
+      this.stock = stock;
+      this.maxCapacity = maxCapacity;
+      this.children = children;
+    }
+  }
+}
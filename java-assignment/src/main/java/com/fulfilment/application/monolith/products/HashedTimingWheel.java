@@ -0,0 +1,88 @@
+package com.fulfilment.application.monolith.products;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Deadlines kept in a ring of {@code slots} buckets of {@code tickMs} each; scheduling is O(1) and
+ * a tick only looks at one bucket, however many deadlines are pending. Items are not cancelled one
+ * by one: the consumer ignores the ones that no longer matter when they come due, and the owner
+ * {@link #purge}s them in bulk once enough have piled up.
+ * <p>
+ * Any thread may {@link #schedule}; {@link #advance} and {@link #purge} must be called from a single thread, which
+ * moves newly scheduled items into their buckets before it expires the due ones.
+ */
+final class HashedTimingWheel<T> {
+
+  private final long tickMs;
+  private final ArrayDeque<Timeout<T>>[] buckets;
+  private final Queue<Timeout<T>> scheduled = new ConcurrentLinkedQueue<>();
+  // next tick to run, counted from the first advance
+  private long next;
+  private long startMs = -1;
+
+  @SuppressWarnings("unchecked")
+  HashedTimingWheel(long tickMs, int slots) {
+    this.tickMs = tickMs;
+    this.buckets = new ArrayDeque[slots];
+    for (int i = 0; i < slots; i++) {
+      buckets[i] = new ArrayDeque<>();
+    }
+  }
+
+  void schedule(T item, long deadlineMs) {
+    scheduled.add(new Timeout<>(item, deadlineMs));
+  }
+
+  /** Runs every tick up to {@code nowMs}, handing each item whose deadline passed to {@code expired}. */
+  void advance(long nowMs, Consumer<T> expired) {
+    if (startMs < 0) {
+      startMs = nowMs;
+    }
+    long current = (nowMs - startMs) / tickMs;
+    for (; next <= current; next++) {
+      transferScheduled();
+      ArrayDeque<Timeout<T>> bucket = buckets[(int) (next % buckets.length)];
+      for (int i = bucket.size(); i > 0; i--) {
+        Timeout<T> timeout = bucket.poll();
+        if (timeout.rounds > 0) {
+          timeout.rounds--;
+          bucket.add(timeout);
+        } else {
+          expired.accept(timeout.item);
+        }
+      }
+    }
+  }
+
+  /** Drops every pending item matching {@code dead}; a full pass over the wheel. */
+  void purge(Predicate<T> dead) {
+    transferScheduled();
+    for (ArrayDeque<Timeout<T>> bucket : buckets) {
+      bucket.removeIf(timeout -> dead.test(timeout.item));
+    }
+  }
+
+  private void transferScheduled() {
+    for (Timeout<T> timeout = scheduled.poll(); timeout != null; timeout = scheduled.poll()) {
+      // the first tick starting at or after the deadline; never one already run
+      long due = Math.max(next, Math.floorDiv(timeout.deadlineMs - startMs + tickMs - 1, tickMs));
+      timeout.rounds = (due - next) / buckets.length;
+      buckets[(int) (due % buckets.length)].add(timeout);
+    }
+  }
+
+  private static final class Timeout<T> {
+    final T item;
+    final long deadlineMs;
+    long rounds;
+
+    Timeout(T item, long deadlineMs) {
+      this.item = item;
+      this.deadlineMs = deadlineMs;
+    }
+  }
+}
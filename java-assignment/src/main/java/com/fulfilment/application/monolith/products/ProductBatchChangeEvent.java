@@ -0,0 +1,21 @@
+package com.fulfilment.application.monolith.products;
+
+import java.util.Set;
+
+/**
+ * Fired inside a transaction that changed products with set-based SQL, a CSV import or a bulk
+ * update, instead of through the entity.
+ */
+public final class ProductBatchChangeEvent {
+
+  public final long inserted;
+  public final long updated;
+  // the products written, or null when there were too many to list (a very large CSV import)
+  public final Set<Long> ids;
+
+  public ProductBatchChangeEvent(long inserted, long updated, Set<Long> ids) {
+    this.inserted = inserted;
+    this.updated = updated;
+    this.ids = ids;
+  }
+}
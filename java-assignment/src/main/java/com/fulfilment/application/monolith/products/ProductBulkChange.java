@@ -0,0 +1,44 @@
+package com.fulfilment.application.monolith.products;
+
+import java.math.BigDecimal;
+
+/**
+ * One item of a bulk update: the product by {@code id} or by {@code name}, and the new {@code price}
+ * and/or {@code stock}. A field left out keeps its current value.
+ */
+public class ProductBulkChange {
+
+  public Long id;
+  public String name;
+  public BigDecimal price;
+  public Integer stock;
+
+  public ProductBulkChange() {}
+
+  public ProductBulkChange(Long id, String name, BigDecimal price, Integer stock) {
+    this.id = id;
+    this.name = name;
+    this.price = price;
+    this.stock = stock;
+  }
+
+  /** Why this change cannot be applied, or null. */
+  String invalidReason() {
+    if ((id == null) == (name == null)) {
+      return "Exactly one of id and name must be set.";
+    }
+    if (price == null && stock == null) {
+      return "Nothing to change: set price, stock or both.";
+    }
+    if (price != null) {
+      String priceError = ProductCsvStaging.priceError(price);
+      if (priceError != null) {
+        return priceError;
+      }
+    }
+    if (stock != null && stock < 0) {
+      return "stock must not be negative.";
+    }
+    return null;
+  }
+}
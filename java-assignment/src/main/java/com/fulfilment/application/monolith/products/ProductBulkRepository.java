@@ -0,0 +1,261 @@
+package com.fulfilment.application.monolith.products;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.transaction.Transactional;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+
+/**
+ * Price and stock changes for many products with set-based SQL: one {@code UPDATE ... FROM (VALUES
+ * ...)} per chunk of items, without loading the entities. Every updated product gets a new version
+ * and is evicted from the second-level cache, all of them at once after commit.
+ */
+@ApplicationScoped
+public class ProductBulkRepository {
+
+  // a null price or stock in the VALUES list keeps the current value
+  private static final String BY_ID_SQL =
+      "UPDATE product p SET price = COALESCE(v.price, p.price), stock = COALESCE(v.stock, p.stock), "
+          + "version = p.version + 1 FROM (VALUES %s) AS v(id, price, stock) "
+          + "WHERE p.id = v.id RETURNING p.id";
+
+  private static final String BY_NAME_SQL =
+      "UPDATE product p SET price = COALESCE(v.price, p.price), stock = COALESCE(v.stock, p.stock), "
+          + "version = p.version + 1 FROM (VALUES %s) AS v(name, price, stock) "
+          + "WHERE p.name = v.name RETURNING p.id, p.name";
+
+  // confirmed reservations; a stock lowered meanwhile by other writes stops at zero
+  private static final String SUBTRACT_SQL =
+      "UPDATE product p SET stock = GREATEST(p.stock - v.quantity, 0), version = p.version + 1 "
+          + "FROM (VALUES %s) AS v(id, quantity) WHERE p.id = v.id RETURNING p.id";
+
+  private static final String ID_QUANTITY_ROW = "(CAST(? AS bigint), CAST(? AS integer))";
+
+  private static final String ID_ROW = "(CAST(? AS bigint), CAST(? AS numeric(10,2)), CAST(? AS integer))";
+  private static final String NAME_ROW = "(CAST(? AS varchar), CAST(? AS numeric(10,2)), CAST(? AS integer))";
+
+  // three parameters per row, well below the driver's 32767 limit
+  private static final int CHUNK = 1000;
+
+  // rows per round trip when streaming the whole table
+  private static final int STOCK_FETCH_SIZE = 1000;
+
+  // transaction resource key for the ids evicted again after commit
+  private static final Object PENDING_EVICTIONS = ProductBulkRepository.class.getName() + ".evictions";
+
+  @Inject EntityManager entityManager;
+
+  @Inject TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+  @Inject Event<ProductBatchChangeEvent> productBatchChangeEvent;
+
+  /**
+   * Applies the changes keyed by id in the current transaction; returns the ids that exist. Of
+   * several changes to one id the last one wins.
+   */
+  public Set<Long> updateById(Collection<ProductBulkChange> changes) {
+    Set<Long> updated = new HashSet<>();
+    for (List<ProductBulkChange> chunk : chunks(lastPerKey(changes, change -> change.id))) {
+      update(BY_ID_SQL, ID_ROW, chunk, true, (id, name) -> updated.add(id));
+    }
+    evictAfterCommit(updated);
+    return updated;
+  }
+
+  /**
+   * Applies the changes keyed by name in the current transaction; returns the ids of the names that
+   * exist. Of several changes to one name the last one wins.
+   */
+  public Map<String, Long> updateByName(Collection<ProductBulkChange> changes) {
+    Map<String, Long> updated = new HashMap<>();
+    for (List<ProductBulkChange> chunk : chunks(lastPerKey(changes, change -> change.name))) {
+      update(BY_NAME_SQL, NAME_ROW, chunk, false, (id, name) -> updated.put(name, id));
+    }
+    evictAfterCommit(new HashSet<>(updated.values()));
+    return updated;
+  }
+
+  /**
+   * Takes {@code quantities} (product id to units) off the stock column in one transaction and
+   * returns the ids that still exist.
+   */
+  @Transactional
+  public Set<Long> subtractStock(Map<Long, Long> quantities) {
+    Set<Long> updated = new HashSet<>();
+    List<Map.Entry<Long, Long>> entries = new ArrayList<>(quantities.entrySet());
+    for (int from = 0; from < entries.size(); from += CHUNK) {
+      List<Map.Entry<Long, Long>> chunk = entries.subList(from, Math.min(entries.size(), from + CHUNK));
+      String statement = String.format(SUBTRACT_SQL, String.join(", ", Collections.nCopies(chunk.size(), ID_QUANTITY_ROW)));
+      entityManager.unwrap(Session.class).doWork(connection -> {
+        try (PreparedStatement update = connection.prepareStatement(statement)) {
+          int parameter = 1;
+          for (Map.Entry<Long, Long> entry : chunk) {
+            update.setLong(parameter++, entry.getKey());
+            update.setInt(parameter++, Math.toIntExact(entry.getValue()));
+          }
+          try (ResultSet rows = update.executeQuery()) {
+            while (rows.next()) {
+              updated.add(rows.getLong(1));
+            }
+          }
+        }
+      });
+    }
+    evictAfterCommit(updated);
+    if (!updated.isEmpty()) {
+      productBatchChangeEvent.fire(new ProductBatchChangeEvent(0, updated.size(), updated));
+    }
+    return updated;
+  }
+
+  /** Current stock column of the given products; ids that do not exist are left out. */
+  @Transactional
+  public Map<Long, Integer> stockOf(Collection<Long> ids) {
+    Map<Long, Integer> stock = new HashMap<>();
+    List<Long> all = new ArrayList<>(ids);
+    for (int from = 0; from < all.size(); from += CHUNK) {
+      List<Object[]> rows = entityManager
+          .createQuery("select p.id, p.stock from Product p where p.id in :ids", Object[].class)
+          .setParameter("ids", all.subList(from, Math.min(all.size(), from + CHUNK)))
+          .getResultList();
+      for (Object[] row : rows) {
+        stock.put((Long) row[0], (Integer) row[1]);
+      }
+    }
+    return stock;
+  }
+
+  /** Passes the stock column of every product to {@code sink}, streamed rather than collected. */
+  @Transactional
+  public void forEachStock(StockSink sink) {
+    try (Stream<Object[]> rows = entityManager.createQuery("select p.id, p.stock from Product p", Object[].class)
+        .setHint(HibernateHints.HINT_FETCH_SIZE, STOCK_FETCH_SIZE)
+        .getResultStream()) {
+      rows.forEach(row -> sink.accept((Long) row[0], (Integer) row[1]));
+    }
+  }
+
+  /** Receives the stock column of one product. */
+  public interface StockSink {
+    void accept(long id, int stock);
+  }
+
+  private interface RowSink {
+    void accept(long id, String name);
+  }
+
+  private void update(String sql, String row, List<ProductBulkChange> chunk, boolean byId, RowSink sink) {
+    String statement = String.format(sql, String.join(", ", Collections.nCopies(chunk.size(), row)));
+    entityManager.unwrap(Session.class).doWork(connection -> {
+      try (PreparedStatement update = connection.prepareStatement(statement)) {
+        int parameter = 1;
+        for (ProductBulkChange change : chunk) {
+          if (byId) {
+            update.setLong(parameter++, change.id);
+          } else {
+            update.setString(parameter++, change.name);
+          }
+          setPrice(update, parameter++, change.price);
+          if (change.stock == null) {
+            update.setNull(parameter++, Types.INTEGER);
+          } else {
+            update.setInt(parameter++, change.stock);
+          }
+        }
+        try (ResultSet rows = update.executeQuery()) {
+          while (rows.next()) {
+            sink.accept(rows.getLong(1), byId ? null : rows.getString(2));
+          }
+        }
+      }
+    });
+  }
+
+  private static void setPrice(PreparedStatement statement, int parameter, BigDecimal price)
+      throws SQLException {
+    if (price == null) {
+      statement.setNull(parameter, Types.NUMERIC);
+    } else {
+      statement.setBigDecimal(parameter, price);
+    }
+  }
+
+  // a row joined to several VALUES rows is updated from an arbitrary one of them
+  private static Collection<ProductBulkChange> lastPerKey(Collection<ProductBulkChange> changes,
+      Function<ProductBulkChange, Object> key) {
+    Map<Object, ProductBulkChange> last = new LinkedHashMap<>();
+    for (ProductBulkChange change : changes) {
+      last.put(key.apply(change), change);
+    }
+    return last.values();
+  }
+
+  private static List<List<ProductBulkChange>> chunks(Collection<ProductBulkChange> changes) {
+    List<ProductBulkChange> all = new ArrayList<>(changes);
+    List<List<ProductBulkChange>> chunks = new ArrayList<>();
+    for (int from = 0; from < all.size(); from += CHUNK) {
+      chunks.add(all.subList(from, Math.min(all.size(), from + CHUNK)));
+    }
+    return chunks;
+  }
+
+  // Product is in the second-level cache and native SQL bypasses it. The ids are evicted now, and all
+  // ids of the transaction once more after commit through a single synchronization, so a read racing
+  // with the update cannot leave an old price cached.
+  @SuppressWarnings("unchecked")
+  private void evictAfterCommit(Set<Long> ids) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    evict(ids);
+    Set<Long> pending = (Set<Long>) transactionSynchronizationRegistry.getResource(PENDING_EVICTIONS);
+    if (pending != null) {
+      pending.addAll(ids);
+      return;
+    }
+    Set<Long> evictOnCommit = new HashSet<>(ids);
+    transactionSynchronizationRegistry.putResource(PENDING_EVICTIONS, evictOnCommit);
+    transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+      @Override
+      public void beforeCompletion() {
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        if (status == Status.STATUS_COMMITTED) {
+          evict(evictOnCommit);
+        }
+      }
+    });
+  }
+
+  private void evict(Set<Long> ids) {
+    Cache cache = entityManager.getEntityManagerFactory().getCache();
+    for (Long id : ids) {
+      cache.evict(Product.class, id);
+    }
+  }
+}
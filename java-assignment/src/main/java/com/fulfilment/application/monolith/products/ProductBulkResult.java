@@ -0,0 +1,33 @@
+package com.fulfilment.application.monolith.products;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk update. Items naming a product that does not exist are listed by the id or name
+ * they gave; invalid items by their position in the request.
+ */
+public final class ProductBulkResult {
+
+  public final long updated;
+  public final List<Long> notFoundIds;
+  public final List<String> notFoundNames;
+  public final List<Rejection> rejected;
+
+  public ProductBulkResult(long updated, List<Long> notFoundIds, List<String> notFoundNames,
+      List<Rejection> rejected) {
+    this.updated = updated;
+    this.notFoundIds = notFoundIds;
+    this.notFoundNames = notFoundNames;
+    this.rejected = rejected;
+  }
+
+  public static final class Rejection {
+    public final int index;
+    public final String message;
+
+    public Rejection(int index, String message) {
+      this.index = index;
+      this.message = message;
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.fulfilment.application.monolith.products;
+
+import java.util.Objects;
+
+/** Fired inside the transaction that creates, updates or deletes a product. */
+public final class ProductChangeEvent {
+
+  public enum Type { CREATE, UPDATE, DELETE }
+
+  public final Type type;
+  public final Product product;
+
+  public ProductChangeEvent(Type type, Product product) {
+    this.type = Objects.requireNonNull(type, "type must not be null");
+    this.product = Objects.requireNonNull(product, "product must not be null");
+  }
+}
@@ -0,0 +1,121 @@
+package com.fulfilment.application.monolith.products;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV records one at a time (RFC 4180: quoted fields, doubled quotes, line breaks inside
+ * quotes, LF or CRLF). Only the current record is held; a record longer than {@code maxRecordChars}
+ * is consumed to its end but returned truncated and flagged, so a malformed upload cannot grow memory.
+ */
+final class ProductCsvReader {
+
+  private final Reader reader;
+  private final int maxRecordChars;
+  private final char[] buffer = new char[16 * 1024];
+  private int position;
+  private int limit;
+
+  private long physicalLine = 1;
+  private long recordLine;
+  private boolean overlong;
+
+  ProductCsvReader(Reader reader, int maxRecordChars) {
+    this.reader = reader;
+    this.maxRecordChars = maxRecordChars;
+  }
+
+  /** The next record's fields, or null at the end of the input. Blank lines are skipped. */
+  List<String> next() throws IOException {
+    int c;
+    do {
+      c = read();
+      if (c == '\n') {
+        physicalLine++;
+      }
+    } while (c == '\n' || c == '\r');
+    if (c == -1) {
+      return null;
+    }
+    recordLine = physicalLine;
+    overlong = false;
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    int recordChars = 0;
+    boolean quoted = false;
+    while (true) {
+      if (quoted) {
+        if (c == -1) {
+          throw new IllegalArgumentException("Unterminated quoted field starting at line " + recordLine + ".");
+        }
+        if (c == '"') {
+          int following = read();
+          if (following == '"') {
+            recordChars = append(field, '"', recordChars);
+          } else {
+            quoted = false;
+            c = following;
+            continue;
+          }
+        } else {
+          if (c == '\n') {
+            physicalLine++;
+          }
+          recordChars = append(field, (char) c, recordChars);
+        }
+      } else if (c == '"' && field.length() == 0) {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else if (c == '\n' || c == -1) {
+        if (c == '\n') {
+          physicalLine++;
+        }
+        fields.add(trimCarriageReturn(field));
+        return fields;
+      } else {
+        recordChars = append(field, (char) c, recordChars);
+      }
+      c = read();
+    }
+  }
+
+  /** First line of the record last returned by {@link #next()}. */
+  long line() {
+    return recordLine;
+  }
+
+  /** Whether the record last returned was cut at {@code maxRecordChars}. */
+  boolean overlong() {
+    return overlong;
+  }
+
+  private int append(StringBuilder field, char c, int recordChars) {
+    if (recordChars >= maxRecordChars) {
+      overlong = true;
+      return recordChars;
+    }
+    field.append(c);
+    return recordChars + 1;
+  }
+
+  private static String trimCarriageReturn(StringBuilder field) {
+    int length = field.length();
+    return length > 0 && field.charAt(length - 1) == '\r' ? field.substring(0, length - 1) : field.toString();
+  }
+
+  private int read() throws IOException {
+    if (position == limit) {
+      limit = reader.read(buffer, 0, buffer.length);
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        return -1;
+      }
+    }
+    return buffer[position++];
+  }
+}
@@ -0,0 +1,222 @@
+package com.fulfilment.application.monolith.products;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * First half of a CSV import: reads the upload row by row, validates each row on its own and writes
+ * the valid ones as COPY input ({@code FORMAT csv}) for the staging table, prefixed with their line.
+ * Nothing but the current row and the first {@code maxErrors} errors is kept. Names repeated within
+ * the upload cannot be seen here without remembering every name; the staging table reports those.
+ */
+final class ProductCsvStaging {
+
+  static final int MAX_NAME_LENGTH = 40;
+  static final int MAX_DESCRIPTION_LENGTH = 255;
+  // numeric(10,2)
+  static final int PRICE_SCALE = 2;
+  static final int PRICE_INTEGER_DIGITS = 8;
+  private static final int MAX_RECORD_CHARS = 4096;
+
+  private final int maxErrors;
+  private final List<ProductImportError> errors = new ArrayList<>();
+  private Columns columns;
+  private long rows;
+  private long staged;
+  private long rejected;
+
+  ProductCsvStaging(int maxErrors) {
+    this.maxErrors = maxErrors;
+  }
+
+  /**
+   * Stages every valid row of {@code csv} into {@code copy}. The first record must be a header naming
+   * the columns, in any order: {@code name} and {@code stock} are required, {@code description} and
+   * {@code price} optional.
+   */
+  void stage(Reader csv, Writer copy) throws IOException {
+    ProductCsvReader reader = new ProductCsvReader(csv, MAX_RECORD_CHARS);
+    Columns columns = Columns.of(reader.next());
+    this.columns = columns;
+    StringBuilder out = new StringBuilder(256);
+    for (List<String> record = reader.next(); record != null; record = reader.next()) {
+      rows++;
+      out.setLength(0);
+      String error = reader.overlong()
+          ? "Row is longer than " + MAX_RECORD_CHARS + " characters."
+          : encode(record, columns, reader.line(), out);
+      if (error == null) {
+        copy.append(out);
+        staged++;
+      } else {
+        reject(reader.line(), error);
+      }
+    }
+  }
+
+  /** Records a row left out, keeping its message only while fewer than {@code maxErrors} are kept. */
+  void reject(long line, String message) {
+    rejected++;
+    if (errors.size() < maxErrors) {
+      errors.add(new ProductImportError(line, message));
+    }
+  }
+
+  /** Whether the header named a description column; absent columns are staged as NULL. */
+  boolean hasDescription() {
+    return columns != null && columns.description >= 0;
+  }
+
+  /** Whether the header named a price column; absent columns are staged as NULL. */
+  boolean hasPrice() {
+    return columns != null && columns.price >= 0;
+  }
+
+  long rows() {
+    return rows;
+  }
+
+  long staged() {
+    return staged;
+  }
+
+  long rejected() {
+    return rejected;
+  }
+
+  List<ProductImportError> errors() {
+    return errors;
+  }
+
+  boolean errorsTruncated() {
+    return rejected > errors.size();
+  }
+
+  // the COPY line for a valid row, or the reason the row is rejected
+  private static String encode(List<String> record, Columns columns, long line, StringBuilder out) {
+    if (record.size() != columns.count) {
+      return "Expected " + columns.count + " fields but found " + record.size() + ".";
+    }
+    String name = record.get(columns.name);
+    if (name.isBlank()) {
+      return "name must not be blank.";
+    }
+    if (name.length() > MAX_NAME_LENGTH) {
+      return "name must be at most " + MAX_NAME_LENGTH + " characters.";
+    }
+    String description = columns.description < 0 ? "" : record.get(columns.description);
+    if (description.length() > MAX_DESCRIPTION_LENGTH) {
+      return "description must be at most " + MAX_DESCRIPTION_LENGTH + " characters.";
+    }
+    String priceText = columns.price < 0 ? "" : record.get(columns.price).trim();
+    BigDecimal price = null;
+    if (!priceText.isEmpty()) {
+      try {
+        price = new BigDecimal(priceText);
+      } catch (NumberFormatException e) {
+        return "price '" + priceText + "' is not a number.";
+      }
+      String priceError = priceError(price);
+      if (priceError != null) {
+        return priceError;
+      }
+    }
+    String stockText = record.get(columns.stock).trim();
+    int stock;
+    try {
+      stock = Integer.parseInt(stockText);
+    } catch (NumberFormatException e) {
+      return "stock '" + stockText + "' is not a whole number.";
+    }
+    if (stock < 0) {
+      return "stock must not be negative.";
+    }
+
+    // an unquoted empty field is NULL to COPY, a quoted one an empty string
+    out.append(line).append(',');
+    quote(out, name).append(',');
+    if (!description.isEmpty()) {
+      quote(out, description);
+    }
+    out.append(',');
+    if (price != null) {
+      out.append(price.toPlainString());
+    }
+    out.append(',').append(stock).append('\n');
+    return null;
+  }
+
+  /** Why {@code price} does not fit the price column, or null. */
+  static String priceError(BigDecimal price) {
+    if (price.signum() < 0) {
+      return "price must not be negative.";
+    }
+    if (price.scale() > PRICE_SCALE) {
+      return "price must have at most " + PRICE_SCALE + " decimal places.";
+    }
+    if (price.precision() - price.scale() > PRICE_INTEGER_DIGITS) {
+      return "price must be below 10^" + PRICE_INTEGER_DIGITS + ".";
+    }
+    return null;
+  }
+
+  private static StringBuilder quote(StringBuilder out, String value) {
+    out.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        out.append('"');
+      }
+      out.append(c);
+    }
+    return out.append('"');
+  }
+
+  private static final class Columns {
+    final int count;
+    int name = -1;
+    int description = -1;
+    int price = -1;
+    int stock = -1;
+
+    private Columns(int count) {
+      this.count = count;
+    }
+
+    static Columns of(List<String> header) {
+      if (header == null) {
+        throw new IllegalArgumentException("The CSV is empty; expected a header row.");
+      }
+      Columns columns = new Columns(header.size());
+      for (int i = 0; i < header.size(); i++) {
+        String column = header.get(i).trim().toLowerCase(Locale.ROOT);
+        if (i == 0 && column.startsWith("\uFEFF")) {
+          column = column.substring(1);
+        }
+        switch (column) {
+          case "name" -> columns.name = columns.set(columns.name, i, column);
+          case "description" -> columns.description = columns.set(columns.description, i, column);
+          case "price" -> columns.price = columns.set(columns.price, i, column);
+          case "stock" -> columns.stock = columns.set(columns.stock, i, column);
+          default -> throw new IllegalArgumentException("Unknown CSV column '" + header.get(i) + "'.");
+        }
+      }
+      if (columns.name < 0 || columns.stock < 0) {
+        throw new IllegalArgumentException("The CSV header must name the columns name and stock.");
+      }
+      return columns;
+    }
+
+    private int set(int current, int index, String column) {
+      if (current >= 0) {
+        throw new IllegalArgumentException("CSV column '" + column + "' appears twice.");
+      }
+      return index;
+    }
+  }
+}
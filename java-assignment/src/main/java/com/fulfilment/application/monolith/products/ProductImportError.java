@@ -0,0 +1,13 @@
+package com.fulfilment.application.monolith.products;
+
+/** A CSV row left out of an import, by its line in the upload. */
+public final class ProductImportError {
+
+  public final long line;
+  public final String message;
+
+  public ProductImportError(long line, String message) {
+    this.line = line;
+    this.message = message;
+  }
+}
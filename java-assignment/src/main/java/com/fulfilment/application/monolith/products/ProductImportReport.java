@@ -0,0 +1,32 @@
+package com.fulfilment.application.monolith.products;
+
+import java.util.List;
+
+/**
+ * Outcome of one CSV import. {@code rows} counts data rows read; each ends up inserted, updated,
+ * unchanged or rejected. {@code errors} lists the first rejected rows only, {@code errorsTruncated}
+ * tells whether there were more.
+ */
+public final class ProductImportReport {
+
+  public final long rows;
+  public final long inserted;
+  public final long updated;
+  public final long unchanged;
+  public final long rejected;
+  public final List<ProductImportError> errors;
+  public final boolean errorsTruncated;
+  public final long tookMs;
+
+  public ProductImportReport(long rows, long inserted, long updated, long unchanged, long rejected,
+      List<ProductImportError> errors, boolean errorsTruncated, long tookMs) {
+    this.rows = rows;
+    this.inserted = inserted;
+    this.updated = updated;
+    this.unchanged = unchanged;
+    this.rejected = rejected;
+    this.errors = errors;
+    this.errorsTruncated = errorsTruncated;
+    this.tookMs = tookMs;
+  }
+}
@@ -0,0 +1,236 @@
+package com.fulfilment.application.monolith.products;
+
+import io.quarkus.narayana.jta.runtime.TransactionConfiguration;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.transaction.Transactional;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.jboss.logging.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+/**
+ * Bulk product import from CSV. Valid rows stream through the COPY protocol into a temporary staging
+ * table while the upload is still being read; one statement then merges the staging table into
+ * {@code product} by name. Memory stays flat whatever the upload size: only the current row, the COPY
+ * buffer, the first errors and up to {@code MAX_EVENT_IDS} merged ids are held.
+ * <p>
+ * A name repeated in the upload keeps its first row; the others are reported. Existing products are
+ * updated, and only when a value actually changed, so re-importing a catalog does not bump versions.
+ * Optional columns the header leaves out are left as they are on existing products.
+ */
+@ApplicationScoped
+public class ProductImporter {
+
+  private static final Logger LOGGER = Logger.getLogger(ProductImporter.class.getName());
+
+  private static final String CREATE_STAGING_SQL =
+      "CREATE TEMP TABLE product_import (line bigint, name varchar(40), description varchar(255), "
+          + "price numeric(10,2), stock integer) ON COMMIT DROP";
+
+  private static final String COPY_SQL =
+      "COPY product_import (line, name, description, price, stock) FROM STDIN WITH (FORMAT csv)";
+
+  private static final String DUPLICATES_SQL =
+      "SELECT line, name FROM (SELECT line, name, row_number() OVER (PARTITION BY name ORDER BY line) AS n "
+          + "FROM product_import) d WHERE n > 1 ORDER BY line";
+
+  // ids come from the entity's sequence; each nextval reserves a whole Hibernate allocation block,
+  // so imported ids never collide with ones handed out by the application. %s is the SET list and
+  // %s, %s the compared columns: only those the header named, so an absent column keeps its value.
+  // Unchanged rows are not returned
+  private static final String MERGE_SQL =
+      "INSERT INTO product (id, name, description, price, stock, version) "
+          + "SELECT nextval('product_seq'), name, description, price, stock, 0 FROM ("
+          + "SELECT DISTINCT ON (name) name, description, price, stock FROM product_import ORDER BY name, line) s "
+          + "ON CONFLICT (name) DO UPDATE SET %s, version = product.version + 1 "
+          + "WHERE (%s) IS DISTINCT FROM (%s) "
+          + "RETURNING id, (xmax = 0) AS inserted";
+
+  private static final int COPY_BUFFER_BYTES = 256 * 1024;
+  private static final int DUPLICATES_FETCH_SIZE = 1000;
+  private static final int MERGED_FETCH_SIZE = 1000;
+  // past this many merged products the change event lists none and readers take every product
+  private static final int MAX_EVENT_IDS = 100_000;
+
+  private final EntityManager entityManager;
+  private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+  private final Event<ProductBatchChangeEvent> productBatchChangeEvent;
+  private final int maxErrors;
+
+  @Inject
+  public ProductImporter(
+      EntityManager entityManager,
+      TransactionSynchronizationRegistry transactionSynchronizationRegistry,
+      Event<ProductBatchChangeEvent> productBatchChangeEvent,
+      @ConfigProperty(name = "product.import.max-errors", defaultValue = "1000") int maxErrors) {
+    this.entityManager = entityManager;
+    this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+    this.productBatchChangeEvent = productBatchChangeEvent;
+    this.maxErrors = maxErrors;
+  }
+
+  /**
+   * Imports {@code csv} in one transaction: either every valid row is merged or, on a database
+   * failure, none. Rejected rows never fail the import. A missing or unknown header column is an
+   * {@link IllegalArgumentException}.
+   */
+  @Transactional
+  @TransactionConfiguration(timeoutFromConfigProperty = "product.import.transaction-timeout")
+  public ProductImportReport importCsv(Reader csv) {
+    long started = System.nanoTime();
+    ProductCsvStaging staging = new ProductCsvStaging(maxErrors);
+    Merged merged = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+      try (Statement statement = connection.createStatement()) {
+        statement.execute(CREATE_STAGING_SQL);
+      }
+      copy(connection, csv, staging);
+      reportDuplicates(connection, staging);
+      return merge(connection, staging);
+    });
+    long inserted = merged.inserted;
+    long updated = merged.updated;
+    if (inserted + updated > 0) {
+      evictProductsAfterCommit();
+      productBatchChangeEvent.fire(new ProductBatchChangeEvent(inserted, updated, merged.ids));
+    }
+
+    long tookMs = (System.nanoTime() - started) / 1_000_000;
+    long unchanged = staging.rows() - staging.rejected() - inserted - updated;
+    LOGGER.infof("product.import rows=%d inserted=%d updated=%d unchanged=%d rejected=%d tookMs=%d",
+        staging.rows(), inserted, updated, unchanged, staging.rejected(), tookMs);
+    return new ProductImportReport(staging.rows(), inserted, updated, unchanged, staging.rejected(),
+        staging.errors(), staging.errorsTruncated(), tookMs);
+  }
+
+  // the merge for the columns the upload carries; description and price are optional in the header
+  private static String mergeSql(ProductCsvStaging staging) {
+    List<String> columns = new ArrayList<>(3);
+    if (staging.hasDescription()) {
+      columns.add("description");
+    }
+    if (staging.hasPrice()) {
+      columns.add("price");
+    }
+    columns.add("stock");
+    StringJoiner set = new StringJoiner(", ");
+    StringJoiner current = new StringJoiner(", ");
+    StringJoiner excluded = new StringJoiner(", ");
+    for (String column : columns) {
+      set.add(column + " = EXCLUDED." + column);
+      current.add("product." + column);
+      excluded.add("EXCLUDED." + column);
+    }
+    return MERGE_SQL.formatted(set, current, excluded);
+  }
+
+  // streamed: counts every inserted and updated row, and keeps the ids while they are few enough to list
+  private static Merged merge(Connection connection, ProductCsvStaging staging) throws SQLException {
+    Merged merged = new Merged();
+    try (Statement statement = connection.createStatement()) {
+      statement.setFetchSize(MERGED_FETCH_SIZE);
+      try (ResultSet result = statement.executeQuery(mergeSql(staging))) {
+        while (result.next()) {
+          if (result.getBoolean(2)) {
+            merged.inserted++;
+          } else {
+            merged.updated++;
+          }
+          if (merged.ids != null) {
+            merged.ids.add(result.getLong(1));
+            if (merged.ids.size() > MAX_EVENT_IDS) {
+              merged.ids = null;
+            }
+          }
+        }
+      }
+    }
+    return merged;
+  }
+
+  private static final class Merged {
+    long inserted;
+    long updated;
+    // null once there are more than MAX_EVENT_IDS
+    Set<Long> ids = new HashSet<>();
+  }
+
+  private static void copy(Connection connection, Reader csv, ProductCsvStaging staging) throws SQLException {
+    PGCopyOutputStream copy =
+        new PGCopyOutputStream(connection.unwrap(PGConnection.class), COPY_SQL, COPY_BUFFER_BYTES);
+    try {
+      Writer out = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8), 64 * 1024);
+      staging.stage(csv, out);
+      out.flush();
+      copy.endCopy();
+    } catch (IOException e) {
+      cancel(copy);
+      throw new UncheckedIOException(e);
+    } catch (RuntimeException e) {
+      cancel(copy);
+      throw e;
+    }
+  }
+
+  private static void cancel(PGCopyOutputStream copy) throws SQLException {
+    if (copy.isActive()) {
+      copy.cancelCopy();
+    }
+  }
+
+  // second and later rows of a name; streamed, so a file full of duplicates costs no memory either
+  private static void reportDuplicates(Connection connection, ProductCsvStaging staging) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.setFetchSize(DUPLICATES_FETCH_SIZE);
+      try (ResultSet result = statement.executeQuery(DUPLICATES_SQL)) {
+        while (result.next()) {
+          staging.reject(result.getLong(1), "name '" + result.getString(2) + "' already appeared earlier in the file.");
+        }
+      }
+    }
+  }
+
+  // Product is in the second-level cache and the merge bypasses it; evicting now and again after
+  // completion keeps a read racing with this transaction from caching old values
+  private void evictProductsAfterCommit() {
+    evictProducts();
+    transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+      @Override
+      public void beforeCompletion() {
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        if (status == Status.STATUS_COMMITTED) {
+          evictProducts();
+        }
+      }
+    });
+  }
+
+  private void evictProducts() {
+    entityManager.getEntityManagerFactory().getCache().evict(Product.class);
+  }
+}
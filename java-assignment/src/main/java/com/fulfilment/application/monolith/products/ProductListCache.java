@@ -0,0 +1,29 @@
+package com.fulfilment.application.monolith.products;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fulfilment.application.monolith.cache.ListResponseCache;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/** Serialized {@code GET /product} list, cleared by every committed product change, single or bulk. */
+@Singleton
+public class ProductListCache extends ListResponseCache {
+
+  @Inject
+  public ProductListCache(
+      ObjectMapper objectMapper,
+      @ConfigProperty(name = "product.list-cache.max-bytes", defaultValue = "4194304") long maxBytes) {
+    super("product", objectMapper, maxBytes);
+  }
+
+  void onProductChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductChangeEvent event) {
+    invalidate();
+  }
+
+  void onProductBatchChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductBatchChangeEvent event) {
+    invalidate();
+  }
+}
@@ -0,0 +1,29 @@
+package com.fulfilment.application.monolith.products;
+
+import java.util.List;
+
+/**
+ * One page of products in name order. {@code hasNext} comes from reading one row more than the page
+ * holds, and {@code next} is the value to pass as {@code after} for the next page.
+ */
+public final class ProductPage {
+
+  public final List<Product> items;
+  public final boolean hasNext;
+  public final String next;
+
+  private ProductPage(List<Product> items, boolean hasNext, String next) {
+    this.items = items;
+    this.hasNext = hasNext;
+    this.next = next;
+  }
+
+  /** Builds a page from up to {@code limit + 1} rows read in name order. */
+  public static ProductPage of(List<Product> rows, int limit) {
+    if (rows.size() <= limit) {
+      return new ProductPage(rows, false, null);
+    }
+    List<Product> items = rows.subList(0, limit);
+    return new ProductPage(items, true, items.get(limit - 1).name);
+  }
+}
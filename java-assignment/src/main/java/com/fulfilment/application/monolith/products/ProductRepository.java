@@ -1,7 +1,47 @@
 package com.fulfilment.application.monolith.products;
 
+import com.fulfilment.application.monolith.search.NamePrefix;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Parameters;
+import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 @ApplicationScoped
-public class ProductRepository implements PanacheRepository<Product> {}
+public class ProductRepository implements PanacheRepository<Product> {
+
+  /**
+   * Up to {@code limit} products in name order after {@code after}, narrowed by the filters that are
+   * set. Every filter has an index in import.sql that keeps the page read off a sequential scan: the
+   * name prefix uses {@code lower(name)}, the price range {@code (price, name)}, and the stock filter
+   * one partial {@code (name)} index per side, which also serves the name order directly.
+   */
+  public List<Product> search(
+      String prefix, BigDecimal minPrice, BigDecimal maxPrice, Boolean inStock, String after, int limit) {
+    List<String> conditions = new ArrayList<>();
+    Parameters parameters = new Parameters();
+    if (after != null) {
+      conditions.add("name > :after");
+      parameters.and("after", after);
+    }
+    if (prefix != null && !prefix.isEmpty()) {
+      conditions.add("lower(name) like :prefix escape '\\'");
+      parameters.and("prefix", NamePrefix.likePattern(prefix));
+    }
+    if (minPrice != null) {
+      conditions.add("price >= :minPrice");
+      parameters.and("minPrice", minPrice);
+    }
+    if (maxPrice != null) {
+      conditions.add("price <= :maxPrice");
+      parameters.and("maxPrice", maxPrice);
+    }
+    if (inStock != null) {
+      // literal predicates, so they match the partial indexes' WHERE clauses
+      conditions.add(inStock ? "stock > 0" : "stock <= 0");
+    }
+    return find(String.join(" and ", conditions), Sort.by("name"), parameters).page(0, limit).list();
+  }
+}
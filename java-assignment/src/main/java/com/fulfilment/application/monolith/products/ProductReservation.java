@@ -0,0 +1,41 @@
+package com.fulfilment.application.monolith.products;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Units of one product held for an order until confirmed, released or expired. The state moves
+ * away from held exactly once, so a confirmation racing with expiry is either confirmed or expired,
+ * never both.
+ */
+public final class ProductReservation {
+
+  static final int HELD = 0;
+  static final int CONFIRMED = 1;
+  static final int RELEASED = 2;
+  static final int EXPIRED = 3;
+
+  public final UUID id;
+  public final long productId;
+  public final int quantity;
+  public final Instant expiresAt;
+
+  private final AtomicInteger state = new AtomicInteger(HELD);
+
+  ProductReservation(UUID id, long productId, int quantity, long expiresAtMs) {
+    this.id = id;
+    this.productId = productId;
+    this.quantity = quantity;
+    this.expiresAt = Instant.ofEpochMilli(expiresAtMs);
+  }
+
+  boolean held() {
+    return state.get() == HELD;
+  }
+
+  /** Moves a held reservation to {@code next}; false when it already left the held state. */
+  boolean settle(int next) {
+    return state.compareAndSet(HELD, next);
+  }
+}
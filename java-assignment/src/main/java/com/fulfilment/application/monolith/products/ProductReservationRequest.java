@@ -0,0 +1,8 @@
+package com.fulfilment.application.monolith.products;
+
+/** Body of {@code POST /reservation}. */
+public class ProductReservationRequest {
+
+  public Long productId;
+  public Integer quantity;
+}
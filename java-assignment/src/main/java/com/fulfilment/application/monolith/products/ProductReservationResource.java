@@ -0,0 +1,65 @@
+package com.fulfilment.application.monolith.products;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Holds product stock for an order while it is being placed. A reservation is confirmed when the
+ * order goes through, released when it is abandoned, and expires on its own otherwise.
+ */
+@Path("reservation")
+@ApplicationScoped
+@Produces("application/json")
+@Consumes("application/json")
+public class ProductReservationResource {
+
+  @Inject ProductStockReservations productStockReservations;
+
+  @POST
+  public Response reserve(ProductReservationRequest request) {
+    if (request == null || request.productId == null) {
+      throw new WebApplicationException("productId was not set on request.", 422);
+    }
+    if (request.quantity == null || request.quantity <= 0) {
+      throw new WebApplicationException("quantity must be a positive number.", 422);
+    }
+    ProductReservation reservation;
+    try {
+      reservation = productStockReservations.reserve(request.productId, request.quantity);
+    } catch (NoSuchElementException e) {
+      throw new WebApplicationException(e.getMessage(), 404);
+    }
+    if (reservation == null) {
+      throw new WebApplicationException(
+          "Product with id of " + request.productId + " has fewer than " + request.quantity + " units available.", 409);
+    }
+    return Response.ok(reservation).status(201).build();
+  }
+
+  @POST
+  @Path("{id}/confirm")
+  public Response confirm(UUID id) {
+    if (!productStockReservations.confirm(id)) {
+      throw new WebApplicationException("Reservation with id of " + id + " is not held.", 404);
+    }
+    return Response.status(204).build();
+  }
+
+  @DELETE
+  @Path("{id}")
+  public Response release(UUID id) {
+    if (!productStockReservations.release(id)) {
+      throw new WebApplicationException("Reservation with id of " + id + " is not held.", 404);
+    }
+    return Response.status(204).build();
+  }
+}
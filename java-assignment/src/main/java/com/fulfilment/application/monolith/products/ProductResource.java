@@ -2,20 +2,43 @@ package com.fulfilment.application.monolith.products;
 
 import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.PATCH;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.jboss.logging.Logger;
 
 @Path("product")
@@ -26,21 +49,168 @@ public class ProductResource {
 
   @Inject ProductRepository productRepository;
 
+  @Inject ProductListCache productListCache;
+
+  @Inject Event<ProductChangeEvent> productChangeEvent;
+
+  @Inject ProductImporter productImporter;
+
+  @Inject ProductBulkRepository productBulkRepository;
+
+  @Inject Event<ProductBatchChangeEvent> productBatchChangeEvent;
+
+  @Inject ProductStockHistory productStockHistory;
+
   private static final Logger LOGGER = Logger.getLogger(ProductResource.class.getName());
 
+  private static final String LIST_KEY = "all";
+  private static final int MAX_PAGE_SIZE = 1000;
+  private static final int MAX_BULK_SIZE = 10_000;
+
+  /** All products by name; served from {@link ProductListCache} until the next product change commits. */
   @GET
-  public List<Product> get() {
-    return productRepository.listAll(Sort.by("name"));
+  public Response get() {
+    byte[] body = productListCache.get(LIST_KEY);
+    if (body == null) {
+      long generation = productListCache.generation();
+      body = productListCache.put(LIST_KEY, generation, productRepository.listAll(Sort.by("name")));
+    }
+    return Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build();
   }
 
+  /**
+   * Products in name order, one page at a time: pass the previous page's {@code next} as {@code
+   * after}. Optional filters: {@code prefix} of the name ignoring case, an inclusive {@code
+   * minPrice}/{@code maxPrice} range, and {@code inStock} true or false.
+   */
+  @GET
+  @Path("search")
+  public ProductPage search(
+      @QueryParam("prefix") String prefix,
+      @QueryParam("minPrice") BigDecimal minPrice,
+      @QueryParam("maxPrice") BigDecimal maxPrice,
+      @QueryParam("inStock") Boolean inStock,
+      @QueryParam("after") String after,
+      @QueryParam("limit") @DefaultValue("100") int limit) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new WebApplicationException("limit must be between 1 and " + MAX_PAGE_SIZE + ".", 400);
+    }
+    if ((minPrice != null && minPrice.signum() < 0) || (maxPrice != null && maxPrice.signum() < 0)) {
+      throw new WebApplicationException("Prices must not be negative.", 400);
+    }
+    if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+      throw new WebApplicationException("minPrice must not be above maxPrice.", 400);
+    }
+    // one row more than the page tells whether there is a next page without counting
+    return ProductPage.of(
+        productRepository.search(prefix, minPrice, maxPrice, inStock, after, limit + 1), limit);
+  }
+
+  /**
+   * Creates or updates products by name from a CSV body whose header names the columns ({@code
+   * name}, {@code stock}, optionally {@code description} and {@code price}). The body is streamed into
+   * the database as it arrives; invalid rows are skipped and listed in the report.
+   */
+  @POST
+  @Path("import")
+  @Consumes({"text/csv", "text/plain"})
+  public ProductImportReport importCsv(InputStream body) {
+    try (Reader csv = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+      return productImporter.importCsv(csv);
+    } catch (IllegalArgumentException e) {
+      throw new WebApplicationException(e.getMessage(), 400);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Sets price and/or stock of many products, addressed by id or by name, in one transaction with a
+   * few set-based UPDATEs. Invalid items are rejected individually; when an item appears more than
+   * once, the last one wins.
+   */
+  @PATCH
+  @Path("bulk")
+  @Transactional
+  public ProductBulkResult bulkUpdate(List<ProductBulkChange> changes) {
+    if (changes == null || changes.isEmpty() || changes.size() > MAX_BULK_SIZE) {
+      throw new WebApplicationException("A bulk update must hold between 1 and " + MAX_BULK_SIZE + " items.", 400);
+    }
+    Map<Long, ProductBulkChange> byId = new LinkedHashMap<>();
+    Map<String, ProductBulkChange> byName = new LinkedHashMap<>();
+    List<ProductBulkResult.Rejection> rejected = new ArrayList<>();
+    for (int i = 0; i < changes.size(); i++) {
+      ProductBulkChange change = changes.get(i);
+      String invalid = change == null ? "Item is empty." : change.invalidReason();
+      if (invalid != null) {
+        rejected.add(new ProductBulkResult.Rejection(i, invalid));
+      } else if (change.id != null) {
+        byId.put(change.id, change);
+      } else {
+        byName.put(change.name, change);
+      }
+    }
+
+    Set<Long> updatedIds = byId.isEmpty() ? Set.of() : productBulkRepository.updateById(byId.values());
+    Map<String, Long> updatedNames = byName.isEmpty() ? Map.of() : productBulkRepository.updateByName(byName.values());
+    long updated = updatedIds.size() + updatedNames.size();
+    if (updated > 0) {
+      Set<Long> ids = new HashSet<>(updatedIds);
+      ids.addAll(updatedNames.values());
+      productBatchChangeEvent.fire(new ProductBatchChangeEvent(0, updated, ids));
+    }
+    return new ProductBulkResult(updated,
+        byId.keySet().stream().filter(id -> !updatedIds.contains(id)).toList(),
+        byName.keySet().stream().filter(name -> !updatedNames.containsKey(name)).toList(),
+        rejected);
+  }
+
+  /** The product, with its version as ETag for a later {@code If-Match}. */
   @GET
   @Path("{id}")
-  public Product getSingle(Long id) {
+  public Response getSingle(Long id) {
+    Product entity = productRepository.findById(id);
+    if (entity == null) {
+      throw new WebApplicationException("Product with id of " + id + " does not exist.", 404);
+    }
+    return Response.ok(entity).tag(etag(entity)).build();
+  }
+
+  /**
+   * Stock of the product over {@code [from, to)} (ISO-8601 instants) in {@code minute}, {@code hour}
+   * or {@code day} buckets. {@code to} defaults to now and {@code from} to as far back as the
+   * resolution is kept. A product without recorded changes reports its current stock as initial.
+   */
+  @GET
+  @Path("{id}/stock-history")
+  public ProductStockTrend stockHistory(
+      Long id,
+      @QueryParam("resolution") @DefaultValue("hour") String resolution,
+      @QueryParam("from") String from,
+      @QueryParam("to") String to) {
+    ProductStockResolution parsed = ProductStockResolution.parse(resolution);
+    if (parsed == null) {
+      throw new WebApplicationException("resolution must be minute, hour or day.", 400);
+    }
+    Instant end = to == null ? Instant.now() : instant("to", to);
+    Instant start = from == null ? end.minusMillis(productStockHistory.retentionMs(parsed)) : instant("from", from);
+    if (start.isAfter(end)) {
+      throw new WebApplicationException("from must not be after to.", 400);
+    }
     Product entity = productRepository.findById(id);
     if (entity == null) {
       throw new WebApplicationException("Product with id of " + id + " does not exist.", 404);
     }
-    return entity;
+    ProductStockTrend trend = productStockHistory.query(id, parsed, start, end);
+    return trend != null ? trend : new ProductStockTrend(id, parsed, start, end, entity.stock, List.of());
+  }
+
+  private static Instant instant(String parameter, String value) {
+    try {
+      return Instant.parse(value);
+    } catch (DateTimeParseException e) {
+      throw new WebApplicationException(parameter + " must be an ISO-8601 instant such as 2024-01-31T00:00:00Z.", 400);
+    }
   }
 
   @POST
@@ -51,13 +221,19 @@ public class ProductResource {
     }
 
     productRepository.persist(product);
+    productChangeEvent.fire(new ProductChangeEvent(ProductChangeEvent.Type.CREATE, product));
     return Response.ok(product).status(201).build();
   }
 
+  /**
+   * Replaces the product. With {@code If-Match} the write only applies to that version: a stale tag
+   * is answered with 412 straight away, and a change committed in between is caught by the UPDATE's
+   * {@code version} condition, also as 412.
+   */
   @PUT
   @Path("{id}")
   @Transactional
-  public Product update(Long id, Product product) {
+  public Response update(Long id, Product product, @Context Request request) {
     if (product.name == null) {
       throw new WebApplicationException("Product Name was not set on request.", 422);
     }
@@ -67,6 +243,10 @@ public class ProductResource {
     if (entity == null) {
       throw new WebApplicationException("Product with id of " + id + " does not exist.", 404);
     }
+    Response.ResponseBuilder preconditionFailed = evaluatePreconditions(request, entity);
+    if (preconditionFailed != null) {
+      return preconditionFailed.build();
+    }
 
     entity.name = product.name;
     entity.description = product.description;
@@ -74,22 +254,49 @@ public class ProductResource {
     entity.stock = product.stock;
 
     productRepository.persist(entity);
+    productChangeEvent.fire(new ProductChangeEvent(ProductChangeEvent.Type.UPDATE, entity));
+    flushOrConflict(id);
 
-    return entity;
+    return Response.ok(entity).tag(etag(entity)).build();
   }
 
   @DELETE
   @Path("{id}")
   @Transactional
-  public Response delete(Long id) {
+  public Response delete(Long id, @Context Request request) {
     Product entity = productRepository.findById(id);
     if (entity == null) {
       throw new WebApplicationException("Product with id of " + id + " does not exist.", 404);
     }
+    Response.ResponseBuilder preconditionFailed = evaluatePreconditions(request, entity);
+    if (preconditionFailed != null) {
+      return preconditionFailed.build();
+    }
     productRepository.delete(entity);
+    productChangeEvent.fire(new ProductChangeEvent(ProductChangeEvent.Type.DELETE, entity));
+    flushOrConflict(id);
     return Response.status(204).build();
   }
 
+  private static EntityTag etag(Product product) {
+    return new EntityTag(Long.toString(product.version));
+  }
+
+  // If-Match / If-None-Match against the loaded version; null when the write may go ahead
+  private static Response.ResponseBuilder evaluatePreconditions(Request request, Product entity) {
+    return request == null ? null : request.evaluatePreconditions(etag(entity));
+  }
+
+  // the UPDATE/DELETE carries "where version = ?"; flushing here turns a lost race into a 412 rather
+  // than a failed commit, and costs no extra round trip since the statement runs either way
+  private void flushOrConflict(Long id) {
+    try {
+      productRepository.flush();
+    } catch (OptimisticLockException e) {
+      throw new WebApplicationException("Product with id of " + id + " was changed concurrently.", 412);
+    }
+  }
+
   /*@Provider
   public static class ErrorMapper implements ExceptionMapper<Exception> {
 
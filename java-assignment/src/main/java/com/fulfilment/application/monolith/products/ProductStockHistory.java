@@ -0,0 +1,535 @@
+package com.fulfilment.application.monolith.products;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Stock level history of every product, in minute, hour and day buckets. Each committed stock change
+ * is folded into all three resolutions at once, so the coarser ones are downsampled as they go and
+ * never re-read the finer ones. Each resolution is trimmed to its own retention.
+ * <p>
+ * Series are kept as compact byte arrays (see {@link StockSeries}). Every {@code snapshot-interval-ms}
+ * and on shutdown the series of the products changed since the last write are appended to a log next
+ * to the snapshot file; once the log has grown to the snapshot's size, a new snapshot of everything
+ * replaces both. Each snapshot has a generation and each log names the one it follows, so a log left
+ * behind by a crash during compaction is never replayed over a newer snapshot. Changes not yet
+ * written are lost if the process dies; the history then simply resumes from the next change.
+ * <p>
+ * Set-based writes only say which products they touched. Their stock is read back on the history
+ * thread, in a transaction of its own, and recorded as of that moment.
+ */
+@ApplicationScoped
+public class ProductStockHistory implements MeterBinder {
+
+  private static final Logger LOGGER = Logger.getLogger(ProductStockHistory.class.getName());
+
+  private static final int MAGIC = 0x50534832; // "PSH2"
+  private static final int LOG_MAGIC = 0x50534c31; // "PSL1"
+  private static final int FRAME = 0x46524d31; // "FRM1"
+  private static final String SNAPSHOT = "stock-history.bin";
+  private static final String LOG = "stock-history.log";
+  private static final ProductStockResolution[] RESOLUTIONS = ProductStockResolution.values();
+
+  private final ProductBulkRepository productBulkRepository;
+  private final Path directory;
+  private final long snapshotIntervalMs;
+  private final long[] retentionMs = new long[RESOLUTIONS.length];
+  private final LongSupplier clock;
+
+  private final ConcurrentHashMap<Long, ProductSeries> products = new ConcurrentHashMap<>();
+  // products recorded or removed since their series was last written
+  private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+  // batch changes whose stock is still to be read back
+  private final LinkedBlockingQueue<ProductBatchChangeEvent> readBacks = new LinkedBlockingQueue<>();
+
+  // the files on disk; only touched by load() before the thread starts, then by the thread
+  private long generation;
+  private long snapshotBytes;
+  private long logBytes;
+
+  private volatile boolean running;
+  private Thread thread;
+
+  @Inject
+  public ProductStockHistory(
+      ProductBulkRepository productBulkRepository,
+      @ConfigProperty(name = "product.stock-history.dir") String directory,
+      @ConfigProperty(name = "product.stock-history.snapshot-interval-ms", defaultValue = "60000") long snapshotIntervalMs,
+      @ConfigProperty(name = "product.stock-history.minute-retention-hours", defaultValue = "48") long minuteRetentionHours,
+      @ConfigProperty(name = "product.stock-history.hour-retention-days", defaultValue = "90") long hourRetentionDays,
+      @ConfigProperty(name = "product.stock-history.day-retention-days", defaultValue = "730") long dayRetentionDays) {
+    this(productBulkRepository, Path.of(directory), snapshotIntervalMs, TimeUnit.HOURS.toMillis(minuteRetentionHours),
+        TimeUnit.DAYS.toMillis(hourRetentionDays), TimeUnit.DAYS.toMillis(dayRetentionDays), System::currentTimeMillis);
+  }
+
+  ProductStockHistory(ProductBulkRepository productBulkRepository, Path directory, long snapshotIntervalMs,
+      long minuteRetentionMs, long hourRetentionMs, long dayRetentionMs, LongSupplier clock) {
+    this.productBulkRepository = productBulkRepository;
+    this.directory = directory;
+    this.snapshotIntervalMs = snapshotIntervalMs;
+    this.retentionMs[ProductStockResolution.MINUTE.ordinal()] = minuteRetentionMs;
+    this.retentionMs[ProductStockResolution.HOUR.ordinal()] = hourRetentionMs;
+    this.retentionMs[ProductStockResolution.DAY.ordinal()] = dayRetentionMs;
+    this.clock = clock;
+  }
+
+  void onStart(@Observes StartupEvent event) {
+    start();
+  }
+
+  void onStop(@Observes ShutdownEvent event) {
+    stop();
+  }
+
+  /** Loads the history from disk and starts the thread that reads back, trims and writes it. */
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    load();
+    running = true;
+    thread = new Thread(this::loop, "product-stock-history");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Stops the thread, which writes what changed one last time. */
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    thread.interrupt();
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  void onProductChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductChangeEvent event) {
+    if (event.type == ProductChangeEvent.Type.DELETE) {
+      products.remove(event.product.id);
+      changed.add(event.product.id);
+    } else if (event.product.id != null) {
+      record(event.product.id, event.product.stock);
+    }
+  }
+
+  // set-based writes do not say what they set; the history thread reads it back. Not here: the
+  // committed transaction is still bound to this thread and cannot run the query
+  void onProductBatchChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ProductBatchChangeEvent event) {
+    readBacks.add(event);
+  }
+
+  /** Records that the product's stock is {@code stock} as of now. */
+  public void record(long productId, int stock) {
+    long now = clock.getAsLong();
+    products.computeIfAbsent(productId, id -> new ProductSeries()).record(now, stock);
+    changed.add(productId);
+  }
+
+  /**
+   * The product's buckets in {@code [from, to)} at {@code resolution}; null when nothing was recorded
+   * for it.
+   */
+  public ProductStockTrend query(long productId, ProductStockResolution resolution, Instant from, Instant to) {
+    ProductSeries series = products.get(productId);
+    if (series == null) {
+      return null;
+    }
+    List<ProductStockPoint> points = new ArrayList<>();
+    Integer initial = series.query(resolution, resolution.bucket(from.toEpochMilli()),
+        Math.floorDiv(to.toEpochMilli() + resolution.millis - 1, resolution.millis), points);
+    return new ProductStockTrend(productId, resolution, from, to, initial, points);
+  }
+
+  /** How far back {@code resolution} is kept. */
+  public long retentionMs(ProductStockResolution resolution) {
+    return retentionMs[resolution.ordinal()];
+  }
+
+  private void loop() {
+    long nextWrite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(snapshotIntervalMs);
+    while (running) {
+      long wait = nextWrite - System.nanoTime();
+      if (wait <= 0) {
+        trimAndWrite();
+        nextWrite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(snapshotIntervalMs);
+        continue;
+      }
+      try {
+        ProductBatchChangeEvent event = readBacks.poll(wait, TimeUnit.NANOSECONDS);
+        if (event != null) {
+          List<ProductBatchChangeEvent> events = new ArrayList<>();
+          events.add(event);
+          readBack(events);
+        }
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+    readBack();
+    trimAndWrite();
+  }
+
+  /**
+   * Reads back the stock of the products changed by the queued batch changes: the listed ids in one
+   * go, or every product, streamed, when a change did not list them. A failed read is logged and
+   * dropped; those products resume at their next change.
+   */
+  void readBack() {
+    List<ProductBatchChangeEvent> events = new ArrayList<>();
+    readBacks.drainTo(events);
+    if (!events.isEmpty()) {
+      readBack(events);
+    }
+  }
+
+  // the given events and any queued behind them
+  private void readBack(List<ProductBatchChangeEvent> events) {
+    readBacks.drainTo(events);
+    Set<Long> ids = new HashSet<>();
+    boolean all = false;
+    for (ProductBatchChangeEvent event : events) {
+      if (event.ids == null) {
+        all = true;
+      } else {
+        ids.addAll(event.ids);
+      }
+    }
+    try {
+      if (all) {
+        productBulkRepository.forEachStock(this::record);
+      } else {
+        productBulkRepository.stockOf(ids).forEach(this::record);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.errorf(e, "Cannot read back the stock of %d batch change(s); their history resumes at the next change",
+          events.size());
+    }
+  }
+
+  private void trimAndWrite() {
+    try {
+      trim();
+      write();
+    } catch (RuntimeException e) {
+      LOGGER.errorf(e, "Product stock history write failed; retrying in %d ms", snapshotIntervalMs);
+    }
+  }
+
+  /** Drops buckets past their resolution's retention. */
+  void trim() {
+    long now = clock.getAsLong();
+    long[] cutoffs = new long[RESOLUTIONS.length];
+    for (ProductStockResolution resolution : RESOLUTIONS) {
+      cutoffs[resolution.ordinal()] = resolution.bucket(now - retentionMs[resolution.ordinal()]);
+    }
+    products.values().forEach(series -> series.trim(cutoffs));
+  }
+
+  /**
+   * Appends the products changed since the last write to the log, or, once the log is as large as
+   * the snapshot, writes a new snapshot instead.
+   */
+  void write() {
+    if (changed.isEmpty()) {
+      return;
+    }
+    if (logBytes >= snapshotBytes) {
+      snapshot();
+    } else {
+      append();
+    }
+  }
+
+  // one checksummed frame with the current series of every changed product, or its removal
+  private void append() {
+    long started = System.nanoTime();
+    Path target = directory.resolve(LOG);
+    List<Long> written = new ArrayList<>();
+    try {
+      boolean created = logBytes == 0;
+      CRC32 crc = new CRC32();
+      try (OutputStream file = created
+              ? Files.newOutputStream(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                  StandardOpenOption.WRITE)
+              : Files.newOutputStream(target, StandardOpenOption.APPEND);
+           BufferedOutputStream buffered = new BufferedOutputStream(file, 256 * 1024)) {
+        if (created) {
+          DataOutputStream header = new DataOutputStream(buffered);
+          header.writeInt(LOG_MAGIC);
+          header.writeLong(generation);
+        }
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+        out.writeInt(FRAME);
+        for (Iterator<Long> ids = changed.iterator(); ids.hasNext(); ) {
+          Long id = ids.next();
+          // removed first: a change recorded from here on is written next time
+          ids.remove();
+          written.add(id);
+          writeEntry(out, id, products.get(id));
+        }
+        out.writeBoolean(false);
+        out.flush();
+        // outside the checksum
+        new DataOutputStream(buffered).writeLong(crc.getValue());
+      }
+      logBytes = Files.size(target);
+    } catch (IOException e) {
+      changed.addAll(written);
+      // the log may end in a partial frame; the next write replaces it with a snapshot
+      logBytes = Long.MAX_VALUE;
+      throw new UncheckedIOException("Cannot append to the product stock history log " + target, e);
+    }
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debugf("product.stock-history append products=%d logBytes=%d tookMs=%d", written.size(), logBytes,
+          (System.nanoTime() - started) / 1_000_000);
+    }
+  }
+
+  /** Writes every series to a new snapshot file, moves it over the previous one and drops the log. */
+  void snapshot() {
+    long started = System.nanoTime();
+    Path target = directory.resolve(SNAPSHOT);
+    Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+    // taken before the series are written, so a change recorded meanwhile is written again later
+    List<Long> taken = new ArrayList<>();
+    for (Iterator<Long> ids = changed.iterator(); ids.hasNext(); ) {
+      taken.add(ids.next());
+      ids.remove();
+    }
+    int written = 0;
+    try {
+      Files.createDirectories(directory);
+      CRC32 crc = new CRC32();
+      try (OutputStream file = Files.newOutputStream(temporary);
+           DataOutputStream out = new DataOutputStream(
+               new CheckedOutputStream(new BufferedOutputStream(file, 256 * 1024), crc))) {
+        out.writeInt(MAGIC);
+        out.writeLong(generation + 1);
+        for (Map.Entry<Long, ProductSeries> entry : products.entrySet()) {
+          writeEntry(out, entry.getKey(), entry.getValue());
+          written++;
+        }
+        out.writeBoolean(false);
+        out.flush();
+        // outside the checksum
+        new DataOutputStream(file).writeLong(crc.getValue());
+      }
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      generation++;
+      snapshotBytes = Files.size(target);
+      // the log belongs to the previous generation now; load() ignores it if this delete is lost
+      Files.deleteIfExists(directory.resolve(LOG));
+      logBytes = 0;
+    } catch (IOException e) {
+      changed.addAll(taken);
+      throw new UncheckedIOException("Cannot write the product stock history snapshot to " + target, e);
+    }
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debugf("product.stock-history snapshot products=%d tookMs=%d", written,
+          (System.nanoTime() - started) / 1_000_000);
+    }
+  }
+
+  // a product and its series, or the product's removal when the series is null
+  private static void writeEntry(DataOutputStream out, long productId, ProductSeries series) throws IOException {
+    out.writeBoolean(true);
+    out.writeLong(productId);
+    out.writeBoolean(series != null);
+    if (series != null) {
+      series.write(out);
+    }
+  }
+
+  /**
+   * Reads the snapshot, if any, then replays the frames of its log. A damaged snapshot is logged and
+   * ignored; so is a log of another generation, and a log is replayed up to its first damaged frame.
+   * Either way the next write is a new snapshot.
+   */
+  void load() {
+    Path source = directory.resolve(SNAPSHOT);
+    if (!Files.exists(source)) {
+      return;
+    }
+    Map<Long, ProductSeries> loaded = new HashMap<>();
+    long loadedGeneration;
+    CRC32 crc = new CRC32();
+    try (InputStream file = new BufferedInputStream(Files.newInputStream(source), 256 * 1024)) {
+      DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+      if (in.readInt() != MAGIC) {
+        throw new IOException("not a product stock history snapshot");
+      }
+      loadedGeneration = in.readLong();
+      readEntries(in, loaded);
+      if (new DataInputStream(file).readLong() != crc.getValue()) {
+        throw new IOException("checksum mismatch");
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warnf(e, "Ignoring the product stock history snapshot %s", source);
+      return;
+    }
+    generation = loadedGeneration;
+    snapshotBytes = source.toFile().length();
+    int frames = replayLog(loaded);
+    loaded.forEach((id, series) -> {
+      if (series != null) {
+        products.put(id, series);
+      }
+    });
+    LOGGER.infof("Loaded the stock history of %d products (%d logged writes)", products.size(), frames);
+  }
+
+  // frames of the current generation's log, applied over the snapshot in the order they were written
+  private int replayLog(Map<Long, ProductSeries> loaded) {
+    Path source = directory.resolve(LOG);
+    if (!Files.exists(source)) {
+      return 0;
+    }
+    int frames = 0;
+    try (InputStream file = new BufferedInputStream(Files.newInputStream(source), 256 * 1024)) {
+      DataInputStream header = new DataInputStream(file);
+      if (header.readInt() != LOG_MAGIC || header.readLong() != generation) {
+        throw new IOException("not the log of snapshot generation " + generation);
+      }
+      while (true) {
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+        int marker;
+        try {
+          marker = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        if (marker != FRAME) {
+          throw new IOException("no frame at logged write " + (frames + 1));
+        }
+        Map<Long, ProductSeries> frame = new HashMap<>();
+        readEntries(in, frame);
+        if (new DataInputStream(file).readLong() != crc.getValue()) {
+          throw new IOException("checksum mismatch at logged write " + (frames + 1));
+        }
+        loaded.putAll(frame);
+        frames++;
+      }
+      logBytes = source.toFile().length();
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warnf(e, "Replayed %d writes of the product stock history log %s and ignored the rest", frames, source);
+      logBytes = Long.MAX_VALUE;
+    }
+    return frames;
+  }
+
+  private static void readEntries(DataInputStream in, Map<Long, ProductSeries> into) throws IOException {
+    while (in.readBoolean()) {
+      long productId = in.readLong();
+      into.put(productId, in.readBoolean() ? ProductSeries.read(in) : null);
+    }
+  }
+
+  /** Bytes held by all series. */
+  long bytes() {
+    long bytes = 0;
+    for (ProductSeries series : products.values()) {
+      bytes += series.bytes();
+    }
+    return bytes;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("product.stock-history.products", products, Map::size)
+        .description("Products with a stock history").register(registry);
+    Gauge.builder("product.stock-history.bytes", this, ProductStockHistory::bytes)
+        .description("Bytes held by the encoded stock history").register(registry);
+  }
+
+  // the three resolutions of one product, changed together under its lock
+  private static final class ProductSeries {
+    private final StockSeries[] series = new StockSeries[RESOLUTIONS.length];
+
+    ProductSeries() {
+      for (int i = 0; i < series.length; i++) {
+        series[i] = new StockSeries();
+      }
+    }
+
+    synchronized void record(long epochMs, int stock) {
+      for (ProductStockResolution resolution : RESOLUTIONS) {
+        series[resolution.ordinal()].record(resolution.bucket(epochMs), stock);
+      }
+    }
+
+    synchronized Integer query(ProductStockResolution resolution, long fromBucket, long toBucket,
+        List<ProductStockPoint> points) {
+      return series[resolution.ordinal()].query(fromBucket, toBucket, resolution, points);
+    }
+
+    synchronized void trim(long[] cutoffs) {
+      for (int i = 0; i < series.length; i++) {
+        series[i].trim(cutoffs[i]);
+      }
+    }
+
+    synchronized long bytes() {
+      long bytes = 0;
+      for (StockSeries s : series) {
+        bytes += s.bytes();
+      }
+      return bytes;
+    }
+
+    synchronized void write(DataOutputStream out) throws IOException {
+      for (StockSeries s : series) {
+        s.write(out);
+      }
+    }
+
+    static ProductSeries read(DataInputStream in) throws IOException {
+      ProductSeries product = new ProductSeries();
+      for (int i = 0; i < product.series.length; i++) {
+        product.series[i] = StockSeries.read(in);
+      }
+      return product;
+    }
+  }
+}
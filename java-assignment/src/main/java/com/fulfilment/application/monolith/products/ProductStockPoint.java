@@ -0,0 +1,19 @@
+package com.fulfilment.application.monolith.products;
+
+import java.time.Instant;
+
+/** Stock of a product within one history bucket: its lowest, highest and closing level. */
+public final class ProductStockPoint {
+
+  public final Instant at;
+  public final int min;
+  public final int max;
+  public final int last;
+
+  public ProductStockPoint(Instant at, int min, int max, int last) {
+    this.at = at;
+    this.min = min;
+    this.max = max;
+    this.last = last;
+  }
+}
@@ -0,0 +1,333 @@
+package com.fulfilment.application.monolith.products;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Holds product stock for in-flight orders in memory, without touching the product row. Each
+ * product's available units sit in a {@link StripedStock} loaded once from {@code product.stock};
+ * a reservation takes units from it with a CAS and schedules its expiry on a
+ * {@link HashedTimingWheel}, so reserving costs no database round trip and no timer per reservation.
+ * <p>
+ * Confirmed units are summed per product and taken off {@code product.stock} in one set-based
+ * UPDATE every {@code reconcile-interval-ms}. Released and expired units go back to the counters.
+ * The same cycle re-reads the stock column of every loaded product in one query and moves the
+ * counters by the difference, so other writes to the stock, including other nodes' reconciled
+ * confirmations, reach this node's counters within one interval. Confirmations not reconciled yet
+ * are lost if the node dies; holds themselves never outlive the process.
+ * <p>
+ * The counters are per node. Holds are never written to the database, so each node can hand out
+ * all of a product's stock, and nodes taking orders for the same product together oversell by up
+ * to what the others hold or have confirmed since their last reconciliation (the UPDATE then stops
+ * the stock at zero). Where that matters, route each product's reservations to one node.
+ */
+@ApplicationScoped
+public class ProductStockReservations implements MeterBinder {
+
+  private static final Logger LOGGER = Logger.getLogger(ProductStockReservations.class.getName());
+
+  private static final int MIN_PURGE = 1024;
+
+  private final ProductRepository productRepository;
+  private final ProductBulkRepository productBulkRepository;
+  private final long ttlMs;
+  private final long tickMs;
+  private final long reconcileIntervalMs;
+  private final int stripes;
+  private final LongSupplier clock;
+
+  private final ConcurrentHashMap<Long, ProductStockState> products = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<UUID, ProductReservation> held = new ConcurrentHashMap<>();
+  private final HashedTimingWheel<ProductReservation> expiries;
+
+  private final AtomicLong reserved = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong confirmed = new AtomicLong();
+  private final AtomicLong released = new AtomicLong();
+  private final AtomicLong expired = new AtomicLong();
+  // confirmed or released since the last purge; they stay in the wheel until then
+  private final AtomicLong settledInWheel = new AtomicLong();
+
+  private volatile boolean running;
+  private Thread thread;
+  private long nextReconcileMs;
+
+  @Inject
+  public ProductStockReservations(
+      ProductRepository productRepository,
+      ProductBulkRepository productBulkRepository,
+      @ConfigProperty(name = "product.reservations.ttl-ms", defaultValue = "900000") long ttlMs,
+      @ConfigProperty(name = "product.reservations.tick-ms", defaultValue = "1000") long tickMs,
+      @ConfigProperty(name = "product.reservations.wheel-slots", defaultValue = "1024") int wheelSlots,
+      @ConfigProperty(name = "product.reservations.reconcile-interval-ms", defaultValue = "1000") long reconcileIntervalMs,
+      @ConfigProperty(name = "product.reservations.stripes", defaultValue = "8") int stripes) {
+    this(productRepository, productBulkRepository, ttlMs, tickMs, wheelSlots, reconcileIntervalMs, stripes,
+        System::currentTimeMillis);
+  }
+
+  ProductStockReservations(ProductRepository productRepository, ProductBulkRepository productBulkRepository,
+      long ttlMs, long tickMs, int wheelSlots, long reconcileIntervalMs, int stripes, LongSupplier clock) {
+    this.productRepository = productRepository;
+    this.productBulkRepository = productBulkRepository;
+    this.ttlMs = ttlMs;
+    this.tickMs = tickMs;
+    this.reconcileIntervalMs = reconcileIntervalMs;
+    this.stripes = stripes;
+    this.clock = clock;
+    this.expiries = new HashedTimingWheel<>(tickMs, wheelSlots);
+  }
+
+  void onStart(@Observes StartupEvent event) {
+    start();
+  }
+
+  void onStop(@Observes ShutdownEvent event) {
+    stop();
+  }
+
+  /** Starts the thread that expires reservations and reconciles confirmations. */
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    thread = new Thread(this::loop, "product-stock-reservations");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Stops the thread after a last reconciliation. */
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    thread.interrupt();
+    try {
+      thread.join(10_000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Holds {@code quantity} units of the product; null when fewer are available. Only the first
+   * reservation of a product on this node reads the database.
+   *
+   * @throws NoSuchElementException when the product does not exist
+   */
+  public ProductReservation reserve(long productId, int quantity) {
+    if (quantity <= 0) {
+      throw new IllegalArgumentException("quantity must be positive");
+    }
+    ProductStockState product = products.get(productId);
+    if (product == null) {
+      product = load(productId);
+    }
+    if (!product.stock.tryTake(quantity)) {
+      rejected.incrementAndGet();
+      return null;
+    }
+    long expiresAtMs = clock.getAsLong() + ttlMs;
+    ProductReservation reservation = new ProductReservation(UUID.randomUUID(), productId, quantity, expiresAtMs);
+    held.put(reservation.id, reservation);
+    expiries.schedule(reservation, expiresAtMs);
+    reserved.incrementAndGet();
+    return reservation;
+  }
+
+  /** Turns a held reservation into a sale; false when it is unknown, released or expired. */
+  public boolean confirm(UUID reservationId) {
+    ProductReservation reservation = held.get(reservationId);
+    if (reservation == null || !reservation.settle(ProductReservation.CONFIRMED)) {
+      return false;
+    }
+    held.remove(reservationId);
+    settledInWheel.incrementAndGet();
+    ProductStockState product = products.get(reservation.productId);
+    if (product != null) {
+      product.confirmed.addAndGet(reservation.quantity);
+    }
+    confirmed.incrementAndGet();
+    return true;
+  }
+
+  /** Gives the units of a held reservation back; false when it is unknown, confirmed or expired. */
+  public boolean release(UUID reservationId) {
+    ProductReservation reservation = held.get(reservationId);
+    if (reservation == null || !reservation.settle(ProductReservation.RELEASED)) {
+      return false;
+    }
+    held.remove(reservationId);
+    settledInWheel.incrementAndGet();
+    giveBack(reservation);
+    released.incrementAndGet();
+    return true;
+  }
+
+  /** Units of the product that can be reserved on this node, or null when none were loaded yet. */
+  public Long available(long productId) {
+    ProductStockState product = products.get(productId);
+    return product == null ? null : product.stock.available();
+  }
+
+  private ProductStockState load(long productId) {
+    Product entity = productRepository.findById(productId);
+    if (entity == null) {
+      throw new NoSuchElementException("Product with id of " + productId + " does not exist.");
+    }
+    ProductStockState loaded = new ProductStockState(entity.stock, stripes);
+    ProductStockState raced = products.putIfAbsent(productId, loaded);
+    return raced == null ? loaded : raced;
+  }
+
+  // a product deleted meanwhile has no counters left to return to
+  private void giveBack(ProductReservation reservation) {
+    ProductStockState product = products.get(reservation.productId);
+    if (product != null) {
+      product.stock.put(reservation.quantity);
+    }
+  }
+
+  private void loop() {
+    while (running) {
+      try {
+        Thread.sleep(tickMs);
+      } catch (InterruptedException e) {
+        break;
+      }
+      cycle();
+    }
+    cycle();
+  }
+
+  // one tick of the wheel, and a reconciliation when it is due
+  void cycle() {
+    long now = clock.getAsLong();
+    expireDue(now);
+    if (now >= nextReconcileMs) {
+      nextReconcileMs = now + reconcileIntervalMs;
+      try {
+        reconcile();
+      } catch (RuntimeException e) {
+        LOGGER.errorf(e, "Product stock reconciliation failed; retrying in %d ms", reconcileIntervalMs);
+      }
+    }
+  }
+
+  void expireDue(long now) {
+    expiries.advance(now, reservation -> {
+      if (reservation.settle(ProductReservation.EXPIRED)) {
+        held.remove(reservation.id);
+        giveBack(reservation);
+        expired.incrementAndGet();
+      } else {
+        settledInWheel.decrementAndGet();
+      }
+    });
+    // most reservations settle long before their TTL; sweeping them out once they outnumber the held
+    // ones bounds the wheel to about twice the live reservations, at amortized O(1) per settle
+    if (settledInWheel.get() > Math.max(MIN_PURGE, held.size())) {
+      settledInWheel.set(0);
+      expiries.purge(reservation -> !reservation.held());
+    }
+  }
+
+  /**
+   * Takes confirmed units off {@code product.stock}, then moves the counters by whatever else changed
+   * in the stock column. Only ever runs on one thread at a time.
+   */
+  synchronized void reconcile() {
+    Map<Long, Long> confirmedUnits = new HashMap<>();
+    products.forEach((id, product) -> {
+      long units = product.confirmed.getAndSet(0);
+      if (units > 0) {
+        confirmedUnits.put(id, units);
+      }
+    });
+    if (!confirmedUnits.isEmpty()) {
+      try {
+        productBulkRepository.subtractStock(confirmedUnits);
+      } catch (RuntimeException e) {
+        confirmedUnits.forEach((id, units) -> {
+          ProductStockState product = products.get(id);
+          if (product != null) {
+            product.confirmed.addAndGet(units);
+          }
+        });
+        throw e;
+      }
+      confirmedUnits.forEach((id, units) -> {
+        ProductStockState product = products.get(id);
+        if (product != null) {
+          product.base -= units;
+        }
+      });
+      if (LOGGER.isDebugEnabled()) {
+        LOGGER.debugf("product.reservations reconciled products=%d", confirmedUnits.size());
+      }
+    }
+    if (!products.isEmpty()) {
+      refresh();
+    }
+  }
+
+  private void refresh() {
+    Map<Long, Integer> stock = productBulkRepository.stockOf(products.keySet());
+    products.forEach((id, product) -> {
+      Integer current = stock.get(id);
+      if (current == null) {
+        // deleted: the next reservation reloads it and finds it gone
+        products.remove(id);
+      } else if (current != product.base) {
+        product.stock.adjust(current - product.base);
+        product.base = current;
+      }
+    });
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("product.reservations.reserved", reserved, AtomicLong::get)
+        .description("Reservations granted").register(registry);
+    FunctionCounter.builder("product.reservations.rejected", rejected, AtomicLong::get)
+        .description("Reservations refused for lack of stock").register(registry);
+    FunctionCounter.builder("product.reservations.confirmed", confirmed, AtomicLong::get)
+        .description("Reservations confirmed").register(registry);
+    FunctionCounter.builder("product.reservations.released", released, AtomicLong::get)
+        .description("Reservations released").register(registry);
+    FunctionCounter.builder("product.reservations.expired", expired, AtomicLong::get)
+        .description("Reservations expired by TTL").register(registry);
+    Gauge.builder("product.reservations.held", held, Map::size)
+        .description("Reservations currently held").register(registry);
+  }
+
+  private static final class ProductStockState {
+    final StripedStock stock;
+    // units confirmed since the last reconciliation
+    final AtomicLong confirmed = new AtomicLong();
+    // the stock column the counters account for; only the reconciling thread touches it
+    long base;
+
+    ProductStockState(int stock, int stripes) {
+      this.stock = new StripedStock(stripes, stock);
+      this.base = stock;
+    }
+  }
+}
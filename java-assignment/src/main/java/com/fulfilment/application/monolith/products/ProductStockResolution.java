@@ -0,0 +1,31 @@
+package com.fulfilment.application.monolith.products;
+
+import java.util.Locale;
+
+/** Bucket width of the product stock history; every change is folded into all three at once. */
+public enum ProductStockResolution {
+  MINUTE(60_000L),
+  HOUR(3_600_000L),
+  DAY(86_400_000L);
+
+  public final long millis;
+
+  ProductStockResolution(long millis) {
+    this.millis = millis;
+  }
+
+  /** Index of the bucket holding {@code epochMs}, counted from the epoch. */
+  long bucket(long epochMs) {
+    return Math.floorDiv(epochMs, millis);
+  }
+
+  /** Parses {@code minute}, {@code hour} or {@code day} in any case; null for anything else. */
+  static ProductStockResolution parse(String value) {
+    for (ProductStockResolution resolution : values()) {
+      if (resolution.name().equals(value.toUpperCase(Locale.ROOT))) {
+        return resolution;
+      }
+    }
+    return null;
+  }
+}
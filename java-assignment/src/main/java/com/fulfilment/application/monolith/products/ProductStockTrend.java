@@ -0,0 +1,29 @@
+package com.fulfilment.application.monolith.products;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Answer of {@code GET /product/{id}/stock-history}. Only buckets in which the stock changed have a
+ * point; in between, the stock stayed at the previous point's {@code last}, or at {@code initial}
+ * before the first point. {@code initial} is null when nothing older is retained.
+ */
+public final class ProductStockTrend {
+
+  public final long productId;
+  public final ProductStockResolution resolution;
+  public final Instant from;
+  public final Instant to;
+  public final Integer initial;
+  public final List<ProductStockPoint> points;
+
+  public ProductStockTrend(long productId, ProductStockResolution resolution, Instant from, Instant to,
+      Integer initial, List<ProductStockPoint> points) {
+    this.productId = productId;
+    this.resolution = resolution;
+    this.from = from;
+    this.to = to;
+    this.initial = initial;
+    this.points = points;
+  }
+}
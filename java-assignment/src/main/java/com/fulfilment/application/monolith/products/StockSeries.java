@@ -0,0 +1,236 @@
+package com.fulfilment.application.monolith.products;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stock levels of one product at one resolution, as a byte array of closed buckets plus the open
+ * one. Only buckets in which the stock changed are stored. Each is encoded against the bucket before
+ * it as varints: bucket distance, zigzag {@code min - previous last}, {@code max - min} and
+ * {@code last - min}, which is four to six bytes for typical stock movements.
+ * <p>
+ * A bucket's min and max include the level carried into it, so a drop from 10 to 5 within an hour
+ * reads as min 5, max 10. Not thread-safe; the owner serializes access.
+ */
+final class StockSeries {
+
+  private byte[] data = new byte[0];
+  private int length;
+  // bucket and last of the most recently encoded record; what the next one is encoded against
+  private long lastBucket;
+  private int lastClose;
+
+  private boolean open;
+  private long openBucket;
+  private int openMin;
+  private int openMax;
+  private int openLast;
+
+  /** Folds a stock level observed in {@code bucket} into the series. */
+  void record(long bucket, int stock) {
+    if (!open) {
+      open = true;
+      openBucket = bucket;
+      openMin = openMax = openLast = stock;
+      return;
+    }
+    if (bucket <= openBucket) {
+      // a late observation counts towards the open bucket rather than rewriting closed ones
+      openMin = Math.min(openMin, stock);
+      openMax = Math.max(openMax, stock);
+      openLast = stock;
+      return;
+    }
+    if (stock == openLast) {
+      return;
+    }
+    append(openBucket, openMin, openMax, openLast);
+    int carried = openLast;
+    openBucket = bucket;
+    openMin = Math.min(carried, stock);
+    openMax = Math.max(carried, stock);
+    openLast = stock;
+  }
+
+  /** The latest level, or null before the first observation. */
+  Integer current() {
+    return open ? openLast : null;
+  }
+
+  /**
+   * Adds the buckets in {@code [fromBucket, toBucket)} to {@code points} and returns the level
+   * carried into {@code fromBucket}, or null when nothing older is kept.
+   */
+  Integer query(long fromBucket, long toBucket, ProductStockResolution resolution, List<ProductStockPoint> points) {
+    Integer initial = null;
+    Cursor cursor = new Cursor();
+    while (cursor.next()) {
+      if (cursor.bucket < fromBucket) {
+        initial = cursor.last;
+      } else if (cursor.bucket < toBucket) {
+        points.add(point(resolution, cursor.bucket, cursor.min, cursor.max, cursor.last));
+      } else {
+        return initial;
+      }
+    }
+    if (open) {
+      if (openBucket < fromBucket) {
+        initial = openLast;
+      } else if (openBucket < toBucket) {
+        points.add(point(resolution, openBucket, openMin, openMax, openLast));
+      }
+    }
+    return initial;
+  }
+
+  /**
+   * Drops closed buckets before {@code cutoffBucket}, except the newest of them, which still gives
+   * the level at the cutoff. The open bucket always stays: it is the current level.
+   */
+  void trim(long cutoffBucket) {
+    if (open && openBucket < cutoffBucket) {
+      // everything closed is older than the open bucket, which already carries the level
+      data = new byte[0];
+      length = 0;
+      lastBucket = 0;
+      lastClose = 0;
+      return;
+    }
+    Cursor cursor = new Cursor();
+    int keepFrom = -1;
+    long keepBucket = 0;
+    int keepMin = 0;
+    int keepMax = 0;
+    int keepLast = 0;
+    int start = 0;
+    while (cursor.next() && cursor.bucket < cutoffBucket) {
+      keepFrom = start;
+      keepBucket = cursor.bucket;
+      keepMin = cursor.min;
+      keepMax = cursor.max;
+      keepLast = cursor.last;
+      start = cursor.position;
+    }
+    if (keepFrom <= 0) {
+      return;
+    }
+    // the kept record is re-encoded on its own; the ones after it are deltas against it, unchanged
+    byte[] rest = Arrays.copyOfRange(data, start, length);
+    long savedBucket = lastBucket;
+    int savedClose = lastClose;
+    data = new byte[rest.length + 24];
+    length = 0;
+    lastBucket = 0;
+    lastClose = 0;
+    append(keepBucket, keepMin, keepMax, keepLast);
+    System.arraycopy(rest, 0, data, length, rest.length);
+    length += rest.length;
+    if (rest.length > 0) {
+      lastBucket = savedBucket;
+      lastClose = savedClose;
+    }
+  }
+
+  /** Bytes held for the series, slack included. */
+  long bytes() {
+    return data.length;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeInt(length);
+    out.write(data, 0, length);
+    out.writeLong(lastBucket);
+    out.writeInt(lastClose);
+    out.writeBoolean(open);
+    if (open) {
+      out.writeLong(openBucket);
+      out.writeInt(openMin);
+      out.writeInt(openMax);
+      out.writeInt(openLast);
+    }
+  }
+
+  static StockSeries read(DataInput in) throws IOException {
+    StockSeries series = new StockSeries();
+    series.length = in.readInt();
+    series.data = new byte[series.length];
+    in.readFully(series.data);
+    series.lastBucket = in.readLong();
+    series.lastClose = in.readInt();
+    series.open = in.readBoolean();
+    if (series.open) {
+      series.openBucket = in.readLong();
+      series.openMin = in.readInt();
+      series.openMax = in.readInt();
+      series.openLast = in.readInt();
+    }
+    return series;
+  }
+
+  private void append(long bucket, int min, int max, int last) {
+    if (data.length - length < 4 * 10) {
+      data = Arrays.copyOf(data, Math.max(32, data.length + (data.length >> 1) + 4 * 10));
+    }
+    putVarLong(bucket - lastBucket);
+    putVarLong(zigzag((long) min - lastClose));
+    putVarLong((long) max - min);
+    putVarLong((long) last - min);
+    lastBucket = bucket;
+    lastClose = last;
+  }
+
+  private void putVarLong(long value) {
+    while ((value & ~0x7FL) != 0) {
+      data[length++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    data[length++] = (byte) value;
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static ProductStockPoint point(ProductStockResolution resolution, long bucket, int min, int max, int last) {
+    return new ProductStockPoint(Instant.ofEpochMilli(bucket * resolution.millis), min, max, last);
+  }
+
+  // walks the closed buckets from the oldest
+  private final class Cursor {
+    int position;
+    long bucket;
+    int min;
+    int max;
+    int last;
+
+    boolean next() {
+      if (position >= length) {
+        return false;
+      }
+      bucket += getVarLong();
+      min = (int) (last + unzigzag(getVarLong()));
+      max = (int) (min + getVarLong());
+      last = (int) (min + getVarLong());
+      return true;
+    }
+
+    private long getVarLong() {
+      long value = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = data[position++];
+        value |= (long) (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+    }
+  }
+}
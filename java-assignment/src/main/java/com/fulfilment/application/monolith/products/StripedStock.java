@@ -0,0 +1,128 @@
+package com.fulfilment.application.monolith.products;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Available units of one product, spread over a few counters so that threads reserving the same
+ * product mostly CAS different cache lines. A take first tries the caller's own stripe, then any
+ * single stripe, and only then gathers units from several; it never takes more than is available.
+ * When units are removed that are not there (stock lowered under held reservations), the shortfall
+ * is kept as debt and paid from the next units put back.
+ */
+final class StripedStock {
+
+  // one stripe per 64-byte cache line
+  private static final int PAD = 8;
+
+  private final int stripes;
+  private final AtomicLongArray cells;
+  private final AtomicLong debt = new AtomicLong();
+
+  StripedStock(int stripes, long initial) {
+    this.stripes = stripes;
+    this.cells = new AtomicLongArray(stripes * PAD);
+    long share = Math.max(0, initial) / stripes;
+    for (int i = 0; i < stripes; i++) {
+      cells.set(i * PAD, share);
+    }
+    cells.addAndGet(0, Math.max(0, initial) - share * stripes);
+    if (initial < 0) {
+      debt.set(-initial);
+    }
+  }
+
+  /** Takes {@code quantity} units if that many are available; all or nothing. */
+  boolean tryTake(long quantity) {
+    int home = home();
+    for (int i = 0; i < stripes; i++) {
+      if (takeExactly((home + i) % stripes, quantity)) {
+        return true;
+      }
+    }
+    // no stripe holds enough on its own: gather, and give back if the total falls short
+    long taken = 0;
+    for (int i = 0; i < stripes && taken < quantity; i++) {
+      taken += takeUpTo((home + i) % stripes, quantity - taken);
+    }
+    if (taken == quantity) {
+      return true;
+    }
+    if (taken > 0) {
+      cells.addAndGet(home * PAD, taken);
+    }
+    return false;
+  }
+
+  /** Returns units, paying off debt first. */
+  void put(long quantity) {
+    while (quantity > 0) {
+      long owed = debt.get();
+      if (owed <= 0) {
+        break;
+      }
+      long paid = Math.min(owed, quantity);
+      if (debt.compareAndSet(owed, owed - paid)) {
+        quantity -= paid;
+      }
+    }
+    if (quantity > 0) {
+      cells.addAndGet(home() * PAD, quantity);
+    }
+  }
+
+  /** Adds or removes units; removing more than is available leaves debt. */
+  void adjust(long delta) {
+    if (delta >= 0) {
+      put(delta);
+      return;
+    }
+    long missing = -delta;
+    for (int i = 0; i < stripes && missing > 0; i++) {
+      missing -= takeUpTo(i, missing);
+    }
+    if (missing > 0) {
+      debt.addAndGet(missing);
+    }
+  }
+
+  /** Units available now, negative while in debt; a snapshot under concurrent updates. */
+  long available() {
+    long sum = 0;
+    for (int i = 0; i < stripes; i++) {
+      sum += cells.get(i * PAD);
+    }
+    return sum - debt.get();
+  }
+
+  private boolean takeExactly(int stripe, long quantity) {
+    int index = stripe * PAD;
+    while (true) {
+      long current = cells.get(index);
+      if (current < quantity) {
+        return false;
+      }
+      if (cells.compareAndSet(index, current, current - quantity)) {
+        return true;
+      }
+    }
+  }
+
+  private long takeUpTo(int stripe, long quantity) {
+    int index = stripe * PAD;
+    while (true) {
+      long current = cells.get(index);
+      if (current <= 0) {
+        return 0;
+      }
+      long taken = Math.min(current, quantity);
+      if (cells.compareAndSet(index, current, current - taken)) {
+        return taken;
+      }
+    }
+  }
+
+  private int home() {
+    return (int) (Thread.currentThread().getId() % stripes);
+  }
+}
@@ -0,0 +1,21 @@
+package com.fulfilment.application.monolith.search;
+
+import java.util.Locale;
+
+/**
+ * Case-insensitive name-prefix filters, as used by the store and product searches: the pattern goes
+ * into {@code lower(name) like :prefix escape '\'}, which the {@code lower(name) text_pattern_ops}
+ * indexes in import.sql serve as a range scan.
+ */
+public final class NamePrefix {
+
+  private NamePrefix() {}
+
+  /** LIKE pattern matching names that start with {@code prefix}, ignoring case; % and _ match literally. */
+  public static String likePattern(String prefix) {
+    return prefix.toLowerCase(Locale.ROOT)
+        .replace("\\", "\\\\")
+        .replace("%", "\\%")
+        .replace("_", "\\_") + "%";
+  }
+}
@@ -0,0 +1,93 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AIMD concurrency limit for calls to a downstream system. Every call that completes within the
+ * latency threshold raises the limit by {@code 1/limit} (about +1 per round trip at full use); a
+ * timeout, failure or slow call multiplies it by the backoff ratio, at most once per round trip: calls
+ * that started before the last decrease cannot decrease it again. The limit settles just below the
+ * concurrency at which the downstream system starts to queue.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseAt = Long.MIN_VALUE;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMs,
+                                      double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max.");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /** Waits up to {@code timeoutNanos} for a slot under the current limit. */
+    public synchronized boolean tryAcquire(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (inFlight >= (int) limit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        inFlight++;
+        return true;
+    }
+
+    /** A call that started at {@code startedAt} ({@link System#nanoTime()}) completed after {@code latencyNanos}. */
+    public synchronized void onSuccess(long startedAt, long latencyNanos) {
+        inFlight--;
+        if (latencyNanos > latencyThresholdNanos) {
+            decrease(startedAt);
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        notifyAll();
+    }
+
+    /** The call timed out or failed: treat it as a sign of overload. */
+    public synchronized void onDropped(long startedAt) {
+        inFlight--;
+        decrease(startedAt);
+        notifyAll();
+    }
+
+    /** The caller gave up waiting on a call that is still running: cut the limit now, keep its slot. */
+    public synchronized void onTimeout(long startedAt) {
+        decrease(startedAt);
+    }
+
+    /** A call already counted by {@link #onTimeout} has finally returned and gives its slot back. */
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    private void decrease(long startedAt) {
+        if (lastDecreaseAt != Long.MIN_VALUE && startedAt - lastDecreaseAt <= 0) {
+            return; // this call was already in flight when the limit was last cut
+        }
+        limit = Math.max(minLimit, limit * backoffRatio);
+        lastDecreaseAt = System.nanoTime();
+    }
+}
@@ -0,0 +1,118 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. It opens when at least {@code minCalls} of the last {@code window}
+ * calls were recorded and the failure rate reached the threshold. After {@code openMs} it lets
+ * {@code halfOpenCalls} trial calls through: if they all succeed it closes, and one failure re-opens it.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final boolean[] outcomes;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openUntil;
+    private int trialsInFlight;
+    private int trialSuccesses;
+
+    public CircuitBreaker(int window, int minCalls, double failureRateThreshold, long openMs, int halfOpenCalls) {
+        this(window, minCalls, failureRateThreshold, openMs, halfOpenCalls, System::nanoTime);
+    }
+
+    public CircuitBreaker(int window, int minCalls, double failureRateThreshold, long openMs, int halfOpenCalls,
+                   LongSupplier clock) {
+        this.outcomes = new boolean[window];
+        this.minCalls = Math.min(minCalls, window);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+    }
+
+    /** Returns whether a call may go ahead; every permitted call must be followed by one onResult or release. */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openUntil < 0) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialsInFlight = 0;
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsInFlight + trialSuccesses >= halfOpenCalls) {
+                return false;
+            }
+            trialsInFlight++;
+        }
+        return true;
+    }
+
+    /** Gives back a permission whose call never ran. */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && trialsInFlight > 0) {
+            trialsInFlight--;
+        }
+    }
+
+    public synchronized void onResult(boolean success) {
+        if (state == State.HALF_OPEN) {
+            trialsInFlight = Math.max(0, trialsInFlight - 1);
+            if (!success) {
+                open();
+            } else if (++trialSuccesses >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return; // a call that started before the breaker opened
+        }
+        if (recorded == outcomes.length) {
+            if (!outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = success;
+        if (!success) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+        if (recorded >= minCalls && failures >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    public synchronized State state() {
+        if (state == State.OPEN && clock.getAsLong() - openUntil >= 0) {
+            return State.HALF_OPEN; // the next call will be a trial
+        }
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = clock.getAsLong() + openNanos;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,214 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs legacy calls in their own bulkhead: a dedicated thread pool, so a hanging legacy system ties
+ * up those threads and nothing else. Each call passes a circuit breaker and an adaptive concurrency
+ * limit. The caller stops waiting after the call timeout, but the call keeps its limiter slot until
+ * it actually returns, so calls still stuck in the legacy system count against the limit. Calls that
+ * are turned away fail fast with {@link LegacyUnavailableException}; the dispatcher's retries and the
+ * outbox take it from there.
+ */
+@ApplicationScoped
+public class LegacyCallGuard {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker breaker;
+    private final long timeoutNanos;
+    private final long acquireTimeoutNanos;
+    private final ThreadPoolExecutor bulkhead;
+
+    private final Counter circuitOpenRejections;
+    private final Counter limitRejections;
+    private final Counter bulkheadRejections;
+    private final Counter timeouts;
+
+    @Inject
+    public LegacyCallGuard(
+            MeterRegistry registry,
+            @ConfigProperty(name = "legacy.guard.timeout-ms", defaultValue = "2000") long timeoutMs,
+            @ConfigProperty(name = "legacy.guard.acquire-timeout-ms", defaultValue = "100") long acquireTimeoutMs,
+            @ConfigProperty(name = "legacy.guard.limit.initial", defaultValue = "4") int initialLimit,
+            @ConfigProperty(name = "legacy.guard.limit.min", defaultValue = "1") int minLimit,
+            @ConfigProperty(name = "legacy.guard.limit.max", defaultValue = "32") int maxLimit,
+            @ConfigProperty(name = "legacy.guard.limit.latency-threshold-ms", defaultValue = "250") long latencyThresholdMs,
+            @ConfigProperty(name = "legacy.guard.breaker.window", defaultValue = "50") int breakerWindow,
+            @ConfigProperty(name = "legacy.guard.breaker.min-calls", defaultValue = "20") int breakerMinCalls,
+            @ConfigProperty(name = "legacy.guard.breaker.failure-rate", defaultValue = "0.5") double breakerFailureRate,
+            @ConfigProperty(name = "legacy.guard.breaker.open-ms", defaultValue = "5000") long breakerOpenMs,
+            @ConfigProperty(name = "legacy.guard.breaker.half-open-calls", defaultValue = "3") int breakerHalfOpenCalls) {
+        this(registry,
+                new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, latencyThresholdMs, 0.5),
+                new CircuitBreaker(breakerWindow, breakerMinCalls, breakerFailureRate, breakerOpenMs, breakerHalfOpenCalls),
+                timeoutMs, acquireTimeoutMs, maxLimit);
+    }
+
+    public LegacyCallGuard(MeterRegistry registry, AdaptiveConcurrencyLimiter limiter, CircuitBreaker breaker,
+                           long timeoutMs, long acquireTimeoutMs, int bulkheadThreads) {
+        this.limiter = limiter;
+        this.breaker = breaker;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+        AtomicInteger threadNumber = new AtomicInteger();
+        // a small queue only absorbs threads still stuck in timed-out calls; beyond that calls are refused
+        this.bulkhead = new ThreadPoolExecutor(bulkheadThreads, bulkheadThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(bulkheadThreads), r -> {
+                    Thread thread = new Thread(r, "legacy-call-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.bulkhead.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("legacy.limiter.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive concurrency limit for legacy calls").register(registry);
+        Gauge.builder("legacy.limiter.in_flight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                .description("Legacy calls currently running").register(registry);
+        Gauge.builder("legacy.circuit.state", breaker, b -> b.state().ordinal())
+                .description("0 = closed, 1 = half-open, 2 = open").register(registry);
+        circuitOpenRejections = rejections(registry, "circuit_open");
+        limitRejections = rejections(registry, "limit");
+        bulkheadRejections = rejections(registry, "bulkhead");
+        timeouts = Counter.builder("legacy.calls.timeouts").description("Legacy calls abandoned after the timeout")
+                .register(registry);
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("legacy.calls.rejected").tag("reason", reason)
+                .description("Legacy calls turned away without being attempted").register(registry);
+    }
+
+    /**
+     * Runs the call on the bulkhead and waits for it, up to the call timeout.
+     *
+     * @throws LegacyUnavailableException  when the circuit is open or no slot frees up in time
+     * @throws LegacyCallTimeoutException when the call did not finish within the timeout
+     */
+    public void call(Runnable action) {
+        if (!breaker.tryAcquirePermission()) {
+            circuitOpenRejections.increment();
+            throw new LegacyUnavailableException("Legacy circuit is open.");
+        }
+        boolean acquired;
+        try {
+            acquired = limiter.tryAcquire(acquireTimeoutNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            breaker.release();
+            throw new LegacyUnavailableException("Interrupted while waiting for a legacy call slot.");
+        }
+        if (!acquired) {
+            breaker.release();
+            limitRejections.increment();
+            throw new LegacyUnavailableException("Legacy concurrency limit of " + limiter.limit() + " reached.");
+        }
+
+        long started = System.nanoTime();
+        GuardedCall guarded = new GuardedCall(action, started);
+        Future<?> future;
+        try {
+            future = bulkhead.submit(guarded);
+        } catch (RejectedExecutionException e) {
+            limiter.onDropped(started);
+            breaker.release();
+            bulkheadRejections.increment();
+            throw new LegacyUnavailableException("Legacy bulkhead is full.");
+        }
+        try {
+            future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            guarded.abandon();
+            future.cancel(true);
+            timeouts.increment();
+            breaker.onResult(false);
+            throw new LegacyCallTimeoutException("Legacy call did not finish within "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms.");
+        } catch (ExecutionException e) {
+            breaker.onResult(false);
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            guarded.abandon();
+            future.cancel(true);
+            breaker.release();
+            throw new LegacyUnavailableException("Interrupted while waiting for a legacy call.");
+        }
+        breaker.onResult(true);
+    }
+
+    public int limit() { return limiter.limit(); }
+
+    public int inFlight() { return limiter.inFlight(); }
+
+    public CircuitBreaker.State circuitState() { return breaker.state(); }
+
+    @PreDestroy
+    void shutdown() {
+        bulkhead.shutdownNow();
+    }
+
+    /**
+     * Runs the legacy call on a bulkhead thread and hands its limiter slot back when the call returns,
+     * whether or not the caller is still waiting for it.
+     */
+    private final class GuardedCall implements Runnable {
+
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int ABANDONED = 3;
+
+        private final Runnable action;
+        private final long started;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        GuardedCall(Runnable action, long started) {
+            this.action = action;
+            this.started = started;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(PENDING, RUNNING)) {
+                return; // abandoned while still queued; the caller already gave the slot back
+            }
+            boolean succeeded = false;
+            try {
+                action.run();
+                succeeded = true;
+            } finally {
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    limiter.release(); // the limit was already cut when the caller gave up
+                } else if (succeeded) {
+                    limiter.onSuccess(started, System.nanoTime() - started);
+                } else {
+                    limiter.onDropped(started);
+                }
+            }
+        }
+
+        /** The caller stops waiting: cut the limit now; the slot goes back once the call returns. */
+        void abandon() {
+            switch (state.getAndSet(ABANDONED)) {
+                case PENDING -> limiter.onDropped(started);
+                case RUNNING -> limiter.onTimeout(started);
+                default -> { } // finished just as the caller gave up; the slot is already back
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.fulfilment.application.monolith.stores;
+
+public class LegacyCallTimeoutException extends RuntimeException {
+
+    public LegacyCallTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,436 @@
+
+package com.fulfilment.application.monolith.stores;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of legacy store changes. Records are {@code [length][crc32][payload]} and are
+ * written by a single writer thread through one {@link FileChannel}: whatever is queued when the
+ * writer wakes up goes out in one write and one {@code force()} (group commit). Segments roll over at
+ * {@code legacy.journal.segment-bytes}; sealed segments are re-read and checksummed on a background
+ * thread instead of on the request path. A damaged record costs only itself: readers step past it to
+ * the next record whose length and checksum hold.
+ */
+@ApplicationScoped
+public class LegacyStoreJournal {
+
+    private static final Logger LOGGER = Logger.getLogger(LegacyStoreJournal.class.getName());
+
+    /**
+     * NONE: page cache only, no force. ASYNC: forced once per batch, {@link #append} does not wait.
+     * SYNC: {@link #append} waits until the batch holding its record has been forced.
+     */
+    public enum Durability { NONE, ASYNC, SYNC }
+
+    static final int HEADER_BYTES = 8;
+    // past a damaged record, only lengths up to this are trusted when looking for the next record;
+    // legacy store records are a few hundred bytes, and the bound keeps the search linear in garbage
+    static final int RESYNC_MAX_RECORD_BYTES = 64 * 1024;
+    private static final String SEGMENT_PREFIX = "legacy-store-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final Durability durability;
+    private final long segmentBytes;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong forces = new AtomicLong();
+
+    // writer-thread state
+    private FileChannel channel;
+    private long segmentSequence;
+    private long position;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final CRC32 crc = new CRC32();
+
+    private Thread writer;
+    private ExecutorService verifier;
+    private volatile boolean running;
+
+    @Inject
+    public LegacyStoreJournal(
+            @ConfigProperty(name = "legacy.journal.dir") String directory,
+            @ConfigProperty(name = "legacy.journal.durability", defaultValue = "ASYNC") Durability durability,
+            @ConfigProperty(name = "legacy.journal.segment-bytes", defaultValue = "67108864") long segmentBytes,
+            @ConfigProperty(name = "legacy.journal.queue-capacity", defaultValue = "65536") int queueCapacity) {
+        this.directory = Path.of(directory);
+        this.durability = durability;
+        this.segmentBytes = segmentBytes;
+        this.maxBatch = Math.min(queueCapacity, 4096);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public synchronized void open() {
+        if (running) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = segments(directory);
+            if (segments.isEmpty()) {
+                openSegment(1);
+            } else {
+                Path last = segments.get(segments.size() - 1);
+                segmentSequence = sequenceOf(last);
+                recoverTail(last);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open legacy store journal in " + directory, e);
+        }
+        verifier = Executors.newSingleThreadExecutor(daemon("legacy-journal-verifier"));
+        running = true;
+        writer = daemon("legacy-journal-writer").newThread(this::writeLoop);
+        writer.start();
+    }
+
+    /** Queues one record; blocks while the queue is full and, in SYNC mode, until it is forced. */
+    public void append(byte[] payload) {
+        append(payload, durability == Durability.SYNC);
+    }
+
+    /**
+     * Queues one record and waits until the batch holding it has been written and, unless the mode
+     * is NONE, forced, whatever the mode. For callers that acknowledge the record to someone else.
+     */
+    public void appendDurably(byte[] payload) {
+        append(payload, true);
+    }
+
+    private void append(byte[] payload, boolean await) {
+        if (!running) {
+            throw new IllegalStateException("Legacy store journal is not open.");
+        }
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Journal records must not be empty.");
+        }
+        if (payload.length > segmentBytes - HEADER_BYTES) {
+            throw new IllegalArgumentException("Journal record of " + payload.length + " bytes exceeds the segment size.");
+        }
+        Pending pending = new Pending(payload, await ? new CompletableFuture<>() : null);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while appending to the legacy store journal.", e);
+        }
+        if (pending.done != null) {
+            try {
+                pending.done.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException io
+                        ? new UncheckedIOException("Legacy store journal write failed.", io)
+                        : e;
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // anything that slipped in after the writer exited is failed rather than left hanging
+        List<Pending> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        leftovers.forEach(p -> p.fail(new IOException("Legacy store journal closed.")));
+        try {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to close legacy store journal", e);
+        }
+        verifier.shutdown();
+    }
+
+    public long appendedRecords() { return appended.get(); }
+
+    public long batches() { return batches.get(); }
+
+    public long forces() { return forces.get(); }
+
+    public int queuedRecords() { return queue.size(); }
+
+    public Path directory() { return directory; }
+
+    // ---------------- writer thread ----------------
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                writeBatch(batch);
+                batch.forEach(Pending::complete);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.errorf(e, "Failed to write %d legacy journal records", batch.size());
+                buffer.clear();
+                batch.forEach(p -> p.fail(e));
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) throws IOException {
+        for (Pending pending : batch) {
+            int recordBytes = HEADER_BYTES + pending.payload.length;
+            if (position + buffer.position() + recordBytes > segmentBytes) {
+                flushBuffer();
+                rotate();
+            }
+            if (buffer.remaining() < recordBytes) {
+                flushBuffer();
+                if (buffer.capacity() < recordBytes) {
+                    buffer = ByteBuffer.allocateDirect(recordBytes);
+                }
+            }
+            crc.reset();
+            crc.update(pending.payload);
+            buffer.putInt(pending.payload.length).putInt((int) crc.getValue()).put(pending.payload);
+        }
+        flushBuffer();
+        if (durability != Durability.NONE) {
+            channel.force(false);
+            forces.incrementAndGet();
+        }
+        appended.addAndGet(batch.size());
+        batches.incrementAndGet();
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // the next segment is opened before the current one is closed: if it cannot be opened, the
+    // journal keeps appending to the current segment and tries again on the next batch
+    private void rotate() throws IOException {
+        Path sealed = segmentPath(segmentSequence);
+        FileChannel next = FileChannel.open(segmentPath(segmentSequence + 1),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        FileChannel previous = channel;
+        channel = next;
+        segmentSequence++;
+        position = next.size();
+        try {
+            if (durability != Durability.NONE) {
+                previous.force(true);
+            }
+        } finally {
+            previous.close();
+        }
+        verifier.submit(() -> verifySealed(sealed));
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        segmentSequence = sequence;
+        channel = FileChannel.open(segmentPath(sequence),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        position = channel.size();
+    }
+
+    // a crash can leave a torn record at the end of the active segment: cut back to the last good one
+    private void recoverTail(Path last) throws IOException {
+        ScanResult scan = scan(last);
+        if (scan.skippedBytes > 0) {
+            LOGGER.errorf("Legacy journal %s has %d damaged bytes between records; the records around them are kept",
+                    last, scan.skippedBytes);
+        }
+        if (scan.validBytes < scan.totalBytes) {
+            LOGGER.warnf("Truncating legacy journal %s from %d to %d bytes after an incomplete write",
+                    last, scan.totalBytes, scan.validBytes);
+            try (FileChannel truncating = FileChannel.open(last, StandardOpenOption.WRITE)) {
+                truncating.truncate(scan.validBytes);
+            }
+        }
+        openSegment(segmentSequence);
+    }
+
+    private void verifySealed(Path segment) {
+        try {
+            ScanResult scan = scan(segment);
+            if (scan.clean()) {
+                LOGGER.debugf("Verified legacy journal segment %s: %d records", segment, scan.records);
+            } else {
+                LOGGER.errorf("Legacy journal segment %s is damaged: %d records readable, %d bytes skipped, %d torn bytes at the end",
+                        segment, scan.records, scan.skippedBytes, scan.totalBytes - scan.validBytes);
+            }
+        } catch (IOException e) {
+            LOGGER.errorf(e, "Failed to verify legacy journal segment %s", segment);
+        }
+    }
+
+    // ---------------- reading ----------------
+
+    /**
+     * Reads a segment front to back. A record whose length or checksum does not hold is skipped
+     * together with the bytes after it, up to the next offset where a whole record checks out.
+     */
+    public static ScanResult scan(Path segment) throws IOException {
+        return read(segment, payload -> { });
+    }
+
+    /** Like {@link #scan}, handing each valid record's payload to {@code consumer} in write order. */
+    public static ScanResult read(Path segment, Consumer<byte[]> consumer) throws IOException {
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long total = file.size();
+            if (total > Integer.MAX_VALUE) {
+                throw new IOException("Journal segment " + segment + " is larger than 2 GiB.");
+            }
+            ByteBuffer bytes = file.map(FileChannel.MapMode.READ_ONLY, 0, total);
+            CRC32 checksum = new CRC32();
+            int end = (int) total;
+            int offset = 0;
+            int valid = 0;
+            int damagedFrom = -1;
+            long records = 0;
+            long skipped = 0;
+            while (offset + HEADER_BYTES <= end) {
+                int length = bytes.getInt(offset);
+                int limit = damagedFrom < 0 ? end - offset - HEADER_BYTES
+                        : Math.min(RESYNC_MAX_RECORD_BYTES, end - offset - HEADER_BYTES);
+                if (length <= 0 || length > limit) {
+                    damagedFrom = damagedFrom < 0 ? offset : damagedFrom;
+                    offset++;
+                    continue;
+                }
+                checksum.reset();
+                checksum.update(bytes.slice(offset + HEADER_BYTES, length));
+                if ((int) checksum.getValue() != bytes.getInt(offset + Integer.BYTES)) {
+                    damagedFrom = damagedFrom < 0 ? offset : damagedFrom;
+                    offset++;
+                    continue;
+                }
+                if (damagedFrom >= 0) {
+                    skipped += offset - damagedFrom;
+                    damagedFrom = -1;
+                }
+                byte[] payload = new byte[length];
+                bytes.get(offset + HEADER_BYTES, payload);
+                consumer.accept(payload);
+                offset += HEADER_BYTES + length;
+                valid = offset;
+                records++;
+            }
+            return new ScanResult(records, valid, total, skipped);
+        }
+    }
+
+    public static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static final class ScanResult {
+        public final long records;
+        // end of the last valid record; anything after it is a torn tail
+        public final long validBytes;
+        public final long totalBytes;
+        // damaged bytes stepped over between valid records
+        public final long skippedBytes;
+
+        ScanResult(long records, long validBytes, long totalBytes, long skippedBytes) {
+            this.records = records;
+            this.validBytes = validBytes;
+            this.totalBytes = totalBytes;
+            this.skippedBytes = skippedBytes;
+        }
+
+        public boolean clean() {
+            return validBytes == totalBytes && skippedBytes == 0;
+        }
+    }
+
+    private static final class Pending {
+        final byte[] payload;
+        final CompletableFuture<Void> done;
+
+        Pending(byte[] payload, CompletableFuture<Void> done) {
+            this.payload = payload;
+            this.done = done;
+        }
+
+        void complete() {
+            if (done != null) done.complete(null);
+        }
+
+        void fail(Throwable cause) {
+            if (done != null) done.completeExceptionally(cause);
+        }
+    }
+}
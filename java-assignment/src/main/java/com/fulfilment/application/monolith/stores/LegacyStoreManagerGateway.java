@@ -2,50 +2,77 @@
 package com.fulfilment.application.monolith.stores;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 
 @ApplicationScoped
 public class LegacyStoreManagerGateway {
 
+    private static final Logger LOGGER = Logger.getLogger(LegacyStoreManagerGateway.class.getName());
+
+    private final LegacyStoreJournal journal;
+    private final LegacyCallGuard guard;
+    private final LegacySyncMetrics metrics;
+    private final LegacyStoreState state;
+
+    @Inject
+    public LegacyStoreManagerGateway(LegacyStoreJournal journal, LegacyCallGuard guard, LegacySyncMetrics metrics,
+                                     LegacyStoreState state) {
+        this.journal = journal;
+        this.guard = guard;
+        this.metrics = metrics;
+        this.state = state;
+    }
+
     public void createStoreOnLegacySystem(Store store) {
-        writeToFile(store, "CREATE");
+        sync(StoreChangeSnapshot.of(StoreChangeType.CREATE, store));
     }
 
     public void updateStoreOnLegacySystem(Store store) {
-        writeToFile(store, "UPDATE");
+        sync(StoreChangeSnapshot.of(StoreChangeType.UPDATE, store));
     }
 
     public void deleteStoreOnLegacySystem(Store store) {
-        writeToFile(store, "DELETE");
+        sync(StoreChangeSnapshot.of(StoreChangeType.DELETE, store));
     }
 
-    private void writeToFile(Store store, String action) {
+    /**
+     * Sends one committed change to the legacy system; PATCH is an UPDATE there. The call runs under
+     * {@link LegacyCallGuard}, so it is bounded in time and concurrency and fails fast while the circuit is open.
+     */
+    public void sync(StoreChangeSnapshot change) {
+        String action = change.type == StoreChangeType.PATCH ? "UPDATE" : change.type.name();
+        long started = metrics.callStarted();
         try {
-            // Use a stable, safe filename (avoid spaces/special chars if present)
-            String safeName = (store.name == null || store.name.isBlank()) ? ("store-" + store.id) : store.name;
-            Path tempFile = Files.createTempFile(safeName + "-" + action.toLowerCase(), ".txt");
-
-            String content =
-                    "[action=" + action + "] [ts=" + Instant.now() + "] " +
-                            "[id=" + store.id + "] [name=" + store.name + "] " +
-                            "[items=" + store.quantityProductsInStock + "]";
-
-            Files.write(tempFile, content.getBytes());
-
-            // Read back to verify (simulated legacy integration acknowledgement)
-            String readContent = Files.readString(tempFile);
+            guard.call(() -> writeToJournal(change, action));
+        } catch (RuntimeException e) {
+            metrics.callFailed(change, e);
+            throw e;
+        }
+        metrics.callSucceeded(change, started);
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.tracef("legacy.sync ok type=%s storeId=%s tookMicros=%s", change.type, change.storeId,
+                    (System.nanoTime() - started) / 1000);
+        }
+    }
 
-            System.out.println("Legacy sync temp file: " + tempFile);
-            System.out.println("Written: " + content);
-            System.out.println("Read back: " + readContent);
+    // One length-prefixed record per change; read-back verification is handled by the journal. Returning
+    // acknowledges the change (the relay then marks its outbox row processed), so the write waits for the
+    // journal's force whatever its durability mode. The reconciliation view follows every accepted record.
+    private void writeToJournal(StoreChangeSnapshot change, String action) {
+        String content = new StringBuilder(96)
+                .append("[action=").append(action)
+                .append("] [ts=").append(Instant.now())
+                .append("] [id=").append(change.storeId)
+                .append("] [name=").append(change.name)
+                .append("] [items=").append(change.quantityProductsInStock)
+                .append(']')
+                .toString();
 
-            Files.deleteIfExists(tempFile);
-        } catch (Exception e) {
-            // In real-world, log & retry or send to a DLQ; here we just print the stack
-            e.printStackTrace();
-        }
+        journal.appendDurably(content.getBytes(StandardCharsets.UTF_8));
+        state.apply(change);
     }
 }
@@ -0,0 +1,161 @@
+package com.fulfilment.application.monolith.stores;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * What the legacy system holds, as far as this node can tell: the journal replayed once on first use,
+ * then kept current by {@link LegacyStoreManagerGateway} after every accepted write. Per-leaf digests
+ * are maintained on each change, so digest queries over aligned ranges never touch individual stores.
+ */
+@ApplicationScoped
+public class LegacyStoreState implements StoreDigestSource {
+
+    private static final Logger LOGGER = Logger.getLogger(LegacyStoreState.class.getName());
+
+    private final Path journalDirectory;
+    private final long leafWidth;
+
+    private final TreeMap<Long, StoreDigest> stores = new TreeMap<>();
+    // leaf index (id / leafWidth) -> XOR of the hashes of its stores
+    private final TreeMap<Long, Long> leafDigests = new TreeMap<>();
+    private boolean loaded;
+
+    @Inject
+    public LegacyStoreState(LegacyStoreJournal journal,
+                            @ConfigProperty(name = "legacy.reconcile.leaf-width", defaultValue = "256") long leafWidth) {
+        this(journal.directory(), leafWidth);
+    }
+
+    /** A state that starts empty, without a journal behind it. */
+    public LegacyStoreState(long leafWidth) {
+        this((Path) null, leafWidth);
+    }
+
+    /** A state replayed from {@code journalDirectory}, or starting empty when it is null. */
+    public LegacyStoreState(Path journalDirectory, long leafWidth) {
+        this.journalDirectory = journalDirectory;
+        this.leafWidth = leafWidth;
+    }
+
+    /** Records a change the legacy system has accepted. */
+    public synchronized void apply(StoreChangeSnapshot change) {
+        ensureLoaded();
+        if (change.storeId == null) {
+            return;
+        }
+        if (change.type == StoreChangeType.DELETE) {
+            put(change.storeId, null);
+        } else {
+            put(change.storeId, new StoreDigest(change.storeId, change.name, change.quantityProductsInStock));
+        }
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return stores.size();
+    }
+
+    @Override
+    public synchronized long maxId() {
+        ensureLoaded();
+        return stores.isEmpty() ? 0 : stores.lastKey();
+    }
+
+    @Override
+    public synchronized Map<Long, Long> childDigests(long fromId, long toId, long childWidth) {
+        ensureLoaded();
+        Map<Long, Long> digests = new HashMap<>();
+        if (fromId % leafWidth == 0 && toId % leafWidth == 0 && childWidth % leafWidth == 0) {
+            for (Map.Entry<Long, Long> leaf : leafDigests.subMap(fromId / leafWidth, toId / leafWidth).entrySet()) {
+                digests.merge((leaf.getKey() * leafWidth - fromId) / childWidth, leaf.getValue(), (a, b) -> a ^ b);
+            }
+        } else {
+            for (StoreDigest store : stores.subMap(fromId, toId).values()) {
+                digests.merge((store.id - fromId) / childWidth, store.hash, (a, b) -> a ^ b);
+            }
+        }
+        return digests;
+    }
+
+    @Override
+    public synchronized List<StoreDigest> stores(long fromId, long toId) {
+        ensureLoaded();
+        return List.copyOf(stores.subMap(fromId, toId).values());
+    }
+
+    private void put(long id, StoreDigest next) {
+        StoreDigest previous = next == null ? stores.remove(id) : stores.put(id, next);
+        long delta = (previous == null ? 0 : previous.hash) ^ (next == null ? 0 : next.hash);
+        if (delta != 0) {
+            long leaf = id / leafWidth;
+            long digest = leafDigests.getOrDefault(leaf, 0L) ^ delta;
+            NavigableMap<Long, StoreDigest> leafStores = stores.subMap(leaf * leafWidth, true, (leaf + 1) * leafWidth - 1, true);
+            if (leafStores.isEmpty()) {
+                leafDigests.remove(leaf);
+            } else {
+                leafDigests.put(leaf, digest);
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (journalDirectory == null) {
+            return;
+        }
+        try {
+            long records = 0;
+            for (Path segment : LegacyStoreJournal.segments(journalDirectory)) {
+                records += LegacyStoreJournal.read(segment, this::replay).records;
+            }
+            LOGGER.infof("Replayed %d legacy journal records: %d stores", records, stores.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay the legacy store journal in " + journalDirectory, e);
+        }
+    }
+
+    // "[action=X] [ts=...] [id=1] [name=...] [items=3]", as written by LegacyStoreManagerGateway
+    private void replay(byte[] payload) {
+        String record = new String(payload, StandardCharsets.UTF_8);
+        int action = record.indexOf("[action=");
+        int id = record.indexOf("] [id=");
+        int name = record.indexOf("] [name=", id);
+        int items = record.lastIndexOf("] [items=");
+        if (action != 0 || id < 0 || name < 0 || items < name || !record.endsWith("]")) {
+            LOGGER.warnf("Skipping unreadable legacy journal record: %s", record);
+            return;
+        }
+        try {
+            String idText = record.substring(id + 6, name);
+            if ("null".equals(idText)) {
+                return;
+            }
+            long storeId = Long.parseLong(idText);
+            if (record.startsWith("[action=DELETE]")) {
+                put(storeId, null);
+                return;
+            }
+            String storeName = record.substring(name + 8, items);
+            int quantity = Integer.parseInt(record.substring(items + 9, record.length() - 1));
+            put(storeId, new StoreDigest(storeId, "null".equals(storeName) ? null : storeName, quantity));
+        } catch (NumberFormatException e) {
+            LOGGER.warnf("Skipping unreadable legacy journal record: %s", record);
+        }
+    }
+}
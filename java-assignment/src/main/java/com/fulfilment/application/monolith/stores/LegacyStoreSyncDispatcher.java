@@ -0,0 +1,431 @@
+
+package com.fulfilment.application.monolith.stores;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands committed store changes to the legacy gateway on a dedicated worker pool, off the request
+ * thread. Changes are queued per store id: different stores are synced in parallel, while the
+ * changes of one store are applied strictly in commit order, one at a time. The total number of
+ * queued changes is bounded; when full, {@code BLOCK} waits up to the offer timeout for space
+ * (backpressure on the caller) and {@code REJECT} fails immediately.
+ * <p>
+ * With a coalescing window, a store's queued change is held back until the window has passed since it
+ * was queued, and later changes of the same store are folded into it while it waits: the latest state
+ * wins, a CREATE keeps its type, and a CREATE followed by a DELETE is dropped altogether. Futures of
+ * folded changes complete together with the change that absorbed them. A window of 0 disables this.
+ * <p>
+ * A failed change is retried up to {@code legacy.sync.max-attempts} times with exponential backoff and
+ * jitter. While it waits, its store is parked on the timer thread rather than on a worker, and the
+ * store's later changes stay queued behind it. Only when the attempts are used up does its future fail.
+ */
+@ApplicationScoped
+public class LegacyStoreSyncDispatcher implements MeterBinder {
+
+    private static final Logger LOGGER = Logger.getLogger(LegacyStoreSyncDispatcher.class.getName());
+
+    public enum OverflowPolicy { BLOCK, REJECT }
+
+    private final LegacyStoreManagerGateway gateway;
+    private final int workers;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long offerTimeoutMs;
+    private final long drainTimeoutMs;
+    private final long coalesceWindowNanos;
+    private final int maxAttempts;
+    private final long retryBaseNanos;
+    private final long retryMaxNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Map<Long, StoreQueue> stores = new HashMap<>();
+    private final ArrayDeque<StoreQueue> ready = new ArrayDeque<>();
+    private int queued;
+    private boolean accepting;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private ScheduledExecutorService timer;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+
+    @Inject
+    public LegacyStoreSyncDispatcher(
+            LegacyStoreManagerGateway gateway,
+            @ConfigProperty(name = "legacy.sync.workers", defaultValue = "4") int workers,
+            @ConfigProperty(name = "legacy.sync.queue-capacity", defaultValue = "10000") int capacity,
+            @ConfigProperty(name = "legacy.sync.overflow-policy", defaultValue = "BLOCK") OverflowPolicy overflowPolicy,
+            @ConfigProperty(name = "legacy.sync.offer-timeout-ms", defaultValue = "500") long offerTimeoutMs,
+            @ConfigProperty(name = "legacy.sync.drain-timeout-ms", defaultValue = "10000") long drainTimeoutMs,
+            @ConfigProperty(name = "legacy.sync.coalesce-window-ms", defaultValue = "0") long coalesceWindowMs,
+            @ConfigProperty(name = "legacy.sync.max-attempts", defaultValue = "5") int maxAttempts,
+            @ConfigProperty(name = "legacy.sync.retry-base-ms", defaultValue = "200") long retryBaseMs,
+            @ConfigProperty(name = "legacy.sync.retry-max-ms", defaultValue = "30000") long retryMaxMs) {
+        this.gateway = gateway;
+        this.workers = workers;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.drainTimeoutMs = drainTimeoutMs;
+        this.coalesceWindowNanos = TimeUnit.MILLISECONDS.toNanos(coalesceWindowMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBaseNanos = TimeUnit.MILLISECONDS.toNanos(retryBaseMs);
+        this.retryMaxNanos = TimeUnit.MILLISECONDS.toNanos(retryMaxMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        lock.lock();
+        try {
+            if (accepting) {
+                return;
+            }
+            accepting = true;
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "legacy-store-sync-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int i = 0; i < workers; i++) {
+                Thread thread = new Thread(this::workLoop, "legacy-store-sync-" + i);
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a change behind any pending changes of the same store. The returned future completes
+     * when the legacy gateway has processed the change, or the change it was coalesced into.
+     *
+     * @throws RejectedExecutionException when the queue is full (after the offer timeout under BLOCK)
+     *                                    or the dispatcher is shutting down
+     */
+    public CompletableFuture<Void> submit(StoreChangeSnapshot change) {
+        lock.lock();
+        try {
+            if (accepting && coalesceWindowNanos > 0) {
+                // folding into a queued change takes no extra capacity, so it never waits or overflows;
+                // a change already tried once (now waiting to be retried) may have reached the legacy
+                // system, so it is neither cancelled nor changed: later changes queue behind it
+                StoreQueue store = stores.get(change.storeId);
+                Task pending = store == null ? null : store.tasks.peekLast();
+                if (pending != null && pending.attempts == 0 && pending.change.type != StoreChangeType.DELETE) {
+                    return coalesce(store, pending, change);
+                }
+            }
+            if (queued >= capacity && overflowPolicy == OverflowPolicy.BLOCK) {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+                while (queued >= capacity && accepting && remaining > 0) {
+                    remaining = notFull.awaitNanos(remaining);
+                }
+            }
+            if (!accepting) {
+                throw reject("Legacy store sync is shutting down; dropping " + change + ".");
+            }
+            if (queued >= capacity) {
+                throw reject("Legacy store sync queue is full (" + capacity + "); dropping " + change + ".");
+            }
+            StoreQueue store = stores.computeIfAbsent(change.storeId, StoreQueue::new);
+            Task task = new Task(change);
+            store.tasks.addLast(task);
+            queued++;
+            schedule(store);
+            return task.done;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("Interrupted while queueing " + change + ".");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // caller holds the lock; pending is the store's last queued change, never yet tried
+    private CompletableFuture<Void> coalesce(StoreQueue store, Task pending, StoreChangeSnapshot change) {
+        if (change.type == StoreChangeType.DELETE && pending.change.type == StoreChangeType.CREATE) {
+            // the legacy system never has to hear about a store that was created and deleted in one window
+            store.tasks.pollLast();
+            queued--;
+            notFull.signal();
+            coalesced.addAndGet(2);
+            if (store.tasks.isEmpty()) {
+                if (store.inReady) {
+                    ready.remove(store);
+                    store.inReady = false;
+                }
+                store.delayed = false;
+                if (!store.inFlight) {
+                    stores.remove(store.storeId);
+                }
+            }
+            pending.done.complete(null);
+            return pending.done;
+        }
+        StoreChangeType type = pending.change.type == StoreChangeType.CREATE ? StoreChangeType.CREATE : change.type;
+        pending.change = new StoreChangeSnapshot(type, change.storeId, change.name, change.quantityProductsInStock,
+                change.committedAt);
+        coalesced.incrementAndGet();
+        return pending.done;
+    }
+
+    // caller holds the lock; queues the store for a worker once its head change has waited out the window
+    private void schedule(StoreQueue store) {
+        if (store.inFlight || store.inReady || store.delayed || store.tasks.isEmpty()) {
+            return;
+        }
+        long delay = store.tasks.peekFirst().queuedAt + coalesceWindowNanos - System.nanoTime();
+        if (delay <= 0 || !accepting || timer == null) {
+            store.inReady = true;
+            ready.addLast(store);
+            notEmpty.signal();
+        } else {
+            store.delayed = true;
+            timer.schedule(() -> windowElapsed(store), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // exponential backoff with equal jitter: half of the capped delay is fixed, the other half random
+    private long backoffNanos(int attempt) {
+        long capped = Math.min(retryMaxNanos, retryBaseNanos << Math.min(attempt - 1, 30));
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    private void windowElapsed(StoreQueue store) {
+        lock.lock();
+        try {
+            if (store.delayed) {
+                store.delayed = false;
+                schedule(store);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stops accepting changes and lets the workers finish what is queued, up to the drain timeout. */
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            if (!accepting) {
+                return;
+            }
+            accepting = false;
+            // changes still sitting out their coalescing window or retry backoff go out now
+            for (StoreQueue store : stores.values()) {
+                if (store.delayed) {
+                    store.delayed = false;
+                    schedule(store);
+                }
+            }
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs);
+        for (Thread thread : threads) {
+            try {
+                thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.forEach(Thread::interrupt);
+        timer.shutdownNow();
+        List<Task> abandoned = new ArrayList<>();
+        lock.lock();
+        try {
+            stores.values().forEach(store -> abandoned.addAll(store.tasks));
+            stores.clear();
+            ready.clear();
+            queued = 0;
+        } finally {
+            lock.unlock();
+        }
+        if (!abandoned.isEmpty()) {
+            LOGGER.warnf("Legacy store sync shut down with %d undelivered changes", abandoned.size());
+            abandoned.forEach(t -> t.done.completeExceptionally(
+                    new RejectedExecutionException("Legacy store sync shut down before delivery.")));
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long completed() { return completed.get(); }
+
+    public long failed() { return failed.get(); }
+
+    public long rejected() { return rejected.get(); }
+
+    /** Legacy writes saved by coalescing: one per folded change, two per cancelled CREATE/DELETE pair. */
+    public long coalesced() { return coalesced.get(); }
+
+    public long retried() { return retried.get(); }
+
+    public int maxAttempts() { return maxAttempts; }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("legacy.sync.queued", this, LegacyStoreSyncDispatcher::queued)
+                .description("Store changes waiting for a legacy sync worker").register(registry);
+        counter(registry, "legacy.sync.completed", completed, "Store changes delivered to the legacy system");
+        counter(registry, "legacy.sync.failed", failed, "Store changes given up on after all attempts");
+        counter(registry, "legacy.sync.rejected", rejected, "Store changes refused because the queue was full");
+        counter(registry, "legacy.sync.coalesced", coalesced, "Legacy writes saved by coalescing");
+        counter(registry, "legacy.sync.retried", retried, "Legacy call attempts scheduled for retry");
+    }
+
+    private static void counter(MeterRegistry registry, String name, AtomicLong value, String description) {
+        FunctionCounter.builder(name, value, AtomicLong::get).description(description).register(registry);
+    }
+
+    private RejectedExecutionException reject(String message) {
+        rejected.incrementAndGet();
+        return new RejectedExecutionException(message);
+    }
+
+    private void workLoop() {
+        while (true) {
+            StoreQueue store;
+            Task task;
+            lock.lock();
+            try {
+                while (ready.isEmpty()) {
+                    if (!accepting && queued == 0) {
+                        return;
+                    }
+                    notEmpty.await();
+                }
+                store = ready.pollFirst();
+                store.inReady = false;
+                task = store.tasks.pollFirst();
+                store.inFlight = true;
+                queued--;
+                notFull.signal();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            RuntimeException failure = null;
+            try {
+                gateway.sync(task.change);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+
+            boolean retrying = false;
+            long backoff = 0;
+            lock.lock();
+            try {
+                store.inFlight = false;
+                if (failure != null && ++task.attempts < maxAttempts && accepting) {
+                    // park the store on the timer; its later changes stay queued behind this one
+                    retrying = true;
+                    backoff = backoffNanos(task.attempts);
+                    store.tasks.addFirst(task);
+                    queued++;
+                    store.delayed = true;
+                    timer.schedule(() -> windowElapsed(store), backoff, TimeUnit.NANOSECONDS);
+                } else if (store.tasks.isEmpty()) {
+                    stores.remove(store.storeId);
+                    if (!accepting && queued == 0) {
+                        notEmpty.signalAll(); // wake idle workers so they can exit
+                    }
+                } else {
+                    schedule(store);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (failure == null) {
+                completed.incrementAndGet();
+                task.done.complete(null);
+            } else if (retrying) {
+                retried.incrementAndGet();
+                // every retry during an outage would log; keep it at debug and let the metrics carry it
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debugf("legacy.sync retry type=%s storeId=%s attempt=%s/%s backoffMs=%s cause=%s",
+                            task.change.type, task.change.storeId, task.attempts, maxAttempts,
+                            TimeUnit.NANOSECONDS.toMillis(backoff), failure.toString());
+                }
+            } else if (task.attempts < maxAttempts) {
+                // shutting down with attempts left: not a permanent failure, the outbox delivers it again later
+                failed.incrementAndGet();
+                task.done.completeExceptionally(
+                        new RejectedExecutionException("Legacy store sync shut down before retrying " + task.change + ".", failure));
+            } else {
+                failed.incrementAndGet();
+                LOGGER.errorf(failure, "legacy.sync failed type=%s storeId=%s attempts=%s",
+                        task.change.type, task.change.storeId, task.attempts);
+                task.done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static final class StoreQueue {
+        final Long storeId;
+        final ArrayDeque<Task> tasks = new ArrayDeque<>();
+        boolean inFlight;
+        boolean inReady;
+        // waiting on the timer for its coalescing window or retry backoff
+        boolean delayed;
+
+        StoreQueue(Long storeId) {
+            this.storeId = storeId;
+        }
+    }
+
+    private static final class Task {
+        StoreChangeSnapshot change;
+        final long queuedAt = System.nanoTime();
+        int attempts;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Task(StoreChangeSnapshot change) {
+            this.change = change;
+        }
+    }
+}
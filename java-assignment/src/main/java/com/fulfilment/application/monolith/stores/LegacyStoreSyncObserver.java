@@ -1,4 +1,3 @@
-
 package com.fulfilment.application.monolith.stores;
 
 import jakarta.enterprise.context.ApplicationScoped;
@@ -7,22 +6,38 @@ import jakarta.enterprise.event.TransactionPhase;
 import jakarta.inject.Inject;
 
 /**
- * Observes StoreChangeEvent AFTER_SUCCESS (i.e., post-commit),
- * guaranteeing that legacy sync happens only if DB commit succeeds.
+ * Observes StoreChangeEvent AFTER_SUCCESS (i.e., post-commit).
+ * The change itself was already recorded in the store outbox by {@link StoreOutboxWriter} inside the
+ * committed transaction; this only wakes the legacy relay and the other store sinks so they start
+ * right away instead of at their next poll.
  */
 @ApplicationScoped
 public class LegacyStoreSyncObserver {
 
     @Inject
-    LegacyStoreManagerGateway legacyStoreManagerGateway;
+    StoreOutboxRelay storeOutboxRelay;
+
+    @Inject
+    StoreChangeFanout storeChangeFanout;
+
+    @Inject
+    LegacySyncMetrics legacySyncMetrics;
 
     public void onStoreChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) StoreChangeEvent event) {
-        Store store = event.getStore();
-        switch (event.getType()) {
-            case CREATE -> legacyStoreManagerGateway.createStoreOnLegacySystem(store);
-            case UPDATE, PATCH -> legacyStoreManagerGateway.updateStoreOnLegacySystem(store);
-            case DELETE -> legacyStoreManagerGateway.deleteStoreOnLegacySystem(store);
-            default -> { /* no-op */ }
+        legacySyncMetrics.changeCommitted(event.getType());
+        storeOutboxRelay.wakeUp();
+        storeChangeFanout.wakeUp();
+    }
+
+    /** A batch wakes the relay and the sinks once, however many stores it changed. */
+    public void onStoreBatchChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) StoreBatchChangeEvent event) {
+        if (event.changes.isEmpty()) {
+            return;
+        }
+        for (StoreChangeEvent change : event.changes) {
+            legacySyncMetrics.changeCommitted(change.getType());
         }
+        storeOutboxRelay.wakeUp();
+        storeChangeFanout.wakeUp();
     }
 }
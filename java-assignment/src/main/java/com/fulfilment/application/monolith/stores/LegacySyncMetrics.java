@@ -0,0 +1,94 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer meters for the legacy store sync. All meters are created up front, one per change type
+ * (and failure cause), so recording on the hot path is a map lookup and no tag building.
+ */
+@ApplicationScoped
+public class LegacySyncMetrics {
+
+    /** Why a legacy call failed; a small fixed set so the failure counter's tags stay bounded. */
+    public enum FailureCause {
+        TIMEOUT, UNAVAILABLE, IO, ERROR;
+
+        public static FailureCause of(Throwable failure) {
+            if (failure instanceof LegacyCallTimeoutException) return TIMEOUT;
+            if (failure instanceof LegacyUnavailableException) return UNAVAILABLE;
+            if (failure instanceof UncheckedIOException) return IO;
+            return ERROR;
+        }
+    }
+
+    private final Map<StoreChangeType, Counter> committed = new EnumMap<>(StoreChangeType.class);
+    private final Map<StoreChangeType, Timer> latency = new EnumMap<>(StoreChangeType.class);
+    private final Map<StoreChangeType, Timer> lag = new EnumMap<>(StoreChangeType.class);
+    private final Map<StoreChangeType, Map<FailureCause, Counter>> failures = new EnumMap<>(StoreChangeType.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Inject
+    public LegacySyncMetrics(MeterRegistry registry) {
+        for (StoreChangeType type : StoreChangeType.values()) {
+            String tag = type.name().toLowerCase(Locale.ROOT);
+            committed.put(type, Counter.builder("legacy.sync.changes").tag("type", tag)
+                    .description("Committed store changes handed to the legacy sync").register(registry));
+            latency.put(type, Timer.builder("legacy.sync.latency").tag("type", tag)
+                    .description("Duration of successful legacy calls")
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry));
+            lag.put(type, Timer.builder("legacy.sync.lag").tag("type", tag)
+                    .description("Time from the store commit until the legacy system accepted the change")
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofMinutes(10))
+                    .register(registry));
+            Map<FailureCause, Counter> byCause = new EnumMap<>(FailureCause.class);
+            for (FailureCause cause : FailureCause.values()) {
+                byCause.put(cause, Counter.builder("legacy.sync.failures").tag("type", tag)
+                        .tag("cause", cause.name().toLowerCase(Locale.ROOT))
+                        .description("Failed legacy call attempts").register(registry));
+            }
+            failures.put(type, byCause);
+        }
+        Gauge.builder("legacy.sync.in_flight", inFlight, AtomicInteger::get)
+                .description("Legacy calls currently in progress").register(registry);
+    }
+
+    public void changeCommitted(StoreChangeType type) {
+        committed.get(type).increment();
+    }
+
+    /** Marks the start of a legacy call; pass the result to {@link #callSucceeded} or {@link #callFailed}. */
+    public long callStarted() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void callSucceeded(StoreChangeSnapshot change, long startedNanos) {
+        inFlight.decrementAndGet();
+        latency.get(change.type).record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+        lag.get(change.type).record(Duration.between(change.committedAt, Instant.now()));
+    }
+
+    public void callFailed(StoreChangeSnapshot change, Throwable failure) {
+        inFlight.decrementAndGet();
+        failures.get(change.type).get(FailureCause.of(failure)).increment();
+    }
+}
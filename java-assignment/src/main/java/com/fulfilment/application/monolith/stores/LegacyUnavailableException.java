@@ -0,0 +1,15 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A legacy call that was not attempted: the circuit is open or the concurrency limit is reached. It
+ * is a {@link RejectedExecutionException}, so an outbox row that ends with it stays in the outbox and
+ * is delivered again later instead of being dead-lettered.
+ */
+public class LegacyUnavailableException extends RejectedExecutionException {
+
+    public LegacyUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.fulfilment.application.monolith.stores;
+
+/** Body of {@code POST /store/{id}/stock:adjust}: the signed change to apply to the store's stock. */
+public class StockAdjustment {
+
+    public int delta;
+
+    public StockAdjustment() {}
+
+    public StockAdjustment(int delta) {
+        this.delta = delta;
+    }
+}
@@ -1,22 +1,60 @@
 package com.fulfilment.application.monolith.stores;
 
+import com.fulfilment.application.monolith.search.NamePrefix;
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import io.quarkus.panache.common.Parameters;
+import io.quarkus.panache.common.Sort;
 import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Version;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
 @Entity
 @Cacheable
 public class Store extends PanacheEntity {
 
+  // unique, so name alone is a stable keyset; its unique index serves "name > :after order by name",
+  // and import.sql adds the lower(name) pattern index used by the prefix search
+
   @Column(length = 40, unique = true)
   public String name;
 
   public int quantityProductsInStock;
 
+  // optimistic lock: every UPDATE/DELETE carries "where version = ?", exposed to clients as the ETag
+  @Version
+  public long version;
+
   public Store() {}
 
   public Store(String name) {
     this.name = name;
   }
+
+  /**
+   * Up to {@code limit} stores in name order, after the name {@code after} when given and with a name
+   * starting with {@code prefix} (ignoring case) when given. Rows come from a forward-only cursor; the
+   * caller must close the stream.
+   */
+  public static Stream<Store> streamByName(String after, String prefix, int limit) {
+    List<String> conditions = new ArrayList<>();
+    Parameters parameters = new Parameters();
+    if (after != null) {
+      conditions.add("name > :after");
+      parameters.and("after", after);
+    }
+    if (prefix != null && !prefix.isEmpty()) {
+      conditions.add("lower(name) like :prefix escape '\\'");
+      parameters.and("prefix", NamePrefix.likePattern(prefix));
+    }
+    return find(String.join(" and ", conditions), Sort.by("name"), parameters)
+        .withHint(HibernateHints.HINT_FETCH_SIZE, limit)
+        .page(0, limit)
+        .stream();
+  }
 }
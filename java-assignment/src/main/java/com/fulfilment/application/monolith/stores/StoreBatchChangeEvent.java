@@ -0,0 +1,21 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * All store changes of one batch request, fired once instead of one {@link StoreChangeEvent} per
+ * store. Observers see the same changes in the same order as the individual events would carry.
+ */
+public final class StoreBatchChangeEvent {
+
+    public final List<StoreChangeEvent> changes;
+
+    public StoreBatchChangeEvent(List<StoreChangeEvent> changes) {
+        this.changes = List.copyOf(Objects.requireNonNull(changes, "changes must not be null"));
+    }
+
+    public List<StoreChangeEvent> getChanges() {
+        return changes;
+    }
+}
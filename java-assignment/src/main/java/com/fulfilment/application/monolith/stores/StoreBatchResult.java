@@ -0,0 +1,41 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.util.List;
+
+/** Response of {@code POST /store/batch}: one outcome per requested store, in request order, plus totals. */
+public final class StoreBatchResult {
+
+    public final int created;
+    public final int updated;
+    public final int unchanged;
+    public final int rejected;
+    public final List<Item> items;
+
+    StoreBatchResult(List<Item> items) {
+        this.items = items;
+        this.created = count(items, StoreBatchUpsert.Outcome.CREATED);
+        this.updated = count(items, StoreBatchUpsert.Outcome.UPDATED);
+        this.unchanged = count(items, StoreBatchUpsert.Outcome.UNCHANGED);
+        this.rejected = count(items, StoreBatchUpsert.Outcome.REJECTED);
+    }
+
+    private static int count(List<Item> items, StoreBatchUpsert.Outcome outcome) {
+        return (int) items.stream().filter(item -> item.outcome == outcome).count();
+    }
+
+    public static final class Item {
+        public final int index;
+        public final String name;
+        public final Long id;
+        public final StoreBatchUpsert.Outcome outcome;
+        public final String error;
+
+        Item(int index, String name, Long id, StoreBatchUpsert.Outcome outcome, String error) {
+            this.index = index;
+            this.name = name;
+            this.id = id;
+            this.outcome = outcome;
+            this.error = error;
+        }
+    }
+}
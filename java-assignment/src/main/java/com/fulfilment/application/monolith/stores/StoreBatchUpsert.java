@@ -0,0 +1,110 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides what a {@code POST /store/batch} does to each requested store, matched by its unique name:
+ * create it, update the existing store, leave it unchanged, or reject it. Existing stores are updated
+ * in place; new ones are collected for a single batched persist by the caller.
+ */
+public final class StoreBatchUpsert {
+
+    public enum Outcome { CREATED, UPDATED, UNCHANGED, REJECTED }
+
+    static final int MAX_NAME_LENGTH = 40;
+
+    private final List<Store> toPersist = new ArrayList<>();
+    private final List<StoreChangeEvent> changes = new ArrayList<>();
+    private final List<Decision> decisions = new ArrayList<>();
+
+    private StoreBatchUpsert() {
+    }
+
+    /** Applies {@code requested} on top of {@code existingByName}, the stores already holding those names. */
+    public static StoreBatchUpsert apply(List<Store> requested, Map<String, Store> existingByName) {
+        StoreBatchUpsert upsert = new StoreBatchUpsert();
+        Set<String> seen = new HashSet<>();
+        for (int index = 0; index < requested.size(); index++) {
+            Store item = requested.get(index);
+            String error = validate(item);
+            if (error == null && !seen.add(item.name)) {
+                error = "Store name appears more than once in the batch.";
+            }
+            if (error != null) {
+                upsert.decisions.add(new Decision(index, item == null ? null : item.name, null, Outcome.REJECTED, error));
+                continue;
+            }
+            Store existing = existingByName.get(item.name);
+            if (existing == null) {
+                Store created = new Store(item.name);
+                created.quantityProductsInStock = item.quantityProductsInStock;
+                upsert.toPersist.add(created);
+                upsert.changes.add(new StoreChangeEvent(StoreChangeType.CREATE, created));
+                upsert.decisions.add(new Decision(index, item.name, created, Outcome.CREATED, null));
+            } else if (existing.quantityProductsInStock != item.quantityProductsInStock) {
+                existing.quantityProductsInStock = item.quantityProductsInStock;
+                upsert.changes.add(new StoreChangeEvent(StoreChangeType.UPDATE, existing));
+                upsert.decisions.add(new Decision(index, item.name, existing, Outcome.UPDATED, null));
+            } else {
+                upsert.decisions.add(new Decision(index, item.name, existing, Outcome.UNCHANGED, null));
+            }
+        }
+        return upsert;
+    }
+
+    private static String validate(Store item) {
+        if (item == null || item.name == null || item.name.isBlank()) {
+            return "Store Name was not set on request.";
+        }
+        if (item.id != null) {
+            return "Id was invalidly set on request.";
+        }
+        if (item.name.length() > MAX_NAME_LENGTH) {
+            return "Store Name must be at most " + MAX_NAME_LENGTH + " characters.";
+        }
+        if (item.quantityProductsInStock < 0) {
+            return "Quantity of products in stock must not be negative.";
+        }
+        return null;
+    }
+
+    /** New stores, to be persisted together. */
+    public List<Store> toPersist() {
+        return toPersist;
+    }
+
+    /** One change per created or updated store, in request order. */
+    public List<StoreChangeEvent> changes() {
+        return changes;
+    }
+
+    /** Per-item outcomes; call after persisting so created stores carry their ids. */
+    public StoreBatchResult result() {
+        List<StoreBatchResult.Item> items = new ArrayList<>(decisions.size());
+        for (Decision decision : decisions) {
+            items.add(new StoreBatchResult.Item(decision.index, decision.name,
+                    decision.store == null ? null : decision.store.id, decision.outcome, decision.error));
+        }
+        return new StoreBatchResult(items);
+    }
+
+    private static final class Decision {
+        final int index;
+        final String name;
+        final Store store;
+        final Outcome outcome;
+        final String error;
+
+        Decision(int index, String name, Store store, Outcome outcome, String error) {
+            this.index = index;
+            this.name = name;
+            this.store = store;
+            this.outcome = outcome;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts one {@link StoreSinkChannel} per enabled {@link StoreChangeSink} bean. The legacy store
+ * manager is not one of them: it keeps its leased relay with coalescing, call guard and dead letters
+ * ({@link StoreOutboxRelay}). All other downstream systems read the same outbox through their own
+ * channel, so none of them waits for another or for the legacy system.
+ */
+@ApplicationScoped
+public class StoreChangeFanout implements MeterBinder {
+
+    private static final Logger LOGGER = Logger.getLogger(StoreChangeFanout.class.getName());
+
+    private final List<StoreSinkChannel> channels = new ArrayList<>();
+
+    @Inject
+    public StoreChangeFanout(
+            @Any Instance<StoreChangeSink> sinks,
+            StoreOutboxRepository storeOutboxRepository,
+            StoreSinkCursorRepository storeSinkCursorRepository,
+            @ConfigProperty(name = "store.sinks.batch-size", defaultValue = "200") int batchSize,
+            @ConfigProperty(name = "store.sinks.max-attempts", defaultValue = "8") int maxAttempts,
+            @ConfigProperty(name = "store.sinks.retry-base-ms", defaultValue = "200") long retryBaseMs,
+            @ConfigProperty(name = "store.sinks.retry-max-ms", defaultValue = "30000") long retryMaxMs,
+            @ConfigProperty(name = "store.sinks.settle-ms", defaultValue = "2000") long settleMs,
+            @ConfigProperty(name = "store.sinks.late-window-ms", defaultValue = "600000") long lateWindowMs,
+            @ConfigProperty(name = "store.sinks.poll-interval-ms", defaultValue = "1000") long pollIntervalMs) {
+        for (StoreChangeSink sink : sinks) {
+            if (sink.enabled()) {
+                channels.add(new StoreSinkChannel(sink, storeOutboxRepository, storeSinkCursorRepository,
+                        batchSize, maxAttempts, retryBaseMs, retryMaxMs, settleMs, lateWindowMs, pollIntervalMs));
+            }
+        }
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        for (StoreSinkChannel channel : channels) {
+            channel.start();
+        }
+        if (!channels.isEmpty()) {
+            LOGGER.infof("Store change sinks started: %s", channels.stream().map(StoreSinkChannel::sinkName).toList());
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        for (StoreSinkChannel channel : channels) {
+            channel.stop();
+        }
+    }
+
+    /** Wakes every channel after a store commit. */
+    public void wakeUp() {
+        for (StoreSinkChannel channel : channels) {
+            channel.wakeUp();
+        }
+    }
+
+    public List<StoreSinkChannel> channels() {
+        return List.copyOf(channels);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (StoreSinkChannel channel : channels) {
+            String sink = channel.sinkName();
+            FunctionCounter.builder("store.sink.delivered", channel, StoreSinkChannel::delivered)
+                    .description("Store changes applied by the sink").tag("sink", sink).register(registry);
+            FunctionCounter.builder("store.sink.failures", channel, StoreSinkChannel::failures)
+                    .description("Failed delivery attempts").tag("sink", sink).register(registry);
+            FunctionCounter.builder("store.sink.skipped", channel, StoreSinkChannel::skipped)
+                    .description("Store changes given up on after all retries").tag("sink", sink).register(registry);
+            FunctionCounter.builder("store.sink.late", channel, StoreSinkChannel::late)
+                    .description("Store changes delivered after the cursor had moved past them").tag("sink", sink)
+                    .register(registry);
+            Gauge.builder("store.sink.position", channel, StoreSinkChannel::position)
+                    .description("Id of the last store outbox row the sink applied").tag("sink", sink).register(registry);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.util.List;
+
+/**
+ * A downstream system that follows committed store changes. Every bean implementing this interface
+ * gets its own {@link StoreSinkChannel}: its own position in the store outbox, its own batches and its
+ * own retries, so a slow or failing sink only falls behind itself.
+ * <p>
+ * Batches arrive in commit order. A batch may be delivered again after a crash or a failed cursor
+ * update, so {@link #deliver(List)} must be idempotent; applying the snapshots as "last write wins"
+ * is enough.
+ */
+public interface StoreChangeSink {
+
+    /** Stable name; the sink's outbox position is stored under it. */
+    String name();
+
+    /** Disabled sinks get no channel and hold no outbox rows back. */
+    default boolean enabled() {
+        return true;
+    }
+
+    /** Applies one batch; throwing fails the whole batch, which is then retried. */
+    void deliver(List<StoreChangeSnapshot> batch) throws Exception;
+}
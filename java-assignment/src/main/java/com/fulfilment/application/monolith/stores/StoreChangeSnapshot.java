@@ -0,0 +1,40 @@
+
+package com.fulfilment.application.monolith.stores;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Immutable copy of a store change, taken when the change is committed. Safe to hand to other
+ * threads after the request has finished and the {@link Store} entity is detached or reused.
+ */
+public final class StoreChangeSnapshot {
+
+    public final StoreChangeType type;
+    public final Long storeId;
+    public final String name;
+    public final int quantityProductsInStock;
+    public final Instant committedAt;
+
+    public StoreChangeSnapshot(StoreChangeType type, Long storeId, String name, int quantityProductsInStock,
+                               Instant committedAt) {
+        this.type = Objects.requireNonNull(type, "type must not be null");
+        this.storeId = storeId;
+        this.name = name;
+        this.quantityProductsInStock = quantityProductsInStock;
+        this.committedAt = Objects.requireNonNull(committedAt, "committedAt must not be null");
+    }
+
+    public static StoreChangeSnapshot of(StoreChangeType type, Store store) {
+        return new StoreChangeSnapshot(type, store.id, store.name, store.quantityProductsInStock, Instant.now());
+    }
+
+    public static StoreChangeSnapshot of(StoreChangeEvent event) {
+        return of(event.getType(), event.getStore());
+    }
+
+    @Override
+    public String toString() {
+        return type + "[id=" + storeId + ", name=" + name + ", items=" + quantityProductsInStock + "]";
+    }
+}
@@ -0,0 +1,71 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/** A store change the legacy system kept rejecting; parked here until an operator replays or purges it. */
+@Entity
+@Table(name = "store_dead_letter", indexes = @Index(name = "ix_store_dead_letter_store", columnList = "storeId"))
+public class StoreDeadLetter extends PanacheEntity {
+
+    public Long outboxId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    public StoreChangeType changeType;
+
+    public Long storeId;
+
+    @Column(length = 40)
+    public String name;
+
+    public int quantityProductsInStock;
+
+    // when the change was committed
+    public Instant createdAt;
+
+    public Instant failedAt;
+
+    public int attempts;
+
+    @Column(length = 1000)
+    public String lastError;
+
+    public static StoreDeadLetter of(StoreOutboxEntry entry, int attempts, String error) {
+        StoreDeadLetter letter = new StoreDeadLetter();
+        letter.outboxId = entry.id;
+        letter.changeType = entry.changeType;
+        letter.storeId = entry.storeId;
+        letter.name = entry.name;
+        letter.quantityProductsInStock = entry.quantityProductsInStock;
+        letter.createdAt = entry.createdAt;
+        letter.failedAt = Instant.now();
+        letter.attempts = attempts;
+        letter.lastError = error == null || error.length() <= 1000 ? error : error.substring(0, 1000);
+        return letter;
+    }
+
+    /**
+     * The change to send when this letter is replayed, built from the store's current row so a replay
+     * never rolls the legacy system back to an older state. Returns null when there is nothing left to
+     * send: the store was created and has been deleted again since.
+     */
+    public StoreChangeSnapshot replayChange(Store current) {
+        Instant now = Instant.now();
+        if (current != null) {
+            StoreChangeType type = changeType == StoreChangeType.CREATE ? StoreChangeType.CREATE : StoreChangeType.UPDATE;
+            return new StoreChangeSnapshot(type, current.id, current.name, current.quantityProductsInStock, now);
+        }
+        if (changeType == StoreChangeType.CREATE) {
+            return null;
+        }
+        return new StoreChangeSnapshot(StoreChangeType.DELETE, storeId, name, quantityProductsInStock, now);
+    }
+}
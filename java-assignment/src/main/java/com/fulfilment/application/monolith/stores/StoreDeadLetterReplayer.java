@@ -0,0 +1,119 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays the dead-letter table in the background, one batch at a time. A batch is only moved into
+ * the outbox once the outbox has drained to less than one batch, so live store changes never queue
+ * behind more than one batch of replays, however large the backlog.
+ */
+@ApplicationScoped
+public class StoreDeadLetterReplayer {
+
+    private static final Logger LOGGER = Logger.getLogger(StoreDeadLetterReplayer.class.getName());
+
+    private final StoreDeadLetterRepository storeDeadLetterRepository;
+    private final StoreOutboxRepository storeOutboxRepository;
+    private final StoreOutboxRelay storeOutboxRelay;
+    private final int batchSize;
+    private final long pauseMs;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong replayed = new AtomicLong();
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String lastError;
+
+    @Inject
+    public StoreDeadLetterReplayer(
+            StoreDeadLetterRepository storeDeadLetterRepository,
+            StoreOutboxRepository storeOutboxRepository,
+            StoreOutboxRelay storeOutboxRelay,
+            @ConfigProperty(name = "legacy.dead-letter.replay-batch-size", defaultValue = "500") int batchSize,
+            @ConfigProperty(name = "legacy.dead-letter.replay-pause-ms", defaultValue = "250") long pauseMs) {
+        this.storeDeadLetterRepository = storeDeadLetterRepository;
+        this.storeOutboxRepository = storeOutboxRepository;
+        this.storeOutboxRelay = storeOutboxRelay;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    /** Starts a replay of the whole table; returns false when one is already running. */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        replayed.set(0);
+        startedAt = Instant.now();
+        finishedAt = null;
+        lastError = null;
+        Thread thread = new Thread(this::replayLoop, "store-dead-letter-replay");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /** Asks a running replay to stop after its current batch. */
+    public void stop() {
+        running.set(false);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        stop();
+    }
+
+    public ReplayStatus status() {
+        return new ReplayStatus(running.get(), replayed.get(), startedAt, finishedAt, lastError);
+    }
+
+    void replayLoop() {
+        try {
+            while (running.get()) {
+                while (running.get() && storeOutboxRepository.countPending() >= batchSize) {
+                    Thread.sleep(pauseMs);
+                }
+                int count = storeDeadLetterRepository.replayBatch(batchSize);
+                if (count == 0) {
+                    break;
+                }
+                replayed.addAndGet(count);
+                storeOutboxRelay.wakeUp();
+                Thread.sleep(pauseMs);
+            }
+            LOGGER.infof("Dead-letter replay finished after %d store changes", replayed.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            LOGGER.errorf(e, "Dead-letter replay stopped after %d store changes", replayed.get());
+        } finally {
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    public static final class ReplayStatus {
+        public final boolean running;
+        public final long replayed;
+        public final Instant startedAt;
+        public final Instant finishedAt;
+        public final String lastError;
+
+        ReplayStatus(boolean running, long replayed, Instant startedAt, Instant finishedAt, String lastError) {
+            this.running = running;
+            this.replayed = replayed;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+            this.lastError = lastError;
+        }
+    }
+}
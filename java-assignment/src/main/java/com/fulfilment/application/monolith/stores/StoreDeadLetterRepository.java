@@ -0,0 +1,106 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Page;
+import io.quarkus.panache.common.Parameters;
+import io.quarkus.panache.common.Sort;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@ApplicationScoped
+public class StoreDeadLetterRepository implements PanacheRepository<StoreDeadLetter> {
+
+    private static final String CLAIM_SQL =
+            "SELECT * FROM store_dead_letter ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED";
+
+    @Inject
+    StoreOutboxRepository storeOutboxRepository;
+
+    /** Moves outbox rows whose delivery failed for good into the dead-letter table; returns the number moved. */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public int moveFromOutbox(Map<Long, String> failures, int attempts) {
+        if (failures.isEmpty()) {
+            return 0;
+        }
+        Instant now = Instant.now();
+        List<StoreOutboxEntry> entries =
+                storeOutboxRepository.list("id in ?1 and processedAt is null", List.copyOf(failures.keySet()));
+        for (StoreOutboxEntry entry : entries) {
+            persist(StoreDeadLetter.of(entry, attempts, failures.get(entry.id)));
+            entry.processedAt = now;
+            entry.leaseUntil = null;
+        }
+        return entries.size();
+    }
+
+    public List<StoreDeadLetter> page(long afterId, Long storeId, int limit) {
+        Parameters parameters = Parameters.with("afterId", afterId);
+        String query = "id > :afterId";
+        if (storeId != null) {
+            query += " and storeId = :storeId";
+            parameters.and("storeId", storeId);
+        }
+        return find(query, Sort.by("id"), parameters).page(Page.ofSize(limit)).list();
+    }
+
+    /**
+     * Re-queues the oldest {@code limit} dead letters through the outbox, each built from the store's
+     * current state, and removes them. Letters taken by a concurrent replay are skipped.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    @SuppressWarnings("unchecked")
+    public int replayBatch(int limit) {
+        List<StoreDeadLetter> letters = getEntityManager()
+                .createNativeQuery(CLAIM_SQL, StoreDeadLetter.class)
+                .setParameter("limit", limit)
+                .getResultList();
+        replay(letters);
+        return letters.size();
+    }
+
+    @Transactional
+    public boolean replayOne(long id) {
+        StoreDeadLetter letter = findById(id);
+        if (letter == null) {
+            return false;
+        }
+        replay(List.of(letter));
+        return true;
+    }
+
+    /** Deletes the letters that failed before {@code failedBefore}, or all of them when it is null. */
+    @Transactional
+    public long purge(Instant failedBefore) {
+        return failedBefore == null ? deleteAll() : delete("failedAt < ?1", failedBefore);
+    }
+
+    @Transactional
+    public boolean purgeOne(long id) {
+        return deleteById(id);
+    }
+
+    private void replay(List<StoreDeadLetter> letters) {
+        if (letters.isEmpty()) {
+            return;
+        }
+        List<Long> storeIds = new ArrayList<>();
+        letters.forEach(letter -> storeIds.add(letter.storeId));
+        Map<Long, Store> current = Store.<Store>list("id in ?1", storeIds).stream()
+                .collect(Collectors.toMap(store -> store.id, Function.identity()));
+        for (StoreDeadLetter letter : letters) {
+            StoreChangeSnapshot change = letter.replayChange(current.get(letter.storeId));
+            if (change != null) {
+                storeOutboxRepository.record(change);
+            }
+            delete(letter);
+        }
+    }
+}
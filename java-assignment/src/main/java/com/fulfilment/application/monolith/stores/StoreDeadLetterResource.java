@@ -0,0 +1,113 @@
+package com.fulfilment.application.monolith.stores;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+/** Operator API over store changes the legacy system kept rejecting. */
+@Path("store-sync/dead-letters")
+@ApplicationScoped
+@Produces(MediaType.APPLICATION_JSON)
+public class StoreDeadLetterResource {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    @Inject
+    StoreDeadLetterRepository storeDeadLetterRepository;
+
+    @Inject
+    StoreDeadLetterReplayer storeDeadLetterReplayer;
+
+    @GET
+    public List<StoreDeadLetter> list(@QueryParam("afterId") @DefaultValue("0") long afterId,
+                                      @QueryParam("storeId") Long storeId,
+                                      @QueryParam("limit") @DefaultValue("100") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new WebApplicationException("limit must be between 1 and " + MAX_PAGE_SIZE + ".", 400);
+        }
+        return storeDeadLetterRepository.page(afterId, storeId, limit);
+    }
+
+    @GET
+    @Path("count")
+    public Map<String, Long> count() {
+        return Map.of("count", storeDeadLetterRepository.count());
+    }
+
+    @GET
+    @Path("{id}")
+    public StoreDeadLetter getSingle(@PathParam("id") long id) {
+        StoreDeadLetter letter = storeDeadLetterRepository.findById(id);
+        if (letter == null) {
+            throw new WebApplicationException("Dead letter with id of " + id + " does not exist.", 404);
+        }
+        return letter;
+    }
+
+    /** Starts replaying the whole table in the background; poll GET replay for progress. */
+    @POST
+    @Path("replay")
+    public Response replayAll() {
+        if (!storeDeadLetterReplayer.start()) {
+            throw new WebApplicationException("A dead-letter replay is already running.", 409);
+        }
+        return Response.status(202).entity(storeDeadLetterReplayer.status()).build();
+    }
+
+    @GET
+    @Path("replay")
+    public StoreDeadLetterReplayer.ReplayStatus replayStatus() {
+        return storeDeadLetterReplayer.status();
+    }
+
+    @DELETE
+    @Path("replay")
+    public StoreDeadLetterReplayer.ReplayStatus stopReplay() {
+        storeDeadLetterReplayer.stop();
+        return storeDeadLetterReplayer.status();
+    }
+
+    @POST
+    @Path("{id}/replay")
+    public Response replayOne(@PathParam("id") long id) {
+        if (!storeDeadLetterRepository.replayOne(id)) {
+            throw new WebApplicationException("Dead letter with id of " + id + " does not exist.", 404);
+        }
+        return Response.status(204).build();
+    }
+
+    /**
+     * Purges the dead letters that failed before {@code failedBefore} (ISO-8601 instant), or every one
+     * with {@code all=true}; exactly one of the two is required.
+     */
+    @DELETE
+    public Map<String, Long> purge(@QueryParam("failedBefore") String failedBefore, @QueryParam("all") boolean all) {
+        if ((failedBefore == null) != all) {
+            throw new WebApplicationException("Give either failedBefore or all=true.", 400);
+        }
+        if (all) {
+            return Map.of("purged", storeDeadLetterRepository.purge(null));
+        }
+        try {
+            return Map.of("purged", storeDeadLetterRepository.purge(Instant.parse(failedBefore)));
+        } catch (DateTimeParseException e) {
+            throw new WebApplicationException("failedBefore must be an ISO-8601 instant.", 400);
+        }
+    }
+
+    @DELETE
+    @Path("{id}")
+    public Response purgeOne(@PathParam("id") long id) {
+        if (!storeDeadLetterRepository.purgeOne(id)) {
+            throw new WebApplicationException("Dead letter with id of " + id + " does not exist.", 404);
+        }
+        return Response.status(204).build();
+    }
+}
@@ -0,0 +1,47 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The reconciliation view of one store: its id, name and stock, and a 64-bit hash of the three.
+ * The hash is the first 8 bytes of MD5("id:name:quantity") with a null name as "", which is exactly
+ * what {@link #SQL_HASH} computes inside Postgres. Range digests are the XOR of these hashes, so the
+ * database and the legacy side can both aggregate them in any order.
+ */
+public final class StoreDigest {
+
+    /**
+     * Postgres expression equal to {@link #hash(Long, String, int)} for a row of the store table;
+     * {@code store_digest_hash} is created by import.sql.
+     */
+    public static final String SQL_HASH = "store_digest_hash(id, name, quantityProductsInStock)";
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    public final long id;
+    public final String name;
+    public final int quantityProductsInStock;
+    public final long hash;
+
+    public StoreDigest(long id, String name, int quantityProductsInStock) {
+        this.id = id;
+        this.name = name;
+        this.quantityProductsInStock = quantityProductsInStock;
+        this.hash = hash(id, name, quantityProductsInStock);
+    }
+
+    public static long hash(Long id, String name, int quantityProductsInStock) {
+        String key = id + ":" + (name == null ? "" : name) + ":" + quantityProductsInStock;
+        byte[] md5 = MD5.get().digest(key.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(md5, 0, Long.BYTES).getLong();
+    }
+}
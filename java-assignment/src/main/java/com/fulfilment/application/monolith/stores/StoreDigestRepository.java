@@ -0,0 +1,93 @@
+package com.fulfilment.application.monolith.stores;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Store digests computed inside Postgres. A trigger on the store table (import.sql) appends the XOR
+ * delta of every insert, update and delete to {@code store_digest_delta}, in the writing transaction,
+ * and {@link #foldPending} folds those deltas into one digest per leaf of {@link #LEAF_WIDTH} ids in
+ * {@code store_leaf_digest}. A node of the reconciliation tree is then one GROUP BY over its leaves
+ * and the deltas not yet folded, rather than over its stores. Ranges that do not line up with the
+ * leaves fall back to a GROUP BY over the store rows. The XOR runs in {@code digest_xor}, an aggregate
+ * over {@code int8xor} created by import.sql, because Postgres 13 has no {@code bit_xor}.
+ */
+@ApplicationScoped
+public class StoreDigestRepository implements StoreDigestSource {
+
+    /** Ids per leaf digest; the width {@code store_digest_track()} in import.sql groups by. */
+    public static final long LEAF_WIDTH = 256;
+
+    private static final String LEAF_CHILD_DIGESTS_SQL =
+            "SELECT (leaf * " + LEAF_WIDTH + " - :fromId) / :width AS child, digest_xor(digest) FROM ("
+                    + "SELECT leaf, digest FROM store_leaf_digest WHERE leaf >= :fromLeaf AND leaf < :toLeaf "
+                    + "UNION ALL "
+                    + "SELECT leaf, delta FROM store_digest_delta WHERE leaf >= :fromLeaf AND leaf < :toLeaf) d "
+                    + "GROUP BY 1 HAVING digest_xor(digest) <> 0";
+
+    private static final String CHILD_DIGESTS_SQL =
+            "SELECT (id - :fromId) / :width AS child, digest_xor(" + StoreDigest.SQL_HASH + ") "
+                    + "FROM store WHERE id >= :fromId AND id < :toId GROUP BY 1";
+
+    // deltas committed after this statement's snapshot stay for the next fold
+    private static final String FOLD_SQL =
+            "WITH folded AS (DELETE FROM store_digest_delta RETURNING leaf, delta) "
+                    + "INSERT INTO store_leaf_digest AS d (leaf, digest) "
+                    + "SELECT leaf, digest_xor(delta) FROM folded GROUP BY leaf ORDER BY leaf "
+                    + "ON CONFLICT (leaf) DO UPDATE SET digest = d.digest # EXCLUDED.digest";
+
+    @Inject
+    EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public long maxId() {
+        Number max = (Number) entityManager.createQuery("select max(s.id) from Store s").getSingleResult();
+        return max == null ? 0 : max.longValue();
+    }
+
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public Map<Long, Long> childDigests(long fromId, long toId, long childWidth) {
+        boolean aligned = fromId % LEAF_WIDTH == 0 && toId % LEAF_WIDTH == 0 && childWidth % LEAF_WIDTH == 0;
+        List<Object[]> rows = aligned
+                ? entityManager.createNativeQuery(LEAF_CHILD_DIGESTS_SQL)
+                        .setParameter("fromId", fromId)
+                        .setParameter("width", childWidth)
+                        .setParameter("fromLeaf", fromId / LEAF_WIDTH)
+                        .setParameter("toLeaf", toId / LEAF_WIDTH)
+                        .getResultList()
+                : entityManager.createNativeQuery(CHILD_DIGESTS_SQL)
+                        .setParameter("fromId", fromId)
+                        .setParameter("toId", toId)
+                        .setParameter("width", childWidth)
+                        .getResultList();
+        Map<Long, Long> digests = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            digests.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        }
+        return digests;
+    }
+
+    @Override
+    @Transactional
+    public List<StoreDigest> stores(long fromId, long toId) {
+        return Store.<Store>list("id >= ?1 and id < ?2", fromId, toId).stream()
+                .map(store -> new StoreDigest(store.id, store.name, store.quantityProductsInStock))
+                .toList();
+    }
+
+    /** Folds the pending deltas into the leaf digests, so reads touch about one row per leaf. */
+    @Override
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void foldPending() {
+        entityManager.createNativeQuery(FOLD_SQL).executeUpdate();
+    }
+}
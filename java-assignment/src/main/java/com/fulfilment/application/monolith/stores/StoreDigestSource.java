@@ -0,0 +1,24 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.util.List;
+import java.util.Map;
+
+/** One side of a store reconciliation: digests over id ranges, and the stores themselves for small ranges. */
+public interface StoreDigestSource {
+
+    /** Highest store id on this side, or 0 when there are none. */
+    long maxId();
+
+    /**
+     * XOR of the store hashes in {@code [fromId, toId)}, grouped into children of {@code childWidth} ids:
+     * the key is {@code (id - fromId) / childWidth}. Children without stores are left out.
+     */
+    Map<Long, Long> childDigests(long fromId, long toId, long childWidth);
+
+    /** Every store with an id in {@code [fromId, toId)}. */
+    List<StoreDigest> stores(long fromId, long toId);
+
+    /** Brings precomputed digests up to date; called before a run and between runs. Nothing to do by default. */
+    default void foldPending() {
+    }
+}
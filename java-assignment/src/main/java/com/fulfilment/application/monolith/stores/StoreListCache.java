@@ -0,0 +1,33 @@
+package com.fulfilment.application.monolith.stores;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fulfilment.application.monolith.cache.ListResponseCache;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Serialized {@code GET /store} pages. Every committed store change, single or batch, clears it;
+ * stock adjustments and write-behind flushes arrive here as PATCH changes like any other write.
+ */
+@Singleton
+public class StoreListCache extends ListResponseCache {
+
+    @Inject
+    public StoreListCache(ObjectMapper objectMapper,
+                          @ConfigProperty(name = "store.list-cache.max-bytes", defaultValue = "8388608") long maxBytes) {
+        super("store", objectMapper, maxBytes);
+    }
+
+    void onStoreChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) StoreChangeEvent event) {
+        invalidate();
+    }
+
+    void onStoreBatchChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) StoreBatchChangeEvent event) {
+        if (!event.changes.isEmpty()) {
+            invalidate();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * One committed store change waiting to be relayed to the legacy system. Rows are inserted in the
+ * same transaction as the change itself and marked processed once the legacy gateway accepted them.
+ */
+@Entity
+@Table(name = "store_outbox", indexes = {
+        @Index(name = "ix_store_outbox_pending", columnList = "processedAt, id"),
+        @Index(name = "ix_store_outbox_store", columnList = "storeId, processedAt")
+})
+public class StoreOutboxEntry extends PanacheEntity {
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    public StoreChangeType changeType;
+
+    public Long storeId;
+
+    @Column(length = 40)
+    public String name;
+
+    public int quantityProductsInStock;
+
+    @Column(nullable = false)
+    public Instant createdAt;
+
+    // claimed by a relay until this instant; expired leases are picked up again
+    public Instant leaseUntil;
+
+    @Column(length = 64)
+    public String leaseOwner;
+
+    public int attempts;
+
+    public Instant processedAt;
+
+    public static StoreOutboxEntry of(StoreChangeSnapshot change) {
+        StoreOutboxEntry entry = new StoreOutboxEntry();
+        entry.changeType = change.type;
+        entry.storeId = change.storeId;
+        entry.name = change.name;
+        entry.quantityProductsInStock = change.quantityProductsInStock;
+        entry.createdAt = change.committedAt;
+        return entry;
+    }
+
+    public StoreChangeSnapshot toSnapshot() {
+        return new StoreChangeSnapshot(changeType, storeId, name, quantityProductsInStock, createdAt);
+    }
+}
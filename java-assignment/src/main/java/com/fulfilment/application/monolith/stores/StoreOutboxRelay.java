@@ -0,0 +1,287 @@
+
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves committed changes from the store_outbox table to the legacy system. A single relay thread
+ * claims pending rows in batches (one claim transaction at a time, then a lease, so several nodes
+ * can share the table), queues them on {@link LegacyStoreSyncDispatcher} and marks them processed once
+ * delivered. Rows the dispatcher gives up on after its retries are moved to the dead-letter table;
+ * rows that are never acknowledged become claimable again when their lease runs out, which gives
+ * at-least-once delivery. The relay polls on its own schedule and is woken early
+ * after each store commit and each delivery.
+ */
+@ApplicationScoped
+public class StoreOutboxRelay implements MeterBinder {
+
+    private static final Logger LOGGER = Logger.getLogger(StoreOutboxRelay.class.getName());
+
+    private final StoreOutboxRepository storeOutboxRepository;
+    private final StoreDeadLetterRepository storeDeadLetterRepository;
+    private final LegacyStoreSyncDispatcher legacyStoreSyncDispatcher;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final long pollIntervalMs;
+    private final long leaseMs;
+    private final long retentionHours;
+    private final String nodeId;
+
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final Queue<Long> delivered = new ConcurrentLinkedQueue<>();
+    private final Map<Long, String> undeliverable = new ConcurrentHashMap<>();
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicLong acknowledged = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private Instant nextPurge = Instant.MIN;
+    private volatile boolean running;
+    private Thread thread;
+
+    @Inject
+    public StoreOutboxRelay(
+            StoreOutboxRepository storeOutboxRepository,
+            StoreDeadLetterRepository storeDeadLetterRepository,
+            LegacyStoreSyncDispatcher legacyStoreSyncDispatcher,
+            @ConfigProperty(name = "legacy.outbox.batch-size", defaultValue = "200") int batchSize,
+            @ConfigProperty(name = "legacy.outbox.max-in-flight", defaultValue = "2000") int maxInFlight,
+            @ConfigProperty(name = "legacy.outbox.poll-interval-ms", defaultValue = "1000") long pollIntervalMs,
+            @ConfigProperty(name = "legacy.outbox.lease-ms", defaultValue = "60000") long leaseMs,
+            @ConfigProperty(name = "legacy.outbox.retention-hours", defaultValue = "24") long retentionHours,
+            @ConfigProperty(name = "legacy.outbox.node-id") Optional<String> nodeId) {
+        this.storeOutboxRepository = storeOutboxRepository;
+        this.storeDeadLetterRepository = storeDeadLetterRepository;
+        this.legacyStoreSyncDispatcher = legacyStoreSyncDispatcher;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.pollIntervalMs = pollIntervalMs;
+        this.leaseMs = leaseMs;
+        this.retentionHours = retentionHours;
+        this.nodeId = nodeId.orElseGet(() -> UUID.randomUUID().toString());
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        start();
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        stop();
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::relayLoop, "store-outbox-relay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        wakeUp.release();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Asks the relay to look at the outbox now instead of at the next poll. */
+    public void wakeUp() {
+        if (wakeUp.availablePermits() == 0) {
+            wakeUp.release();
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("store.outbox.in_flight", inFlight, Set::size)
+                .description("Outbox rows handed to the legacy sync and not yet acknowledged").register(registry);
+        FunctionCounter.builder("store.outbox.acknowledged", acknowledged, AtomicLong::get)
+                .description("Outbox rows marked processed").register(registry);
+        FunctionCounter.builder("store.outbox.dead_lettered", deadLettered, AtomicLong::get)
+                .description("Outbox rows moved to the dead-letter table").register(registry);
+    }
+
+    private void relayLoop() {
+        while (running) {
+            try {
+                int claimed;
+                do {
+                    acknowledgeDelivered();
+                    deadLetterUndeliverable();
+                    claimed = relayBatch();
+                } while (running && claimed > 0);
+                purgeIfDue();
+                wakeUp.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                wakeUp.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // database unavailable and the like: back off for one poll interval and try again
+                LOGGER.errorf(e, "Store outbox relay cycle failed");
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        acknowledgeDelivered();
+        deadLetterUndeliverable();
+    }
+
+    /**
+     * Claims one batch and queues it on the dispatcher; returns the number of rows handed over.
+     * Stops at the first rejected row and releases it and the rest of the batch, so later changes
+     * of the same store are not sent ahead of it.
+     */
+    public int relayBatch() {
+        int limit = Math.min(batchSize, maxInFlight - inFlight.size());
+        if (limit <= 0) {
+            return 0;
+        }
+        List<StoreOutboxEntry> rows = storeOutboxRepository.claimBatch(
+                limit, Duration.ofMillis(leaseMs), nodeId, handedOver());
+        int submitted = 0;
+        for (StoreOutboxEntry row : rows) {
+            Long id = row.id;
+            // tracked before submitting: the delivery may complete before submit returns
+            inFlight.add(id);
+            try {
+                legacyStoreSyncDispatcher.submit(row.toSnapshot()).whenComplete((ignored, failure) -> {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    if (cause == null) {
+                        delivered.add(id);
+                    } else if (!(cause instanceof RejectedExecutionException)) {
+                        // retries exhausted; a rejection (shutdown) is left for the lease to expire instead
+                        undeliverable.put(id, String.valueOf(cause.getMessage()));
+                    }
+                    inFlight.remove(id);
+                    wakeUp();
+                });
+            } catch (RejectedExecutionException e) {
+                // happens on every cycle while the dispatcher is saturated
+                inFlight.remove(id);
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debugf("store.outbox rejected outboxId=%d waiting=%d", (long) id, rows.size() - submitted);
+                }
+                release(rows.subList(submitted, rows.size()));
+                break;
+            }
+            submitted++;
+        }
+        return submitted;
+    }
+
+    // Rows this relay's dispatcher holds or has finished with but not yet recorded. Read in the order
+    // the completions write them, so a row moving from one to the other is not missed.
+    private Set<Long> handedOver() {
+        Set<Long> ids = new HashSet<>(inFlight);
+        ids.addAll(delivered);
+        ids.addAll(undeliverable.keySet());
+        return ids;
+    }
+
+    private void release(List<StoreOutboxEntry> rows) {
+        List<Long> ids = rows.stream().map(row -> row.id).toList();
+        try {
+            storeOutboxRepository.releaseLeases(ids);
+        } catch (RuntimeException e) {
+            // still leased to this relay and not handed over, so the store's later changes wait for the lease
+            LOGGER.errorf(e, "Failed to release %d store outbox rows", ids.size());
+        }
+    }
+
+    /** Marks everything delivered since the last call as processed, in one statement. */
+    public int acknowledgeDelivered() {
+        List<Long> ids = new ArrayList<>();
+        for (Long id = delivered.poll(); id != null; id = delivered.poll()) {
+            ids.add(id);
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        try {
+            int marked = storeOutboxRepository.markProcessed(ids);
+            acknowledged.addAndGet(marked);
+            return marked;
+        } catch (RuntimeException e) {
+            // the rows are re-delivered once their lease expires; the legacy writes are idempotent snapshots
+            LOGGER.errorf(e, "Failed to mark %d store outbox rows as processed", ids.size());
+            return 0;
+        }
+    }
+
+    /** Moves rows whose delivery failed after all retries to the dead-letter table. */
+    public int deadLetterUndeliverable() {
+        if (undeliverable.isEmpty()) {
+            return 0;
+        }
+        Map<Long, String> failures = new HashMap<>();
+        for (Long id : List.copyOf(undeliverable.keySet())) {
+            failures.put(id, undeliverable.remove(id));
+        }
+        try {
+            int moved = storeDeadLetterRepository.moveFromOutbox(failures, legacyStoreSyncDispatcher.maxAttempts());
+            deadLettered.addAndGet(moved);
+            LOGGER.warnf("store.outbox dead-lettered count=%d", moved);
+            return moved;
+        } catch (RuntimeException e) {
+            // left in the outbox: redelivered once the lease expires
+            LOGGER.errorf(e, "Failed to dead-letter %d store outbox rows", failures.size());
+            return 0;
+        }
+    }
+
+    private void purgeIfDue() {
+        Instant now = Instant.now();
+        if (now.isBefore(nextPurge)) {
+            return;
+        }
+        nextPurge = now.plus(Duration.ofHours(1));
+        long purged = storeOutboxRepository.purgeProcessedBefore(now.minus(Duration.ofHours(retentionHours)));
+        if (purged > 0) {
+            LOGGER.infof("Purged %d processed store outbox rows", purged);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Sort;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.transaction.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@ApplicationScoped
+public class StoreOutboxRepository implements PanacheRepository<StoreOutboxEntry> {
+
+    // Rows locked by another relay are skipped, and so are later changes of a store whose earlier
+    // change is still leased, so each store's changes leave the outbox in commit order. A relay may
+    // claim later changes of a store whose earlier ones it has handed to its dispatcher (which keeps
+    // them in order), but not while one of its own leased rows is waiting to be handed over.
+    private static final String CLAIM_SQL =
+            "SELECT o.* FROM store_outbox o "
+                    + "WHERE o.processedAt IS NULL AND (o.leaseUntil IS NULL OR o.leaseUntil < :now) "
+                    + "AND NOT EXISTS (SELECT 1 FROM store_outbox e WHERE e.storeId = o.storeId "
+                    + "  AND e.processedAt IS NULL AND e.id < o.id AND e.leaseUntil >= :now "
+                    + "  AND (e.leaseOwner <> :owner OR e.id NOT IN (:handedOver))) "
+                    + "ORDER BY o.id LIMIT :limit FOR UPDATE OF o SKIP LOCKED";
+
+    // Claims run one at a time across nodes. Without this a claim could skip a store's change that a
+    // concurrent claim has locked but not leased yet, and take the store's next change after it.
+    private static final String CLAIM_LOCK_SQL = "SELECT 1 FROM pg_advisory_xact_lock(hashtext('store_outbox.claim'))";
+
+    // stands in for an empty id list, which would render as NOT IN (); outbox ids start at 1
+    private static final List<Long> NONE = List.of(-1L);
+
+    /** Inserts a change; must run inside the transaction that performs the change. */
+    public void record(StoreChangeSnapshot change) {
+        persist(StoreOutboxEntry.of(change));
+    }
+
+    /** Inserts changes that do not belong to a store request, in a transaction of their own. */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void recordAll(List<StoreChangeSnapshot> changes) {
+        changes.forEach(this::record);
+    }
+
+    /**
+     * Claims up to {@code limit} pending rows for {@code lease} in a short transaction of its own,
+     * after any claim already running on another node has committed. The lease, not the row lock,
+     * keeps other relays away while the rows are being delivered.
+     * {@code handedOver} are the rows of {@code owner} its dispatcher already holds; any other row
+     * {@code owner} still leases holds back the later changes of its store.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    @SuppressWarnings("unchecked")
+    public List<StoreOutboxEntry> claimBatch(int limit, Duration lease, String owner, Collection<Long> handedOver) {
+        getEntityManager().createNativeQuery(CLAIM_LOCK_SQL).getSingleResult();
+        Instant now = Instant.now();
+        List<StoreOutboxEntry> rows = getEntityManager()
+                .createNativeQuery(CLAIM_SQL, StoreOutboxEntry.class)
+                .setParameter("now", now)
+                .setParameter("owner", owner)
+                .setParameter("handedOver", handedOver.isEmpty() ? NONE : handedOver)
+                .setParameter("limit", limit)
+                .getResultList();
+        Instant leaseUntil = now.plus(lease);
+        for (StoreOutboxEntry row : rows) {
+            row.leaseUntil = leaseUntil;
+            row.leaseOwner = owner;
+            row.attempts++;
+        }
+        return rows;
+    }
+
+    /** Gives claimed rows that were never handed over back to the next claim, as if never claimed. */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public int releaseLeases(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return update("leaseUntil = null, leaseOwner = null, attempts = attempts - 1 "
+                + "where id in ?1 and processedAt is null", ids);
+    }
+
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public int markProcessed(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return update("processedAt = ?1, leaseUntil = null where id in ?2", Instant.now(), ids);
+    }
+
+    // read from background threads, which have no request context of their own
+    @Transactional
+    public long countPending() {
+        return count("processedAt is null");
+    }
+
+    /** The next rows after {@code afterId} in id order, processed or not; how store sinks follow the outbox. */
+    @Transactional
+    public List<StoreOutboxEntry> readAfter(long afterId, int limit) {
+        return find("id > ?1", Sort.by("id"), afterId).page(0, limit).list();
+    }
+
+    /** The rows among {@code ids} that exist, in id order; how store sinks pick up rows that committed late. */
+    @Transactional
+    public List<StoreOutboxEntry> readIds(List<Long> ids) {
+        return find("id in ?1", Sort.by("id"), ids).list();
+    }
+
+    /** Ids of the rows created since {@code since}, up to {@code upTo}, in order. */
+    @Transactional
+    public List<Long> idsCreatedSince(Instant since, long upTo) {
+        return getEntityManager()
+                .createQuery("select o.id from StoreOutboxEntry o where o.createdAt >= ?1 and o.id <= ?2 order by o.id",
+                        Long.class)
+                .setParameter(1, since)
+                .setParameter(2, upTo)
+                .getResultList();
+    }
+
+    /**
+     * Deletes processed rows older than {@code cutoff} that every store sink has read. A sink that made
+     * no progress since {@code cutoff} no longer holds rows back.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public long purgeProcessedBefore(Instant cutoff) {
+        return delete("processedAt < ?1 and id <= (select coalesce(min(c.position), ?2) from StoreSinkCursor c "
+                + "where c.updatedAt >= ?1)", cutoff, Long.MAX_VALUE);
+    }
+}
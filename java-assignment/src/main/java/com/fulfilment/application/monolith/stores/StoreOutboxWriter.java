@@ -0,0 +1,27 @@
+package com.fulfilment.application.monolith.stores;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Observes StoreChangeEvent synchronously, inside the transaction of the StoreResource call that
+ * fired it, and records the change in the store_outbox table. The change and its outbox row commit
+ * or roll back together, so a crash after commit can no longer lose the legacy sync.
+ */
+@ApplicationScoped
+public class StoreOutboxWriter {
+
+    @Inject
+    StoreOutboxRepository storeOutboxRepository;
+
+    public void onStoreChange(@Observes StoreChangeEvent event) {
+        storeOutboxRepository.record(StoreChangeSnapshot.of(event));
+    }
+
+    public void onStoreBatchChange(@Observes StoreBatchChangeEvent event) {
+        for (StoreChangeEvent change : event.changes) {
+            storeOutboxRepository.record(StoreChangeSnapshot.of(change));
+        }
+    }
+}
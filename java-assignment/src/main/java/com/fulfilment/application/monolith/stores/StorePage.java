@@ -0,0 +1,29 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.util.List;
+
+/**
+ * One page of stores in name order. There is no total count: {@code hasNext} comes from reading one
+ * row more than the page holds, and {@code next} is the value to pass as {@code after} for the next page.
+ */
+public final class StorePage {
+
+    public final List<Store> items;
+    public final boolean hasNext;
+    public final String next;
+
+    private StorePage(List<Store> items, boolean hasNext, String next) {
+        this.items = items;
+        this.hasNext = hasNext;
+        this.next = next;
+    }
+
+    /** Builds a page from up to {@code limit + 1} rows read in name order. */
+    public static StorePage of(List<Store> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new StorePage(rows, false, null);
+        }
+        List<Store> items = rows.subList(0, limit);
+        return new StorePage(items, true, items.get(limit - 1).name);
+    }
+}
@@ -0,0 +1,29 @@
+package com.fulfilment.application.monolith.stores;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+
+/** Operator API to bring the legacy system back in line with the store table. */
+@Path("store-sync/reconcile")
+@ApplicationScoped
+@Produces(MediaType.APPLICATION_JSON)
+public class StoreReconcileResource {
+
+    @Inject
+    StoreReconciler storeReconciler;
+
+    /** Compares both sides and queues a resync of every divergent store; returns what was found. */
+    @POST
+    public StoreReconciler.ReconcileReport reconcile() {
+        StoreReconciler.ReconcileReport report = storeReconciler.reconcile();
+        if (report == null) {
+            throw new WebApplicationException("A store reconciliation is already running.", 409);
+        }
+        return report;
+    }
+}
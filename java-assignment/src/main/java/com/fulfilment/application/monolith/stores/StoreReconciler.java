@@ -0,0 +1,255 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds the stores on which the database and the legacy system disagree and queues a resync for those
+ * stores only. Both sides are viewed as the same tree of id ranges: leaves of {@code leafWidth} ids,
+ * each inner node split into {@code fanout} children. Starting at the root, only children whose XOR
+ * digests differ are descended into, so a run costs O(drift x fanout x depth) digest rows rather than
+ * a scan of every store. Each level of the tree is compared in parallel across its divergent ranges.
+ * The database keeps its leaf digests up to date as stores are written; the reconciler folds them
+ * every {@code foldIntervalMs} and before each run.
+ * <p>
+ * Changes still on their way through the outbox show up as drift and are resynced once more with the
+ * current database state, which is harmless.
+ */
+@ApplicationScoped
+public class StoreReconciler {
+
+    private static final Logger LOGGER = Logger.getLogger(StoreReconciler.class.getName());
+
+    private static final int RECORD_CHUNK = 500;
+
+    private final StoreDigestSource database;
+    private final StoreDigestSource legacy;
+    private final StoreOutboxRepository storeOutboxRepository;
+    private final StoreOutboxRelay storeOutboxRelay;
+    private final long leafWidth;
+    private final int fanout;
+    private final int parallelism;
+    private final long foldIntervalMs;
+
+    private ScheduledExecutorService folder;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Inject
+    public StoreReconciler(
+            StoreDigestRepository database,
+            LegacyStoreState legacy,
+            StoreOutboxRepository storeOutboxRepository,
+            StoreOutboxRelay storeOutboxRelay,
+            @ConfigProperty(name = "legacy.reconcile.leaf-width", defaultValue = "256") long leafWidth,
+            @ConfigProperty(name = "legacy.reconcile.fanout", defaultValue = "16") int fanout,
+            @ConfigProperty(name = "legacy.reconcile.parallelism", defaultValue = "4") int parallelism,
+            @ConfigProperty(name = "legacy.reconcile.fold-interval-ms", defaultValue = "60000") long foldIntervalMs) {
+        this((StoreDigestSource) database, legacy, storeOutboxRepository, storeOutboxRelay, leafWidth, fanout, parallelism,
+                foldIntervalMs);
+    }
+
+    public StoreReconciler(StoreDigestSource database, StoreDigestSource legacy,
+                           StoreOutboxRepository storeOutboxRepository, StoreOutboxRelay storeOutboxRelay,
+                           long leafWidth, int fanout, int parallelism) {
+        this(database, legacy, storeOutboxRepository, storeOutboxRelay, leafWidth, fanout, parallelism, 60_000);
+    }
+
+    public StoreReconciler(StoreDigestSource database, StoreDigestSource legacy,
+                           StoreOutboxRepository storeOutboxRepository, StoreOutboxRelay storeOutboxRelay,
+                           long leafWidth, int fanout, int parallelism, long foldIntervalMs) {
+        if (leafWidth < 1 || fanout < 2 || parallelism < 1) {
+            throw new IllegalArgumentException("leafWidth must be positive, fanout at least 2 and parallelism positive");
+        }
+        this.database = database;
+        this.legacy = legacy;
+        this.storeOutboxRepository = storeOutboxRepository;
+        this.storeOutboxRelay = storeOutboxRelay;
+        this.leafWidth = leafWidth;
+        this.fanout = fanout;
+        this.parallelism = parallelism;
+        this.foldIntervalMs = foldIntervalMs;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        folder = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "store-digest-fold");
+            thread.setDaemon(true);
+            return thread;
+        });
+        folder.scheduleWithFixedDelay(this::fold, foldIntervalMs, foldIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (folder != null) {
+            folder.shutdownNow();
+        }
+    }
+
+    // keeps the deltas written between runs few, so a run's reads stay at about one row per leaf
+    private void fold() {
+        try {
+            database.foldPending();
+        } catch (RuntimeException e) {
+            LOGGER.errorf(e, "Failed to fold store digests");
+        }
+    }
+
+    /** Runs one reconciliation; returns null when another one is already running. */
+    public ReconcileReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        long started = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "store-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            ReconcileReport report = new ReconcileReport();
+            database.foldPending();
+            legacy.foldPending();
+            long maxId = Math.max(database.maxId(), legacy.maxId());
+            long rootWidth = leafWidth;
+            while (rootWidth <= maxId) {
+                rootWidth = Math.multiplyExact(rootWidth, fanout);
+            }
+
+            List<Long> frontier = List.of(0L);
+            for (long width = rootWidth; width > leafWidth; width /= fanout) {
+                long nodeWidth = width;
+                report.rangesCompared += frontier.size();
+                List<Callable<List<Long>>> nodes = new ArrayList<>(frontier.size());
+                for (long fromId : frontier) {
+                    nodes.add(() -> divergentChildren(fromId, nodeWidth));
+                }
+                List<Long> next = new ArrayList<>();
+                for (List<Long> children : invokeAll(pool, nodes)) {
+                    next.addAll(children);
+                }
+                frontier = next;
+            }
+
+            report.leavesCompared = frontier.size();
+            List<Callable<List<StoreChangeSnapshot>>> leaves = new ArrayList<>(frontier.size());
+            for (long fromId : frontier) {
+                leaves.add(() -> diffLeaf(fromId, fromId + leafWidth));
+            }
+            List<StoreChangeSnapshot> changes = new ArrayList<>();
+            for (List<StoreChangeSnapshot> leafChanges : invokeAll(pool, leaves)) {
+                changes.addAll(leafChanges);
+            }
+            for (StoreChangeSnapshot change : changes) {
+                switch (change.type) {
+                    case CREATE -> report.storesCreated++;
+                    case DELETE -> report.storesDeleted++;
+                    default -> report.storesUpdated++;
+                }
+            }
+            for (int i = 0; i < changes.size(); i += RECORD_CHUNK) {
+                storeOutboxRepository.recordAll(changes.subList(i, Math.min(changes.size(), i + RECORD_CHUNK)));
+            }
+            if (!changes.isEmpty()) {
+                storeOutboxRelay.wakeUp();
+            }
+
+            report.tookMs = (System.nanoTime() - started) / 1_000_000;
+            LOGGER.infof("Store reconciliation: ranges=%d leaves=%d created=%d updated=%d deleted=%d tookMs=%d",
+                    report.rangesCompared, report.leavesCompared, report.storesCreated, report.storesUpdated,
+                    report.storesDeleted, report.tookMs);
+            return report;
+        } finally {
+            pool.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    // start ids of the children of [fromId, fromId + width) whose digests differ between the two sides
+    private List<Long> divergentChildren(long fromId, long width) {
+        long childWidth = width / fanout;
+        Map<Long, Long> ours = database.childDigests(fromId, fromId + width, childWidth);
+        Map<Long, Long> theirs = legacy.childDigests(fromId, fromId + width, childWidth);
+        Set<Long> children = new HashSet<>(ours.keySet());
+        children.addAll(theirs.keySet());
+        List<Long> divergent = new ArrayList<>();
+        for (long child : children) {
+            if (ours.getOrDefault(child, 0L).longValue() != theirs.getOrDefault(child, 0L).longValue()) {
+                divergent.add(fromId + child * childWidth);
+            }
+        }
+        return divergent;
+    }
+
+    private List<StoreChangeSnapshot> diffLeaf(long fromId, long toId) {
+        Map<Long, StoreDigest> theirs = new HashMap<>();
+        for (StoreDigest store : legacy.stores(fromId, toId)) {
+            theirs.put(store.id, store);
+        }
+        List<StoreChangeSnapshot> changes = new ArrayList<>();
+        for (StoreDigest store : database.stores(fromId, toId)) {
+            StoreDigest other = theirs.remove(store.id);
+            if (other == null) {
+                changes.add(snapshot(StoreChangeType.CREATE, store));
+            } else if (!Objects.equals(other.name, store.name)
+                    || other.quantityProductsInStock != store.quantityProductsInStock) {
+                changes.add(snapshot(StoreChangeType.UPDATE, store));
+            }
+        }
+        for (StoreDigest orphan : theirs.values()) {
+            changes.add(snapshot(StoreChangeType.DELETE, orphan));
+        }
+        return changes;
+    }
+
+    private static StoreChangeSnapshot snapshot(StoreChangeType type, StoreDigest store) {
+        return new StoreChangeSnapshot(type, store.id, store.name, store.quantityProductsInStock, Instant.now());
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService pool, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Store reconciliation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime
+                    ? runtime
+                    : new IllegalStateException("Store reconciliation failed", e.getCause());
+        }
+        return results;
+    }
+
+    public static final class ReconcileReport {
+        public long rangesCompared;
+        public long leavesCompared;
+        public long storesCreated;
+        public long storesUpdated;
+        public long storesDeleted;
+        public long tookMs;
+    }
+}
@@ -0,0 +1,77 @@
+package com.fulfilment.application.monolith.stores;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Stand-in for the reporting database: appends every store change as a CSV row
+ * ({@code committedAt,type,storeId,name,items}) to a local file, one write and one force per batch.
+ * Rows of a re-delivered batch appear twice; reports take the latest row per store.
+ */
+@ApplicationScoped
+public class StoreReportingSink implements StoreChangeSink {
+
+    private final Path file;
+    private final boolean enabled;
+
+    @Inject
+    public StoreReportingSink(
+            @ConfigProperty(name = "store.sinks.reporting.file") String file,
+            @ConfigProperty(name = "store.sinks.reporting.enabled", defaultValue = "false") boolean enabled) {
+        this.file = Path.of(file);
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String name() {
+        return "reporting";
+    }
+
+    @Override
+    public boolean enabled() {
+        return enabled;
+    }
+
+    @Override
+    public void deliver(List<StoreChangeSnapshot> batch) throws IOException {
+        StringBuilder rows = new StringBuilder(batch.size() * 64);
+        for (StoreChangeSnapshot change : batch) {
+            rows.append(change.committedAt).append(',')
+                    .append(change.type).append(',')
+                    .append(change.storeId).append(',')
+                    .append(csv(change.name)).append(',')
+                    .append(change.quantityProductsInStock).append('\n');
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(rows.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
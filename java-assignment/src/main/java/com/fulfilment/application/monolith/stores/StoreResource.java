@@ -1,18 +1,25 @@
 
 package com.fulfilment.application.monolith.stores;
 
-import io.quarkus.panache.common.Sort;
+import com.fulfilment.application.monolith.cache.ListResponseCache;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.*;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 @Path("store")
 @ApplicationScoped
@@ -25,19 +32,61 @@ public class StoreResource {
     @Inject
     Event<StoreChangeEvent> storeChangeEvent; // CDI event to be observed after commit
 
+    @Inject
+    Event<StoreBatchChangeEvent> storeBatchChangeEvent;
+
+    @Inject
+    StoreStockRepository storeStockRepository;
+
+    @Inject
+    StoreStockWriteBehind storeStockWriteBehind;
+
+    @Inject
+    StoreListCache storeListCache;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    /**
+     * Stores in name order, one page at a time: pass the previous page's {@code next} as {@code after}.
+     * {@code prefix} narrows the list to names starting with it, ignoring case.
+     * <p>
+     * Pages are served from {@link StoreListCache} until the next store change commits. While
+     * write-behind stock deltas are pending the page is built fresh, since it includes them.
+     */
     @GET
-    public List<Store> get() {
-        return Store.listAll(Sort.by("name"));
+    @Transactional
+    public Response get(@QueryParam("after") String after,
+                        @QueryParam("prefix") String prefix,
+                        @QueryParam("limit") @DefaultValue("100") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new WebApplicationException("limit must be between 1 and " + MAX_PAGE_SIZE + ".", 400);
+        }
+        boolean cacheable = !storeStockWriteBehind.hasPending();
+        String key = ListResponseCache.key(after, prefix, limit);
+        byte[] body = cacheable ? storeListCache.get(key) : null;
+        if (body == null) {
+            long generation = storeListCache.generation();
+            StorePage page;
+            // one row more than the page tells whether there is a next page without counting
+            try (Stream<Store> rows = Store.streamByName(after, prefix, limit + 1)) {
+                page = StorePage.of(rows.map(storeStockWriteBehind::merged).toList(), limit);
+            }
+            // a page with pending deltas merged in must not outlive them
+            body = cacheable ? storeListCache.put(key, generation, page) : storeListCache.serialize(page);
+        }
+        return Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build();
     }
 
+    /** The store, with its version as ETag for a later {@code If-Match}. */
     @GET
     @Path("{id}")
-    public Store getSingle(@PathParam("id") Long id) {
+    public Response getSingle(@PathParam("id") Long id) {
         Store entity = Store.findById(id);
         if (entity == null) {
             throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
         }
-        return entity;
+        return Response.ok(storeStockWriteBehind.merged(entity)).tag(etag(entity)).build();
     }
 
     @POST
@@ -55,10 +104,45 @@ public class StoreResource {
         return Response.status(201).entity(store).build();
     }
 
+    /**
+     * Creates or updates many stores, matched by name, in one transaction. Inserts go out as JDBC
+     * batches and the changes reach the legacy sync as one batch event. Invalid items are rejected
+     * individually; the rest of the batch still applies.
+     */
+    @POST
+    @Path("batch")
+    @Transactional
+    public StoreBatchResult upsertBatch(List<Store> stores) {
+        if (stores == null || stores.isEmpty() || stores.size() > MAX_BATCH_SIZE) {
+            throw new WebApplicationException("A batch must hold between 1 and " + MAX_BATCH_SIZE + " stores.", 400);
+        }
+        List<String> names = stores.stream()
+                .filter(store -> store != null && store.name != null)
+                .map(store -> store.name)
+                .distinct()
+                .toList();
+        Map<String, Store> existing = new HashMap<>();
+        for (Store store : Store.<Store>list("name in ?1", names)) {
+            existing.put(store.name, store);
+        }
+
+        StoreBatchUpsert upsert = StoreBatchUpsert.apply(stores, existing);
+        Store.persist(upsert.toPersist());
+        if (!upsert.changes().isEmpty()) {
+            storeBatchChangeEvent.fire(new StoreBatchChangeEvent(upsert.changes()));
+        }
+        return upsert.result();
+    }
+
+    /**
+     * Replaces the store. With {@code If-Match} the write only applies to that version: a stale tag is
+     * answered with 412 straight away, and a change committed in between is caught by the UPDATE's
+     * {@code version} condition, also as 412.
+     */
     @PUT
     @Path("{id}")
     @Transactional
-    public Store update(@PathParam("id") Long id, Store updatedStore) {
+    public Response update(@PathParam("id") Long id, Store updatedStore, @Context Request request) {
         if (updatedStore == null || updatedStore.name == null) {
             throw new WebApplicationException("Store Name was not set on request.", 422);
         }
@@ -67,19 +151,24 @@ public class StoreResource {
         if (entity == null) {
             throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
         }
+        Response.ResponseBuilder preconditionFailed = evaluatePreconditions(request, entity);
+        if (preconditionFailed != null) {
+            return preconditionFailed.build();
+        }
 
         entity.name = updatedStore.name;
         entity.quantityProductsInStock = updatedStore.quantityProductsInStock;
 
         storeChangeEvent.fire(new StoreChangeEvent(StoreChangeType.UPDATE, entity));
+        flushOrConflict(id);
 
-        return entity;
+        return Response.ok(entity).tag(etag(entity)).build();
     }
 
     @PATCH
     @Path("{id}")
     @Transactional
-    public Store patch(@PathParam("id") Long id, Store updatedStore) {
+    public Response patch(@PathParam("id") Long id, Store updatedStore, @Context Request request) {
         if (updatedStore == null) {
             throw new WebApplicationException("Invalid request payload.", 422);
         }
@@ -88,6 +177,10 @@ public class StoreResource {
         if (entity == null) {
             throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
         }
+        Response.ResponseBuilder preconditionFailed = evaluatePreconditions(request, entity);
+        if (preconditionFailed != null) {
+            return preconditionFailed.build();
+        }
 
         // Only update fields provided in the payload
         if (updatedStore.name != null && !updatedStore.name.isBlank()) {
@@ -99,25 +192,93 @@ public class StoreResource {
         }
 
         storeChangeEvent.fire(new StoreChangeEvent(StoreChangeType.PATCH, entity));
+        flushOrConflict(id);
+
+        return Response.ok(entity).tag(etag(entity)).build();
+    }
+
+    /**
+     * Applies a signed stock delta in one conditional UPDATE, without loading the store first. Concurrent
+     * adjustments all count; one that would take the stock below zero is refused with 409. Stores in
+     * write-behind mode answer 202: the delta is logged and reaches the table with the next flush.
+     */
+    @POST
+    @Path("{id}/stock:adjust")
+    @Transactional
+    public Response adjustStock(@PathParam("id") Long id, StockAdjustment adjustment) {
+        if (adjustment == null || adjustment.delta == 0) {
+            throw new WebApplicationException("A non-zero stock delta must be set on request.", 422);
+        }
+
+        if (storeStockWriteBehind.handles(id)) {
+            return adjustStockWriteBehind(id, adjustment.delta);
+        }
+
+        Store updated = storeStockRepository.adjust(id, adjustment.delta);
+        if (updated == null) {
+            // only the failure path reads the row, to tell a missing store from insufficient stock
+            if (Store.findById(id) == null) {
+                throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
+            }
+            throw new WebApplicationException("Stock of store " + id + " cannot go below zero.", 409);
+        }
 
-        return entity;
+        storeChangeEvent.fire(new StoreChangeEvent(StoreChangeType.PATCH, updated));
+
+        return Response.ok(updated).build();
+    }
+
+    // reserved atomically against the (cached) row plus pending deltas; a 202 is never undone by the flush
+    private Response adjustStockWriteBehind(Long id, int delta) {
+        Store entity = Store.findById(id);
+        if (entity == null) {
+            throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
+        }
+        Store reserved = storeStockWriteBehind.reserve(entity, delta);
+        if (reserved == null) {
+            throw new WebApplicationException("Stock of store " + id + " cannot go below zero.", 409);
+        }
+        return Response.accepted(reserved).build();
     }
 
     @DELETE
     @Path("{id}")
     @Transactional
-    public Response delete(@PathParam("id") Long id) {
+    public Response delete(@PathParam("id") Long id, @Context Request request) {
         Store entity = Store.findById(id);
         if (entity == null) {
             throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
         }
+        Response.ResponseBuilder preconditionFailed = evaluatePreconditions(request, entity);
+        if (preconditionFailed != null) {
+            return preconditionFailed.build();
+        }
 
         entity.delete();
 
         // Notify legacy after commit that the store was deleted
         storeChangeEvent.fire(new StoreChangeEvent(StoreChangeType.DELETE, entity));
+        flushOrConflict(id);
 
         return Response.status(204).build();
     }
 
+    private static EntityTag etag(Store store) {
+        return new EntityTag(Long.toString(store.version));
+    }
+
+    // If-Match / If-None-Match against the loaded version; null when the write may go ahead
+    private static Response.ResponseBuilder evaluatePreconditions(Request request, Store entity) {
+        return request == null ? null : request.evaluatePreconditions(etag(entity));
+    }
+
+    // the UPDATE/DELETE carries "where version = ?"; flushing here turns a lost race into a 412 rather
+    // than a failed commit, and costs no extra round trip since the statement runs either way
+    private static void flushOrConflict(Long id) {
+        try {
+            Store.flush();
+        } catch (OptimisticLockException e) {
+            throw new WebApplicationException("Store with id of " + id + " was changed concurrently.", 412);
+        }
     }
+}
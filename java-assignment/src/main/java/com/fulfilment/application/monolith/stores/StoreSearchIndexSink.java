@@ -0,0 +1,87 @@
+package com.fulfilment.application.monolith.stores;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Stand-in for a search index: store ids by lower-cased name, answering name-prefix lookups from a
+ * sorted map. Fed by its own {@link StoreSinkChannel}.
+ */
+@ApplicationScoped
+public class StoreSearchIndexSink implements StoreChangeSink {
+
+    private final boolean enabled;
+
+    private final TreeMap<String, TreeSet<Long>> idsByName = new TreeMap<>();
+    private final Map<Long, String> nameById = new HashMap<>();
+
+    @Inject
+    public StoreSearchIndexSink(@ConfigProperty(name = "store.sinks.search-index.enabled", defaultValue = "false") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String name() {
+        return "search-index";
+    }
+
+    @Override
+    public boolean enabled() {
+        return enabled;
+    }
+
+    @Override
+    public synchronized void deliver(List<StoreChangeSnapshot> batch) {
+        for (StoreChangeSnapshot change : batch) {
+            if (change.storeId == null) {
+                continue;
+            }
+            String previous = nameById.remove(change.storeId);
+            if (previous != null) {
+                TreeSet<Long> ids = idsByName.get(previous);
+                ids.remove(change.storeId);
+                if (ids.isEmpty()) {
+                    idsByName.remove(previous);
+                }
+            }
+            if (change.type != StoreChangeType.DELETE) {
+                String key = change.name == null ? "" : change.name.toLowerCase(Locale.ROOT);
+                nameById.put(change.storeId, key);
+                idsByName.computeIfAbsent(key, k -> new TreeSet<>()).add(change.storeId);
+            }
+        }
+    }
+
+    /** Ids of the stores whose name starts with {@code prefix}, ignoring case, in name order. */
+    public synchronized List<Long> searchByNamePrefix(String prefix, int limit) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        List<Long> ids = new ArrayList<>();
+        NavigableMap<String, TreeSet<Long>> tail = idsByName.tailMap(from, true);
+        for (Map.Entry<String, TreeSet<Long>> entry : tail.entrySet()) {
+            if (!entry.getKey().startsWith(from)) {
+                break;
+            }
+            for (Long id : entry.getValue()) {
+                if (ids.size() == limit) {
+                    return ids;
+                }
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    public synchronized int size() {
+        return nameById.size();
+    }
+}
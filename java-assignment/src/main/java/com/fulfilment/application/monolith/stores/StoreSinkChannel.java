@@ -0,0 +1,290 @@
+package com.fulfilment.application.monolith.stores;
+
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds one {@link StoreChangeSink} from the store outbox on a thread of its own. The channel reads
+ * the rows after the sink's cursor in id order, delivers them as one batch, retries the batch with
+ * exponential backoff and only then moves the cursor. The next batch is read once the current one has
+ * been delivered, so the sink sees changes in commit order. A batch that still fails after
+ * {@code maxAttempts} is delivered one change at a time, and the changes that fail alone are skipped,
+ * so one bad change cannot stall the sink forever.
+ * <p>
+ * Outbox ids are handed out before commit, so a lower id can become visible after a higher one. A
+ * gap in the ids is therefore only stepped over once the rows behind it are {@code settleMs} old,
+ * and the ids stepped over are remembered for {@code lateWindowMs}: a row that commits under the
+ * cursor within that window is delivered on its own, ahead of the rows read with it. The gaps live
+ * in memory; after a restart they are rebuilt from the ids missing among the window's rows, so a row
+ * that committed late and was not yet delivered when the node stopped is taken as delivered.
+ */
+public class StoreSinkChannel {
+
+    private static final Logger LOGGER = Logger.getLogger(StoreSinkChannel.class.getName());
+    // bounds the memory of a sink that steps over a huge jump in ids
+    private static final int MAX_GAPS = 100_000;
+    private static final int GAP_QUERY_IDS = 1000;
+
+    private final StoreChangeSink sink;
+    private final StoreOutboxRepository storeOutboxRepository;
+    private final StoreSinkCursorRepository storeSinkCursorRepository;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBaseMs;
+    private final long retryMaxMs;
+    private final long settleMs;
+    private final long lateWindowMs;
+    private final long pollIntervalMs;
+
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong late = new AtomicLong();
+    // ids stepped over below the cursor, with when; added in id order, so also oldest first
+    private final NavigableMap<Long, Instant> gaps = new TreeMap<>();
+    private volatile long position = -1;
+    private volatile boolean running;
+    private Thread thread;
+
+    public StoreSinkChannel(StoreChangeSink sink, StoreOutboxRepository storeOutboxRepository,
+                            StoreSinkCursorRepository storeSinkCursorRepository, int batchSize, int maxAttempts,
+                            long retryBaseMs, long retryMaxMs, long settleMs, long lateWindowMs,
+                            long pollIntervalMs) {
+        this.sink = sink;
+        this.storeOutboxRepository = storeOutboxRepository;
+        this.storeSinkCursorRepository = storeSinkCursorRepository;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseMs = retryBaseMs;
+        this.retryMaxMs = retryMaxMs;
+        this.settleMs = settleMs;
+        this.lateWindowMs = lateWindowMs;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::loop, "store-sink-" + sink.name());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops after the current delivery attempt; a batch interrupted in its backoff is delivered again on restart. */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Asks the channel to look at the outbox now instead of at the next poll. */
+    public void wakeUp() {
+        if (wakeUp.availablePermits() == 0) {
+            wakeUp.release();
+        }
+    }
+
+    public String sinkName() { return sink.name(); }
+
+    public long delivered() { return delivered.get(); }
+
+    public long failures() { return failures.get(); }
+
+    public long skipped() { return skipped.get(); }
+
+    /** Changes delivered after the cursor had already moved past them. */
+    public long late() { return late.get(); }
+
+    /** Id of the last outbox row applied, or -1 before the cursor was first read. */
+    public long position() { return position; }
+
+    private void loop() {
+        while (running) {
+            try {
+                while (running && deliverNext() > 0) {
+                    // keep going while there is a backlog
+                }
+                wakeUp.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                wakeUp.drainPermits();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // database unavailable and the like: the cursor did not move, so the batch comes round again
+                LOGGER.errorf(e, "Store sink %s cycle failed", sink.name());
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Reads, delivers and acknowledges the next batch; returns the number of outbox rows consumed. */
+    public int deliverNext() throws InterruptedException {
+        if (position < 0) {
+            long cursor = storeSinkCursorRepository.position(sink.name());
+            rebuildGaps(cursor);
+            position = cursor;
+        }
+        List<StoreOutboxEntry> rows = settled(storeOutboxRepository.readAfter(position, batchSize));
+        // read after the rows ahead: a late row that committed before any of them is visible by now
+        List<StoreOutboxEntry> lateRows = lateRows();
+        if (!lateRows.isEmpty()) {
+            deliverWithRetry(snapshots(lateRows));
+            lateRows.forEach(row -> gaps.remove(row.id));
+            late.addAndGet(lateRows.size());
+        }
+        if (rows.isEmpty()) {
+            return lateRows.size();
+        }
+        deliverWithRetry(snapshots(rows));
+        long last = rows.get(rows.size() - 1).id;
+        storeSinkCursorRepository.advance(sink.name(), last);
+        recordGaps(rows);
+        position = last;
+        return lateRows.size() + rows.size();
+    }
+
+    private static List<StoreChangeSnapshot> snapshots(List<StoreOutboxEntry> rows) {
+        List<StoreChangeSnapshot> batch = new ArrayList<>(rows.size());
+        for (StoreOutboxEntry row : rows) {
+            batch.add(row.toSnapshot());
+        }
+        return batch;
+    }
+
+    // the leading rows up to the first gap in ids whose rows are younger than settleMs
+    private List<StoreOutboxEntry> settled(List<StoreOutboxEntry> rows) {
+        Instant settledBefore = Instant.now().minusMillis(settleMs);
+        long expected = position + 1;
+        for (int i = 0; i < rows.size(); i++) {
+            StoreOutboxEntry row = rows.get(i);
+            if (row.id != expected && row.createdAt.isAfter(settledBefore)) {
+                return rows.subList(0, i);
+            }
+            expected = row.id + 1;
+        }
+        return rows;
+    }
+
+    private void recordGaps(List<StoreOutboxEntry> rows) {
+        Instant now = Instant.now();
+        long expected = position + 1;
+        boolean full = false;
+        for (StoreOutboxEntry row : rows) {
+            for (long id = expected; id < row.id && !full; id++) {
+                full = gaps.size() >= MAX_GAPS;
+                if (!full) {
+                    gaps.put(id, now);
+                }
+            }
+            expected = row.id + 1;
+        }
+        if (full) {
+            LOGGER.warnf("store.sink gaps=%d sink=%s, rows committing below %d are no longer watched for",
+                    gaps.size(), sink.name(), expected);
+        }
+    }
+
+    // the rows that have appeared in a gap since it was stepped over, in id order
+    private List<StoreOutboxEntry> lateRows() {
+        Instant expired = Instant.now().minusMillis(lateWindowMs);
+        while (!gaps.isEmpty() && gaps.firstEntry().getValue().isBefore(expired)) {
+            gaps.pollFirstEntry();
+        }
+        if (gaps.isEmpty()) {
+            return List.of();
+        }
+        List<StoreOutboxEntry> rows = new ArrayList<>();
+        List<Long> ids = new ArrayList<>(gaps.keySet());
+        for (int from = 0; from < ids.size(); from += GAP_QUERY_IDS) {
+            rows.addAll(storeOutboxRepository.readIds(ids.subList(from, Math.min(ids.size(), from + GAP_QUERY_IDS))));
+        }
+        return rows;
+    }
+
+    // the ids missing among the window's rows up to the cursor; the rows present are taken as delivered
+    private void rebuildGaps(long cursor) {
+        if (cursor <= 0) {
+            return;
+        }
+        Instant now = Instant.now();
+        List<Long> ids = storeOutboxRepository.idsCreatedSince(now.minusMillis(lateWindowMs), cursor);
+        for (int i = 1; i < ids.size() && gaps.size() < MAX_GAPS; i++) {
+            for (long id = ids.get(i - 1) + 1; id < ids.get(i) && gaps.size() < MAX_GAPS; id++) {
+                gaps.put(id, now);
+            }
+        }
+        if (!ids.isEmpty()) {
+            for (long id = ids.get(ids.size() - 1) + 1; id <= cursor && gaps.size() < MAX_GAPS; id++) {
+                gaps.put(id, now);
+            }
+        }
+    }
+
+    private void deliverWithRetry(List<StoreChangeSnapshot> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                sink.deliver(batch);
+                delivered.addAndGet(batch.size());
+                return;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    LOGGER.errorf(e, "store.sink gave up sink=%s batch=%d attempts=%d, isolating failed changes",
+                            sink.name(), batch.size(), attempt);
+                    deliverOneByOne(batch);
+                    return;
+                }
+                long backoff = backoffMs(attempt);
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debugf("store.sink retry sink=%s batch=%d attempt=%d/%d backoffMs=%d cause=%s",
+                            sink.name(), batch.size(), attempt, maxAttempts, backoff, e.toString());
+                }
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    private void deliverOneByOne(List<StoreChangeSnapshot> batch) throws InterruptedException {
+        for (StoreChangeSnapshot change : batch) {
+            try {
+                sink.deliver(List.of(change));
+                delivered.incrementAndGet();
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                skipped.incrementAndGet();
+                LOGGER.errorf("store.sink skipped sink=%s change=%s cause=%s", sink.name(), change, e.toString());
+            }
+        }
+    }
+
+    // exponential backoff with equal jitter: half of the capped delay is fixed, the other half random
+    private long backoffMs(int attempt) {
+        long capped = Math.min(retryMaxMs, retryBaseMs << Math.min(attempt - 1, 30));
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+}
@@ -0,0 +1,25 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/** How far one {@link StoreChangeSink} has read the store outbox: the id of the last row it applied. */
+@Entity
+@Table(name = "store_sink_cursor")
+public class StoreSinkCursor extends PanacheEntityBase {
+
+    @Id
+    @Column(length = 64)
+    public String sink;
+
+    public long position;
+
+    // last time the sink made progress; cursors idle for longer than the outbox retention stop holding rows back
+    @Column(nullable = false)
+    public Instant updatedAt;
+}
@@ -0,0 +1,30 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.transaction.Transactional;
+
+import java.time.Instant;
+
+@ApplicationScoped
+public class StoreSinkCursorRepository implements PanacheRepositoryBase<StoreSinkCursor, String> {
+
+    /** Id of the last outbox row the sink applied; 0 for a sink that has not applied any yet. */
+    @Transactional
+    public long position(String sink) {
+        StoreSinkCursor cursor = findById(sink);
+        return cursor == null ? 0 : cursor.position;
+    }
+
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void advance(String sink, long position) {
+        StoreSinkCursor cursor = findById(sink);
+        if (cursor == null) {
+            cursor = new StoreSinkCursor();
+            cursor.sink = sink;
+            persist(cursor);
+        }
+        cursor.position = position;
+        cursor.updatedAt = Instant.now();
+    }
+}
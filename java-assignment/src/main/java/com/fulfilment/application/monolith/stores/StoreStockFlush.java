@@ -0,0 +1,27 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * Last write-behind generation of one node's {@link StoreStockWal} whose deltas reached the store
+ * table. Written in the same transaction as the deltas, so recovery never applies a generation twice.
+ */
+@Entity
+@Table(name = "store_stock_flush")
+public class StoreStockFlush extends PanacheEntityBase {
+
+    @Id
+    @Column(length = 64)
+    public String node;
+
+    public long generation;
+
+    @Column(nullable = false)
+    public Instant flushedAt;
+}
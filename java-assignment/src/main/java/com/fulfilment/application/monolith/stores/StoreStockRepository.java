@@ -0,0 +1,165 @@
+package com.fulfilment.application.monolith.stores;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.transaction.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stock changes applied in the database as deltas, without loading the store: one conditional
+ * {@code UPDATE ... RETURNING} per change, so concurrent adjustments of the same store serialise on
+ * the row lock instead of overwriting each other.
+ */
+@ApplicationScoped
+public class StoreStockRepository {
+
+    private static final String ADJUST_SQL =
+            "UPDATE store SET quantityProductsInStock = quantityProductsInStock + :delta, version = version + 1 "
+                    + "WHERE id = :id AND quantityProductsInStock + :delta >= 0 "
+                    + "RETURNING id, name, quantityProductsInStock, version";
+
+    // ids and deltas are numbers formatted by us, never request text; the rows are locked first so the
+    // shortfall of a clamped delta is computed from the stock actually updated
+    private static final String APPLY_SQL =
+            "WITH v(id, delta) AS (VALUES %s), "
+                    + "locked AS (SELECT s.id, s.quantityProductsInStock AS stock FROM store s JOIN v ON v.id = s.id "
+                    + "FOR UPDATE OF s) "
+                    + "UPDATE store s SET quantityProductsInStock = GREATEST(0, locked.stock + v.delta), version = s.version + 1 "
+                    + "FROM locked JOIN v ON v.id = locked.id "
+                    + "WHERE s.id = locked.id "
+                    + "RETURNING s.id, s.name, s.quantityProductsInStock, s.version, GREATEST(0, -(locked.stock + v.delta))";
+
+    private static final int APPLY_CHUNK = 500;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    @Inject
+    Event<StoreBatchChangeEvent> storeBatchChangeEvent;
+
+    /**
+     * Adds {@code delta} to the store's stock in the current transaction; returns the store as updated,
+     * or null when the store does not exist or the stock would drop below zero.
+     */
+    @SuppressWarnings("unchecked")
+    public Store adjust(long id, int delta) {
+        List<Object[]> rows = entityManager.createNativeQuery(ADJUST_SQL)
+                .setParameter("id", id)
+                .setParameter("delta", delta)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return null;
+        }
+        evictAfterCommit(id);
+        return toStore(rows.get(0));
+    }
+
+    /** Stores updated by a write-behind flush, and the units by which a store's stock fell short. */
+    public record AppliedDeltas(List<Store> updated, Map<Long, Long> shortfalls) {
+    }
+
+    /**
+     * Applies one write-behind generation: every store's summed delta in a few multi-row UPDATEs, one
+     * PATCH per changed store as a single batch event, and the generation marker, all in one
+     * transaction. The deltas were accepted already, so none is refused: a store whose stock would drop
+     * below zero is set to zero and its shortfall reported. Only deltas of stores that are gone are lost.
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public AppliedDeltas applyDeltas(Map<Long, Long> deltas, String node, long generation) {
+        List<Store> updated = new ArrayList<>(deltas.size());
+        Map<Long, Long> shortfalls = new HashMap<>();
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(deltas.entrySet());
+        for (int from = 0; from < entries.size(); from += APPLY_CHUNK) {
+            StringBuilder values = new StringBuilder();
+            for (Map.Entry<Long, Long> entry : entries.subList(from, Math.min(entries.size(), from + APPLY_CHUNK))) {
+                if (values.length() > 0) {
+                    values.append(", ");
+                }
+                values.append("(CAST(").append(entry.getKey().longValue()).append(" AS bigint), CAST(")
+                        .append(entry.getValue().longValue()).append(" AS integer))");
+            }
+            List<Object[]> rows = entityManager.createNativeQuery(String.format(APPLY_SQL, values)).getResultList();
+            for (Object[] row : rows) {
+                Store store = toStore(row);
+                evictAfterCommit(store.id);
+                updated.add(store);
+                long shortfall = ((Number) row[4]).longValue();
+                if (shortfall > 0) {
+                    shortfalls.put(store.id, shortfall);
+                }
+            }
+        }
+
+        StoreStockFlush marker = entityManager.find(StoreStockFlush.class, node);
+        boolean first = marker == null;
+        if (first) {
+            marker = new StoreStockFlush();
+            marker.node = node;
+        }
+        marker.generation = generation;
+        marker.flushedAt = Instant.now();
+        if (first) {
+            entityManager.persist(marker);
+        }
+
+        if (!updated.isEmpty()) {
+            List<StoreChangeEvent> changes = new ArrayList<>(updated.size());
+            for (Store store : updated) {
+                changes.add(new StoreChangeEvent(StoreChangeType.PATCH, store));
+            }
+            storeBatchChangeEvent.fire(new StoreBatchChangeEvent(changes));
+        }
+        return new AppliedDeltas(updated, shortfalls);
+    }
+
+    /** Last generation of {@code node}'s stock log applied to the store table, or 0. */
+    @Transactional
+    public long flushedGeneration(String node) {
+        StoreStockFlush marker = entityManager.find(StoreStockFlush.class, node);
+        return marker == null ? 0 : marker.generation;
+    }
+
+    private static Store toStore(Object[] row) {
+        Store store = new Store((String) row[1]);
+        store.id = ((Number) row[0]).longValue();
+        store.quantityProductsInStock = ((Number) row[2]).intValue();
+        store.version = ((Number) row[3]).longValue();
+        return store;
+    }
+
+    // Store is in the second-level cache and native SQL bypasses it; evicting now and again after
+    // completion keeps a read racing with this transaction from caching the old stock
+    private void evictAfterCommit(long id) {
+        evict(id);
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    evict(id);
+                }
+            }
+        });
+    }
+
+    private void evict(long id) {
+        entityManager.getEntityManagerFactory().getCache().evict(Store.class, id);
+    }
+}
@@ -0,0 +1,210 @@
+package com.fulfilment.application.monolith.stores;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of accepted stock deltas that have not reached the store table yet. Deltas are
+ * appended to one file per flush generation; a generation's file is deleted once its deltas are
+ * committed. Records use the {@link LegacyStoreJournal} framing (length, CRC32, payload), so a torn
+ * tail after a crash is detected the same way and skipped.
+ */
+public class StoreStockWal {
+
+    private static final Logger LOGGER = Logger.getLogger(StoreStockWal.class.getName());
+
+    private static final String PREFIX = "stock-";
+    private static final String SUFFIX = ".wal";
+    private static final int PAYLOAD_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final boolean sync;
+    private final String nodeId;
+    private final ByteBuffer record = ByteBuffer.allocate(LegacyStoreJournal.HEADER_BYTES + PAYLOAD_BYTES);
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private long generation;
+
+    /** Opens the log in {@code directory}; appends go to a generation after every file already there. */
+    public StoreStockWal(Path directory, boolean sync) {
+        this.directory = directory;
+        this.sync = sync;
+        try {
+            Files.createDirectories(directory);
+            this.nodeId = nodeId(directory);
+            List<Long> generations = generations();
+            open(generations.isEmpty() ? 1 : generations.get(generations.size() - 1) + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the store stock log in " + directory, e);
+        }
+    }
+
+    /** Stable id of this log, kept in the directory; flush markers in the database are stored under it. */
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /** Appends one delta to the current generation; with sync on, it is on disk when this returns. */
+    public void append(long storeId, int delta) {
+        FileChannel target;
+        synchronized (this) {
+            record.clear();
+            record.position(LegacyStoreJournal.HEADER_BYTES);
+            record.putLong(storeId).putInt(delta);
+            crc.reset();
+            crc.update(record.array(), LegacyStoreJournal.HEADER_BYTES, PAYLOAD_BYTES);
+            record.putInt(0, PAYLOAD_BYTES).putInt(4, (int) crc.getValue());
+            record.flip();
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot append to the store stock log", e);
+            }
+            target = channel;
+        }
+        if (sync) {
+            // outside the lock: concurrent appenders share the device flush instead of queueing for it
+            try {
+                target.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot force the store stock log", e);
+            }
+        }
+    }
+
+    /**
+     * Closes the current generation and starts the next one; returns the generation just closed. The
+     * current generation is forced and the next one opened before anything is switched, so a failure
+     * leaves the log appending to the current generation as before.
+     */
+    public synchronized long rotate() {
+        long closed = generation;
+        FileChannel previous = channel;
+        try {
+            previous.force(false);
+            open(closed + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot rotate the store stock log", e);
+        }
+        try {
+            previous.close();
+        } catch (IOException e) {
+            LOGGER.warnf(e, "Cannot close store stock log generation %d", closed);
+        }
+        return closed;
+    }
+
+    /** Deletes the files of every generation up to and including {@code generation}. */
+    public void deleteThrough(long generation) {
+        try {
+            for (long existing : generations()) {
+                if (existing <= generation && existing != generation()) {
+                    Files.deleteIfExists(path(existing));
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warnf(e, "Cannot delete store stock log files through generation %d", generation);
+        }
+    }
+
+    /**
+     * Sums the deltas of every closed generation after {@code flushedGeneration}, per store: what a
+     * crash left unflushed. Files of generations up to {@code flushedGeneration} are deleted.
+     */
+    public Map<Long, Long> recover(long flushedGeneration) {
+        Map<Long, Long> pending = new HashMap<>();
+        try {
+            for (long existing : generations()) {
+                if (existing == generation()) {
+                    continue;
+                }
+                if (existing <= flushedGeneration) {
+                    Files.deleteIfExists(path(existing));
+                    continue;
+                }
+                LegacyStoreJournal.ScanResult scan = LegacyStoreJournal.read(path(existing), payload -> {
+                    ByteBuffer buffer = ByteBuffer.wrap(payload);
+                    pending.merge(buffer.getLong(), (long) buffer.getInt(), Long::sum);
+                });
+                if (!scan.clean()) {
+                    LOGGER.warnf("Store stock log generation %d is damaged: %d records recovered, %d bytes skipped",
+                            existing, scan.records, scan.skippedBytes + scan.totalBytes - scan.validBytes);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot recover the store stock log in " + directory, e);
+        }
+        pending.values().removeIf(delta -> delta == 0);
+        return pending;
+    }
+
+    /** Highest closed generation on disk, or 0 when there is none. */
+    public long lastClosedGeneration() {
+        try {
+            return generations().stream().filter(g -> g != generation()).mapToLong(Long::longValue).max().orElse(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list the store stock log in " + directory, e);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warnf(e, "Cannot close the store stock log");
+        }
+    }
+
+    // switches to the generation only once its file is open
+    private void open(long next) throws IOException {
+        channel = FileChannel.open(path(next), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        generation = next;
+    }
+
+    private List<Long> generations() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path path(long generation) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, generation, SUFFIX));
+    }
+
+    private static String nodeId(Path directory) throws IOException {
+        Path file = directory.resolve("node-id");
+        if (Files.exists(file)) {
+            return Files.readString(file, StandardCharsets.UTF_8).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Files.writeString(file, id, StandardCharsets.UTF_8);
+        return id;
+    }
+}
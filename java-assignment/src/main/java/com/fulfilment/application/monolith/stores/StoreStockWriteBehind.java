@@ -0,0 +1,304 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind mode for stock adjustments of very busy stores. A delta is reserved against the store
+ * row plus the pending deltas with a compare-and-set on a per-store counter, so concurrent
+ * adjustments can never together take the stock below zero, then appended to the local
+ * {@link StoreStockWal}; nothing touches the store row. Every {@code flush-interval-ms} the counters and the log are swapped for fresh ones, and the
+ * summed deltas are applied in a few multi-row UPDATEs that also emit one PATCH per store, so a store
+ * adjusted hundreds of times in an interval costs one row update and one legacy change.
+ * <p>
+ * Reads add the deltas not flushed yet. After a crash the log generations that are not marked as
+ * flushed in the database are summed and flushed first. An accepted delta is never dropped: if the
+ * row changed underneath (a PUT, say) and a summed delta would take it below zero, the flush sets the
+ * stock to zero and counts the shortfall in {@code store.stock.write_behind.clamped_units}.
+ */
+@ApplicationScoped
+public class StoreStockWriteBehind implements MeterBinder {
+
+    private static final Logger LOGGER = Logger.getLogger(StoreStockWriteBehind.class.getName());
+
+    private final StoreStockRepository storeStockRepository;
+    private final boolean enabled;
+    private final Set<Long> stores;
+    private final long flushIntervalMs;
+    private final Path walDirectory;
+    private final boolean walSync;
+
+    // adders take the read lock, the flush swap takes the write lock: a delta is always in the log
+    // generation whose counters it was added to
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile ConcurrentHashMap<Long, AtomicLong> current = new ConcurrentHashMap<>();
+    // swapped out and not committed yet, with the log generation it belongs to
+    private volatile Map<Long, Long> flushing = Map.of();
+    private long flushingGeneration;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedStores = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong clampedUnits = new AtomicLong();
+
+    private final Object flushLock = new Object();
+    private StoreStockWal wal;
+    private volatile boolean running;
+    private Thread thread;
+
+    @Inject
+    public StoreStockWriteBehind(
+            StoreStockRepository storeStockRepository,
+            @ConfigProperty(name = "store.stock.write-behind.enabled", defaultValue = "false") boolean enabled,
+            @ConfigProperty(name = "store.stock.write-behind.stores") Optional<List<Long>> stores,
+            @ConfigProperty(name = "store.stock.write-behind.flush-interval-ms", defaultValue = "1000") long flushIntervalMs,
+            @ConfigProperty(name = "store.stock.write-behind.wal-dir") String walDirectory,
+            @ConfigProperty(name = "store.stock.write-behind.wal-sync", defaultValue = "true") boolean walSync) {
+        this.storeStockRepository = storeStockRepository;
+        this.enabled = enabled;
+        this.stores = Set.copyOf(stores.orElse(List.of()));
+        this.flushIntervalMs = flushIntervalMs;
+        this.walDirectory = Path.of(walDirectory);
+        this.walSync = walSync;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (enabled) {
+            start();
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        stop();
+    }
+
+    /** Opens the log, recovers what a crash left unflushed and starts the flush thread. */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        wal = new StoreStockWal(walDirectory, walSync);
+        Map<Long, Long> recovered = wal.recover(storeStockRepository.flushedGeneration(wal.nodeId()));
+        if (!recovered.isEmpty()) {
+            flushing = recovered;
+            flushingGeneration = wal.lastClosedGeneration();
+            LOGGER.infof("Recovered unflushed stock deltas of %d stores from the write-ahead log", recovered.size());
+        }
+        running = true;
+        thread = new Thread(this::flushLoop, "store-stock-write-behind");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops the flush thread after a last flush; whatever could not be flushed stays in the log. */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        wal.close();
+    }
+
+    /** Whether adjustments of {@code storeId} go through the write-behind path. */
+    public boolean handles(long storeId) {
+        return running && (stores.isEmpty() || stores.contains(storeId));
+    }
+
+    /** Logs and counts one delta without checking it; it reaches the store table with the next flush. */
+    public void add(long storeId, int delta) {
+        swapLock.readLock().lock();
+        try {
+            current.computeIfAbsent(storeId, id -> new AtomicLong()).addAndGet(delta);
+            log(storeId, delta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        accepted.incrementAndGet();
+    }
+
+    /**
+     * Accepts {@code delta} only if {@code store}'s stock plus every pending delta plus this one stays
+     * at zero or above, checked and counted in one compare-and-set, then logs it. Returns the store as
+     * it will be once flushed, or null when the delta was refused.
+     */
+    public Store reserve(Store store, int delta) {
+        long reserved;
+        swapLock.readLock().lock();
+        try {
+            long base = store.quantityProductsInStock + flushing.getOrDefault(store.id, 0L);
+            AtomicLong counter = current.computeIfAbsent(store.id, id -> new AtomicLong());
+            long unflushed;
+            do {
+                unflushed = counter.get();
+                if (base + unflushed + delta < 0) {
+                    return null;
+                }
+            } while (!counter.compareAndSet(unflushed, unflushed + delta));
+            reserved = base + unflushed + delta;
+            log(store.id, delta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        accepted.incrementAndGet();
+        Store merged = new Store(store.name);
+        merged.id = store.id;
+        merged.version = store.version;
+        merged.quantityProductsInStock = (int) reserved;
+        return merged;
+    }
+
+    // the caller holds the read lock and has already counted the delta; a failed append takes it back
+    private void log(long storeId, int delta) {
+        try {
+            wal.append(storeId, delta);
+        } catch (RuntimeException e) {
+            current.get(storeId).addAndGet(-delta);
+            throw e;
+        }
+    }
+
+    /** Sum of the deltas of {@code storeId} not in the store table yet. */
+    public long pending(long storeId) {
+        AtomicLong counter = current.get(storeId);
+        long unflushed = counter == null ? 0 : counter.get();
+        return unflushed + flushing.getOrDefault(storeId, 0L);
+    }
+
+    /** Whether any store has deltas not in the store table yet. */
+    public boolean hasPending() {
+        return !current.isEmpty() || !flushing.isEmpty();
+    }
+
+    /** {@code store} as it will be once the pending deltas are flushed; the entity itself is not touched. */
+    public Store merged(Store store) {
+        long pending = store == null || store.id == null ? 0 : pending(store.id);
+        if (pending == 0) {
+            return store;
+        }
+        Store merged = new Store(store.name);
+        merged.id = store.id;
+        merged.version = store.version;
+        merged.quantityProductsInStock = (int) (store.quantityProductsInStock + pending);
+        return merged;
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+            flushQuietly();
+        }
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // the generation stays in the log and in flushing; the next cycle retries it
+            LOGGER.errorf(e, "Store stock write-behind flush failed, pending stores=%d", flushing.size());
+        }
+    }
+
+    /** Applies the generation in flight, if a previous flush failed, then swaps and applies the current one. */
+    public void flush() {
+        synchronized (flushLock) {
+            if (!flushing.isEmpty()) {
+                apply(flushing, flushingGeneration);
+            }
+            Map<Long, Long> next = new HashMap<>();
+            long generation;
+            swapLock.writeLock().lock();
+            try {
+                if (current.isEmpty()) {
+                    return;
+                }
+                current.forEach((storeId, counter) -> {
+                    long sum = counter.get();
+                    if (sum != 0) {
+                        next.put(storeId, sum);
+                    }
+                });
+                // rotated first: if it fails, nothing was swapped and the counters stay where they are,
+                // to be flushed once, by a later cycle
+                generation = wal.rotate();
+                // published before the counters are replaced, so a concurrent read may briefly count a
+                // delta twice but never miss one
+                flushing = next;
+                flushingGeneration = generation;
+                current = new ConcurrentHashMap<>();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            apply(next, generation);
+        }
+    }
+
+    private void apply(Map<Long, Long> deltas, long generation) {
+        StoreStockRepository.AppliedDeltas applied = storeStockRepository.applyDeltas(deltas, wal.nodeId(), generation);
+        List<Store> updated = applied.updated();
+        flushing = Map.of();
+        wal.deleteThrough(generation);
+        flushes.incrementAndGet();
+        flushedStores.addAndGet(updated.size());
+        if (updated.size() < deltas.size()) {
+            dropped.addAndGet(deltas.size() - updated.size());
+            LOGGER.warnf("store.stock write-behind dropped stores=%d generation=%d (store gone)",
+                    deltas.size() - updated.size(), generation);
+        }
+        if (!applied.shortfalls().isEmpty()) {
+            applied.shortfalls().values().forEach(clampedUnits::addAndGet);
+            LOGGER.errorf("store.stock write-behind clamped stock at zero generation=%d shortfalls=%s",
+                    generation, applied.shortfalls());
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debugf("store.stock flushed generation=%d stores=%d", generation, updated.size());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("store.stock.write_behind.accepted", accepted, AtomicLong::get)
+                .description("Stock deltas accepted into the write-behind buffer").register(registry);
+        FunctionCounter.builder("store.stock.write_behind.flushes", flushes, AtomicLong::get)
+                .description("Write-behind flushes committed").register(registry);
+        FunctionCounter.builder("store.stock.write_behind.flushed_stores", flushedStores, AtomicLong::get)
+                .description("Store rows updated by write-behind flushes").register(registry);
+        FunctionCounter.builder("store.stock.write_behind.dropped", dropped, AtomicLong::get)
+                .description("Summed store deltas whose store was gone at flush time").register(registry);
+        FunctionCounter.builder("store.stock.write_behind.clamped_units", clampedUnits, AtomicLong::get)
+                .description("Accepted stock units that could not be taken because the row had less").register(registry);
+        Gauge.builder("store.stock.write_behind.pending_stores", this, b -> b.current.size() + b.flushing.size())
+                .description("Stores with deltas not flushed yet").register(registry);
+    }
+}
@@ -5,10 +5,10 @@ import jakarta.persistence.*;
 
 import java.time.LocalDateTime;
 
+// businessUnitCode is unique among active warehouses only (partial index in import.sql): a replacement
+// archives the current warehouse and creates its successor under the same code
 @Entity
-@Table(name = "warehouses", uniqueConstraints = {
-        @UniqueConstraint(name = "uk_warehouses_bucode", columnNames = "businessUnitCode")
-})
+@Table(name = "warehouses")
 public class DbWarehouse {
 
     @Id
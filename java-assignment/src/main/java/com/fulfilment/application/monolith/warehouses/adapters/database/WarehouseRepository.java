@@ -1,18 +1,25 @@
 package com.fulfilment.application.monolith.warehouses.adapters.database;
 
 import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseChangeEvent;
 import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @ApplicationScoped
 public class WarehouseRepository implements WarehouseStore, PanacheRepository<DbWarehouse> {
 
+    @Inject
+    Event<WarehouseChangeEvent> warehouseChangeEvent; // observed after commit by read-side projections
 
     @Override
     public List<Warehouse> getAll() {
@@ -34,6 +41,7 @@ public class WarehouseRepository implements WarehouseStore, PanacheRepository<Db
         DbWarehouse entity = DbWarehouse.fromWarehouse(warehouse);
         this.persist(entity);
 
+        fireChange(null, entity.toWarehouse());
     }
 
     @Override
@@ -47,6 +55,8 @@ public class WarehouseRepository implements WarehouseStore, PanacheRepository<Db
                 .orElseThrow(() -> new IllegalArgumentException(
                         "Warehouse with businessUnitCode '" + warehouse.businessUnitCode + "' not found."));
 
+        Warehouse before = existing.toWarehouse();
+
         // Update mutable fields
         existing.setLocation(warehouse.location);
         existing.setCapacity(safeInt(warehouse.capacity));
@@ -54,8 +64,11 @@ public class WarehouseRepository implements WarehouseStore, PanacheRepository<Db
         existing.setCreatedAt(warehouse.createdAt);   // keep/create as needed
         existing.setArchivedAt(warehouse.archivedAt); // archive timestamp when applicable
 
-        // JPA dirty checking will persist changes at TX end; flush if you want immediate SQL execution:
-        // this.getEntityManager().flush();
+        // written now rather than at commit: a replacement created next in this transaction is inserted
+        // at once (IDENTITY ids), and the unique index on active codes must already see this one archived
+        this.getEntityManager().flush();
+
+        fireChange(before, existing.toWarehouse());
     }
 
     @Override
@@ -66,7 +79,10 @@ public class WarehouseRepository implements WarehouseStore, PanacheRepository<Db
         }
 
         Optional<DbWarehouse> existing = findDbByBusinessUnitCode(warehouse.businessUnitCode);
-        existing.ifPresent(this::delete);
+        existing.ifPresent(db -> {
+            this.delete(db);
+            fireChange(db.toWarehouse(), null);
+        });
     }
 
     @Override
@@ -76,10 +92,27 @@ public class WarehouseRepository implements WarehouseStore, PanacheRepository<Db
                 .orElse(null);
     }
 
+    // also called by the location catalog watcher thread, which has no request context of its own
+    @Override
+    @Transactional
+    public List<Warehouse> findActiveByLocations(Collection<String> locations) {
+        if (locations == null || locations.isEmpty()) return List.of();
+        List<String> upper = locations.stream().map(String::toUpperCase).toList();
+        return find("upper(location) in ?1 and archivedAt is null", upper)
+                .stream().map(DbWarehouse::toWarehouse).toList();
+    }
 
+    // a code can have archived predecessors: the active warehouse first, else the last one archived
     private Optional<DbWarehouse> findDbByBusinessUnitCode(String buCode) {
         if (buCode == null || buCode.isBlank()) return Optional.empty();
-        return find("businessUnitCode = ?1", buCode).firstResultOptional();
+        return find("businessUnitCode = ?1",
+                Sort.by("archivedAt", Sort.Direction.Descending, Sort.NullPrecedence.NULLS_FIRST)
+                        .and("id", Sort.Direction.Descending),
+                buCode).firstResultOptional();
+    }
+
+    private void fireChange(Warehouse before, Warehouse after) {
+        warehouseChangeEvent.fire(new WarehouseChangeEvent(before, after));
     }
 
     private int safeInt(Integer v) {
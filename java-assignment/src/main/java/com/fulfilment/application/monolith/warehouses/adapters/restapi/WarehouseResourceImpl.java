@@ -7,6 +7,7 @@ import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
 import com.fulfilment.application.monolith.warehouses.domain.ports.LocationResolver;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Response;
@@ -104,6 +105,7 @@ public class WarehouseResourceImpl implements WarehouseResource {
     }
 
     @Override
+    @Transactional
     public Warehouse replaceTheCurrentActiveWarehouse(
             String businessUnitCode, @NotNull Warehouse data) {
 
@@ -9,9 +9,17 @@ public class Location {
   // maximum capacity of the location summing all the warehouse capacities
   public int maxCapacity;
 
+  // region the location's city belongs to, used for capacity rollups; null when unassigned
+  public String region;
+
   public Location(String identification, int maxNumberOfWarehouses, int maxCapacity) {
+    this(identification, maxNumberOfWarehouses, maxCapacity, null);
+  }
+
+  public Location(String identification, int maxNumberOfWarehouses, int maxCapacity, String region) {
     this.identification = identification;
     this.maxNumberOfWarehouses = maxNumberOfWarehouses;
     this.maxCapacity = maxCapacity;
+    this.region = region;
   }
 }
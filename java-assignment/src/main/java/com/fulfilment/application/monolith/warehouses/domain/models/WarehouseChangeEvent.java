@@ -0,0 +1,24 @@
+package com.fulfilment.application.monolith.warehouses.domain.models;
+
+/**
+ * Fired by the warehouse store for every write. {@code before} is null for creations and
+ * {@code after} is null for removals; both are detached copies, safe to read after commit.
+ */
+public final class WarehouseChangeEvent {
+
+  public final Warehouse before;
+
+  public final Warehouse after;
+
+  public WarehouseChangeEvent(Warehouse before, Warehouse after) {
+    if (before == null && after == null) {
+      throw new IllegalArgumentException("before and after must not both be null");
+    }
+    this.before = before;
+    this.after = after;
+  }
+
+  public String businessUnitCode() {
+    return after != null ? after.businessUnitCode : before.businessUnitCode;
+  }
+}
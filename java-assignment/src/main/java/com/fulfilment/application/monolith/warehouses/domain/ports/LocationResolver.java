@@ -1,7 +1,13 @@
 package com.fulfilment.application.monolith.warehouses.domain.ports;
 
 import com.fulfilment.application.monolith.warehouses.domain.models.Location;
+import java.util.List;
 
 public interface LocationResolver {
   Location resolveByIdentifier(String identifier);
+
+  List<Location> resolveAll();
+
+  // changes whenever the set of locations or any of their limits change
+  String catalogVersion();
 }
@@ -1,6 +1,7 @@
 package com.fulfilment.application.monolith.warehouses.domain.ports;
 
 import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import java.util.Collection;
 import java.util.List;
 
 public interface WarehouseStore {
@@ -14,4 +15,7 @@ public interface WarehouseStore {
   void remove(Warehouse warehouse);
 
   Warehouse findByBusinessUnitCode(String buCode);
+
+  // active warehouses whose location matches (case-insensitively) one of the given identifiers
+  List<Warehouse> findActiveByLocations(Collection<String> locations);
 }
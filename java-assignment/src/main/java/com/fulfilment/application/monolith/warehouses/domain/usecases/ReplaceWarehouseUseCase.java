@@ -8,6 +8,7 @@ import com.fulfilment.application.monolith.warehouses.domain.ports.LocationResol
 import com.fulfilment.application.monolith.warehouses.domain.ports.ReplaceWarehouseOperation;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Response;
 
@@ -26,7 +27,9 @@ public class ReplaceWarehouseUseCase implements ReplaceWarehouseOperation {
         this.locationResolver = locationResolver;
     }
 
+    // archive and create commit together: the business unit code is never left without an active warehouse
     @Override
+    @Transactional
     public void replace(Warehouse newWarehouse) {
         validateReplacePayload(newWarehouse);
 
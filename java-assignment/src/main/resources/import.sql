@@ -1,12 +1,40 @@
-INSERT INTO store(id, name, quantityProductsInStock) VALUES (1, 'TONSTAD', 10);
-INSERT INTO store(id, name, quantityProductsInStock) VALUES (2, 'KALLAX', 5);
-INSERT INTO store(id, name, quantityProductsInStock) VALUES (3, 'BESTÅ', 3);
+INSERT INTO store(id, name, quantityProductsInStock, version) VALUES (1, 'TONSTAD', 10, 0);
+INSERT INTO store(id, name, quantityProductsInStock, version) VALUES (2, 'KALLAX', 5, 0);
+INSERT INTO store(id, name, quantityProductsInStock, version) VALUES (3, 'BESTÅ', 3, 0);
 ALTER SEQUENCE store_seq RESTART WITH 4;
+-- case-insensitive name-prefix search on GET /store (lower(name) LIKE 'abc%')
+CREATE INDEX ix_store_name_lower ON store (lower(name) text_pattern_ops);
+-- XOR of 64-bit store hashes for reconciliation digests; bit_xor only exists from Postgres 14
+CREATE OR REPLACE AGGREGATE digest_xor (bigint) (SFUNC = int8xor, STYPE = bigint);
+-- the 64-bit hash of one store row; StoreDigest.hash computes the same in Java
+CREATE OR REPLACE FUNCTION store_digest_hash(id bigint, name varchar, items integer) RETURNS bigint LANGUAGE sql IMMUTABLE AS 'SELECT (''x'' || substr(md5(id::text || '':'' || coalesce(name, '''') || '':'' || items::text), 1, 16))::bit(64)::bigint';
+-- per-leaf digests (leaves of 256 ids): every store write appends the XOR delta of its leaf in its own transaction,
+-- with no lock on a shared row, and StoreDigestRepository folds the deltas into store_leaf_digest
+DROP TABLE IF EXISTS store_leaf_digest;
+CREATE TABLE store_leaf_digest (leaf bigint PRIMARY KEY, digest bigint NOT NULL);
+DROP TABLE IF EXISTS store_digest_delta;
+CREATE TABLE store_digest_delta (leaf bigint NOT NULL, delta bigint NOT NULL);
+CREATE INDEX ix_store_digest_delta_leaf ON store_digest_delta (leaf);
+CREATE OR REPLACE FUNCTION store_digest_track() RETURNS trigger LANGUAGE plpgsql AS 'BEGIN IF TG_OP = ''UPDATE'' AND OLD.id = NEW.id AND OLD.name IS NOT DISTINCT FROM NEW.name AND OLD.quantityProductsInStock = NEW.quantityProductsInStock THEN RETURN NULL; END IF; IF TG_OP <> ''INSERT'' THEN INSERT INTO store_digest_delta VALUES (OLD.id / 256, store_digest_hash(OLD.id, OLD.name, OLD.quantityProductsInStock)); END IF; IF TG_OP <> ''DELETE'' THEN INSERT INTO store_digest_delta VALUES (NEW.id / 256, store_digest_hash(NEW.id, NEW.name, NEW.quantityProductsInStock)); END IF; RETURN NULL; END';
+CREATE TRIGGER store_digest_track AFTER INSERT OR DELETE OR UPDATE OF id, name, quantityProductsInStock ON store FOR EACH ROW EXECUTE FUNCTION store_digest_track();
+INSERT INTO store_leaf_digest SELECT id / 256, digest_xor(store_digest_hash(id, name, quantityProductsInStock)) FROM store GROUP BY 1;
 
-INSERT INTO product(id, name, stock) VALUES (1, 'TONSTAD', 10);
-INSERT INTO product(id, name, stock) VALUES (2, 'KALLAX', 5);
-INSERT INTO product(id, name, stock) VALUES (3, 'BESTÅ', 3);
+INSERT INTO product(id, name, stock, version) VALUES (1, 'TONSTAD', 10, 0);
+INSERT INTO product(id, name, stock, version) VALUES (2, 'KALLAX', 5, 0);
+INSERT INTO product(id, name, stock, version) VALUES (3, 'BESTÅ', 3, 0);
 ALTER SEQUENCE product_seq RESTART WITH 4;
+-- GET /product/search, keyset pages in name order; the unfiltered case runs on the unique index on name
+CREATE INDEX ix_product_name_lower ON product (lower(name) text_pattern_ops);
+CREATE INDEX ix_product_price_name ON product (price, name);
+CREATE INDEX ix_product_in_stock_name ON product (name) WHERE stock > 0;
+CREATE INDEX ix_product_out_of_stock_name ON product (name) WHERE stock <= 0;
+
+-- fulfilment associations; deleting a product or store removes its associations first, in the same transaction
+ALTER TABLE fulfilment_association ADD CONSTRAINT fk_fulfilment_association_product FOREIGN KEY (product_id) REFERENCES product (id);
+ALTER TABLE fulfilment_association ADD CONSTRAINT fk_fulfilment_association_store FOREIGN KEY (store_id) REFERENCES store (id);
+
+-- one active warehouse per business unit code; archived ones keep theirs, so a replacement can reuse it
+CREATE UNIQUE INDEX uk_warehouses_bucode ON warehouses (businessUnitCode) WHERE archivedAt IS NULL;
 
 INSERT INTO warehouse(id, businessUnitCode, location, capacity, stock, createdAt, archivedAt) 
 VALUES (1, 'MWH.001', 'ZWOLLE-001', 100, 10, '2024-07-01', null);
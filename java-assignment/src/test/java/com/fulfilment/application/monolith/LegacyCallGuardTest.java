@@ -0,0 +1,225 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.AdaptiveConcurrencyLimiter;
+import com.fulfilment.application.monolith.stores.CircuitBreaker;
+import com.fulfilment.application.monolith.stores.LegacyCallGuard;
+import com.fulfilment.application.monolith.stores.LegacyCallTimeoutException;
+import com.fulfilment.application.monolith.stores.LegacyUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LegacyCallGuardTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // ---------- limiter ----------
+    @Test
+    void limiter_growsAdditivelyOnFastCalls_andHalvesOnDrops() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 100, 0.5);
+        for (int i = 0; i < 40; i++) {
+            assertTrue(limiter.tryAcquire(0));
+            limiter.onSuccess(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        assertTrue(limiter.limit() >= 8, "limit " + limiter.limit());
+
+        long before = System.nanoTime();
+        assertTrue(limiter.tryAcquire(0));
+        assertTrue(limiter.tryAcquire(0));
+        limiter.onDropped(before);
+        int halved = limiter.limit();
+        assertTrue(halved <= 5, "limit " + halved);
+        limiter.onDropped(before);
+        assertEquals(halved, limiter.limit(), "a call already in flight at the cut does not cut again");
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(0);
+            limiter.onSuccess(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(500)); // slow: treated like a drop
+        }
+        assertEquals(1, limiter.limit(), "never below the minimum");
+    }
+
+    @Test
+    void limiter_refusesBeyondTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 100, 0.5);
+        assertTrue(limiter.tryAcquire(0));
+        assertTrue(limiter.tryAcquire(0));
+        assertFalse(limiter.tryAcquire(TimeUnit.MILLISECONDS.toNanos(20)));
+        assertEquals(2, limiter.inFlight());
+    }
+
+    @Test
+    void limiter_settlesNearTheConcurrencyTheDownstreamCanSustain() throws Exception {
+        // downstream serves 8 calls in parallel at 20 ms; beyond that calls queue and latency grows linearly
+        int capacity = 8;
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 64, 30, 0.5);
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int round = 0; round < 400; round++) {
+            int concurrency = limiter.limit();
+            long started = System.nanoTime();
+            for (int i = 0; i < concurrency; i++) {
+                assertTrue(limiter.tryAcquire(0));
+            }
+            long latencyMs = 20L * Math.max(1, (concurrency + capacity - 1) / capacity);
+            for (int i = 0; i < concurrency; i++) {
+                limiter.onSuccess(started, TimeUnit.MILLISECONDS.toNanos(latencyMs));
+            }
+            if (round >= 200) {
+                min = Math.min(min, limiter.limit());
+                max = Math.max(max, limiter.limit());
+            }
+        }
+        assertTrue(min >= capacity / 2 && max <= capacity + 1, "limit oscillated between " + min + " and " + max);
+    }
+
+    // ---------- circuit breaker ----------
+    @Test
+    void breaker_opensOnFailureRate_thenClosesAfterSuccessfulTrials() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1000, 2, now::get);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onResult(i == 0);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state(), "below the minimum number of calls");
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onResult(false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission(), "only two trial calls");
+        breaker.onResult(true);
+        breaker.onResult(true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void breaker_failedTrialReopens() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5, 1000, 1, now::get);
+        breaker.tryAcquirePermission();
+        breaker.onResult(false);
+        breaker.tryAcquirePermission();
+        breaker.onResult(false);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onResult(false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    // ---------- guard ----------
+    @Test
+    void call_timesOut_countsIt_andLowersTheLimit() throws Exception {
+        LegacyCallGuard guard = guard(8, 50, new CircuitBreaker(10, 10, 0.5, 1000, 1));
+        CountDownLatch never = new CountDownLatch(1);
+
+        assertThrows(LegacyCallTimeoutException.class, () -> guard.call(() -> await(never)));
+
+        assertEquals(1.0, registry.get("legacy.calls.timeouts").counter().count());
+        assertEquals(4, guard.limit());
+        awaitInFlight(guard, 0); // the interrupted call returns and gives its slot back
+    }
+
+    @Test
+    void call_timedOutButStillRunning_keepsItsSlotUntilItReturns() throws Exception {
+        LegacyCallGuard guard = guard(2, 50, new CircuitBreaker(10, 10, 0.5, 1000, 1));
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable ignoresInterrupts = () -> {
+            while (release.getCount() > 0) {
+                await(release);
+            }
+        };
+
+        assertThrows(LegacyCallTimeoutException.class, () -> guard.call(ignoresInterrupts));
+
+        assertEquals(1, guard.limit());
+        assertEquals(1, guard.inFlight(), "the legacy call is still running");
+        assertThrows(LegacyUnavailableException.class, () -> guard.call(() -> { }));
+
+        release.countDown();
+        awaitInFlight(guard, 0);
+        guard.call(() -> { });
+        assertEquals(0, guard.inFlight());
+    }
+
+    @Test
+    void call_failurePropagatesTheCause() {
+        LegacyCallGuard guard = guard(4, 1000, new CircuitBreaker(10, 10, 0.5, 1000, 1));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> guard.call(() -> { throw new IllegalStateException("legacy down"); }));
+        assertEquals("legacy down", e.getMessage());
+    }
+
+    @Test
+    void call_whenCircuitOpen_failsFastWithoutRunning() {
+        LegacyCallGuard guard = guard(4, 1000, new CircuitBreaker(2, 2, 0.5, 60_000, 1));
+        for (int i = 0; i < 2; i++) {
+            assertThrows(IllegalStateException.class, () -> guard.call(() -> { throw new IllegalStateException(); }));
+        }
+        AtomicLong runs = new AtomicLong();
+
+        LegacyUnavailableException e = assertThrows(LegacyUnavailableException.class, () -> guard.call(runs::incrementAndGet));
+
+        assertInstanceOf(RejectedExecutionException.class, e, "left in the outbox rather than dead-lettered");
+        assertEquals(0, runs.get());
+        assertEquals(CircuitBreaker.State.OPEN, guard.circuitState());
+        assertEquals(2.0, registry.get("legacy.circuit.state").gauge().value());
+        assertEquals(1.0, registry.get("legacy.calls.rejected").tag("reason", "circuit_open").counter().count());
+    }
+
+    @Test
+    void call_beyondTheLimit_isRejected() throws Exception {
+        LegacyCallGuard guard = guard(1, 5000, new CircuitBreaker(10, 10, 0.5, 1000, 1));
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> guard.call(() -> await(release)));
+        holder.start();
+        while (guard.inFlight() == 0) {
+            Thread.sleep(1);
+        }
+
+        assertThrows(LegacyUnavailableException.class, () -> guard.call(() -> { }));
+        assertEquals(1.0, registry.get("legacy.calls.rejected").tag("reason", "limit").counter().count());
+        assertEquals(1.0, registry.get("legacy.limiter.limit").gauge().value());
+        assertEquals(1.0, registry.get("legacy.limiter.in_flight").gauge().value());
+
+        release.countDown();
+        holder.join();
+        guard.call(() -> { });
+    }
+
+    // ---------- helpers ----------
+    private LegacyCallGuard guard(int limit, long timeoutMs, CircuitBreaker breaker) {
+        return new LegacyCallGuard(registry, new AdaptiveConcurrencyLimiter(limit, 1, 16, 1000, 0.5), breaker,
+                timeoutMs, 20, 16);
+    }
+
+    private static void awaitInFlight(LegacyCallGuard guard, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (guard.inFlight() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, guard.inFlight());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.LegacyStoreJournal;
+import com.fulfilment.application.monolith.stores.LegacyStoreJournal.Durability;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LegacyStoreJournalTest {
+
+    private static final int HEADER_BYTES = 8; // [length][crc32]
+
+    @TempDir
+    Path dir;
+
+    private LegacyStoreJournal journal;
+
+    @AfterEach
+    void tearDown() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private LegacyStoreJournal open(Durability durability, long segmentBytes) {
+        journal = new LegacyStoreJournal(dir.toString(), durability, segmentBytes, 1024);
+        journal.open();
+        return journal;
+    }
+
+    private static byte[] record(int i) {
+        return ("[action=UPDATE] [id=" + i + "] [name=store-" + i + "] [items=" + i + "]").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long totalRecords() throws Exception {
+        long records = 0;
+        for (Path segment : LegacyStoreJournal.segments(dir)) {
+            LegacyStoreJournal.ScanResult scan = LegacyStoreJournal.scan(segment);
+            assertTrue(scan.clean(), "Segment " + segment + " should be intact");
+            records += scan.records;
+        }
+        return records;
+    }
+
+    @Test
+    void syncAppends_fromManyThreads_areGroupCommitted() throws Exception {
+        open(Durability.SYNC, 1 << 20);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int n = i;
+            futures.add(pool.submit(() -> journal.append(record(n))));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(2000, journal.appendedRecords());
+        assertTrue(journal.forces() < 2000, "Concurrent appends should share forces, got " + journal.forces());
+        journal.close();
+        assertEquals(2000, totalRecords());
+    }
+
+    @Test
+    void durableAppend_inAsyncMode_returnsOnlyOnceItsBatchIsForced() throws Exception {
+        open(Durability.ASYNC, 1 << 20);
+
+        journal.appendDurably(record(1));
+
+        assertEquals(1, journal.appendedRecords());
+        assertEquals(1, journal.forces());
+        assertEquals(0, journal.queuedRecords());
+        assertEquals(1, totalRecords());
+    }
+
+    @Test
+    void segments_rotateAtConfiguredSize() throws Exception {
+        open(Durability.NONE, 4096);
+        for (int i = 0; i < 500; i++) {
+            journal.append(record(i));
+        }
+        journal.close();
+
+        List<Path> segments = LegacyStoreJournal.segments(dir);
+        assertTrue(segments.size() > 1, "Expected rotation, got " + segments.size() + " segment(s)");
+        for (Path segment : segments) {
+            assertTrue(Files.size(segment) <= 4096);
+        }
+        assertEquals(500, totalRecords());
+    }
+
+    @Test
+    void reopen_truncatesTornTailAndKeepsAppending() throws Exception {
+        open(Durability.ASYNC, 1 << 20);
+        for (int i = 0; i < 10; i++) {
+            journal.append(record(i));
+        }
+        journal.close();
+
+        Path segment = LegacyStoreJournal.segments(dir).get(0);
+        Files.write(segment, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND); // torn record
+        assertFalse(LegacyStoreJournal.scan(segment).clean());
+
+        open(Durability.ASYNC, 1 << 20);
+        journal.append(record(10));
+        journal.close();
+
+        assertEquals(11, totalRecords());
+    }
+
+    @Test
+    void scan_stopsAtChecksumMismatch() throws Exception {
+        open(Durability.SYNC, 1 << 20);
+        journal.append(record(1));
+        journal.append(record(2));
+        journal.close();
+
+        Path segment = LegacyStoreJournal.segments(dir).get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 0x7f; // corrupt the last payload byte
+        Files.write(segment, bytes);
+
+        LegacyStoreJournal.ScanResult scan = LegacyStoreJournal.scan(segment);
+        assertEquals(1, scan.records);
+        assertFalse(scan.clean());
+    }
+
+    @Test
+    void read_skipsADamagedRecordMidSegment_andKeepsTheOnesAfterIt() throws Exception {
+        open(Durability.SYNC, 1 << 20);
+        for (int i = 0; i < 5; i++) {
+            journal.append(record(i));
+        }
+        journal.close();
+
+        Path segment = LegacyStoreJournal.segments(dir).get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        int second = HEADER_BYTES + record(0).length;
+        bytes[second + HEADER_BYTES + 3] ^= 0x7f; // corrupt record 1's payload
+        Files.write(segment, bytes);
+
+        List<String> replayed = new ArrayList<>();
+        LegacyStoreJournal.ScanResult scan = LegacyStoreJournal.read(segment,
+                payload -> replayed.add(new String(payload, StandardCharsets.UTF_8)));
+
+        assertEquals(List.of(new String(record(0), StandardCharsets.UTF_8), new String(record(2), StandardCharsets.UTF_8),
+                new String(record(3), StandardCharsets.UTF_8), new String(record(4), StandardCharsets.UTF_8)), replayed);
+        assertEquals(HEADER_BYTES + record(1).length, scan.skippedBytes);
+        assertEquals(bytes.length, scan.validBytes);
+        assertFalse(scan.clean());
+    }
+
+    @Test
+    void reopen_withATornLengthMidSegment_keepsLaterRecordsAndAppends() throws Exception {
+        open(Durability.SYNC, 1 << 20);
+        for (int i = 0; i < 5; i++) {
+            journal.append(record(i));
+        }
+        journal.close();
+
+        Path segment = LegacyStoreJournal.segments(dir).get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        int second = HEADER_BYTES + record(0).length;
+        bytes[second] = 0x7f; // record 1 now claims to be ~2 GB long
+        Files.write(segment, bytes);
+
+        open(Durability.SYNC, 1 << 20);
+        journal.append(record(5));
+        journal.close();
+
+        LegacyStoreJournal.ScanResult scan = LegacyStoreJournal.scan(segment);
+        assertEquals(5, scan.records);
+        assertEquals(scan.totalBytes, scan.validBytes);
+    }
+
+    @Test
+    void rotate_whenTheNextSegmentCannotBeOpened_keepsTheCurrentOneWritable() throws Exception {
+        open(Durability.SYNC, 512);
+        Path blocked = dir.resolve(String.format("legacy-store-%020d.journal", 2));
+        Files.createDirectory(blocked); // the next segment's name is taken by a directory
+
+        int written = 0;
+        int failed = 0;
+        for (int i = 0; i < 20; i++) {
+            try {
+                journal.append(record(i));
+                written++;
+            } catch (RuntimeException e) {
+                failed++;
+            }
+        }
+        assertTrue(failed > 0, "Expected the rotation to fail");
+
+        Files.delete(blocked);
+        journal.append(record(20));
+        journal.close();
+
+        assertTrue(LegacyStoreJournal.segments(dir).size() > 1);
+        assertEquals(written + 1, totalRecords());
+    }
+
+    @Test
+    void append_afterClose_isRejected() {
+        open(Durability.ASYNC, 1 << 20);
+        journal.close();
+        assertThrows(IllegalStateException.class, () -> journal.append(record(1)));
+    }
+}
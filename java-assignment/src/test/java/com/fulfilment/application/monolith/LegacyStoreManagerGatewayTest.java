@@ -1,41 +1,52 @@
 package com.fulfilment.application.monolith;
 
+import com.fulfilment.application.monolith.stores.LegacyCallGuard;
+import com.fulfilment.application.monolith.stores.LegacyCallTimeoutException;
+import com.fulfilment.application.monolith.stores.LegacyStoreJournal;
 import com.fulfilment.application.monolith.stores.LegacyStoreManagerGateway;
+import com.fulfilment.application.monolith.stores.LegacyStoreState;
+import com.fulfilment.application.monolith.stores.LegacySyncMetrics;
+import com.fulfilment.application.monolith.stores.LegacyUnavailableException;
 import com.fulfilment.application.monolith.stores.Store;
+import com.fulfilment.application.monolith.stores.StoreChangeSnapshot;
+import com.fulfilment.application.monolith.stores.StoreChangeType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
+@ExtendWith(MockitoExtension.class)
 class LegacyStoreManagerGatewayTest {
 
-    private LegacyStoreManagerGateway gateway;
+    @Mock
+    LegacyStoreJournal journal;
+
+    @Mock
+    LegacyCallGuard guard;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
 
-    private PrintStream originalOut;
-    private PrintStream originalErr;
-    private ByteArrayOutputStream outBuffer;
-    private ByteArrayOutputStream errBuffer;
+    private final LegacyStoreState state = new LegacyStoreState(64);
+
+    private LegacyStoreManagerGateway gateway;
 
     @BeforeEach
     void setUp() {
-        gateway = new LegacyStoreManagerGateway();
-
-        // capture console
-        originalOut = System.out;
-        originalErr = System.err;
-        outBuffer = new ByteArrayOutputStream();
-        errBuffer = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(outBuffer));
-        System.setErr(new PrintStream(errBuffer));
-    }
-
-    @AfterEach
-    void tearDown() {
-        System.setOut(originalOut);
-        System.setErr(originalErr);
+        // the guard runs the call inline; its own behaviour is covered by LegacyCallGuardTest
+        lenient().doAnswer(inv -> {
+            inv.<Runnable>getArgument(0).run();
+            return null;
+        }).when(guard).call(any());
+        gateway = new LegacyStoreManagerGateway(journal, guard, new LegacySyncMetrics(registry), state);
     }
 
     // ---------- helpers ----------
@@ -47,116 +58,95 @@ class LegacyStoreManagerGatewayTest {
         return s;
     }
 
-    private static String getLineContaining(String output, String startsWith) {
-        for (String line : output.split(System.lineSeparator())) {
-            if (line.startsWith(startsWith)) {
-                return line;
-            }
-        }
-        return null;
+    private String appendedRecord() {
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(journal, times(1)).appendDurably(captor.capture());
+        return new String(captor.getValue(), StandardCharsets.UTF_8);
     }
 
-    private static String extractPathFromPrintedLine(String line) {
-        // line format: "Legacy sync temp file: <path>"
-        return line == null ? null : line.replace("Legacy sync temp file: ", "").trim();
-    }
+    // ---------- CREATE ----------
+    @Test
+    void create_shouldAppendSingleCreateRecord() {
+        gateway.createStoreOnLegacySystem(store(101L, "Warehouse-A", 15));
 
-    private static String extractPayload(String line, String prefix) {
-        // "Written: <payload>" or "Read back: <payload>"
-        return line == null ? null : line.replace(prefix, "").trim();
+        String record = appendedRecord();
+        assertTrue(record.startsWith("[action=CREATE] [ts="));
+        assertTrue(record.endsWith("[id=101] [name=Warehouse-A] [items=15]"));
     }
 
-    // ---------- CREATE ----------
     @Test
-    void create_shouldWriteAndReadBack_andDeleteTempFile() throws Exception {
-        Store s = store(101L, "Warehouse-A", 15);
-
-        gateway.createStoreOnLegacySystem(s);
+    void create_withNullName_shouldStillAppend() {
+        gateway.createStoreOnLegacySystem(store(202L, null, 5));
 
-        String out = outBuffer.toString();
+        assertTrue(appendedRecord().contains("[id=202] [name=null]"));
+    }
 
-        // path and payload lines present
-        String pathLine = getLineContaining(out, "Legacy sync temp file: ");
-        String writtenLine = getLineContaining(out, "Written: ");
-        String readBackLine = getLineContaining(out, "Read back: ");
+    // ---------- UPDATE ----------
+    @Test
+    void update_shouldIncludeActionUpdate_inRecord() {
+        gateway.updateStoreOnLegacySystem(store(11L, "My Shop", 42));
 
-        assertNotNull(pathLine, "Expected path line to be printed");
-        assertNotNull(writtenLine, "Expected written payload line");
-        assertNotNull(readBackLine, "Expected read-back payload line");
+        String record = appendedRecord();
+        assertTrue(record.contains("[action=UPDATE]"));
+        assertTrue(record.contains("[items=42]"));
+    }
 
-        // payload equality check (ignoring timestamp format, but the method prints identical content)
-        String writtenPayload = extractPayload(writtenLine, "Written: ");
-        String readBackPayload = extractPayload(readBackLine, "Read back: ");
-        assertEquals(writtenPayload, readBackPayload, "Read-back content should equal written content");
+    // ---------- DELETE ----------
+    @Test
+    void delete_shouldIncludeActionDelete_inRecord() {
+        gateway.deleteStoreOnLegacySystem(store(99L, "Demo", 0));
 
-        // file removed
-        String tempFilePath = extractPathFromPrintedLine(pathLine);
-        assertNotNull(tempFilePath);
-        assertFalse(Files.exists(Path.of(tempFilePath)), "Temp file should be deleted");
+        assertTrue(appendedRecord().contains("[action=DELETE]"));
     }
 
     @Test
-    void create_shouldUseSafeFilename_whenNameIsNullOrBlank() throws Exception {
-        Store s1 = store(202L, null, 5);
-        gateway.createStoreOnLegacySystem(s1);
-        String out1 = outBuffer.toString();
-        String pathLine1 = getLineContaining(out1, "Legacy sync temp file: ");
-        assertNotNull(pathLine1);
-        assertTrue(pathLine1.contains("store-202-create"),
-                "Filename prefix should use 'store-<id>-create' when name is null");
-
-        // reset buffer and test blank name
-        outBuffer.reset();
-        Store s2 = store(303L, "   ", 5);
-        gateway.createStoreOnLegacySystem(s2);
-        String out2 = outBuffer.toString();
-        String pathLine2 = getLineContaining(out2, "Legacy sync temp file: ");
-        assertNotNull(pathLine2);
-        assertTrue(pathLine2.contains("store-303-create"),
-                "Filename prefix should use 'store-<id>-create' when name is blank");
+    void journalFailure_shouldPropagate() {
+        doThrow(new IllegalStateException("Legacy store journal is not open.")).when(journal).appendDurably(any());
+
+        assertThrows(IllegalStateException.class,
+                () -> gateway.updateStoreOnLegacySystem(store(1L, "X", 1)));
+        assertEquals(0, state.size(), "A rejected write must not reach the reconciliation view");
     }
 
-    // ---------- UPDATE ----------
     @Test
-    void update_shouldIncludeActionUpdate_inPrintedPayload() {
-        Store s = store(11L, "My Shop", 42);
-
-        gateway.updateStoreOnLegacySystem(s);
-
-        String out = outBuffer.toString();
-        String writtenLine = getLineContaining(out, "Written: ");
-        assertNotNull(writtenLine);
-        assertTrue(writtenLine.contains("[action=UPDATE]"),
-                "Payload should indicate UPDATE action");
-        assertTrue(out.contains("Legacy sync temp file: "),
-                "Path line should be printed");
+    void acceptedWrites_areTrackedForReconciliation() {
+        gateway.createStoreOnLegacySystem(store(1L, "A", 1));
+        gateway.createStoreOnLegacySystem(store(2L, "B", 2));
+        gateway.updateStoreOnLegacySystem(store(1L, "A2", 5));
+        gateway.deleteStoreOnLegacySystem(store(2L, "B", 2));
+
+        assertEquals(1, state.size());
+        assertEquals("A2", state.stores(0, 64).get(0).name);
+        assertEquals(5, state.stores(0, 64).get(0).quantityProductsInStock);
     }
 
+    // ---------- metrics ----------
     @Test
-    void update_shouldUseNameInTempFilename_whenProvided() {
-        Store s = store(12L, "Fancy Store", 10);
-
-        gateway.updateStoreOnLegacySystem(s);
-
-        String out = outBuffer.toString();
-        String pathLine = getLineContaining(out, "Legacy sync temp file: ");
-        assertNotNull(pathLine);
-        assertTrue(pathLine.contains("Fancy Store-update"),
-                "Temp filename should include provided store name and action suffix");
+    void sync_recordsLatencyAndCommitLagPerChangeType() {
+        Instant committed = Instant.now().minusMillis(1500);
+        gateway.sync(new StoreChangeSnapshot(StoreChangeType.PATCH, 5L, "P", 1, committed));
+
+        assertEquals(1, registry.get("legacy.sync.latency").tag("type", "patch").timer().count());
+        assertEquals(0, registry.get("legacy.sync.latency").tag("type", "create").timer().count());
+        double lagMs = registry.get("legacy.sync.lag").tag("type", "patch").timer().totalTime(TimeUnit.MILLISECONDS);
+        assertTrue(lagMs >= 1500, "lag " + lagMs);
+        assertEquals(0.0, registry.get("legacy.sync.in_flight").gauge().value());
     }
 
-    // ---------- DELETE ----------
     @Test
-    void delete_shouldIncludeActionDelete_inPrintedPayload() {
-        Store s = store(99L, "Demo", 0);
-
-        gateway.deleteStoreOnLegacySystem(s);
+    void sync_countsFailuresByCause() {
+        doThrow(new LegacyCallTimeoutException("slow")).doThrow(new LegacyUnavailableException("open"))
+                .doThrow(new IllegalStateException("boom")).when(guard).call(any());
 
-        String out = outBuffer.toString();
-        String writtenLine = getLineContaining(out, "Written: ");
-        assertNotNull(writtenLine);
-        assertTrue(writtenLine.contains("[action=DELETE]"),
-                "Payload should indicate DELETE action");
-    }
+        for (int i = 0; i < 3; i++) {
+            assertThrows(RuntimeException.class, () -> gateway.deleteStoreOnLegacySystem(store(1L, "X", 1)));
+        }
 
+        for (String cause : new String[]{"timeout", "unavailable", "error"}) {
+            assertEquals(1.0, registry.get("legacy.sync.failures").tag("type", "delete").tag("cause", cause).counter().count(), cause);
+        }
+        assertEquals(0.0, registry.get("legacy.sync.failures").tag("type", "delete").tag("cause", "io").counter().count());
+        assertEquals(0, registry.get("legacy.sync.latency").tag("type", "delete").timer().count());
+        assertEquals(0.0, registry.get("legacy.sync.in_flight").gauge().value());
     }
+}
@@ -0,0 +1,357 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.LegacyStoreManagerGateway;
+import com.fulfilment.application.monolith.stores.LegacyStoreSyncDispatcher;
+import com.fulfilment.application.monolith.stores.LegacyStoreSyncDispatcher.OverflowPolicy;
+import com.fulfilment.application.monolith.stores.StoreChangeSnapshot;
+import com.fulfilment.application.monolith.stores.StoreChangeType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class LegacyStoreSyncDispatcherTest {
+
+    private final LegacyStoreManagerGateway gateway = mock(LegacyStoreManagerGateway.class);
+    private LegacyStoreSyncDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    private LegacyStoreSyncDispatcher start(int workers, int capacity, OverflowPolicy policy) {
+        return start(workers, capacity, policy, 0);
+    }
+
+    private LegacyStoreSyncDispatcher start(int workers, int capacity, OverflowPolicy policy, long windowMs) {
+        return start(workers, capacity, policy, windowMs, 1);
+    }
+
+    private LegacyStoreSyncDispatcher start(int workers, int capacity, OverflowPolicy policy, long windowMs, int maxAttempts) {
+        dispatcher = new LegacyStoreSyncDispatcher(gateway, workers, capacity, policy, 50, 5000, windowMs,
+                maxAttempts, 20, 200);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    private static StoreChangeSnapshot change(long storeId, int quantity) {
+        return change(StoreChangeType.UPDATE, storeId, quantity);
+    }
+
+    private static StoreChangeSnapshot change(StoreChangeType type, long storeId, int quantity) {
+        return new StoreChangeSnapshot(type, storeId, "store-" + storeId, quantity, Instant.now());
+    }
+
+    @Test
+    void changesOfOneStore_areAppliedInOrder_andNeverConcurrently() throws Exception {
+        Map<Long, List<Integer>> seen = new ConcurrentHashMap<>();
+        Map<Long, AtomicInteger> active = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        doAnswer(inv -> {
+            StoreChangeSnapshot c = inv.getArgument(0);
+            if (active.computeIfAbsent(c.storeId, k -> new AtomicInteger()).incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            seen.computeIfAbsent(c.storeId, k -> Collections.synchronizedList(new ArrayList<>())).add(c.quantityProductsInStock);
+            Thread.sleep(0, 50_000);
+            active.get(c.storeId).decrementAndGet();
+            return null;
+        }).when(gateway).sync(any());
+
+        start(8, 10_000, OverflowPolicy.BLOCK);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int q = 0; q < 200; q++) {
+            for (long store = 1; store <= 10; store++) {
+                futures.add(dispatcher.submit(change(store, q)));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(0, overlaps.get());
+        for (long store = 1; store <= 10; store++) {
+            List<Integer> quantities = seen.get(store);
+            assertEquals(200, quantities.size());
+            for (int q = 0; q < 200; q++) {
+                assertEquals(q, quantities.get(q), "store " + store + " out of order");
+            }
+        }
+    }
+
+    @Test
+    void slowStore_doesNotBlockOtherStores() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            StoreChangeSnapshot c = inv.getArgument(0);
+            if (c.storeId == 1L) release.await();
+            return null;
+        }).when(gateway).sync(any());
+
+        start(2, 100, OverflowPolicy.BLOCK);
+        CompletableFuture<Void> slow = dispatcher.submit(change(1, 1));
+        dispatcher.submit(change(2, 1)).get(2, TimeUnit.SECONDS);
+        dispatcher.submit(change(3, 1)).get(2, TimeUnit.SECONDS);
+
+        assertFalse(slow.isDone());
+        release.countDown();
+        slow.get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void overflow_rejectPolicy_failsFast() throws Exception {
+        assertOverflowRejected(OverflowPolicy.REJECT);
+    }
+
+    @Test
+    void overflow_blockPolicy_waitsForOfferTimeoutThenRejects() throws Exception {
+        long waitedMs = assertOverflowRejected(OverflowPolicy.BLOCK);
+        assertTrue(waitedMs >= 40, "BLOCK should wait for the offer timeout, waited " + waitedMs);
+    }
+
+    private long assertOverflowRejected(OverflowPolicy policy) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> { release.await(); return null; }).when(gateway).sync(any());
+        start(1, 2, policy);
+        dispatcher.submit(change(1, 0));   // in flight
+        Thread.sleep(50);
+        dispatcher.submit(change(1, 1));   // queued
+        dispatcher.submit(change(1, 2));   // queued, now full
+
+        long started = System.nanoTime();
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.submit(change(2, 0)));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertEquals(1, dispatcher.rejected());
+        release.countDown();
+        return waitedMs;
+    }
+
+    @Test
+    void shutdown_drainsQueuedChanges_thenRejectsNewOnes() throws Exception {
+        doAnswer(inv -> { Thread.sleep(1); return null; }).when(gateway).sync(any());
+        start(2, 1000, OverflowPolicy.BLOCK);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            futures.add(dispatcher.submit(change(i % 5, i)));
+        }
+
+        dispatcher.shutdown();
+
+        assertTrue(futures.stream().allMatch(f -> f.isDone() && !f.isCompletedExceptionally()));
+        verify(gateway, times(300)).sync(any());
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.submit(change(1, 1)));
+    }
+
+    @Test
+    void gatewayFailure_completesFutureExceptionally_andKeepsWorking() throws Exception {
+        doThrow(new IllegalStateException("legacy down")).doNothing().when(gateway).sync(any());
+        start(1, 10, OverflowPolicy.BLOCK);
+
+        CompletableFuture<Void> first = dispatcher.submit(change(1, 1));
+        CompletableFuture<Void> second = dispatcher.submit(change(1, 2));
+
+        second.get(2, TimeUnit.SECONDS);
+        assertTrue(first.isCompletedExceptionally());
+        assertEquals(1, dispatcher.failed());
+        assertEquals(1, dispatcher.completed());
+    }
+
+    @Test
+    void coalescing_patchBurstWithinWindow_sendsOnlyLatestState() throws Exception {
+        start(2, 100, OverflowPolicy.BLOCK, 100);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int q = 1; q <= 5; q++) {
+            futures.add(dispatcher.submit(change(StoreChangeType.PATCH, 1, q)));
+        }
+        futures.add(dispatcher.submit(change(2, 7)));
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(2, TimeUnit.SECONDS);
+
+        ArgumentCaptor<StoreChangeSnapshot> captor = ArgumentCaptor.forClass(StoreChangeSnapshot.class);
+        verify(gateway, times(2)).sync(captor.capture());
+        StoreChangeSnapshot store1 = captor.getAllValues().stream().filter(c -> c.storeId == 1L).findFirst().orElseThrow();
+        assertEquals(StoreChangeType.PATCH, store1.type);
+        assertEquals(5, store1.quantityProductsInStock);
+        assertEquals(4, dispatcher.coalesced());
+    }
+
+    @Test
+    void coalescing_createThenUpdate_staysCreateWithLatestState() throws Exception {
+        start(1, 100, OverflowPolicy.BLOCK, 100);
+        dispatcher.submit(change(StoreChangeType.CREATE, 1, 1));
+        dispatcher.submit(change(StoreChangeType.UPDATE, 1, 2)).get(2, TimeUnit.SECONDS);
+
+        ArgumentCaptor<StoreChangeSnapshot> captor = ArgumentCaptor.forClass(StoreChangeSnapshot.class);
+        verify(gateway).sync(captor.capture());
+        assertEquals(StoreChangeType.CREATE, captor.getValue().type);
+        assertEquals(2, captor.getValue().quantityProductsInStock);
+    }
+
+    @Test
+    void coalescing_createThenDelete_cancelsBoth() throws Exception {
+        start(1, 100, OverflowPolicy.BLOCK, 100);
+        CompletableFuture<Void> created = dispatcher.submit(change(StoreChangeType.CREATE, 1, 1));
+        dispatcher.submit(change(StoreChangeType.PATCH, 1, 2));
+        CompletableFuture<Void> deleted = dispatcher.submit(change(StoreChangeType.DELETE, 1, 2));
+
+        created.get(2, TimeUnit.SECONDS);
+        deleted.get(2, TimeUnit.SECONDS);
+        dispatcher.submit(change(2, 1)).get(2, TimeUnit.SECONDS);
+        verify(gateway, never()).sync(argThat(c -> c.storeId == 1L));
+        assertEquals(0, dispatcher.queued());
+        assertEquals(3, dispatcher.coalesced());
+    }
+
+    @Test
+    void coalescing_foldsBehindInFlightChange_andKeepsOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(inv -> {
+            StoreChangeSnapshot c = inv.getArgument(0);
+            seen.add(c.quantityProductsInStock);
+            if (c.quantityProductsInStock == 1) release.await();
+            return null;
+        }).when(gateway).sync(any());
+        start(2, 100, OverflowPolicy.BLOCK, 20);
+
+        dispatcher.submit(change(1, 1));
+        Thread.sleep(100); // first change is now in flight
+        dispatcher.submit(change(1, 2));
+        CompletableFuture<Void> last = dispatcher.submit(change(StoreChangeType.DELETE, 1, 3));
+        release.countDown();
+        last.get(2, TimeUnit.SECONDS);
+
+        assertEquals(List.of(1, 3), seen);
+    }
+
+    @Test
+    void coalescing_neverCancelsAChangeThatWasAlreadyTried() throws Exception {
+        CountDownLatch failedOnce = new CountDownLatch(1);
+        List<StoreChangeType> seen = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(inv -> {
+            StoreChangeSnapshot c = inv.getArgument(0);
+            seen.add(c.type);
+            if (failedOnce.getCount() > 0) {
+                failedOnce.countDown();
+                throw new IllegalStateException("timed out, may have reached the legacy system");
+            }
+            return null;
+        }).when(gateway).sync(any());
+        dispatcher = new LegacyStoreSyncDispatcher(gateway, 1, 100, OverflowPolicy.BLOCK, 50, 5000, 20, 5, 300, 300);
+        dispatcher.start();
+
+        CompletableFuture<Void> created = dispatcher.submit(change(StoreChangeType.CREATE, 1, 1));
+        assertTrue(failedOnce.await(2, TimeUnit.SECONDS));
+        CompletableFuture<Void> deleted = dispatcher.submit(change(StoreChangeType.DELETE, 1, 1));
+        CompletableFuture.allOf(created, deleted).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(StoreChangeType.CREATE, StoreChangeType.CREATE, StoreChangeType.DELETE), seen);
+        assertEquals(0, dispatcher.coalesced());
+    }
+
+    @Test
+    void coalescing_shutdownFlushesChangesStillInTheirWindow() {
+        start(1, 100, OverflowPolicy.BLOCK, 60_000);
+        CompletableFuture<Void> pending = dispatcher.submit(change(1, 1));
+
+        dispatcher.shutdown();
+
+        assertTrue(pending.isDone() && !pending.isCompletedExceptionally());
+        verify(gateway).sync(any());
+    }
+
+    @Test
+    void retry_failedChangeIsRetriedWithBackoff_andLaterChangesWaitBehindIt() throws Exception {
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        List<Long> attemptTimes = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(inv -> {
+            StoreChangeSnapshot c = inv.getArgument(0);
+            if (c.quantityProductsInStock == 1) {
+                attemptTimes.add(System.nanoTime());
+                if (attemptTimes.size() < 3) throw new IllegalStateException("legacy down");
+            }
+            seen.add(c.quantityProductsInStock);
+            return null;
+        }).when(gateway).sync(any());
+        start(1, 100, OverflowPolicy.BLOCK, 0, 5);
+
+        CompletableFuture<Void> first = dispatcher.submit(change(1, 1));
+        CompletableFuture<Void> second = dispatcher.submit(change(1, 2));
+        CompletableFuture<Void> other = dispatcher.submit(change(2, 9));
+
+        CompletableFuture.allOf(first, second, other).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(9, 1, 2), seen, "the other store is not held up; store 1 keeps its order");
+        assertEquals(2, dispatcher.retried());
+        assertEquals(0, dispatcher.failed());
+        long firstBackoffMs = TimeUnit.NANOSECONDS.toMillis(attemptTimes.get(1) - attemptTimes.get(0));
+        long secondBackoffMs = TimeUnit.NANOSECONDS.toMillis(attemptTimes.get(2) - attemptTimes.get(1));
+        assertTrue(firstBackoffMs >= 10, "first backoff " + firstBackoffMs);
+        assertTrue(secondBackoffMs >= 20, "second backoff " + secondBackoffMs);
+    }
+
+    @Test
+    void retry_givesUpAfterMaxAttempts_andFailsTheFuture() throws Exception {
+        doThrow(new IllegalStateException("legacy down")).when(gateway).sync(any());
+        start(2, 100, OverflowPolicy.BLOCK, 0, 3);
+
+        CompletableFuture<Void> future = dispatcher.submit(change(1, 1));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        verify(gateway, times(3)).sync(any());
+        assertEquals(2, dispatcher.retried());
+        assertEquals(1, dispatcher.failed());
+    }
+
+    @Test
+    void retry_doesNotHoldAWorkerWhileBackingOff() throws Exception {
+        doThrow(new IllegalStateException("legacy down")).doNothing().when(gateway).sync(argThat(c -> c.storeId == 1L));
+        dispatcher = new LegacyStoreSyncDispatcher(gateway, 1, 100, OverflowPolicy.BLOCK, 50, 5000, 0, 5, 1000, 1000);
+        dispatcher.start();
+
+        CompletableFuture<Void> retried = dispatcher.submit(change(1, 1));
+        Thread.sleep(50);
+        dispatcher.submit(change(2, 1)).get(300, TimeUnit.MILLISECONDS);
+
+        assertFalse(retried.isDone(), "store 1 is still backing off");
+        retried.get(3, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void bindTo_exposesQueueDepthAndOutcomeCounters() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> { release.await(); return null; }).when(gateway).sync(any());
+        start(1, 100, OverflowPolicy.BLOCK);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dispatcher.bindTo(registry);
+
+        dispatcher.submit(change(1, 1));
+        Thread.sleep(50);
+        CompletableFuture<Void> queued = dispatcher.submit(change(1, 2));
+        assertEquals(1.0, registry.get("legacy.sync.queued").gauge().value());
+
+        release.countDown();
+        queued.get(2, TimeUnit.SECONDS);
+        assertEquals(0.0, registry.get("legacy.sync.queued").gauge().value());
+        assertEquals(2.0, registry.get("legacy.sync.completed").functionCounter().count());
+        assertEquals(0.0, registry.get("legacy.sync.failed").functionCounter().count());
+    }
+}
@@ -6,91 +6,66 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
-import static org.mockito.ArgumentMatchers.isNull;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 /**
  * Unit tests for LegacyStoreSyncObserver.
- * Verifies dispatch to LegacyStoreManagerGateway per StoreChangeType.
+ * The change is already in the outbox when the observer runs; it only wakes the relay and the sinks.
  */
 @ExtendWith(MockitoExtension.class)
 class LegacyStoreSyncObserverTest {
 
     @Mock
-    private LegacyStoreManagerGateway legacyStoreManagerGateway;
-
-    @InjectMocks
-    private LegacyStoreSyncObserver observer;
-
-    // ---- CREATE ----
-    @Test
-    void onStoreChange_create_shouldInvokeCreateOnGateway() {
-        Store store = new Store();
-        StoreChangeEvent event = mockEvent(StoreChangeType.CREATE, store);
-
-        observer.onStoreChange(event);
+    private StoreOutboxRelay storeOutboxRelay;
 
-        verify(legacyStoreManagerGateway, times(1)).createStoreOnLegacySystem(store);
-        verify(legacyStoreManagerGateway, never()).updateStoreOnLegacySystem(any());
-        verify(legacyStoreManagerGateway, never()).deleteStoreOnLegacySystem(any());
-    }
-
-    // ---- UPDATE ----
-    @Test
-    void onStoreChange_update_shouldInvokeUpdateOnGateway() {
-        Store store = new Store();
-        StoreChangeEvent event = mockEvent(StoreChangeType.UPDATE, store);
+    @Mock
+    private StoreChangeFanout storeChangeFanout;
 
-        observer.onStoreChange(event);
+    @Mock
+    private LegacySyncMetrics legacySyncMetrics;
 
-        verify(legacyStoreManagerGateway, times(1)).updateStoreOnLegacySystem(store);
-        verify(legacyStoreManagerGateway, never()).createStoreOnLegacySystem(any());
-        verify(legacyStoreManagerGateway, never()).deleteStoreOnLegacySystem(any());
-    }
+    @InjectMocks
+    private LegacyStoreSyncObserver observer;
 
-    // ---- PATCH ----
     @Test
-    void onStoreChange_patch_shouldInvokeUpdateOnGateway() {
-        Store store = new Store();
-        StoreChangeEvent event = mockEvent(StoreChangeType.PATCH, store);
-
-        observer.onStoreChange(event);
-
-        verify(legacyStoreManagerGateway, times(1)).updateStoreOnLegacySystem(store);
-        verify(legacyStoreManagerGateway, never()).createStoreOnLegacySystem(any());
-        verify(legacyStoreManagerGateway, never()).deleteStoreOnLegacySystem(any());
+    void onStoreChange_shouldWakeRelayForEveryType() {
+        for (StoreChangeType type : StoreChangeType.values()) {
+            observer.onStoreChange(new StoreChangeEvent(type, store(7L, "Zwolle", 3)));
+        }
+        verify(storeOutboxRelay, times(StoreChangeType.values().length)).wakeUp();
+        verify(storeChangeFanout, times(StoreChangeType.values().length)).wakeUp();
+        for (StoreChangeType type : StoreChangeType.values()) {
+            verify(legacySyncMetrics).changeCommitted(type);
+        }
     }
 
-    // ---- DELETE ----
     @Test
-    void onStoreChange_delete_shouldInvokeDeleteOnGateway() {
-        Store store = new Store();
-        StoreChangeEvent event = mockEvent(StoreChangeType.DELETE, store);
-
-        observer.onStoreChange(event);
-
-        verify(legacyStoreManagerGateway, times(1)).deleteStoreOnLegacySystem(store);
-        verify(legacyStoreManagerGateway, never()).createStoreOnLegacySystem(any());
-        verify(legacyStoreManagerGateway, never()).updateStoreOnLegacySystem(any());
+    void storeChangeEvent_withoutAStore_cannotBeFired() {
+        assertThrows(NullPointerException.class, () -> new StoreChangeEvent(StoreChangeType.CREATE, null));
     }
 
-    // ---- Null store payload (should not throw; gateway receives null) ----
     @Test
-    void onStoreChange_create_withNullStore_shouldNotThrow_andPassNullToGateway() {
-        StoreChangeEvent event = mockEvent(StoreChangeType.CREATE, null);
-
-        assertDoesNotThrow(() -> observer.onStoreChange(event));
-        verify(legacyStoreManagerGateway, times(1)).createStoreOnLegacySystem(isNull());
-        verify(legacyStoreManagerGateway, never()).updateStoreOnLegacySystem(any());
-        verify(legacyStoreManagerGateway, never()).deleteStoreOnLegacySystem(any());
+    void onStoreBatchChange_countsEveryChange_butWakesOnce() {
+        observer.onStoreBatchChange(new StoreBatchChangeEvent(List.of(
+                new StoreChangeEvent(StoreChangeType.CREATE, store(1L, "A", 1)),
+                new StoreChangeEvent(StoreChangeType.CREATE, store(2L, "B", 1)),
+                new StoreChangeEvent(StoreChangeType.UPDATE, store(3L, "C", 1)))));
+
+        verify(legacySyncMetrics, times(2)).changeCommitted(StoreChangeType.CREATE);
+        verify(legacySyncMetrics).changeCommitted(StoreChangeType.UPDATE);
+        verify(storeOutboxRelay, times(1)).wakeUp();
+        verify(storeChangeFanout, times(1)).wakeUp();
     }
 
-    // ---- helper to mock event with desired type/store ----
-    private static StoreChangeEvent mockEvent(StoreChangeType type, Store store) {
-        StoreChangeEvent event = mock(StoreChangeEvent.class);
-        when(event.getType()).thenReturn(type);
-        when(event.getStore()).thenReturn(store);
-        return event;
+    // ---- helpers ----
+    private static Store store(Long id, String name, int qty) {
+        Store s = new Store();
+        s.id = id;
+        s.name = name;
+        s.quantityProductsInStock = qty;
+        return s;
     }
 }
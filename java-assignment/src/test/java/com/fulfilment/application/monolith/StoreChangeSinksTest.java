@@ -0,0 +1,56 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Unit tests for the search-index and reporting stand-in sinks. */
+class StoreChangeSinksTest {
+
+    @TempDir
+    Path dir;
+
+    private static StoreChangeSnapshot change(StoreChangeType type, long id, String name, int items) {
+        return new StoreChangeSnapshot(type, id, name, items, Instant.parse("2024-05-01T10:00:00Z"));
+    }
+
+    @Test
+    void searchIndex_followsRenamesAndDeletes() {
+        StoreSearchIndexSink sink = new StoreSearchIndexSink(true);
+
+        sink.deliver(List.of(
+                change(StoreChangeType.CREATE, 1, "Amsterdam", 1),
+                change(StoreChangeType.CREATE, 2, "Amstelveen", 1),
+                change(StoreChangeType.CREATE, 3, "Rotterdam", 1),
+                change(StoreChangeType.UPDATE, 3, "amsterdam-zuid", 1),
+                change(StoreChangeType.DELETE, 1, "Amsterdam", 1)));
+
+        assertEquals(List.of(2L, 3L), sink.searchByNamePrefix("AMS", 10));
+        assertEquals(List.of(3L), sink.searchByNamePrefix("amster", 10));
+        assertEquals(List.of(2L), sink.searchByNamePrefix("ams", 1));
+        assertTrue(sink.searchByNamePrefix("rot", 10).isEmpty());
+        assertEquals(2, sink.size());
+    }
+
+    @Test
+    void reporting_appendsOneCsvRowPerChange() throws Exception {
+        Path file = dir.resolve("reports/store-changes.csv");
+        StoreReportingSink sink = new StoreReportingSink(file.toString(), true);
+
+        sink.deliver(List.of(change(StoreChangeType.CREATE, 1, "Zwolle", 3)));
+        sink.deliver(List.of(change(StoreChangeType.UPDATE, 1, "Zwolle, \"Centrum\"", 4),
+                change(StoreChangeType.DELETE, 2, null, 0)));
+
+        assertEquals(List.of(
+                "2024-05-01T10:00:00Z,CREATE,1,Zwolle,3",
+                "2024-05-01T10:00:00Z,UPDATE,1,\"Zwolle, \"\"Centrum\"\"\",4",
+                "2024-05-01T10:00:00Z,DELETE,2,,0"), Files.readAllLines(file));
+    }
+}
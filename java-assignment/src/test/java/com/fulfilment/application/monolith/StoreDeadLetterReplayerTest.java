@@ -0,0 +1,122 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for dead-letter replay: batched, throttled on the outbox backlog, and built from the
+ * store's current state.
+ */
+@ExtendWith(MockitoExtension.class)
+class StoreDeadLetterReplayerTest {
+
+    @Mock
+    private StoreDeadLetterRepository storeDeadLetterRepository;
+
+    @Mock
+    private StoreOutboxRepository storeOutboxRepository;
+
+    @Mock
+    private StoreOutboxRelay storeOutboxRelay;
+
+    @Test
+    void replay_movesBatchesUntilTheTableIsEmpty_waitingForTheOutboxToDrain() throws Exception {
+        StoreDeadLetterReplayer replayer = replayer(100);
+        when(storeOutboxRepository.countPending()).thenReturn(250L, 40L, 0L, 99L, 0L);
+        when(storeDeadLetterRepository.replayBatch(100)).thenReturn(100, 100, 7, 0);
+
+        assertTrue(replayer.start());
+        awaitFinished(replayer);
+
+        assertEquals(207, replayer.status().replayed);
+        assertNull(replayer.status().lastError);
+        verify(storeDeadLetterRepository, times(4)).replayBatch(100);
+        verify(storeOutboxRepository, times(5)).countPending();
+        verify(storeOutboxRelay, times(3)).wakeUp();
+    }
+
+    @Test
+    void start_whileRunning_isRefused() throws Exception {
+        StoreDeadLetterReplayer replayer = replayer(10);
+        CountDownLatch release = new CountDownLatch(1);
+        when(storeDeadLetterRepository.replayBatch(10)).thenAnswer(i -> {
+            release.await();
+            return 0;
+        });
+
+        assertTrue(replayer.start());
+        assertFalse(replayer.start());
+        assertTrue(replayer.status().running);
+        release.countDown();
+        awaitFinished(replayer);
+        assertTrue(replayer.start(), "a finished replay can be started again");
+        awaitFinished(replayer);
+    }
+
+    @Test
+    void replay_stopsAndReportsTheErrorWhenTheDatabaseFails() throws Exception {
+        StoreDeadLetterReplayer replayer = replayer(10);
+        when(storeDeadLetterRepository.replayBatch(10)).thenReturn(10).thenThrow(new IllegalStateException("db down"));
+
+        replayer.start();
+        awaitFinished(replayer);
+
+        assertEquals(10, replayer.status().replayed);
+        assertEquals("db down", replayer.status().lastError);
+    }
+
+    @Test
+    void replayChange_usesTheStoresCurrentState() {
+        Store current = new Store("Renamed");
+        current.id = 3L;
+        current.quantityProductsInStock = 42;
+
+        StoreChangeSnapshot fromPatch = letter(StoreChangeType.PATCH).replayChange(current);
+        assertEquals(StoreChangeType.UPDATE, fromPatch.type);
+        assertEquals("Renamed", fromPatch.name);
+        assertEquals(42, fromPatch.quantityProductsInStock);
+
+        assertEquals(StoreChangeType.CREATE, letter(StoreChangeType.CREATE).replayChange(current).type);
+    }
+
+    @Test
+    void replayChange_forAStoreThatIsGone() {
+        assertNull(letter(StoreChangeType.CREATE).replayChange(null), "created and deleted since: nothing to send");
+        StoreChangeSnapshot delete = letter(StoreChangeType.UPDATE).replayChange(null);
+        assertEquals(StoreChangeType.DELETE, delete.type);
+        assertEquals(3L, delete.storeId);
+    }
+
+    // ---- helpers ----
+    private StoreDeadLetterReplayer replayer(int batchSize) {
+        return new StoreDeadLetterReplayer(storeDeadLetterRepository, storeOutboxRepository, storeOutboxRelay, batchSize, 1);
+    }
+
+    private static void awaitFinished(StoreDeadLetterReplayer replayer) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (replayer.status().running || replayer.status().finishedAt == null) {
+            assertTrue(System.nanoTime() < deadline, "replay did not finish");
+            Thread.sleep(5);
+        }
+    }
+
+    private static StoreDeadLetter letter(StoreChangeType type) {
+        StoreDeadLetter letter = new StoreDeadLetter();
+        letter.changeType = type;
+        letter.storeId = 3L;
+        letter.name = "Old";
+        letter.quantityProductsInStock = 1;
+        letter.createdAt = Instant.now();
+        return letter;
+    }
+}
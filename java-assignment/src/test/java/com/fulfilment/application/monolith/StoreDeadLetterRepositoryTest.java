@@ -0,0 +1,112 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.StoreChangeSnapshot;
+import com.fulfilment.application.monolith.stores.StoreChangeType;
+import com.fulfilment.application.monolith.stores.StoreDeadLetter;
+import com.fulfilment.application.monolith.stores.StoreDeadLetterRepository;
+import com.fulfilment.application.monolith.stores.StoreOutboxEntry;
+import com.fulfilment.application.monolith.stores.StoreOutboxRelay;
+import com.fulfilment.application.monolith.stores.StoreOutboxRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The dead-letter claim against Postgres: letters locked by a concurrent replay are skipped, not waited for. */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class StoreDeadLetterRepositoryTest {
+
+    // no store with this id exists, so each replay re-queues a delete
+    private static final long STORE = 990_101L;
+
+    @Inject
+    StoreDeadLetterRepository repository;
+
+    @Inject
+    StoreOutboxRepository storeOutboxRepository;
+
+    @Inject
+    StoreOutboxRelay relay;
+
+    @BeforeEach
+    void stopRelay() {
+        // the application's own relay would deliver the re-queued changes
+        relay.stop();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            repository.delete("storeId", STORE);
+            storeOutboxRepository.delete("storeId", STORE);
+        });
+        relay.start();
+    }
+
+    private long letter(String name) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            StoreOutboxEntry entry = StoreOutboxEntry.of(
+                    new StoreChangeSnapshot(StoreChangeType.UPDATE, STORE, name, 1, Instant.now()));
+            StoreDeadLetter letter = StoreDeadLetter.of(entry, 5, "legacy down");
+            repository.persist(letter);
+            return letter.id;
+        });
+    }
+
+    private List<Long> remaining() {
+        return QuarkusTransaction.requiringNew().call(() ->
+                repository.list("storeId = ?1 order by id", STORE).stream().map(letter -> letter.id).toList());
+    }
+
+    @Test
+    void replayBatch_skipsLettersLockedByAConcurrentReplay() throws Exception {
+        long locked = letter("A1");
+        letter("A2");
+        letter("A3");
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> holder = pool.submit(() -> QuarkusTransaction.requiringNew().run(() -> {
+            repository.getEntityManager()
+                    .createNativeQuery("SELECT id FROM store_dead_letter WHERE id = :id FOR UPDATE")
+                    .setParameter("id", locked)
+                    .getResultList();
+            holding.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(holding.await(30, TimeUnit.SECONDS));
+
+        try {
+            repository.replayBatch(1000);
+            assertEquals(List.of(locked), remaining(), "the locked letter is left to its replay");
+        } finally {
+            release.countDown();
+            holder.get(30, TimeUnit.SECONDS);
+            pool.shutdown();
+        }
+
+        repository.replayBatch(1000);
+        assertEquals(List.of(), remaining());
+        long requeued = QuarkusTransaction.requiringNew().call(() ->
+                storeOutboxRepository.count("storeId = ?1 and changeType = ?2", STORE, StoreChangeType.DELETE));
+        assertEquals(3, requeued);
+    }
+}
@@ -0,0 +1,76 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.*;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StoreDeadLetterResourceTest {
+
+    @Mock
+    private StoreDeadLetterRepository storeDeadLetterRepository;
+
+    @Mock
+    private StoreDeadLetterReplayer storeDeadLetterReplayer;
+
+    @InjectMocks
+    private StoreDeadLetterResource resource;
+
+    @Test
+    void list_rejectsPageSizesOutOfRange() {
+        assertEquals(400, assertThrows(WebApplicationException.class, () -> resource.list(0, null, 0)).getResponse().getStatus());
+        assertEquals(400, assertThrows(WebApplicationException.class, () -> resource.list(0, null, 1001)).getResponse().getStatus());
+        resource.list(5, 7L, 50);
+        verify(storeDeadLetterRepository).page(5, 7L, 50);
+    }
+
+    @Test
+    void replayAll_whenAlreadyRunning_returns409() {
+        when(storeDeadLetterReplayer.start()).thenReturn(false);
+
+        WebApplicationException e = assertThrows(WebApplicationException.class, () -> resource.replayAll());
+        assertEquals(409, e.getResponse().getStatus());
+    }
+
+    @Test
+    void replayAll_startsInTheBackground_andReturns202() {
+        when(storeDeadLetterReplayer.start()).thenReturn(true);
+
+        assertEquals(202, resource.replayAll().getStatus());
+    }
+
+    @Test
+    void singleLetterOperations_return404WhenMissing() {
+        assertEquals(404, assertThrows(WebApplicationException.class, () -> resource.getSingle(9)).getResponse().getStatus());
+        assertEquals(404, assertThrows(WebApplicationException.class, () -> resource.replayOne(9)).getResponse().getStatus());
+        assertEquals(404, assertThrows(WebApplicationException.class, () -> resource.purgeOne(9)).getResponse().getStatus());
+    }
+
+    @Test
+    void purge_parsesTheCutoff_andRejectsGarbage() {
+        when(storeDeadLetterRepository.purge(Instant.parse("2024-01-01T00:00:00Z"))).thenReturn(3L);
+
+        assertEquals(3L, resource.purge("2024-01-01T00:00:00Z", false).get("purged"));
+        assertEquals(400, assertThrows(WebApplicationException.class, () -> resource.purge("yesterday", false)).getResponse().getStatus());
+    }
+
+    @Test
+    void purge_withoutACutoff_needsAllExplicitly() {
+        assertEquals(400, assertThrows(WebApplicationException.class, () -> resource.purge(null, false)).getResponse().getStatus());
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.purge("2024-01-01T00:00:00Z", true)).getResponse().getStatus());
+        verifyNoInteractions(storeDeadLetterRepository);
+
+        when(storeDeadLetterRepository.purge(null)).thenReturn(7L);
+        assertEquals(7L, resource.purge(null, true).get("purged"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.Store;
+import com.fulfilment.application.monolith.stores.StoreDigest;
+import com.fulfilment.application.monolith.stores.StoreDigestRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Range digests computed by Postgres (13, as in the README) against the same hashes computed in Java. */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class StoreDigestRepositoryTest {
+
+    @Inject
+    StoreDigestRepository repository;
+
+    @Test
+    void childDigests_matchTheXorOfTheJavaHashes() {
+        long toId = repository.maxId() + 1;
+        List<StoreDigest> stores = repository.stores(0, toId);
+        assertFalse(stores.isEmpty());
+
+        Map<Long, Long> expected = new HashMap<>();
+        long all = 0;
+        for (StoreDigest store : stores) {
+            expected.merge(store.id / 2, store.hash, (a, b) -> a ^ b);
+            all ^= store.hash;
+        }
+
+        assertEquals(expected, repository.childDigests(0, toId, 2));
+        assertEquals(Map.of(0L, all), repository.childDigests(0, toId, toId));
+    }
+
+    @Test
+    void leafDigests_followInsertsUpdatesAndDeletes_beforeAndAfterFolding() {
+        List<Long> ids = QuarkusTransaction.requiringNew().call(() -> {
+            Store kept = new Store("DIGEST-KEPT");
+            kept.quantityProductsInStock = 4;
+            kept.persist();
+            Store deleted = new Store("DIGEST-DELETED");
+            deleted.persist();
+            return List.of(kept.id, deleted.id);
+        });
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                Store.<Store>findById(ids.get(0)).quantityProductsInStock = 9;
+                Store.deleteById(ids.get(1));
+            });
+            long leaf = StoreDigestRepository.LEAF_WIDTH;
+            long toId = (repository.maxId() / leaf + 1) * leaf;
+            Map<Long, Long> expected = new HashMap<>();
+            long all = 0;
+            for (StoreDigest store : repository.stores(0, toId)) {
+                expected.merge(store.id / leaf, store.hash, (a, b) -> a ^ b);
+                all ^= store.hash;
+            }
+
+            assertEquals(expected, repository.childDigests(0, toId, leaf), "deltas not yet folded");
+            repository.foldPending();
+            assertEquals(expected, repository.childDigests(0, toId, leaf));
+            assertEquals(Map.of(0L, all), repository.childDigests(0, toId, toId));
+        } finally {
+            QuarkusTransaction.requiringNew().run(() -> Store.delete("id in ?1", ids));
+        }
+    }
+}
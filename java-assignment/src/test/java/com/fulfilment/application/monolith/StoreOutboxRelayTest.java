@@ -0,0 +1,196 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the store outbox: the in-transaction writer and the relay that forwards claimed
+ * rows to the dispatcher and acknowledges only what was delivered.
+ */
+@ExtendWith(MockitoExtension.class)
+class StoreOutboxRelayTest {
+
+    @Mock
+    private StoreOutboxRepository storeOutboxRepository;
+
+    @Mock
+    private LegacyStoreSyncDispatcher legacyStoreSyncDispatcher;
+
+    @Mock
+    private StoreDeadLetterRepository storeDeadLetterRepository;
+
+    private StoreOutboxRelay relay;
+
+    @InjectMocks
+    private StoreOutboxWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        relay = new StoreOutboxRelay(storeOutboxRepository, storeDeadLetterRepository, legacyStoreSyncDispatcher, 3, 5, 1000, 30_000, 24, Optional.of("node-a"));
+    }
+
+    @Test
+    void writer_recordsSnapshotOfTheChange() {
+        Store store = new Store("Zwolle");
+        store.id = 4L;
+        store.quantityProductsInStock = 9;
+
+        writer.onStoreChange(new StoreChangeEvent(StoreChangeType.PATCH, store));
+
+        ArgumentCaptor<StoreChangeSnapshot> captor = ArgumentCaptor.forClass(StoreChangeSnapshot.class);
+        verify(storeOutboxRepository).record(captor.capture());
+        assertEquals(StoreChangeType.PATCH, captor.getValue().type);
+        assertEquals(4L, captor.getValue().storeId);
+        assertEquals(9, captor.getValue().quantityProductsInStock);
+    }
+
+    @Test
+    void writer_recordsEveryChangeOfABatch_inOrder() {
+        Store a = new Store("A");
+        a.id = 1L;
+        Store b = new Store("B");
+        b.id = 2L;
+
+        writer.onStoreBatchChange(new StoreBatchChangeEvent(List.of(
+                new StoreChangeEvent(StoreChangeType.CREATE, a), new StoreChangeEvent(StoreChangeType.UPDATE, b))));
+
+        ArgumentCaptor<StoreChangeSnapshot> captor = ArgumentCaptor.forClass(StoreChangeSnapshot.class);
+        verify(storeOutboxRepository, times(2)).record(captor.capture());
+        assertEquals(List.of(1L, 2L), captor.getAllValues().stream().map(c -> c.storeId).toList());
+        assertEquals(StoreChangeType.UPDATE, captor.getAllValues().get(1).type);
+    }
+
+    @Test
+    void relayBatch_submitsClaimedRowsInOrder_andAcknowledgesOnlyDelivered() {
+        when(storeOutboxRepository.claimBatch(eq(3), eq(Duration.ofMillis(30_000)), eq("node-a"), anyCollection())).thenReturn(List.of(
+                row(1L, 10L, "A"), row(2L, 11L, "B"), row(3L, 10L, "A2")));
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+        List<String> submittedNames = new ArrayList<>();
+        when(legacyStoreSyncDispatcher.submit(any())).thenAnswer(invocation -> {
+            submittedNames.add(invocation.<StoreChangeSnapshot>getArgument(0).name);
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            deliveries.add(future);
+            return future;
+        });
+
+        assertEquals(3, relay.relayBatch());
+        assertEquals(List.of("A", "B", "A2"), submittedNames);
+        assertEquals(3, relay.inFlight());
+
+        deliveries.get(0).complete(null);
+        deliveries.get(1).completeExceptionally(new IllegalStateException("legacy down"));
+        deliveries.get(2).complete(null);
+        when(storeOutboxRepository.markProcessed(anyList())).thenAnswer(i -> i.<List<Long>>getArgument(0).size());
+
+        assertEquals(2, relay.acknowledgeDelivered());
+        verify(storeOutboxRepository).markProcessed(List.of(1L, 3L));
+        assertEquals(0, relay.inFlight());
+        assertEquals(0, relay.acknowledgeDelivered(), "acks are flushed once");
+    }
+
+    @Test
+    void relayBatch_stopsAtFirstRejectedRow() {
+        when(storeOutboxRepository.claimBatch(anyInt(), any(), any(), any())).thenReturn(List.of(
+                row(1L, 10L, "A"), row(2L, 10L, "A2"), row(3L, 10L, "A3")));
+        when(legacyStoreSyncDispatcher.submit(any()))
+                .thenReturn(new CompletableFuture<>())
+                .thenThrow(new RejectedExecutionException("full"));
+
+        assertEquals(1, relay.relayBatch());
+        verify(legacyStoreSyncDispatcher, times(2)).submit(any());
+        assertEquals(1, relay.inFlight());
+    }
+
+    @Test
+    void saturation_releasesTheUnsubmittedRows_andTheNextClaimKnowsWhatIsHandedOver() {
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        when(storeOutboxRepository.claimBatch(anyInt(), any(), any(), any()))
+                .thenReturn(List.of(row(1L, 10L, "A"), row(2L, 10L, "A2"), row(3L, 11L, "B")))
+                .thenReturn(List.of(row(2L, 10L, "A2"), row(3L, 11L, "B"), row(4L, 10L, "A3")));
+        when(legacyStoreSyncDispatcher.submit(any()))
+                .thenReturn(first)
+                .thenThrow(new RejectedExecutionException("full"))
+                .thenAnswer(i -> new CompletableFuture<Void>());
+
+        assertEquals(1, relay.relayBatch());
+        verify(storeOutboxRepository).releaseLeases(List.of(2L, 3L));
+        verify(storeOutboxRepository).claimBatch(anyInt(), any(), any(), eq(Set.of()));
+
+        // a later change of store 10 (row 4) is only claimed behind row 2, which was given back
+        assertEquals(3, relay.relayBatch());
+        verify(storeOutboxRepository).claimBatch(anyInt(), any(), any(), eq(Set.of(1L)));
+        ArgumentCaptor<StoreChangeSnapshot> sent = ArgumentCaptor.forClass(StoreChangeSnapshot.class);
+        verify(legacyStoreSyncDispatcher, times(5)).submit(sent.capture());
+        assertEquals(List.of("A", "A2", "A2", "B", "A3"), sent.getAllValues().stream().map(c -> c.name).toList());
+
+        first.complete(null);
+        relay.relayBatch();
+        verify(storeOutboxRepository).claimBatch(anyInt(), any(), any(), eq(Set.of(1L, 2L, 3L, 4L)));
+    }
+
+    @Test
+    void relayBatch_claimsNoMoreThanTheInFlightLimitAllows() {
+        AtomicLong nextId = new AtomicLong();
+        when(storeOutboxRepository.claimBatch(anyInt(), any(), any(), any())).thenAnswer(i -> {
+            List<StoreOutboxEntry> rows = new ArrayList<>();
+            for (int n = 0; n < i.<Integer>getArgument(0); n++) {
+                long id = nextId.incrementAndGet();
+                rows.add(row(id, id, "S" + id));
+            }
+            return rows;
+        });
+        when(legacyStoreSyncDispatcher.submit(any())).thenAnswer(i -> new CompletableFuture<Void>());
+
+        assertEquals(3, relay.relayBatch());
+        assertEquals(2, relay.relayBatch());
+        assertEquals(0, relay.relayBatch());
+        verify(storeOutboxRepository).claimBatch(eq(2), any(), any(), any());
+        verify(storeOutboxRepository, times(2)).claimBatch(anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void failedDeliveries_areDeadLettered_butRejectionsAreLeftForTheLease() {
+        when(storeOutboxRepository.claimBatch(anyInt(), any(), any(), any())).thenReturn(List.of(
+                row(1L, 10L, "A"), row(2L, 11L, "B")));
+        when(legacyStoreSyncDispatcher.submit(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("legacy down")))
+                .thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException("shutting down")));
+        when(legacyStoreSyncDispatcher.maxAttempts()).thenReturn(5);
+        when(storeDeadLetterRepository.moveFromOutbox(anyMap(), anyInt())).thenReturn(1);
+
+        relay.relayBatch();
+
+        assertEquals(1, relay.deadLetterUndeliverable());
+        verify(storeDeadLetterRepository).moveFromOutbox(Map.of(1L, "legacy down"), 5);
+        assertEquals(0, relay.acknowledgeDelivered());
+        assertEquals(0, relay.deadLetterUndeliverable());
+        verifyNoMoreInteractions(storeDeadLetterRepository);
+    }
+
+    // ---- helpers ----
+    private static StoreOutboxEntry row(Long id, Long storeId, String name) {
+        StoreOutboxEntry entry = StoreOutboxEntry.of(
+                new StoreChangeSnapshot(StoreChangeType.UPDATE, storeId, name, 1, Instant.now()));
+        entry.id = id;
+        return entry;
+    }
+}
@@ -0,0 +1,171 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.StoreChangeSnapshot;
+import com.fulfilment.application.monolith.stores.StoreChangeType;
+import com.fulfilment.application.monolith.stores.StoreOutboxEntry;
+import com.fulfilment.application.monolith.stores.StoreOutboxRelay;
+import com.fulfilment.application.monolith.stores.StoreOutboxRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The outbox claim against Postgres: each store's changes are claimed in order, across leases. */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class StoreOutboxRepositoryTest {
+
+    private static final long STORE = 990_001L;
+    // stores 991_000 .. 991_000 + CONTENDED_STORES - 1
+    private static final long FIRST_CONTENDED = 991_000L;
+    private static final int CONTENDED_STORES = 40;
+    private static final String OWNER = "repo-test";
+    private static final Duration LEASE = Duration.ofMinutes(1);
+
+    @Inject
+    StoreOutboxRepository repository;
+
+    @Inject
+    StoreOutboxRelay relay;
+
+    @BeforeEach
+    void stopRelay() {
+        // the application's own relay would claim the rows under test
+        relay.stop();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            repository.delete("storeId", STORE);
+            repository.delete("storeId between ?1 and ?2", FIRST_CONTENDED, FIRST_CONTENDED + CONTENDED_STORES - 1);
+            // rows of other tests claimed along the way go back to the relay
+            repository.update("leaseUntil = null, leaseOwner = null where leaseOwner like ?1", OWNER + "%");
+        });
+        relay.start();
+    }
+
+    private long record(String name) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            StoreOutboxEntry entry = StoreOutboxEntry.of(
+                    new StoreChangeSnapshot(StoreChangeType.UPDATE, STORE, name, 1, Instant.now()));
+            repository.persist(entry);
+            return entry.id;
+        });
+    }
+
+    private List<StoreOutboxEntry> claim(String owner, Collection<Long> handedOver) {
+        return repository.claimBatch(1000, LEASE, owner, handedOver).stream()
+                .filter(row -> row.storeId == STORE)
+                .toList();
+    }
+
+    private static List<Long> ids(List<StoreOutboxEntry> rows) {
+        return rows.stream().map(row -> row.id).toList();
+    }
+
+    @Test
+    void ownLeasedRowNotHandedOver_holdsBackTheStoresLaterChanges() {
+        long first = record("A1");
+        long second = record("A2");
+        assertEquals(List.of(first, second), ids(claim(OWNER, Set.of())));
+        long third = record("A3");
+
+        assertEquals(List.of(), claim(OWNER, Set.of(first)), "A2 is leased but was never handed over");
+        assertEquals(List.of(), claim("other-node", Set.of()));
+        assertEquals(List.of(third), ids(claim(OWNER, Set.of(first, second))));
+    }
+
+    @Test
+    void releasedRows_areClaimedAgainAheadOfLaterChanges() {
+        long first = record("A1");
+        long second = record("A2");
+        claim(OWNER, Set.of());
+
+        assertEquals(1, repository.releaseLeases(List.of(second)));
+        long third = record("A3");
+        List<StoreOutboxEntry> claimed = claim(OWNER, Set.of(first));
+
+        assertEquals(List.of(second, third), ids(claimed));
+        assertEquals(1, claimed.get(0).attempts, "a released claim is not counted as an attempt");
+    }
+
+    @Test
+    void concurrentClaims_neverSplitAStoresChangesBetweenRelays() throws Exception {
+        QuarkusTransaction.requiringNew().run(() -> {
+            // a store's changes next to each other, so one claim's batch ends in the middle of them
+            for (long store = FIRST_CONTENDED; store < FIRST_CONTENDED + CONTENDED_STORES; store++) {
+                for (int change = 0; change < 10; change++) {
+                    repository.persist(StoreOutboxEntry.of(
+                            new StoreChangeSnapshot(StoreChangeType.UPDATE, store, "C" + change, change, Instant.now())));
+                }
+            }
+        });
+        int relays = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(relays);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<Long, String>>> claims = new ArrayList<>();
+        for (int r = 0; r < relays; r++) {
+            String owner = OWNER + "-" + r;
+            claims.add(pool.submit(() -> {
+                // store to owner of every contended row this relay claimed; everything claimed counts as handed over
+                Map<Long, String> owners = new HashMap<>();
+                Set<Long> handedOver = new HashSet<>();
+                start.await();
+                for (int round = 0; round < 40; round++) {
+                    for (StoreOutboxEntry row : repository.claimBatch(7, LEASE, owner, handedOver)) {
+                        handedOver.add(row.id);
+                        if (row.storeId >= FIRST_CONTENDED && row.storeId < FIRST_CONTENDED + CONTENDED_STORES) {
+                            owners.put(row.id, row.storeId + ":" + owner);
+                        }
+                    }
+                }
+                return owners;
+            }));
+        }
+        start.countDown();
+        Map<Long, Set<String>> ownersByStore = new HashMap<>();
+        for (Future<Map<Long, String>> claim : claims) {
+            for (String storeAndOwner : claim.get().values()) {
+                String[] parts = storeAndOwner.split(":", 2);
+                ownersByStore.computeIfAbsent(Long.parseLong(parts[0]), k -> new HashSet<>()).add(parts[1]);
+            }
+        }
+        pool.shutdown();
+
+        assertFalse(ownersByStore.isEmpty());
+        ownersByStore.forEach((store, owners) ->
+                assertEquals(1, owners.size(), "store " + store + " was claimed by " + owners));
+    }
+
+    @Test
+    void readIds_andIdsCreatedSince_findTheRowsThatFillAGap() {
+        long first = record("A1");
+        long second = record("A2");
+        long third = record("A3");
+
+        assertEquals(List.of(first, third), ids(repository.readIds(List.of(third, first, Long.MAX_VALUE))));
+        assertEquals(List.of(first, second), repository.idsCreatedSince(Instant.now().minusSeconds(60), second).stream()
+                .filter(id -> id >= first)
+                .toList());
+    }
+}
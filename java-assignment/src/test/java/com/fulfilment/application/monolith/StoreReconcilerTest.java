@@ -0,0 +1,220 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for Merkle reconciliation, with two in-memory sides standing in for the store table and
+ * the legacy system.
+ */
+@ExtendWith(MockitoExtension.class)
+class StoreReconcilerTest {
+
+    private static final int LEAF = 64;
+    private static final int STORES = 100_000;
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private StoreOutboxRepository storeOutboxRepository;
+
+    @Mock
+    private StoreOutboxRelay storeOutboxRelay;
+
+    // ---------- helpers ----------
+    private static StoreChangeSnapshot change(StoreChangeType type, long id, String name, int items) {
+        return new StoreChangeSnapshot(type, id, name, items, Instant.now());
+    }
+
+    private static LegacyStoreState side(int stores) {
+        LegacyStoreState side = new LegacyStoreState(LEAF);
+        for (long id = 1; id <= stores; id++) {
+            side.apply(change(StoreChangeType.CREATE, id, "store-" + id, (int) (id % 50)));
+        }
+        return side;
+    }
+
+    private StoreReconciler reconciler(StoreDigestSource database, StoreDigestSource legacy) {
+        return new StoreReconciler(database, legacy, storeOutboxRepository, storeOutboxRelay, LEAF, 16, 4);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<StoreChangeSnapshot> recorded() {
+        ArgumentCaptor<List<StoreChangeSnapshot>> captor = ArgumentCaptor.forClass(List.class);
+        verify(storeOutboxRepository, atLeastOnce()).recordAll(captor.capture());
+        List<StoreChangeSnapshot> all = new ArrayList<>();
+        captor.getAllValues().forEach(all::addAll);
+        all.sort(Comparator.comparing(c -> c.storeId));
+        return all;
+    }
+
+    /** Counts the digest rows a side hands out, which is what a reconciliation costs. */
+    private static final class CountingSource implements StoreDigestSource {
+        final StoreDigestSource delegate;
+        final AtomicLong digestRows = new AtomicLong();
+
+        CountingSource(StoreDigestSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long maxId() {
+            return delegate.maxId();
+        }
+
+        @Override
+        public Map<Long, Long> childDigests(long fromId, long toId, long childWidth) {
+            Map<Long, Long> digests = delegate.childDigests(fromId, toId, childWidth);
+            digestRows.addAndGet(digests.size());
+            return digests;
+        }
+
+        @Override
+        public List<StoreDigest> stores(long fromId, long toId) {
+            return delegate.stores(fromId, toId);
+        }
+    }
+
+    // ---------- reconciliation ----------
+    @Test
+    void identicalSides_queueNothing() {
+        StoreReconciler.ReconcileReport report = reconciler(side(STORES), side(STORES)).reconcile();
+
+        assertEquals(0, report.leavesCompared);
+        assertEquals(1, report.rangesCompared, "Only the root's children should be compared");
+        verify(storeOutboxRepository, never()).recordAll(any());
+        verify(storeOutboxRelay, never()).wakeUp();
+    }
+
+    @Test
+    void drift_resyncsOnlyTheDivergentStores() {
+        LegacyStoreState database = side(STORES);
+        LegacyStoreState legacy = side(STORES);
+        database.apply(change(StoreChangeType.UPDATE, 500, "renamed", 7));
+        legacy.apply(change(StoreChangeType.DELETE, 70_000, null, 0));
+        database.apply(change(StoreChangeType.DELETE, 99_999, null, 0));
+
+        StoreReconciler.ReconcileReport report = reconciler(database, legacy).reconcile();
+
+        List<StoreChangeSnapshot> changes = recorded();
+        assertEquals(3, changes.size());
+        assertEquals(StoreChangeType.UPDATE, changes.get(0).type);
+        assertEquals("renamed", changes.get(0).name);
+        assertEquals(7, changes.get(0).quantityProductsInStock);
+        assertEquals(StoreChangeType.CREATE, changes.get(1).type);
+        assertEquals(70_000L, changes.get(1).storeId);
+        assertEquals(StoreChangeType.DELETE, changes.get(2).type);
+        assertEquals(99_999L, changes.get(2).storeId);
+        assertEquals("store-99999", changes.get(2).name, "A delete should carry what the legacy side still holds");
+        assertEquals(1, report.storesUpdated);
+        assertEquals(1, report.storesCreated);
+        assertEquals(1, report.storesDeleted);
+        assertEquals(3, report.leavesCompared);
+        verify(storeOutboxRelay).wakeUp();
+    }
+
+    @Test
+    void storesBeyondTheOtherSidesMaxId_areFound() {
+        LegacyStoreState database = side(100);
+        database.apply(change(StoreChangeType.CREATE, 1_000_000, "far", 1));
+
+        reconciler(database, side(100)).reconcile();
+
+        List<StoreChangeSnapshot> changes = recorded();
+        assertEquals(1, changes.size());
+        assertEquals(1_000_000L, changes.get(0).storeId);
+        assertEquals(StoreChangeType.CREATE, changes.get(0).type);
+    }
+
+    @Test
+    void cost_scalesWithDrift_notWithTableSize() {
+        LegacyStoreState legacy = side(STORES);
+        CountingSource oneDrift = new CountingSource(side(STORES));
+        ((LegacyStoreState) oneDrift.delegate).apply(change(StoreChangeType.UPDATE, 12_345, "x", 1));
+        reconciler(oneDrift, legacy).reconcile();
+
+        CountingSource manyDrifts = new CountingSource(side(STORES));
+        for (long id = 1; id <= STORES; id += STORES / 50) {
+            ((LegacyStoreState) manyDrifts.delegate).apply(change(StoreChangeType.UPDATE, id, "x", 1));
+        }
+        reconcile(manyDrifts, legacy);
+
+        assertTrue(oneDrift.digestRows.get() < 100,
+                "One divergent store should cost a few digest rows per level, got " + oneDrift.digestRows.get());
+        assertTrue(manyDrifts.digestRows.get() > 10 * oneDrift.digestRows.get(),
+                "Fifty divergent stores should cost more, got " + manyDrifts.digestRows.get());
+        assertTrue(manyDrifts.digestRows.get() < STORES / 50,
+                "Even fifty divergent stores should stay far below a scan, got " + manyDrifts.digestRows.get());
+    }
+
+    private void reconcile(StoreDigestSource database, StoreDigestSource legacy) {
+        StoreReconciler.ReconcileReport report = reconciler(database, legacy).reconcile();
+        assertEquals(50, report.storesUpdated);
+    }
+
+    // ---------- legacy view ----------
+    @Test
+    void childDigests_agreeForAlignedAndUnalignedRanges() {
+        LegacyStoreState state = side(1000);
+
+        Map<Long, Long> aligned = state.childDigests(0, 1024, 256);
+        Map<Long, Long> unaligned = state.childDigests(1, 1025, 256);
+        long total = 0;
+        for (long digest : aligned.values()) {
+            total ^= digest;
+        }
+        long expected = 0;
+        for (long id = 1; id <= 1000; id++) {
+            expected ^= StoreDigest.hash(id, "store-" + id, (int) (id % 50));
+        }
+
+        assertEquals(4, aligned.size());
+        assertEquals(4, unaligned.size());
+        assertEquals(expected, total);
+    }
+
+    @Test
+    void legacyState_isReplayedFromTheJournal() throws Exception {
+        LegacyStoreJournal journal = new LegacyStoreJournal(dir.toString(), LegacyStoreJournal.Durability.SYNC, 1 << 20, 64);
+        journal.open();
+        for (String record : List.of(
+                "[action=CREATE] [ts=2024-01-01T00:00:00Z] [id=1] [name=one] [items=1]",
+                "[action=CREATE] [ts=2024-01-01T00:00:00Z] [id=2] [name=null] [items=2]",
+                "[action=UPDATE] [ts=2024-01-01T00:00:00Z] [id=1] [name=one [east]] [items=10]",
+                "[action=CREATE] [ts=2024-01-01T00:00:00Z] [id=3] [name=three] [items=3]",
+                "[action=DELETE] [ts=2024-01-01T00:00:00Z] [id=3] [name=three] [items=3]",
+                "garbage")) {
+            journal.append(record.getBytes(StandardCharsets.UTF_8));
+        }
+        journal.close();
+
+        LegacyStoreState state = new LegacyStoreState(dir, LEAF);
+
+        List<StoreDigest> stores = state.stores(0, LEAF);
+        assertEquals(2, stores.size());
+        assertEquals("one [east]", stores.get(0).name);
+        assertEquals(10, stores.get(0).quantityProductsInStock);
+        assertNull(stores.get(1).name);
+        assertEquals(StoreDigest.hash(2L, "", 2), stores.get(1).hash, "A null name should hash like an empty one");
+        assertEquals(2, state.maxId());
+    }
+}
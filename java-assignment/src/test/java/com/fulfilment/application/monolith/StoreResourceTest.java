@@ -4,7 +4,14 @@ package com.fulfilment.application.monolith;
 import com.fulfilment.application.monolith.stores.Store;
 import com.fulfilment.application.monolith.stores.StoreChangeEvent;
 import com.fulfilment.application.monolith.stores.StoreChangeType;
+import com.fulfilment.application.monolith.stores.StoreBatchResult;
+import com.fulfilment.application.monolith.stores.StoreBatchUpsert;
+import com.fulfilment.application.monolith.stores.StockAdjustment;
+import com.fulfilment.application.monolith.stores.StorePage;
+import com.fulfilment.application.monolith.stores.StoreStockRepository;
+import com.fulfilment.application.monolith.stores.StoreStockWriteBehind;
 import com.fulfilment.application.monolith.stores.StoreResource;
+import com.fulfilment.application.monolith.stores.StoreListCache;
 import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.event.Event;
 import jakarta.ws.rs.WebApplicationException;
@@ -14,7 +21,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -26,6 +36,15 @@ class StoreResourceTest {
     @Mock
     Event<StoreChangeEvent> storeChangeEvent; // ✅ mock CDI Event
 
+    @Mock
+    StoreStockRepository storeStockRepository;
+
+    @Mock
+    StoreStockWriteBehind storeStockWriteBehind;
+
+    @Mock
+    StoreListCache storeListCache;
+
     @InjectMocks
     StoreResource resource;                   // inject event into resource
 
@@ -51,6 +70,32 @@ class StoreResourceTest {
 //        }
 //    }
 
+    @Test
+    void get_withLimitOutOfRange_shouldThrow400() {
+        assertEquals(400, assertThrows(WebApplicationException.class, () -> resource.get(null, null, 0))
+                .getResponse().getStatus());
+        assertEquals(400, assertThrows(WebApplicationException.class, () -> resource.get(null, null, 1001))
+                .getResponse().getStatus());
+    }
+
+    @Test
+    void page_withExtraRow_hasNextAfterItsLastName() {
+        StorePage page = StorePage.of(List.of(store(1L, "Alpha", 1), store(2L, "Beta", 1), store(3L, "Gamma", 1)), 2);
+
+        assertEquals(List.of("Alpha", "Beta"), page.items.stream().map(s -> s.name).toList());
+        assertTrue(page.hasNext);
+        assertEquals("Beta", page.next);
+    }
+
+    @Test
+    void page_withoutExtraRow_isTheLast() {
+        StorePage page = StorePage.of(List.of(store(1L, "Alpha", 1), store(2L, "Beta", 1)), 2);
+
+        assertEquals(2, page.items.size());
+        assertFalse(page.hasNext);
+        assertNull(page.next);
+    }
+
     // -------------------- GET /store/{id} --------------------
    /* @Test
     void getSingle_whenFound_shouldReturnEntity() {
@@ -59,7 +104,7 @@ class StoreResourceTest {
         try (MockedStatic<Store> mocked = mockStatic(Store.class)) {
             mocked.when(() -> Store.findById(10L)).thenReturn(existing);
 
-            Store result = resource.getSingle(10L);
+            Store result = (Store) resource.getSingle(10L).getEntity();
 
             assertNotNull(result);
             assertEquals("Zwolle", result.name);
@@ -112,11 +157,91 @@ class StoreResourceTest {
         assertSame(newStore, evt.store());
     }
 
+    // -------------------- POST /store/batch --------------------
+    @Test
+    void upsertBatch_withEmptyOrOversizedBatch_shouldThrow400() {
+        assertEquals(400, assertThrows(WebApplicationException.class, () -> resource.upsertBatch(List.of()))
+                .getResponse().getStatus());
+        List<Store> tooMany = IntStream.range(0, 1001).mapToObj(i -> store(null, "s" + i, 1)).toList();
+        assertEquals(400, assertThrows(WebApplicationException.class, () -> resource.upsertBatch(tooMany))
+                .getResponse().getStatus());
+    }
+
+    @Test
+    void batchUpsert_createsUpdatesAndSkipsByName_inRequestOrder() {
+        Store existing = store(7L, "Zwolle", 5);
+        Store same = store(8L, "Tilburg", 3);
+
+        StoreBatchUpsert upsert = StoreBatchUpsert.apply(
+                List.of(store(null, "Zwolle", 9), store(null, "Amsterdam", 2), store(null, "Tilburg", 3)),
+                Map.of("Zwolle", existing, "Tilburg", same));
+
+        assertEquals(9, existing.quantityProductsInStock);
+        assertEquals(List.of("Amsterdam"), upsert.toPersist().stream().map(s -> s.name).toList());
+        assertEquals(List.of(StoreChangeType.UPDATE, StoreChangeType.CREATE),
+                upsert.changes().stream().map(StoreChangeEvent::type).toList());
+
+        upsert.toPersist().get(0).id = 42L; // as assigned by the batched persist
+        StoreBatchResult result = upsert.result();
+        assertEquals(List.of(StoreBatchUpsert.Outcome.UPDATED, StoreBatchUpsert.Outcome.CREATED,
+                StoreBatchUpsert.Outcome.UNCHANGED), result.items.stream().map(i -> i.outcome).toList());
+        assertEquals(List.of(7L, 42L, 8L), result.items.stream().map(i -> i.id).toList());
+        assertEquals(1, result.created);
+        assertEquals(1, result.updated);
+        assertEquals(1, result.unchanged);
+        assertEquals(0, result.rejected);
+    }
+
+    @Test
+    void batchUpsert_rejectsInvalidItemsIndividually() {
+        StoreBatchUpsert upsert = StoreBatchUpsert.apply(Arrays.asList(
+                store(null, "Good", 1),
+                store(null, " ", 1),
+                store(3L, "WithId", 1),
+                store(null, "x".repeat(41), 1),
+                store(null, "Negative", -1),
+                store(null, "Good", 2),
+                null), Map.of());
+
+        StoreBatchResult result = upsert.result();
+        assertEquals(1, result.created);
+        assertEquals(6, result.rejected);
+        assertEquals(1, upsert.toPersist().size());
+        assertEquals(1, upsert.changes().size());
+        assertEquals("Store name appears more than once in the batch.", result.items.get(5).error);
+        assertEquals(6, result.items.get(6).index);
+    }
+
+    // -------------------- POST /store/{id}/stock:adjust --------------------
+    @Test
+    void adjustStock_withZeroOrMissingDelta_shouldThrow422() {
+        assertEquals(422, assertThrows(WebApplicationException.class,
+                () -> resource.adjustStock(1L, new StockAdjustment(0))).getResponse().getStatus());
+        assertEquals(422, assertThrows(WebApplicationException.class,
+                () -> resource.adjustStock(1L, null)).getResponse().getStatus());
+        verifyNoInteractions(storeStockRepository, storeChangeEvent);
+    }
+
+    @Test
+    void adjustStock_appliesTheDeltaInTheDatabase_andFiresPatchWithTheNewStock() {
+        when(storeStockRepository.adjust(7L, -3)).thenReturn(store(7L, "Zwolle", 12));
+
+        Response response = resource.adjustStock(7L, new StockAdjustment(-3));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(12, ((Store) response.getEntity()).quantityProductsInStock);
+        ArgumentCaptor<StoreChangeEvent> captor = ArgumentCaptor.forClass(StoreChangeEvent.class);
+        verify(storeChangeEvent).fire(captor.capture());
+        assertEquals(StoreChangeType.PATCH, captor.getValue().type());
+        assertEquals(12, captor.getValue().store().quantityProductsInStock);
+        assertEquals(7L, captor.getValue().store().id);
+    }
+
     // -------------------- PUT /store/{id} --------------------
     @Test
     void update_whenNameMissing_shouldThrow422_andNotFireEvent() {
         WebApplicationException ex = assertThrows(WebApplicationException.class,
-                () -> resource.update(5L, store(null, null, 10)));
+                () -> resource.update(5L, store(null, null, 10), null));
         assertEquals(422, ex.getResponse().getStatus());
         verify(storeChangeEvent, never()).fire(any());
     }
@@ -127,7 +252,7 @@ class StoreResourceTest {
             mocked.when(() -> Store.findById(7L)).thenReturn(null);
 
             WebApplicationException ex = assertThrows(WebApplicationException.class,
-                    () -> resource.update(7L, store(null, "Updated", 20)));
+                    () -> resource.update(7L, store(null, "Updated", 20), null));
 
             assertEquals(404, ex.getResponse().getStatus());
             mocked.verify(() -> Store.findById(7L), times(1));
@@ -142,7 +267,7 @@ class StoreResourceTest {
     @Test
     void patch_whenPayloadNull_shouldThrow422_andNotFireEvent() {
         WebApplicationException ex = assertThrows(WebApplicationException.class,
-                () -> resource.patch(11L, null));
+                () -> resource.patch(11L, null, null));
         assertEquals(422, ex.getResponse().getStatus());
         verify(storeChangeEvent, never()).fire(any());
     }
@@ -153,7 +278,7 @@ class StoreResourceTest {
             mocked.when(() -> Store.findById(11L)).thenReturn(null);
 
             WebApplicationException ex = assertThrows(WebApplicationException.class,
-                    () -> resource.patch(11L, store(null, "Partial", 5)));
+                    () -> resource.patch(11L, store(null, "Partial", 5), null));
 
             assertEquals(404, ex.getResponse().getStatus());
             mocked.verify(() -> Store.findById(11L), times(1));
@@ -169,7 +294,7 @@ class StoreResourceTest {
         try (MockedStatic<Store> mocked = mockStatic(Store.class)) {
             mocked.when(() -> Store.findById(20L)).thenReturn(existing);
 
-            Store result = resource.patch(20L, payload);
+            Store result = (Store) resource.patch(20L, payload, null).getEntity();
 
             assertSame(existing, result);
             assertEquals("NewName", existing.name);
@@ -193,7 +318,7 @@ class StoreResourceTest {
         try (MockedStatic<Store> mocked = mockStatic(Store.class)) {
             mocked.when(() -> Store.findById(21L)).thenReturn(existing);
 
-            Store result = resource.patch(21L, payload);
+            Store result = (Store) resource.patch(21L, payload, null).getEntity();
 
             assertSame(existing, result);
             // unchanged
@@ -218,7 +343,7 @@ class StoreResourceTest {
             mocked.when(() -> Store.findById(77L)).thenReturn(null);
 
             WebApplicationException ex = assertThrows(WebApplicationException.class,
-                    () -> resource.delete(77L));
+                    () -> resource.delete(77L, null));
 
             assertEquals(404, ex.getResponse().getStatus());
             mocked.verify(() -> Store.findById(77L), times(1));
@@ -234,7 +359,7 @@ class StoreResourceTest {
         try (MockedStatic<Store> mocked = mockStatic(Store.class)) {
             mocked.when(() -> Store.findById(12L)).thenReturn(existing);
 
-            Response resp = resource.delete(12L);
+            Response resp = resource.delete(12L, null);
 
             assertEquals(204, resp.getStatus());
             // 204 No Content ⇒ no media type
@@ -0,0 +1,277 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for store sink channels: ordered batches read after the sink's own cursor, retried in
+ * place, with failing changes isolated and slow sinks falling behind only themselves.
+ */
+@ExtendWith(MockitoExtension.class)
+class StoreSinkChannelTest {
+
+    @Mock
+    private StoreOutboxRepository storeOutboxRepository;
+
+    @Mock
+    private StoreSinkCursorRepository storeSinkCursorRepository;
+
+    // ---------- helpers ----------
+    private static StoreOutboxEntry row(long id, String name, Instant createdAt) {
+        StoreOutboxEntry row = StoreOutboxEntry.of(new StoreChangeSnapshot(StoreChangeType.UPDATE, id % 7, name, 1, createdAt));
+        row.id = id;
+        return row;
+    }
+
+    private static List<StoreOutboxEntry> rows(int count) {
+        List<StoreOutboxEntry> rows = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            rows.add(row(id, "s" + id, Instant.now().minusSeconds(60)));
+        }
+        return rows;
+    }
+
+    /** Serves readAfter from {@code rows}, as the outbox table would. */
+    private void outboxHolds(List<StoreOutboxEntry> rows) {
+        lenient().when(storeOutboxRepository.readAfter(anyLong(), anyInt())).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return rows.stream().filter(r -> r.id > after).limit(limit).toList();
+        });
+        lenient().when(storeOutboxRepository.readIds(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return rows.stream().filter(r -> ids.contains(r.id)).toList();
+        });
+        lenient().when(storeOutboxRepository.idsCreatedSince(any(), anyLong())).thenAnswer(invocation -> {
+            long upTo = invocation.getArgument(1);
+            return rows.stream().filter(r -> r.id <= upTo).map(r -> r.id).toList();
+        });
+    }
+
+    private StoreSinkChannel channel(StoreChangeSink sink, int batchSize, int maxAttempts, long settleMs) {
+        return channel(sink, batchSize, maxAttempts, settleMs, 60_000);
+    }
+
+    private StoreSinkChannel channel(StoreChangeSink sink, int batchSize, int maxAttempts, long settleMs,
+                                     long lateWindowMs) {
+        return new StoreSinkChannel(sink, storeOutboxRepository, storeSinkCursorRepository, batchSize, maxAttempts,
+                1, 2, settleMs, lateWindowMs, 10);
+    }
+
+    private static final class RecordingSink implements StoreChangeSink {
+        final String name;
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        int failuresLeft;
+        String poison;
+
+        RecordingSink(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void deliver(List<StoreChangeSnapshot> batch) throws Exception {
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IllegalStateException("sink down");
+            }
+            if (batch.stream().anyMatch(c -> c.name.equals(poison))) {
+                throw new IllegalArgumentException("cannot apply " + poison);
+            }
+            batches.add(batch.stream().map(c -> c.name).toList());
+        }
+    }
+
+    // ---------- delivery ----------
+    @Test
+    void deliverNext_sendsBatchesInOutboxOrder_andAdvancesTheCursor() throws Exception {
+        outboxHolds(rows(5));
+        when(storeSinkCursorRepository.position("search")).thenReturn(0L);
+        RecordingSink sink = new RecordingSink("search");
+        StoreSinkChannel channel = channel(sink, 2, 3, 0);
+
+        assertEquals(2, channel.deliverNext());
+        assertEquals(2, channel.deliverNext());
+        assertEquals(1, channel.deliverNext());
+        assertEquals(0, channel.deliverNext());
+
+        assertEquals(List.of(List.of("s1", "s2"), List.of("s3", "s4"), List.of("s5")), sink.batches);
+        verify(storeSinkCursorRepository).advance("search", 2);
+        verify(storeSinkCursorRepository).advance("search", 4);
+        verify(storeSinkCursorRepository).advance("search", 5);
+        assertEquals(5, channel.position());
+        assertEquals(5, channel.delivered());
+    }
+
+    @Test
+    void deliverNext_resumesAfterThePersistedCursor() throws Exception {
+        outboxHolds(rows(5));
+        when(storeSinkCursorRepository.position("search")).thenReturn(3L);
+        RecordingSink sink = new RecordingSink("search");
+
+        assertEquals(2, channel(sink, 10, 3, 0).deliverNext());
+
+        assertEquals(List.of(List.of("s4", "s5")), sink.batches);
+    }
+
+    @Test
+    void failingBatch_isRetriedInPlace_beforeTheCursorMoves() throws Exception {
+        outboxHolds(rows(3));
+        RecordingSink sink = new RecordingSink("search");
+        sink.failuresLeft = 2;
+        StoreSinkChannel channel = channel(sink, 10, 5, 0);
+
+        assertEquals(3, channel.deliverNext());
+
+        assertEquals(List.of(List.of("s1", "s2", "s3")), sink.batches);
+        assertEquals(2, channel.failures());
+        assertEquals(0, channel.skipped());
+        verify(storeSinkCursorRepository).advance("search", 3);
+    }
+
+    @Test
+    void changeThatKeepsFailing_isSkippedAlone_afterMaxAttempts() throws Exception {
+        outboxHolds(rows(4));
+        RecordingSink sink = new RecordingSink("search");
+        sink.poison = "s2";
+        StoreSinkChannel channel = channel(sink, 10, 3, 0);
+
+        assertEquals(4, channel.deliverNext());
+
+        assertEquals(List.of(List.of("s1"), List.of("s3"), List.of("s4")), sink.batches);
+        assertEquals(3, channel.delivered());
+        assertEquals(1, channel.skipped());
+        verify(storeSinkCursorRepository).advance("search", 4);
+    }
+
+    @Test
+    void youngGapInIds_isNotSteppedOver_untilItSettles() throws Exception {
+        List<StoreOutboxEntry> rows = new ArrayList<>(rows(2));
+        rows.add(row(4, "s4", Instant.now()));
+        outboxHolds(rows);
+        RecordingSink sink = new RecordingSink("search");
+        StoreSinkChannel channel = channel(sink, 10, 3, 60_000);
+
+        assertEquals(2, channel.deliverNext());
+        assertEquals(0, channel.deliverNext(), "Row 3 may still commit; row 4 has to wait");
+
+        rows.add(2, row(3, "s3", Instant.now()));
+        assertEquals(2, channel.deliverNext());
+        assertEquals(List.of(List.of("s1", "s2"), List.of("s3", "s4")), sink.batches);
+    }
+
+    @Test
+    void oldGapInIds_isSteppedOver() throws Exception {
+        outboxHolds(List.of(row(1, "s1", Instant.now().minusSeconds(60)), row(5, "s5", Instant.now().minusSeconds(60))));
+        RecordingSink sink = new RecordingSink("search");
+
+        assertEquals(2, channel(sink, 10, 3, 1000).deliverNext());
+    }
+
+    @Test
+    void rowCommittingBelowTheCursor_isDeliveredLate_once() throws Exception {
+        Instant old = Instant.now().minusSeconds(60);
+        List<StoreOutboxEntry> rows = new ArrayList<>(List.of(row(1, "s1", old), row(2, "s2", old), row(4, "s4", old)));
+        outboxHolds(rows);
+        RecordingSink sink = new RecordingSink("search");
+        StoreSinkChannel channel = channel(sink, 10, 3, 1000);
+
+        assertEquals(3, channel.deliverNext());
+        rows.add(2, row(3, "s3", old)); // the transaction holding id 3 commits after all
+        rows.add(row(5, "s5", old));
+        assertEquals(2, channel.deliverNext());
+        assertEquals(0, channel.deliverNext());
+
+        assertEquals(List.of(List.of("s1", "s2", "s4"), List.of("s3"), List.of("s5")), sink.batches);
+        assertEquals(1, channel.late());
+        assertEquals(5, channel.position());
+    }
+
+    @Test
+    void gapsBelowThePersistedCursor_areWatchedAfterARestart() throws Exception {
+        Instant old = Instant.now().minusSeconds(60);
+        List<StoreOutboxEntry> rows = new ArrayList<>(List.of(row(1, "s1", old), row(2, "s2", old), row(4, "s4", old)));
+        outboxHolds(rows);
+        when(storeSinkCursorRepository.position("search")).thenReturn(4L);
+        RecordingSink sink = new RecordingSink("search");
+        StoreSinkChannel channel = channel(sink, 10, 3, 1000);
+
+        assertEquals(0, channel.deliverNext());
+        rows.add(2, row(3, "s3", old));
+        assertEquals(1, channel.deliverNext());
+
+        assertEquals(List.of(List.of("s3")), sink.batches);
+    }
+
+    @Test
+    void gapsOlderThanTheLateWindow_areForgotten() throws Exception {
+        Instant old = Instant.now().minusSeconds(60);
+        List<StoreOutboxEntry> rows = new ArrayList<>(List.of(row(1, "s1", old), row(3, "s3", old)));
+        outboxHolds(rows);
+        RecordingSink sink = new RecordingSink("search");
+        StoreSinkChannel channel = channel(sink, 10, 3, 1000, 1);
+
+        assertEquals(2, channel.deliverNext());
+        Thread.sleep(20);
+        rows.add(1, row(2, "s2", old));
+
+        assertEquals(0, channel.deliverNext());
+        verify(storeOutboxRepository, never()).readIds(anyList());
+    }
+
+    // ---------- independence ----------
+    @Test
+    void slowSink_doesNotHoldBackTheOthers() throws Exception {
+        outboxHolds(rows(50));
+        CountDownLatch release = new CountDownLatch(1);
+        StoreChangeSink stuck = new StoreChangeSink() {
+            @Override
+            public String name() {
+                return "reporting";
+            }
+
+            @Override
+            public void deliver(List<StoreChangeSnapshot> batch) throws Exception {
+                release.await();
+            }
+        };
+        RecordingSink fast = new RecordingSink("search");
+        StoreSinkChannel slowChannel = channel(stuck, 10, 3, 0);
+        StoreSinkChannel fastChannel = channel(fast, 10, 3, 0);
+
+        slowChannel.start();
+        fastChannel.start();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (fastChannel.delivered() < 50 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(50, fastChannel.delivered());
+            assertEquals(0, slowChannel.delivered());
+            verify(storeSinkCursorRepository).advance("search", 50);
+            verify(storeSinkCursorRepository, never()).advance(eq("reporting"), anyLong());
+        } finally {
+            release.countDown();
+            slowChannel.stop();
+            fastChannel.stop();
+        }
+    }
+}
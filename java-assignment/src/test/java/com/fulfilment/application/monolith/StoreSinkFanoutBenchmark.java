@@ -0,0 +1,116 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.StoreChangeSink;
+import com.fulfilment.application.monolith.stores.StoreChangeSnapshot;
+import com.fulfilment.application.monolith.stores.StoreChangeType;
+import com.fulfilment.application.monolith.stores.StoreOutboxEntry;
+import com.fulfilment.application.monolith.stores.StoreOutboxRepository;
+import com.fulfilment.application.monolith.stores.StoreReportingSink;
+import com.fulfilment.application.monolith.stores.StoreSearchIndexSink;
+import com.fulfilment.application.monolith.stores.StoreSinkChannel;
+import com.fulfilment.application.monolith.stores.StoreSinkCursorRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the store sink fan-out: 200k outbox rows served from memory to four sinks running at
+ * once (search index, reporting CSV, a no-op sink, and one that sleeps 20 ms per batch), each on its
+ * own {@link StoreSinkChannel}. Not a test; run it by hand with the batch size as the argument:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     com.fulfilment.application.monolith.StoreSinkFanoutBenchmark 1000
+ * </pre>
+ */
+public class StoreSinkFanoutBenchmark {
+
+    private static final int ROWS = 200_000;
+    private static final long RUN_SECONDS = 15;
+
+    public static void main(String[] args) throws Exception {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        List<StoreOutboxEntry> log = new ArrayList<>(ROWS);
+        Instant settled = Instant.now().minusSeconds(60);
+        for (long id = 1; id <= ROWS; id++) {
+            StoreOutboxEntry entry = StoreOutboxEntry.of(new StoreChangeSnapshot(
+                    StoreChangeType.UPDATE, id % 5000, "store-" + (id % 5000), (int) id, settled));
+            entry.id = id;
+            log.add(entry);
+        }
+        StoreOutboxRepository outbox = new StoreOutboxRepository() {
+            @Override
+            public List<StoreOutboxEntry> readAfter(long afterId, int limit) {
+                int from = (int) afterId;
+                return new ArrayList<>(log.subList(from, Math.min(log.size(), from + limit)));
+            }
+        };
+        Map<String, Long> cursors = new ConcurrentHashMap<>();
+        StoreSinkCursorRepository cursorRepository = new StoreSinkCursorRepository() {
+            @Override
+            public long position(String sink) {
+                return cursors.getOrDefault(sink, 0L);
+            }
+
+            @Override
+            public void advance(String sink, long position) {
+                cursors.put(sink, position);
+            }
+        };
+
+        Path reportingFile = Files.createTempFile("store-reporting", ".csv");
+        AtomicLong counted = new AtomicLong();
+        List<StoreChangeSink> sinks = List.of(
+                new StoreSearchIndexSink(true),
+                new StoreReportingSink(reportingFile.toString(), true),
+                new BenchmarkSink("memory", batch -> counted.addAndGet(batch.size())),
+                new BenchmarkSink("slow", batch -> Thread.sleep(20)));
+        List<StoreSinkChannel> channels = new ArrayList<>();
+        for (StoreChangeSink sink : sinks) {
+            channels.add(new StoreSinkChannel(sink, outbox, cursorRepository, batchSize, 3, 10, 100, 0, 60_000, 10));
+        }
+
+        Map<String, Long> finishedAfter = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        channels.forEach(StoreSinkChannel::start);
+        long deadline = start + TimeUnit.SECONDS.toNanos(RUN_SECONDS);
+        while (finishedAfter.size() < channels.size() && System.nanoTime() < deadline) {
+            for (StoreSinkChannel channel : channels) {
+                if (channel.position() == ROWS) {
+                    finishedAfter.putIfAbsent(channel.sinkName(), System.nanoTime() - start);
+                }
+            }
+            Thread.sleep(1);
+        }
+        channels.forEach(StoreSinkChannel::stop);
+        Files.deleteIfExists(reportingFile);
+
+        for (StoreSinkChannel channel : channels) {
+            Long nanos = finishedAfter.get(channel.sinkName());
+            System.out.printf("batch=%d sink=%-12s delivered=%d %s%n", batchSize, channel.sinkName(), channel.delivered(),
+                    nanos == null
+                            ? "not finished in " + RUN_SECONDS + "s (position " + channel.position() + ")"
+                            : String.format("took=%dms rate=%.0f/s", nanos / 1_000_000, ROWS / (nanos / 1e9)));
+        }
+    }
+
+    private interface Delivery {
+        void accept(List<StoreChangeSnapshot> batch) throws Exception;
+    }
+
+    private record BenchmarkSink(String name, Delivery delivery) implements StoreChangeSink {
+
+        @Override
+        public void deliver(List<StoreChangeSnapshot> batch) throws Exception {
+            delivery.accept(batch);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.fulfilment.application.monolith;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contention on one hot store row: threads adding +1 to its stock, each adjustment in its own
+ * transaction, on an embedded Postgres. Compares the three ways the stock can be changed:
+ * <ul>
+ *   <li>read-modify-write with the version check, as PUT/PATCH do: a lost race is a 409;</li>
+ *   <li>{@code SELECT ... FOR UPDATE} then {@code UPDATE}: no lost updates, two round trips under the lock;</li>
+ *   <li>the conditional {@code UPDATE ... RETURNING} of {@code POST /store/{id}/stock:adjust}.</li>
+ * </ul>
+ * Not a test; run it by hand (threads and adjustments per thread as optional arguments):
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     com.fulfilment.application.monolith.StoreStockContentionBenchmark 16 2000
+ * </pre>
+ */
+public class StoreStockContentionBenchmark {
+
+    private static final String READ_SQL = "SELECT quantityProductsInStock, version FROM store WHERE id = ?";
+    private static final String VERSIONED_WRITE_SQL =
+            "UPDATE store SET quantityProductsInStock = ?, version = version + 1 WHERE id = ? AND version = ?";
+    private static final String LOCKED_READ_SQL = "SELECT quantityProductsInStock FROM store WHERE id = ? FOR UPDATE";
+    private static final String WRITE_SQL =
+            "UPDATE store SET quantityProductsInStock = ?, version = version + 1 WHERE id = ?";
+    // StoreStockRepository.ADJUST_SQL with JDBC placeholders
+    private static final String ADJUST_SQL =
+            "UPDATE store SET quantityProductsInStock = quantityProductsInStock + ?, version = version + 1 "
+                    + "WHERE id = ? AND quantityProductsInStock + ? >= 0 "
+                    + "RETURNING id, name, quantityProductsInStock, version";
+
+    private interface Adjustment {
+        /** Applies +1 to store 1 in the current transaction; false when it was turned away. */
+        boolean apply(Connection connection) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.start()) {
+            DataSource dataSource = postgres.getPostgresDatabase();
+            run("read-modify-write", dataSource, threads, perThread, StoreStockContentionBenchmark::readModifyWrite);
+            run("select-for-update", dataSource, threads, perThread, StoreStockContentionBenchmark::selectForUpdate);
+            run("atomic-adjust", dataSource, threads, perThread, StoreStockContentionBenchmark::atomicAdjust);
+        }
+    }
+
+    private static boolean readModifyWrite(Connection connection) throws SQLException {
+        int quantity;
+        int version;
+        try (PreparedStatement read = connection.prepareStatement(READ_SQL)) {
+            read.setLong(1, 1);
+            try (ResultSet row = read.executeQuery()) {
+                row.next();
+                quantity = row.getInt(1);
+                version = row.getInt(2);
+            }
+        }
+        try (PreparedStatement write = connection.prepareStatement(VERSIONED_WRITE_SQL)) {
+            write.setInt(1, quantity + 1);
+            write.setLong(2, 1);
+            write.setInt(3, version);
+            return write.executeUpdate() == 1;
+        }
+    }
+
+    private static boolean selectForUpdate(Connection connection) throws SQLException {
+        int quantity;
+        try (PreparedStatement read = connection.prepareStatement(LOCKED_READ_SQL)) {
+            read.setLong(1, 1);
+            try (ResultSet row = read.executeQuery()) {
+                row.next();
+                quantity = row.getInt(1);
+            }
+        }
+        try (PreparedStatement write = connection.prepareStatement(WRITE_SQL)) {
+            write.setInt(1, quantity + 1);
+            write.setLong(2, 1);
+            return write.executeUpdate() == 1;
+        }
+    }
+
+    private static boolean atomicAdjust(Connection connection) throws SQLException {
+        try (PreparedStatement adjust = connection.prepareStatement(ADJUST_SQL)) {
+            adjust.setInt(1, 1);
+            adjust.setLong(2, 1);
+            adjust.setInt(3, 1);
+            try (ResultSet row = adjust.executeQuery()) {
+                return row.next();
+            }
+        }
+    }
+
+    private static void run(String name, DataSource dataSource, int threads, int perThread, Adjustment adjustment)
+            throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS store");
+            statement.execute("CREATE TABLE store (id bigint PRIMARY KEY, name varchar(40), "
+                    + "quantityProductsInStock int NOT NULL, version int NOT NULL)");
+            statement.execute("INSERT INTO store VALUES (1, 'TONSTAD', 0, 0)");
+        }
+
+        AtomicLong applied = new AtomicLong();
+        AtomicLong conflicts = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                try (Connection connection = dataSource.getConnection()) {
+                    connection.setAutoCommit(false);
+                    for (int i = 0; i < perThread; i++) {
+                        if (adjustment.apply(connection)) {
+                            applied.incrementAndGet();
+                        } else {
+                            conflicts.incrementAndGet();
+                        }
+                        connection.commit();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        int stock;
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet row = statement.executeQuery("SELECT quantityProductsInStock FROM store WHERE id = 1")) {
+            row.next();
+            stock = row.getInt(1);
+        }
+        long attempts = (long) threads * perThread;
+        System.out.printf("%-18s threads=%d attempts=%d applied=%d conflicts=%d finalStock=%d took=%dms "
+                        + "applied/s=%.0f%n", name, threads, attempts, applied.get(), conflicts.get(), stock,
+                nanos / 1_000_000, applied.get() / (nanos / 1e9));
+    }
+}
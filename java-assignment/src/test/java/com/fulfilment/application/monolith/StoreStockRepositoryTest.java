@@ -0,0 +1,54 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.Store;
+import com.fulfilment.application.monolith.stores.StoreStockRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The write-behind flush statement against Postgres: summed deltas are applied, never refused. */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class StoreStockRepositoryTest {
+
+    @Inject
+    StoreStockRepository repository;
+
+    private static long create(String name, int items) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Store store = new Store(name);
+            store.quantityProductsInStock = items;
+            store.persist();
+            return store.id;
+        });
+    }
+
+    private static int stockOf(long id) {
+        return QuarkusTransaction.requiringNew().call(() -> Store.<Store>findById(id).quantityProductsInStock);
+    }
+
+    @Test
+    void applyDeltas_clampsAShortStoreAtZero_andStillAppliesTheOthers() {
+        long shortStore = create("WB-SHORT", 3);
+        long growing = create("WB-GROWING", 1);
+        try {
+            StoreStockRepository.AppliedDeltas applied = repository.applyDeltas(
+                    Map.of(shortStore, -5L, growing, 4L, Long.MAX_VALUE - 1, 2L), "test-node", 1);
+
+            assertEquals(2, applied.updated().size(), "only the missing store is not updated");
+            assertEquals(Map.of(shortStore, 2L), applied.shortfalls());
+            assertEquals(0, stockOf(shortStore));
+            assertEquals(5, stockOf(growing));
+            assertEquals(1, repository.flushedGeneration("test-node"));
+        } finally {
+            QuarkusTransaction.requiringNew().run(() -> Store.delete("id in ?1", List.of(shortStore, growing)));
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.fulfilment.application.monolith;
+
+import com.fulfilment.application.monolith.stores.Store;
+import com.fulfilment.application.monolith.stores.StoreStockRepository;
+import com.fulfilment.application.monolith.stores.StoreStockWal;
+import com.fulfilment.application.monolith.stores.StoreStockWriteBehind;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for write-behind stock deltas: reserved atomically, summed per store, flushed as one
+ * update per store, merged into reads, and recovered from the write-ahead log after a crash.
+ */
+@ExtendWith(MockitoExtension.class)
+class StoreStockWriteBehindTest {
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private StoreStockRepository storeStockRepository;
+
+    private final List<StoreStockWriteBehind> started = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        started.forEach(StoreStockWriteBehind::stop);
+    }
+
+    // ---------- helpers ----------
+    private StoreStockWriteBehind writeBehind(List<Long> stores) {
+        // a long interval: the tests flush explicitly
+        StoreStockWriteBehind writeBehind = new StoreStockWriteBehind(storeStockRepository, true,
+                Optional.of(stores), 3_600_000, dir.toString(), false);
+        writeBehind.start();
+        started.add(writeBehind);
+        return writeBehind;
+    }
+
+    private static Store store(long id, String name, int items) {
+        Store store = new Store(name);
+        store.id = id;
+        store.quantityProductsInStock = items;
+        return store;
+    }
+
+    private static StoreStockRepository.AppliedDeltas applied(Store... updated) {
+        return new StoreStockRepository.AppliedDeltas(List.of(updated), Map.of());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Long> appliedDeltas(int flush) {
+        ArgumentCaptor<Map<Long, Long>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(storeStockRepository, atLeast(flush + 1)).applyDeltas(captor.capture(), anyString(), anyLong());
+        return captor.getAllValues().get(flush);
+    }
+
+    // ---------- aggregation ----------
+    @Test
+    void concurrentDeltas_areSummedPerStore_andFlushedOnce() throws Exception {
+        StoreStockWriteBehind writeBehind = writeBehind(List.of());
+        when(storeStockRepository.applyDeltas(anyMap(), anyString(), anyLong()))
+                .thenAnswer(i -> applied(store(1, "A", 0), store(2, "B", 0)));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            int n = i;
+            futures.add(pool.submit(() -> writeBehind.add(n % 2 == 0 ? 1 : 2, n % 2 == 0 ? 1 : -1)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(2000, writeBehind.pending(1));
+        writeBehind.flush();
+
+        assertEquals(Map.of(1L, 2000L, 2L, -2000L), appliedDeltas(0));
+        assertEquals(0, writeBehind.pending(1));
+        verify(storeStockRepository, times(1)).applyDeltas(anyMap(), anyString(), anyLong());
+    }
+
+    @Test
+    void reads_mergePendingDeltas_withoutTouchingTheEntity() {
+        StoreStockWriteBehind writeBehind = writeBehind(List.of());
+        Store entity = store(5, "Zwolle", 10);
+
+        writeBehind.add(5, -4);
+        writeBehind.add(5, 1);
+        Store merged = writeBehind.merged(entity);
+
+        assertEquals(7, merged.quantityProductsInStock);
+        assertEquals(10, entity.quantityProductsInStock);
+        Store other = store(6, "Other", 1);
+        assertSame(other, writeBehind.merged(other), "Stores without pending deltas are returned as is");
+    }
+
+    // ---------- reservation ----------
+    @Test
+    void concurrentReservations_neverTogetherTakeTheStockBelowZero() throws Exception {
+        StoreStockWriteBehind writeBehind = writeBehind(List.of());
+        Store entity = store(3, "Hot", 100);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<Store>> futures = new ArrayList<>();
+        for (int i = 0; i < 800; i++) {
+            futures.add(pool.submit(() -> writeBehind.reserve(entity, -1)));
+        }
+        long accepted = 0;
+        for (Future<Store> future : futures) {
+            if (future.get() != null) {
+                accepted++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(100, accepted);
+        assertEquals(-100, writeBehind.pending(3));
+        assertNull(writeBehind.reserve(entity, -1));
+        assertEquals(5, writeBehind.reserve(entity, 5).quantityProductsInStock);
+    }
+
+    @Test
+    void reservation_countsTheGenerationBeingFlushed() {
+        StoreStockWriteBehind writeBehind = writeBehind(List.of());
+        when(storeStockRepository.applyDeltas(anyMap(), anyString(), anyLong()))
+                .thenThrow(new IllegalStateException("database down"));
+        Store entity = store(4, "Zwolle", 5);
+        assertNotNull(writeBehind.reserve(entity, -4));
+        assertThrows(IllegalStateException.class, writeBehind::flush); // -4 is now in flight, not in the row
+
+        assertNull(writeBehind.reserve(entity, -2));
+        assertEquals(0, writeBehind.reserve(entity, -1).quantityProductsInStock);
+    }
+
+    @Test
+    void flush_reportsClampedShortfalls() {
+        StoreStockWriteBehind writeBehind = writeBehind(List.of());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        writeBehind.bindTo(registry);
+        when(storeStockRepository.applyDeltas(anyMap(), anyString(), anyLong()))
+                .thenReturn(new StoreStockRepository.AppliedDeltas(List.of(store(1, "A", 0)), Map.of(1L, 3L)));
+
+        writeBehind.add(1, -5);
+        writeBehind.flush();
+
+        assertEquals(3.0, registry.get("store.stock.write_behind.clamped_units").functionCounter().count());
+        assertEquals(0.0, registry.get("store.stock.write_behind.dropped").functionCounter().count());
+    }
+
+    @Test
+    void handles_onlyTheConfiguredStores() {
+        StoreStockWriteBehind writeBehind = writeBehind(List.of(1L, 2L));
+
+        assertTrue(writeBehind.handles(1));
+        assertFalse(writeBehind.handles(3));
+    }
+
+    @Test
+    void failedFlush_keepsTheGeneration_andRetriesItFirst() {
+        StoreStockWriteBehind writeBehind = writeBehind(List.of());
+        when(storeStockRepository.applyDeltas(anyMap(), anyString(), anyLong()))
+                .thenThrow(new IllegalStateException("database down"))
+                .thenAnswer(i -> applied(store(1, "A", 0)));
+
+        writeBehind.add(1, 3);
+        assertThrows(IllegalStateException.class, writeBehind::flush);
+        assertEquals(3, writeBehind.pending(1), "Deltas of a failed flush are still pending");
+
+        writeBehind.add(1, 2);
+        writeBehind.flush();
+
+        ArgumentCaptor<Long> generations = ArgumentCaptor.forClass(Long.class);
+        verify(storeStockRepository, times(3)).applyDeltas(anyMap(), anyString(), generations.capture());
+        assertEquals(Map.of(1L, 3L), appliedDeltas(1));
+        assertEquals(Map.of(1L, 2L), appliedDeltas(2));
+        assertEquals(generations.getAllValues().get(0), generations.getAllValues().get(1));
+        assertTrue(generations.getAllValues().get(2) > generations.getAllValues().get(1));
+        assertEquals(0, writeBehind.pending(1));
+    }
+
+    @Test
+    void failedRotation_swapsNothing_andEachDeltaIsAppliedOnce() throws Exception {
+        StoreStockWriteBehind writeBehind = writeBehind(List.of());
+        when(storeStockRepository.applyDeltas(anyMap(), anyString(), anyLong()))
+                .thenAnswer(i -> applied(store(1, "A", 0)));
+        Path blocked = dir.resolve(String.format("stock-%020d.wal", 2));
+        Files.createDirectory(blocked); // the next generation's file cannot be opened
+
+        writeBehind.add(1, 3);
+        assertThrows(RuntimeException.class, writeBehind::flush);
+        assertEquals(3, writeBehind.pending(1), "A delta is counted once while the rotation fails");
+        verify(storeStockRepository, never()).applyDeltas(anyMap(), anyString(), anyLong());
+
+        Files.delete(blocked);
+        writeBehind.add(1, 2);
+        writeBehind.flush();
+        writeBehind.flush();
+
+        verify(storeStockRepository, times(1)).applyDeltas(anyMap(), anyString(), anyLong());
+        assertEquals(Map.of(1L, 5L), appliedDeltas(0));
+        assertEquals(0, writeBehind.pending(1));
+    }
+
+    // ---------- crash recovery ----------
+    @Test
+    void unflushedDeltas_areRecoveredFromTheLog_andFlushedFirst() {
+        StoreStockWriteBehind crashed = writeBehind(List.of());
+        crashed.add(1, 5);
+        crashed.add(2, 7);
+        crashed.add(1, -1);
+        // no flush: the process dies here
+        started.clear();
+
+        when(storeStockRepository.flushedGeneration(anyString())).thenReturn(0L);
+        when(storeStockRepository.applyDeltas(anyMap(), anyString(), anyLong())).thenAnswer(i -> applied());
+        StoreStockWriteBehind restarted = writeBehind(List.of());
+
+        assertEquals(4, restarted.pending(1));
+        assertEquals(7, restarted.pending(2));
+        restarted.flush();
+        assertEquals(Map.of(1L, 4L, 2L, 7L), appliedDeltas(0));
+    }
+
+    @Test
+    void generationsMarkedFlushed_areNotAppliedAgain() throws Exception {
+        StoreStockWal wal = new StoreStockWal(dir, false);
+        wal.append(1, 5);
+        long first = wal.rotate();
+        wal.append(1, 2);
+        wal.rotate();
+        wal.close();
+
+        StoreStockWal reopened = new StoreStockWal(dir, false);
+
+        assertEquals(Map.of(1L, 2L), reopened.recover(first), "Generation " + first + " was already committed");
+        assertEquals(wal.nodeId(), reopened.nodeId());
+        reopened.close();
+    }
+
+    @Test
+    void tornTail_isIgnoredOnRecovery() throws Exception {
+        StoreStockWal wal = new StoreStockWal(dir, true);
+        wal.append(9, 3);
+        long generation = wal.generation();
+        wal.close();
+        Path file = dir.resolve(String.format("stock-%020d.wal", generation));
+        Files.write(file, new byte[]{0, 0, 0, 12, 1, 2}, StandardOpenOption.APPEND);
+
+        StoreStockWal reopened = new StoreStockWal(dir, false);
+
+        assertEquals(Map.of(9L, 3L), reopened.recover(0));
+        reopened.close();
+    }
+}
@@ -0,0 +1,33 @@
+package com.fulfilment.application.monolith.cache;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+
+import com.fulfilment.application.monolith.EmbeddedPostgresResource;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+/** The list caches in the running application, which also proves the beans deploy. */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class ListCacheEndpointTest {
+
+  @Test
+  void productList_isServedAgain_untilAProductChangeCommits() {
+    given().when().get("product").then().statusCode(200).body(containsString("KALLAX"), not(containsString("LACK")));
+    given().when().get("product").then().statusCode(200).body(not(containsString("LACK")));
+
+    given().contentType("application/json").body("{\"name\":\"LACK\",\"stock\":4}")
+        .when().post("product").then().statusCode(201);
+
+    given().when().get("product").then().statusCode(200).body(containsString("LACK"));
+  }
+
+  @Test
+  void storeList_isServed() {
+    given().when().get("store").then().statusCode(200).body(containsString("TONSTAD"));
+    given().when().get("store").then().statusCode(200).body(containsString("TONSTAD"));
+  }
+}
@@ -0,0 +1,78 @@
+package com.fulfilment.application.monolith.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ListResponseCacheTest {
+
+  private final ListResponseCache cache = new ListResponseCache("test", new ObjectMapper(), 64);
+
+  @Test
+  void put_cachesSerializedBody_andGetReturnsTheSameBytes() {
+    byte[] body = cache.put("k", cache.generation(), List.of("a", "b"));
+
+    assertEquals("[\"a\",\"b\"]", new String(body, StandardCharsets.UTF_8));
+    assertSame(body, cache.get("k"));
+    assertEquals(1, cache.hits());
+  }
+
+  @Test
+  void put_afterInvalidation_isNotCached() {
+    long generation = cache.generation();
+    cache.invalidate(); // a change committed while the list was being read
+
+    byte[] body = cache.put("k", generation, List.of("stale"));
+
+    assertNotNull(body);
+    assertNull(cache.get("k"));
+    assertEquals(0, cache.bytes());
+  }
+
+  @Test
+  void invalidate_dropsEverything() {
+    cache.put("a", cache.generation(), "x");
+    cache.put("b", cache.generation(), "y");
+
+    cache.invalidate();
+
+    assertNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals(0, cache.bytes());
+  }
+
+  @Test
+  void put_overTheBound_evictsLeastRecentlyUsed() {
+    String twenty = "x".repeat(18); // 20 bytes as a JSON string
+    cache.put("a", cache.generation(), twenty);
+    cache.put("b", cache.generation(), twenty);
+    cache.put("c", cache.generation(), twenty);
+    cache.get("a");
+
+    cache.put("d", cache.generation(), twenty);
+
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+    assertNotNull(cache.get("d"));
+    assertEquals(60, cache.bytes());
+  }
+
+  @Test
+  void put_bodyLargerThanTheBound_isServedButNotCached() {
+    byte[] body = cache.put("big", cache.generation(), "x".repeat(100));
+
+    assertEquals(102, body.length);
+    assertNull(cache.get("big"));
+  }
+
+  @Test
+  void key_distinguishesMissingFromLiteralNullAndEmpty() {
+    assertNotEquals(ListResponseCache.key(null, "b"), ListResponseCache.key("null", "b"));
+    assertNotEquals(ListResponseCache.key("", "ab"), ListResponseCache.key("a", "b"));
+    assertEquals(ListResponseCache.key("a", null, 100), ListResponseCache.key("a", null, 100));
+  }
+}
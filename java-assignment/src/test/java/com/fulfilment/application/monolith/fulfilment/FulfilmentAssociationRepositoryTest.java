@@ -0,0 +1,133 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fulfilment.application.monolith.EmbeddedPostgresResource;
+import com.fulfilment.application.monolith.products.Product;
+import com.fulfilment.application.monolith.products.ProductChangeEvent;
+import com.fulfilment.application.monolith.stores.Store;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The JDBC deletes and the streamed read against Postgres and its foreign keys: a product or store
+ * delete takes its associations with it in the same transaction, deleted ahead of its own flush.
+ */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class FulfilmentAssociationRepositoryTest {
+
+  private static final String WAREHOUSE = "MWH.ASSOC-1";
+  private static final String OTHER_WAREHOUSE = "MWH.ASSOC-2";
+
+  @Inject FulfilmentAssociationRepository repository;
+
+  @Inject EntityManager entityManager;
+
+  @Inject Event<ProductChangeEvent> productChangeEvent;
+
+  @AfterEach
+  void deleteTestRows() {
+    QuarkusTransaction.requiringNew().run(() -> {
+      repository.delete("warehouseBusinessUnitCode like ?1", "MWH.ASSOC-%");
+      entityManager.createQuery("delete from Product where name like 'ASSOC-%'").executeUpdate();
+      entityManager.createQuery("delete from Store where name like 'ASSOC-%'").executeUpdate();
+    });
+  }
+
+  @Test
+  void productDelete_deletesItsAssociationsFirst_andReturnsThem() {
+    Product product = product("ASSOC-P1");
+    Product kept = product("ASSOC-P2");
+    Store store = store("ASSOC-S1");
+    long deleted = associate(product, store, WAREHOUSE);
+    associate(kept, store, WAREHOUSE);
+
+    QuarkusTransaction.requiringNew().run(() -> {
+      Product managed = entityManager.find(Product.class, product.id);
+      entityManager.remove(managed);
+      productChangeEvent.fire(new ProductChangeEvent(ProductChangeEvent.Type.DELETE, managed));
+    });
+
+    assertNull(QuarkusTransaction.requiringNew().call(() -> entityManager.find(Product.class, product.id)));
+    List<FulfilmentAssociation> left = streamed();
+    assertEquals(1, left.size());
+    assertEquals(kept.id, left.get(0).productId);
+    assertFalse(left.stream().anyMatch(association -> association.id == deleted));
+  }
+
+  @Test
+  void storeDelete_withTheAssociationsDeletedBeforeTheFlush_satisfiesTheForeignKey() {
+    Product product = product("ASSOC-P3");
+    Store store = store("ASSOC-S2");
+    long first = associate(product, store, WAREHOUSE);
+    long second = associate(product, store, OTHER_WAREHOUSE);
+
+    List<FulfilmentAssociation> deleted = QuarkusTransaction.requiringNew().call(() -> {
+      entityManager.remove(entityManager.find(Store.class, store.id));
+      return repository.deleteByStore(store.id);
+    });
+
+    assertEquals(Set.of(first, second), deleted.stream().map(association -> association.id).collect(Collectors.toSet()));
+    FulfilmentAssociation returned = deleted.stream().filter(association -> association.id == first).findFirst().orElseThrow();
+    assertEquals(product.id, returned.productId);
+    assertEquals(store.id, returned.storeId);
+    assertEquals(WAREHOUSE, returned.warehouseBusinessUnitCode);
+    assertEquals(List.of(), streamed());
+  }
+
+  @Test
+  void deleteByWarehouse_andDeleteReturning_takeOnlyTheirRows() {
+    Product product = product("ASSOC-P4");
+    Store store = store("ASSOC-S3");
+    long one = associate(product, store, WAREHOUSE);
+    long other = associate(product, store, OTHER_WAREHOUSE);
+
+    List<FulfilmentAssociation> byWarehouse =
+        QuarkusTransaction.requiringNew().call(() -> repository.deleteByWarehouse(WAREHOUSE));
+    assertEquals(List.of(one), byWarehouse.stream().map(association -> association.id).toList());
+
+    assertNull(QuarkusTransaction.requiringNew().call(() -> repository.deleteReturning(one)));
+    assertEquals(other, QuarkusTransaction.requiringNew().call(() -> repository.deleteReturning(other)).id);
+    assertEquals(List.of(), streamed());
+  }
+
+  private Product product(String name) {
+    Product product = new Product(name);
+    QuarkusTransaction.requiringNew().run(() -> entityManager.persist(product));
+    return product;
+  }
+
+  private Store store(String name) {
+    Store store = new Store(name);
+    QuarkusTransaction.requiringNew().run(() -> entityManager.persist(store));
+    return store;
+  }
+
+  private long associate(Product product, Store store, String warehouse) {
+    FulfilmentAssociation association = new FulfilmentAssociation(product.id, store.id, warehouse);
+    QuarkusTransaction.requiringNew().run(() -> repository.persist(association));
+    return association.id;
+  }
+
+  // the test's associations as forEach streams them
+  private List<FulfilmentAssociation> streamed() {
+    List<FulfilmentAssociation> all = new ArrayList<>();
+    repository.forEach(association -> {
+      if (association.warehouseBusinessUnitCode.startsWith("MWH.ASSOC-")) {
+        all.add(association);
+      }
+    });
+    return all;
+  }
+}
@@ -0,0 +1,213 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fulfilment.application.monolith.products.Product;
+import com.fulfilment.application.monolith.products.ProductChangeEvent;
+import com.fulfilment.application.monolith.stores.Store;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseChangeEvent;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FulfilmentAssociationsTest {
+
+  private FulfilmentAssociationRepository repository;
+  private EntityManager entityManager;
+  private WarehouseStore warehouseStore;
+  private final List<Synchronization> synchronizations = new ArrayList<>();
+  private final Map<Object, Object> resources = new HashMap<>();
+  private long nextId = 100;
+  private FulfilmentAssociations associations;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    repository = mock(FulfilmentAssociationRepository.class);
+    entityManager = mock(EntityManager.class);
+    warehouseStore = mock(WarehouseStore.class);
+    TransactionSynchronizationRegistry registry = mock(TransactionSynchronizationRegistry.class);
+    doAnswer(invocation -> synchronizations.add(invocation.getArgument(0)))
+        .when(registry).registerInterposedSynchronization(any());
+    when(registry.getResource(any())).thenAnswer(invocation -> resources.get(invocation.getArgument(0)));
+    doAnswer(invocation -> resources.put(invocation.getArgument(0), invocation.getArgument(1)))
+        .when(registry).putResource(any(), any());
+    doAnswer(invocation -> {
+      ((FulfilmentAssociation) invocation.getArgument(0)).id = nextId++;
+      return null;
+    }).when(repository).persist(any(FulfilmentAssociation.class));
+    when(entityManager.find(eq(Product.class), any())).thenReturn(new Product("P"));
+    when(entityManager.find(eq(Store.class), any())).thenReturn(new Store("S"));
+    when(warehouseStore.getAll()).thenReturn(List.of(warehouse("MWH.001", null), warehouse("MWH.002", null),
+        warehouse("MWH.003", LocalDateTime.now())));
+    doAnswer(invocation -> {
+      FulfilmentAssociation loaded = new FulfilmentAssociation(1, 1, "MWH.001");
+      loaded.id = 1L;
+      ((Consumer<FulfilmentAssociation>) invocation.getArgument(0)).accept(loaded);
+      return null;
+    }).when(repository).forEach(any());
+    associations = new FulfilmentAssociations(repository, entityManager, registry, warehouseStore, 2, 3, 5, 0);
+    associations.load();
+  }
+
+  private static Warehouse warehouse(String code, LocalDateTime archivedAt) {
+    return warehouse(code, "AMSTERDAM-001", 10, archivedAt);
+  }
+
+  private static Warehouse warehouse(String code, String location, int stock, LocalDateTime archivedAt) {
+    Warehouse warehouse = new Warehouse();
+    warehouse.businessUnitCode = code;
+    warehouse.location = location;
+    warehouse.stock = stock;
+    warehouse.archivedAt = archivedAt;
+    return warehouse;
+  }
+
+  private void complete(int status) {
+    synchronizations.forEach(s -> s.afterCompletion(status));
+    synchronizations.clear();
+    resources.clear();
+  }
+
+  @Test
+  void associate_persists_andCountsFromTheLoadedState() {
+    FulfilmentAssociation created = associations.associate(1, 1, " mwh.002 ");
+    complete(Status.STATUS_COMMITTED);
+
+    assertEquals("MWH.002", created.warehouseBusinessUnitCode);
+    verify(repository).persist(created);
+    assertEquals(2, associations.index().warehousesOf(1, 1));
+    assertThrows(IllegalStateException.class, () -> associations.associate(1, 1, "MWH.001"));
+  }
+
+  @Test
+  void associate_rolledBack_freesItsSlot() {
+    associations.associate(2, 1, "MWH.002");
+    complete(Status.STATUS_ROLLEDBACK);
+
+    assertEquals(1, associations.index().size());
+    assertEquals(0, associations.index().warehousesOf(2, 1));
+  }
+
+  @Test
+  void associate_whenTheInsertFails_isRefused() {
+    doThrow(new PersistenceException("duplicate key")).when(repository).flush();
+
+    assertThrows(IllegalStateException.class, () -> associations.associate(2, 1, "MWH.002"));
+    complete(Status.STATUS_ROLLEDBACK);
+    assertEquals(1, associations.index().size());
+  }
+
+  @Test
+  void associate_unknownProductOrArchivedWarehouse_isNotFound() {
+    when(entityManager.find(Product.class, 9L)).thenReturn(null);
+
+    assertThrows(NoSuchElementException.class, () -> associations.associate(9, 1, "MWH.002"));
+    assertThrows(NoSuchElementException.class, () -> associations.associate(2, 1, "MWH.003"));
+    assertThrows(NoSuchElementException.class, () -> associations.associate(2, 1, "MWH.999"));
+    verify(repository, never()).persist(any(FulfilmentAssociation.class));
+  }
+
+  @Test
+  void productDelete_releasesItsAssociations_onlyOnCommit() {
+    Product product = new Product("P");
+    product.id = 1L;
+    when(repository.deleteByProduct(1L)).thenReturn(List.of(new FulfilmentAssociation(1, 1, "MWH.001")));
+
+    associations.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.DELETE, product));
+    assertEquals(1, associations.index().size());
+    complete(Status.STATUS_COMMITTED);
+
+    assertEquals(0, associations.index().size());
+  }
+
+  @Test
+  void warehouseEvents_applyOnCommit_andRemovalDeletesAssociations() {
+    associations.onWarehouseChange(new WarehouseChangeEvent(warehouse("MWH.002", null), warehouse("MWH.002", LocalDateTime.now())));
+    associations.onWarehouseChange(new WarehouseChangeEvent(null, warehouse("MWH.003", null)));
+    associations.associate(2, 1, "MWH.002");
+    complete(Status.STATUS_COMMITTED);
+
+    assertThrows(NoSuchElementException.class, () -> associations.associate(3, 1, "MWH.002"));
+    associations.associate(3, 1, "MWH.003");
+    complete(Status.STATUS_COMMITTED);
+
+    associations.onWarehouseChange(new WarehouseChangeEvent(warehouse("MWH.001", null), null));
+    complete(Status.STATUS_COMMITTED);
+
+    verify(repository).deleteByWarehouse("MWH.001");
+    assertNull(associations.route(1, 1));
+  }
+
+  @Test
+  void route_prefersTheCommittedCandidateWithMoreStock() {
+    associations.associate(1, 1, "MWH.002");
+    assertEquals("MWH.001", associations.route(1, 1).warehouseBusinessUnitCode);
+    complete(Status.STATUS_COMMITTED);
+    assertEquals("MWH.001", associations.route(1, 1).warehouseBusinessUnitCode);
+
+    associations.onWarehouseChange(new WarehouseChangeEvent(warehouse("MWH.002", null), warehouse("MWH.002", "ZWOLLE-001", 40, null)));
+    complete(Status.STATUS_COMMITTED);
+
+    FulfilmentRoute route = associations.route(1, 1);
+    assertEquals("MWH.002", route.warehouseBusinessUnitCode);
+    assertEquals(40, route.stock);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void refreshRoutes_picksUpOtherNodesChanges_andKeepsCommitsMadeWhileItReads() {
+    associations.associate(3, 1, "MWH.002");
+    doAnswer(invocation -> {
+      Consumer<FulfilmentAssociation> sink = invocation.getArgument(0);
+      FulfilmentAssociation otherNode = new FulfilmentAssociation(2, 1, "MWH.002");
+      otherNode.id = 50L;
+      sink.accept(otherNode);
+      complete(Status.STATUS_COMMITTED); // this node's association commits after the read passed it
+      return null;
+    }).when(repository).forEach(any());
+    when(warehouseStore.getAll()).thenReturn(List.of(warehouse("MWH.001", LocalDateTime.now()), warehouse("MWH.002", null)));
+
+    associations.refreshRoutes();
+
+    assertNull(associations.route(1, 1), "MWH.001 was archived and association 1 deleted elsewhere");
+    assertEquals("MWH.002", associations.route(2, 1).warehouseBusinessUnitCode);
+    assertEquals("MWH.002", associations.route(3, 1).warehouseBusinessUnitCode);
+    assertEquals(1, associations.index().warehousesOf(1, 1), "the counters only follow this node's writes");
+    assertEquals(0, associations.index().warehousesOf(2, 1));
+  }
+
+  @Test
+  void replacement_movesTheRoutesInOneStep_onlyWhenItCommits() {
+    Warehouse current = warehouse("MWH.001", "AMSTERDAM-001", 10, null);
+    associations.onWarehouseChange(new WarehouseChangeEvent(current, warehouse("MWH.001", "AMSTERDAM-001", 10, LocalDateTime.now())));
+    associations.onWarehouseChange(new WarehouseChangeEvent(null, warehouse("MWH.001", "TILBURG-001", 10, null)));
+    assertEquals("AMSTERDAM-001", associations.route(1, 1).location);
+    complete(Status.STATUS_ROLLEDBACK);
+    assertEquals("AMSTERDAM-001", associations.route(1, 1).location);
+
+    associations.onWarehouseChange(new WarehouseChangeEvent(current, warehouse("MWH.001", "AMSTERDAM-001", 10, LocalDateTime.now())));
+    associations.onWarehouseChange(new WarehouseChangeEvent(null, warehouse("MWH.001", "TILBURG-001", 10, null)));
+    assertEquals(1, synchronizations.size());
+    complete(Status.STATUS_COMMITTED);
+
+    FulfilmentRoute route = associations.route(1, 1);
+    assertEquals("MWH.001", route.warehouseBusinessUnitCode);
+    assertEquals("TILBURG-001", route.location);
+  }
+}
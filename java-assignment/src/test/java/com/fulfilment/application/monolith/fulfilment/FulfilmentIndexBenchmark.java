@@ -0,0 +1,103 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link FulfilmentIndex} at a million associations: 66,667 stores, each fulfilled by three of 1,000
+ * warehouses for the five products each warehouse holds, plus one refused write per store (a fourth
+ * warehouse). Measures the startup load of all of them, then admission from several writer threads,
+ * three rounds each, and the heap the full index keeps. Not a test; run it by hand with the writer
+ * thread count as the argument:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     com.fulfilment.application.monolith.fulfilment.FulfilmentIndexBenchmark 4
+ * </pre>
+ */
+public class FulfilmentIndexBenchmark {
+
+  private static final int STORES = 66_667;
+  private static final int WAREHOUSES = 1000;
+  private static final int WAREHOUSES_PER_STORE = 3;
+  private static final int PRODUCTS_PER_WAREHOUSE = 5;
+  private static final int ROUNDS = 3;
+
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+
+    for (int round = 0; round < ROUNDS; round++) {
+      FulfilmentIndex index = index();
+      long started = System.nanoTime();
+      for (int store = 0; store < STORES; store++) {
+        for (int k = 0; k < WAREHOUSES_PER_STORE; k++) {
+          int warehouse = warehouse(store, k);
+          for (int p = 0; p < PRODUCTS_PER_WAREHOUSE; p++) {
+            index.load(product(warehouse, p), store, "MWH." + warehouse);
+          }
+        }
+      }
+      double seconds = (System.nanoTime() - started) / 1e9;
+      System.out.printf("load associations=%d %.2fs %.0f rows/s%n", index.size(), seconds, index.size() / seconds);
+    }
+
+    FulfilmentIndex index = null;
+    for (int round = 0; round < ROUNDS; round++) {
+      index = index();
+      FulfilmentIndex target = index;
+      AtomicInteger next = new AtomicInteger();
+      AtomicLong refused = new AtomicLong();
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      long started = System.nanoTime();
+      for (int t = 0; t < threads; t++) {
+        pool.submit(() -> {
+          for (int store = next.getAndIncrement(); store < STORES; store = next.getAndIncrement()) {
+            for (int k = 0; k < WAREHOUSES_PER_STORE; k++) {
+              int warehouse = warehouse(store, k);
+              for (int p = 0; p < PRODUCTS_PER_WAREHOUSE; p++) {
+                if (target.tryAdd(product(warehouse, p), store, "MWH." + warehouse) != null) {
+                  refused.incrementAndGet();
+                }
+              }
+            }
+            if (target.tryAdd(product(warehouse(store, 0), 0), store, "MWH.X" + store) == null) {
+              throw new AssertionError("store " + store + " took a fourth warehouse");
+            }
+            refused.incrementAndGet();
+          }
+          return null;
+        });
+      }
+      pool.shutdown();
+      pool.awaitTermination(10, TimeUnit.MINUTES);
+      double seconds = (System.nanoTime() - started) / 1e9;
+      long writes = index.size() + refused.get();
+      System.out.printf("admit threads=%d associations=%d refused=%d %.2fs %.0f writes/s%n",
+          threads, index.size(), refused.get(), seconds, writes / seconds);
+    }
+
+    System.gc();
+    Thread.sleep(300);
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    System.out.printf("heapUsed=%.0fMB with %d associations%n",
+        (runtime.totalMemory() - runtime.freeMemory()) / 1e6, index.size());
+  }
+
+  private static FulfilmentIndex index() {
+    return new FulfilmentIndex(2, WAREHOUSES_PER_STORE, PRODUCTS_PER_WAREHOUSE);
+  }
+
+  // spread so neighbouring stores share few warehouses
+  private static int warehouse(int store, int k) {
+    return (store + k * 7) % WAREHOUSES;
+  }
+
+  // warehouse w holds products 5w .. 5w + 4
+  private static long product(int warehouse, int p) {
+    return (long) PRODUCTS_PER_WAREHOUSE * warehouse + p;
+  }
+}
@@ -0,0 +1,138 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class FulfilmentIndexTest {
+
+  private final FulfilmentIndex index = new FulfilmentIndex(2, 3, 5);
+
+  @Test
+  void productAndStore_takeAtMostTwoWarehouses_andNoDuplicates() {
+    assertNull(index.tryAdd(1, 10, "W1"));
+    assertNull(index.tryAdd(1, 10, "W2"));
+
+    assertTrue(index.tryAdd(1, 10, "W1").contains("already fulfilled by warehouse W1"));
+    assertTrue(index.tryAdd(1, 10, "W3").contains("2 warehouses for store 10"));
+    assertNull(index.tryAdd(1, 11, "W3"));
+    assertEquals(3, index.size());
+  }
+
+  @Test
+  void store_takesAtMostThreeWarehouses_countingEachWarehouseOnce() {
+    assertNull(index.tryAdd(1, 10, "W1"));
+    assertNull(index.tryAdd(2, 10, "W1"));
+    assertNull(index.tryAdd(2, 10, "W2"));
+    assertNull(index.tryAdd(3, 10, "W3"));
+
+    assertTrue(index.tryAdd(4, 10, "W4").contains("Store 10 is already fulfilled by 3 warehouses"));
+    // the refused add left nothing behind
+    assertEquals(0, index.warehousesOf(4, 10));
+    assertEquals(0, index.productsOf("W4"));
+    assertNull(index.tryAdd(4, 10, "W3"));
+    assertEquals(3, index.warehousesOf(10));
+  }
+
+  @Test
+  void warehouse_storesAtMostFiveProducts_acrossStores() {
+    for (long product = 1; product <= 5; product++) {
+      assertNull(index.tryAdd(product, product, "W1"));
+    }
+    assertNull(index.tryAdd(5, 99, "W1"));
+
+    assertTrue(index.tryAdd(6, 1, "W1").contains("Warehouse W1 already stores 5 products"));
+    assertEquals(1, index.warehousesOf(1));
+    assertEquals(0, index.warehousesOf(6, 1));
+  }
+
+  @Test
+  void remove_freesTheSlot_onlyWhenTheLastReferenceGoes() {
+    index.tryAdd(1, 10, "W1");
+    index.tryAdd(2, 10, "W1");
+    index.tryAdd(3, 10, "W2");
+    index.tryAdd(4, 10, "W3");
+
+    index.remove(1, 10, "W1");
+    assertNotNull(index.tryAdd(5, 10, "W4"));
+    index.remove(2, 10, "W1");
+    assertNull(index.tryAdd(5, 10, "W4"));
+    assertEquals(3, index.size());
+  }
+
+  @Test
+  void load_takesExistingAssociationsEvenBeyondTheLimits() {
+    for (long product = 1; product <= 6; product++) {
+      index.load(product, 10, "W1");
+    }
+
+    assertEquals(6, index.productsOf("W1"));
+    assertNotNull(index.tryAdd(7, 11, "W1"));
+    index.remove(1, 10, "W1");
+    index.remove(2, 10, "W1");
+    assertNull(index.tryAdd(7, 11, "W1"));
+  }
+
+  @Test
+  void concurrentWriters_neverExceedAnyLimit() throws Exception {
+    int products = 12;
+    int stores = 6;
+    int warehouses = 8;
+    int threads = 8;
+    ConcurrentLinkedQueue<long[]> admitted = new ConcurrentLinkedQueue<>();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Object>> writers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      writers.add(pool.submit(() -> {
+        start.await();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 20_000; i++) {
+          long product = random.nextInt(products);
+          long store = random.nextInt(stores);
+          int warehouse = random.nextInt(warehouses);
+          if (random.nextInt(4) == 0) {
+            long[] taken = admitted.poll();
+            if (taken != null) {
+              index.remove(taken[0], taken[1], "W" + taken[2]);
+            }
+          } else if (index.tryAdd(product, store, "W" + warehouse) == null) {
+            admitted.add(new long[] {product, store, warehouse});
+          }
+          if (index.warehousesOf(store) > 3 || index.warehousesOf(product, store) > 2
+              || index.productsOf("W" + warehouse) > 5) {
+            throw new AssertionError("limit exceeded");
+          }
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<Object> writer : writers) {
+      writer.get(60, TimeUnit.SECONDS);
+    }
+    pool.shutdown();
+
+    // what is left admitted must be consistent with the counters and within every limit
+    assertEquals(admitted.size(), index.size());
+    FulfilmentIndex rebuilt = new FulfilmentIndex(2, 3, 5);
+    for (long[] association : admitted) {
+      assertNull(rebuilt.tryAdd(association[0], association[1], "W" + association[2]));
+    }
+    for (long store = 0; store < stores; store++) {
+      assertEquals(rebuilt.warehousesOf(store), index.warehousesOf(store));
+    }
+    for (int warehouse = 0; warehouse < warehouses; warehouse++) {
+      assertEquals(rebuilt.productsOf("W" + warehouse), index.productsOf("W" + warehouse));
+    }
+  }
+}
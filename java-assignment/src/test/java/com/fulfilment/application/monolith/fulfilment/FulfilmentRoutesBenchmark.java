@@ -0,0 +1,88 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import java.lang.ref.Reference;
+import java.util.SplittableRandom;
+
+/**
+ * {@link FulfilmentRoutes#route} lookups: 1,000 active warehouses and 100,000 stores, each with five
+ * products fulfilled by two warehouses, a million candidates in all. Five rounds of random lookups,
+ * then a round in which a replacement moves a warehouse's routes every 10,000 lookups, and the heap
+ * the routes keep. Not a test; run it by hand with the lookups per round as the argument:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     com.fulfilment.application.monolith.fulfilment.FulfilmentRoutesBenchmark 5000000
+ * </pre>
+ */
+public class FulfilmentRoutesBenchmark {
+
+  private static final int WAREHOUSES = 1000;
+  private static final int STORES = 100_000;
+  private static final int PRODUCTS = 5;
+  private static final int ROUNDS = 5;
+  private static final int LOOKUPS_PER_REPLACEMENT = 10_000;
+
+  public static void main(String[] args) {
+    int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+
+    FulfilmentRoutes routes = new FulfilmentRoutes();
+    for (int w = 0; w < WAREHOUSES; w++) {
+      routes.warehouse(code(w), warehouse(w, w % 50));
+    }
+    long candidates = 0;
+    for (int store = 0; store < STORES; store++) {
+      for (int product = 0; product < PRODUCTS; product++) {
+        routes.add(candidates++, product, store, code(store % WAREHOUSES));
+        routes.add(candidates++, product, store, code((store + 1) % WAREHOUSES));
+      }
+    }
+
+    SplittableRandom random = new SplittableRandom(1);
+    for (int round = 0; round < ROUNDS; round++) {
+      long hits = 0;
+      long started = System.nanoTime();
+      for (int i = 0; i < lookups; i++) {
+        if (routes.route(random.nextInt(PRODUCTS), random.nextInt(STORES)) != null) {
+          hits++;
+        }
+      }
+      System.out.printf("lookup candidates=%d %.0f ns/lookup hits=%d%n",
+          candidates, (System.nanoTime() - started) / (double) lookups, hits);
+    }
+
+    long hits = 0;
+    int replacements = 0;
+    long started = System.nanoTime();
+    for (int i = 0; i < lookups; i++) {
+      if (i % LOOKUPS_PER_REPLACEMENT == 0) {
+        int w = random.nextInt(WAREHOUSES);
+        routes.warehouse(code(w), warehouse(w, random.nextInt(50)));
+        replacements++;
+      }
+      if (routes.route(random.nextInt(PRODUCTS), random.nextInt(STORES)) != null) {
+        hits++;
+      }
+    }
+    System.out.printf("lookup with replacements=%d %.0f ns/lookup hits=%d%n",
+        replacements, (System.nanoTime() - started) / (double) lookups, hits);
+
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    System.out.printf("heapUsed=%.0fMB with %d candidates%n",
+        (runtime.totalMemory() - runtime.freeMemory()) / 1e6, candidates);
+    Reference.reachabilityFence(routes);
+  }
+
+  private static String code(int w) {
+    return "MWH." + w;
+  }
+
+  private static Warehouse warehouse(int w, int stock) {
+    Warehouse warehouse = new Warehouse();
+    warehouse.businessUnitCode = code(w);
+    warehouse.location = "L";
+    warehouse.stock = stock;
+    return warehouse;
+  }
+}
@@ -0,0 +1,95 @@
+package com.fulfilment.application.monolith.fulfilment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class FulfilmentRoutesTest {
+
+  private final FulfilmentRoutes routes = new FulfilmentRoutes();
+
+  private static Warehouse warehouse(String code, String location, int stock) {
+    Warehouse warehouse = new Warehouse();
+    warehouse.businessUnitCode = code;
+    warehouse.location = location;
+    warehouse.stock = stock;
+    return warehouse;
+  }
+
+  @Test
+  void route_takesTheActiveCandidateWithMostStock_oldestAssociationOnATie() {
+    routes.warehouse("W1", warehouse("W1", "ZWOLLE-001", 10));
+    routes.warehouse("W2", warehouse("W2", "AMSTERDAM-001", 10));
+    routes.add(7, 1, 10, "W2");
+    routes.add(3, 1, 10, "W1");
+
+    assertEquals("W1", routes.route(1, 10).warehouseBusinessUnitCode);
+    routes.warehouse("W2", warehouse("W2", "AMSTERDAM-001", 11));
+    assertEquals("W2", routes.route(1, 10).warehouseBusinessUnitCode);
+    routes.warehouse("W2", null);
+    assertEquals("W1", routes.route(1, 10).warehouseBusinessUnitCode);
+    routes.warehouse("W1", null);
+    assertNull(routes.route(1, 10));
+    assertNull(routes.route(2, 10));
+  }
+
+  @Test
+  void add_isIdempotent_andRemoveDropsOnlyThatWarehouse() {
+    routes.warehouse("W1", warehouse("W1", "ZWOLLE-001", 10));
+    routes.warehouse("W2", warehouse("W2", "AMSTERDAM-001", 20));
+    routes.add(1, 1, 10, "W1");
+    routes.add(1, 1, 10, "W1");
+    routes.add(2, 1, 10, "W2");
+
+    routes.remove(1, 10, "W2");
+    assertEquals("W1", routes.route(1, 10).warehouseBusinessUnitCode);
+    routes.remove(1, 10, "W1");
+    assertNull(routes.route(1, 10));
+  }
+
+  @Test
+  void replacingAWarehouse_redirectsEveryRouteThroughItsCode() {
+    routes.warehouse("W1", warehouse("W1", "ZWOLLE-001", 10));
+    for (long store = 0; store < 100; store++) {
+      routes.add(store, 1, store, "W1");
+    }
+
+    routes.warehouse("W1", warehouse("W1", "TILBURG-001", 10));
+
+    for (long store = 0; store < 100; store++) {
+      assertEquals("TILBURG-001", routes.route(1, store).location);
+    }
+  }
+
+  @Test
+  void readers_neverSeeAGap_whileTheWarehouseIsReplaced() throws Exception {
+    routes.warehouse("W1", warehouse("W1", "ZWOLLE-001", 10));
+    routes.add(1, 1, 10, "W1");
+    AtomicBoolean running = new AtomicBoolean(true);
+    ExecutorService readers = Executors.newFixedThreadPool(2);
+    try {
+      Future<Long> gaps = readers.submit(() -> {
+        long missing = 0;
+        while (running.get()) {
+          if (routes.route(1, 10) == null) {
+            missing++;
+          }
+        }
+        return missing;
+      });
+      for (int i = 0; i < 20_000; i++) {
+        routes.warehouse("W1", warehouse("W1", i % 2 == 0 ? "TILBURG-001" : "ZWOLLE-001", 10));
+      }
+      running.set(false);
+      assertEquals(0, gaps.get(10, TimeUnit.SECONDS));
+    } finally {
+      readers.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.fulfilment.application.monolith.location;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class LocationCatalogTest {
+
+    @Test
+    void parse_skipsCommentsAndBlankLines() throws Exception {
+        LocationCatalog catalog = LocationCatalog.parse(new StringReader(
+                "# id,maxWarehouses,maxCapacity\n\nZWOLLE-001, 1, 40\nAMSTERDAM-001,5,100\n"));
+
+        assertEquals(2, catalog.size());
+        assertEquals(40, catalog.find("zwolle-001").maxCapacity);
+        assertEquals(5, catalog.find("AMSTERDAM-001").maxNumberOfWarehouses);
+    }
+
+    @Test
+    void parse_malformedLine_reportsLineNumber() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LocationCatalog.parse(new StringReader("ZWOLLE-001,1,40\nBROKEN,x,1\n")));
+        assertTrue(ex.getMessage().contains("line 2"));
+    }
+
+    @Test
+    void constructor_rejectsDuplicateIdentifiers() {
+        assertThrows(IllegalArgumentException.class, () -> new LocationCatalog(List.of(
+                new Location("ZWOLLE-001", 1, 40), new Location("zwolle-001", 2, 50))));
+    }
+
+    @Test
+    void version_isContentBased() {
+        assertEquals(LocationCatalog.defaults().version(), LocationCatalog.defaults().version());
+
+        List<Location> changed = new ArrayList<>(LocationCatalog.defaults().all());
+        changed.set(0, new Location("ZWOLLE-001", 1, 41));
+        assertNotEquals(LocationCatalog.defaults().version(), new LocationCatalog(changed).version());
+    }
+
+    @Test
+    void changedIn_largeCatalogWithSingleEdit_findsOnlyThatLocation() {
+        List<Location> base = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            base.add(new Location("CITY" + (i / 1000) + "-" + String.format("%03d", i % 1000), 2, 100));
+        }
+        List<Location> edited = new ArrayList<>(base);
+        edited.set(4242, new Location(base.get(4242).identification, 1, 100));
+
+        LocationCatalog before = new LocationCatalog(base);
+        LocationCatalog after = new LocationCatalog(edited);
+
+        assertEquals(Set.of("CITY4-242"), before.changedIn(after));
+        assertTrue(before.removedIn(after).isEmpty());
+    }
+
+    @Test
+    void version_tellsApartCatalogsWhoseIdentifiersShareAStringHashCode() {
+        assertEquals("AB-001".hashCode(), "B#-001".hashCode());
+        LocationCatalog before = new LocationCatalog(List.of(new Location("AB-001", 1, 40)));
+        LocationCatalog after = new LocationCatalog(List.of(new Location("B#-001", 1, 40)));
+
+        assertNotEquals(before.version(), after.version());
+        assertEquals(Set.of("B#-001"), before.changedIn(after));
+        assertEquals(new LocationCatalog(List.of(new Location("ab-001", 1, 40))).version(), before.version());
+    }
+
+    @Test
+    void watcher_reloadsOnlyWhenFileChanges(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("locations.csv");
+        Files.writeString(file, "ZWOLLE-001,1,40\n");
+
+        LocationCatalogWatcher watcher = new LocationCatalogWatcher();
+        watcher.locationGateway = new LocationGateway();
+        watcher.locationGateway.warehouseStore = mock(WarehouseStore.class);
+        watcher.catalogPath = Optional.of(file.toString());
+
+        assertNotNull(watcher.poll(), "First poll should load the file");
+        assertNull(watcher.poll(), "Unchanged file should not be reloaded");
+
+        Files.writeString(file, "ZWOLLE-001,1,40\nZWOLLE-002,2,50\n");
+        assertNotNull(watcher.poll());
+        assertEquals(2, watcher.locationGateway.currentCatalog().size());
+
+        Files.writeString(file, "ZWOLLE-001,oops\n");
+        assertNull(watcher.poll(), "Broken file should be rejected");
+        assertEquals(2, watcher.locationGateway.currentCatalog().size(), "Previous catalog stays active");
+    }
+}
@@ -0,0 +1,53 @@
+package com.fulfilment.application.monolith.location;
+
+import com.fulfilment.application.monolith.EmbeddedPostgresResource;
+import com.fulfilment.application.monolith.warehouses.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Catalog reloads against the database, from a thread like the watcher's. */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class LocationGatewayDatabaseTest {
+
+    @Inject LocationGateway gateway;
+
+    @Inject WarehouseStore warehouseStore;
+
+    @Test
+    void reload_fromAThreadWithoutRequestContext_validatesAgainstTheDatabase() throws Exception {
+        Warehouse warehouse = new Warehouse();
+        warehouse.businessUnitCode = "MWH.RELOAD";
+        warehouse.location = "EINDHOVEN-001";
+        warehouse.capacity = 60;
+        warehouse.stock = 0;
+        warehouseStore.create(warehouse);
+        try {
+            List<Location> next = new ArrayList<>(LocationCatalog.defaults().all());
+            next.replaceAll(l -> l.identification.equals("EINDHOVEN-001") ? new Location("EINDHOVEN-001", 2, 50) : l);
+
+            LocationReloadReport report = CompletableFuture
+                    .supplyAsync(() -> gateway.reload(new LocationCatalog(next)))
+                    .get(30, TimeUnit.SECONDS);
+
+            assertEquals(1, report.newlyOverLimit.size());
+            assertEquals("EINDHOVEN-001", report.newlyOverLimit.get(0).location);
+            assertEquals(60, report.newlyOverLimit.get(0).usedCapacity);
+            assertEquals(50, gateway.resolveByIdentifier("EINDHOVEN-001").maxCapacity);
+        } finally {
+            gateway.reload(LocationCatalog.defaults());
+            warehouseStore.remove(warehouse);
+        }
+    }
+}
@@ -2,12 +2,19 @@
 package com.fulfilment.application.monolith.location;
 
 import com.fulfilment.application.monolith.warehouses.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 class LocationGatewayTest {
 
@@ -53,4 +60,89 @@ class LocationGatewayTest {
         assertTrue(ex.getMessage().contains("Location not found for identifier 'UNKNOWN-123'"),
                 "Exception message should include the missing identifier");
     }
+
+    @Test
+    @DisplayName("reload swaps the catalog and reports only changed locations that are newly over limit")
+    @SuppressWarnings("unchecked")
+    void reload_reportsNewlyOverLimitForChangedLocationsOnly() {
+        WarehouseStore store = mock(WarehouseStore.class);
+        gateway.warehouseStore = store;
+        when(store.findActiveByLocations(any())).thenReturn(List.of(
+                wh("MWH.001", "ZWOLLE-002", 30),
+                wh("MWH.002", "ZWOLLE-002", 15)));
+
+        List<Location> next = new ArrayList<>(gateway.currentCatalog().all());
+        next.set(1, new Location("ZWOLLE-002", 2, 40));      // capacity shrinks below 45 in use
+        next.set(2, new Location("AMSTERDAM-001", 6, 100));  // relaxed, never over limit
+        next.add(new Location("UTRECHT-001", 1, 30));         // new location, empty
+
+        LocationReloadReport report = gateway.reload(new LocationCatalog(next));
+
+        assertEquals(3, report.changedLocations);
+        assertEquals(1, report.newlyOverLimit.size());
+        LocationReloadReport.Violation violation = report.newlyOverLimit.get(0);
+        assertEquals("ZWOLLE-002", violation.location);
+        assertEquals(45, violation.usedCapacity);
+        assertEquals(40, violation.maxCapacity);
+        assertEquals(30, gateway.resolveByIdentifier("utrecht-001").maxCapacity);
+
+        var idsCaptor = org.mockito.ArgumentCaptor.forClass(Collection.class);
+        verify(store, times(1)).findActiveByLocations(idsCaptor.capture());
+        assertEquals(3, idsCaptor.getValue().size(), "Only changed locations should be queried");
+    }
+
+    @Test
+    @DisplayName("reload with an identical catalog does not touch the warehouse store")
+    void reload_identicalCatalog_isNoOp() {
+        WarehouseStore store = mock(WarehouseStore.class);
+        gateway.warehouseStore = store;
+
+        LocationReloadReport report = gateway.reload(LocationCatalog.defaults());
+
+        assertEquals(0, report.changedLocations);
+        assertFalse(report.hasViolations());
+        assertEquals(report.previousVersion, report.version);
+        verifyNoInteractions(store);
+    }
+
+    @Test
+    @DisplayName("reload reports removed locations that still have active warehouses")
+    void reload_removedLocationInUse_isReported() {
+        WarehouseStore store = mock(WarehouseStore.class);
+        gateway.warehouseStore = store;
+        when(store.findActiveByLocations(any())).thenReturn(List.of(wh("MWH.023", "TILBURG-001", 30)));
+
+        List<Location> next = new ArrayList<>(gateway.currentCatalog().all());
+        next.removeIf(l -> l.identification.equals("TILBURG-001"));
+
+        LocationReloadReport report = gateway.reload(new LocationCatalog(next));
+
+        assertEquals(List.of("TILBURG-001"), report.removedLocations);
+        assertThrows(NoSuchElementException.class, () -> gateway.resolveByIdentifier("TILBURG-001"));
+    }
+
+    @Test
+    @DisplayName("reload keeps the previous catalog when the validation query fails")
+    void reload_validationFails_keepsPreviousCatalog() {
+        WarehouseStore store = mock(WarehouseStore.class);
+        gateway.warehouseStore = store;
+        when(store.findActiveByLocations(any())).thenThrow(new IllegalStateException("database unavailable"));
+        String version = gateway.catalogVersion();
+
+        List<Location> next = new ArrayList<>(gateway.currentCatalog().all());
+        next.add(new Location("UTRECHT-001", 1, 30));
+
+        assertThrows(IllegalStateException.class, () -> gateway.reload(new LocationCatalog(next)));
+        assertEquals(version, gateway.catalogVersion());
+        assertThrows(NoSuchElementException.class, () -> gateway.resolveByIdentifier("UTRECHT-001"));
+    }
+
+    private static Warehouse wh(String code, String location, int capacity) {
+        Warehouse w = new Warehouse();
+        w.businessUnitCode = code;
+        w.location = location;
+        w.capacity = capacity;
+        w.stock = 0;
+        return w;
+    }
 }
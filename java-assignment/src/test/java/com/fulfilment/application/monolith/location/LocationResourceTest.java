@@ -0,0 +1,117 @@
+package com.fulfilment.application.monolith.location;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.ports.LocationResolver;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LocationResourceTest {
+
+    @Mock
+    LocationResolver locationResolver;
+
+    @Mock
+    LocationRollup locationRollup;
+
+    @Mock
+    Request request;
+
+    @InjectMocks
+    LocationResource resource;
+
+    private final Location zwolle = new Location("ZWOLLE-001", 1, 40);
+
+    @BeforeEach
+    void setUp() {
+        resource.maxAgeSeconds = 3600;
+        when(locationResolver.catalogVersion()).thenReturn("v1");
+        when(locationResolver.resolveAll()).thenReturn(List.of(zwolle));
+        when(locationResolver.resolveByIdentifier("ZWOLLE-001")).thenReturn(zwolle);
+        when(locationResolver.resolveByIdentifier("NOPE-001"))
+                .thenThrow(new NoSuchElementException("Location not found for identifier 'NOPE-001'."));
+    }
+
+    @Test
+    void list_shouldReturnCatalogWithEtagAndCacheControl() {
+        Response resp = resource.list(request);
+
+        assertEquals(200, resp.getStatus());
+        assertEquals(List.of(zwolle), resp.getEntity());
+        assertEquals(new EntityTag("v1"), resp.getEntityTag());
+        assertTrue(resp.getHeaderString("Cache-Control").contains("max-age=3600"));
+    }
+
+    @Test
+    void list_whenEtagMatches_shouldReturn304WithoutBody() {
+        when(request.evaluatePreconditions(any(EntityTag.class))).thenReturn(Response.notModified());
+
+        Response resp = resource.list(request);
+
+        assertEquals(304, resp.getStatus());
+        assertNull(resp.getEntity());
+        verify(locationResolver, never()).resolveAll();
+    }
+
+    @Test
+    void getSingle_whenFound_shouldReturnLocation() {
+        Response resp = resource.getSingle("ZWOLLE-001", request);
+
+        assertEquals(200, resp.getStatus());
+        assertSame(zwolle, resp.getEntity());
+    }
+
+    @Test
+    void getSingle_whenUnknown_shouldThrow404() {
+        WebApplicationException ex = assertThrows(WebApplicationException.class,
+                () -> resource.getSingle("NOPE-001", request));
+        assertEquals(404, ex.getResponse().getStatus());
+    }
+
+    @Test
+    void lookup_shouldSplitFoundAndMissing() {
+        Response resp = resource.lookup(List.of("ZWOLLE-001", "NOPE-001"), request);
+
+        LocationResource.LocationLookup body = (LocationResource.LocationLookup) resp.getEntity();
+        assertEquals(List.of(zwolle), body.locations);
+        assertEquals(List.of("NOPE-001"), body.missing);
+        assertEquals(new EntityTag("v1"), resp.getEntityTag());
+    }
+
+    @Test
+    void lookup_withoutIdsOrTooManyIds_shouldThrow400() {
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.lookup(List.of(), request)).getResponse().getStatus());
+        List<String> tooMany = Collections.nCopies(LocationResource.MAX_BULK_IDS + 1, "ZWOLLE-001");
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.lookup(tooMany, request)).getResponse().getStatus());
+    }
+
+    @Test
+    void rollup_unknownLevel_shouldThrow400_andMissingNode_shouldThrow404() {
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.rollup("country", "NL")).getResponse().getStatus());
+        assertEquals(404, assertThrows(WebApplicationException.class,
+                () -> resource.rollup("city", "ROTTERDAM")).getResponse().getStatus());
+        verify(locationRollup).view(LocationRollup.Level.CITY, "ROTTERDAM");
+    }
+}
@@ -0,0 +1,108 @@
+package com.fulfilment.application.monolith.location;
+
+import com.fulfilment.application.monolith.location.LocationRollup.Level;
+import com.fulfilment.application.monolith.location.LocationRollup.LocationRollupView;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseChangeEvent;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LocationRollupTest {
+
+    private WarehouseStore warehouseStore;
+    private LocationRollup rollup;
+
+    @BeforeEach
+    void setUp() {
+        warehouseStore = mock(WarehouseStore.class);
+        rollup = new LocationRollup();
+        rollup.warehouseStore = warehouseStore;
+        LocationGateway gateway = new LocationGateway();
+        gateway.warehouseStore = warehouseStore;
+        rollup.locationResolver = gateway;
+        when(warehouseStore.getAll()).thenReturn(List.of(
+                wh("MWH.001", "ZWOLLE-001", 40, 10, null),
+                wh("MWH.002", "ZWOLLE-002", 30, 5, null),
+                wh("MWH.012", "AMSTERDAM-001", 50, 5, null),
+                wh("MWH.099", "AMSTERDAM-001", 20, 20, LocalDateTime.now()))); // archived, ignored
+    }
+
+    @Test
+    void view_aggregatesSiteCityRegionAndRoot() {
+        LocationRollupView zwolle = rollup.view(Level.CITY, "zwolle");
+        assertEquals(2, zwolle.warehouses);
+        assertEquals(70, zwolle.capacity);
+        assertEquals(15, zwolle.stock);
+        assertEquals(90, zwolle.maxCapacity);
+        assertEquals(List.of("ZWOLLE-001", "ZWOLLE-002"), zwolle.children);
+
+        assertEquals(2, rollup.view(Level.REGION, "OVERIJSSEL").warehouses);
+        assertEquals(50, rollup.view(Level.SITE, "AMSTERDAM-001").capacity);
+        assertEquals(3, rollup.view(Level.ALL, null).warehouses);
+        assertEquals(0, rollup.view(Level.CITY, "TILBURG").warehouses, "Catalog sites exist even when empty");
+        assertNull(rollup.view(Level.CITY, "ROTTERDAM"));
+    }
+
+    @Test
+    void apply_updatesOnlyTheAffectedPathWithoutRescanning() {
+        rollup.view(Level.ALL, null); // initial build
+
+        rollup.apply(new WarehouseChangeEvent(null, wh("MWH.023", "TILBURG-001", 30, 27, null)));
+        Warehouse moved = wh("MWH.002", "EINDHOVEN-001", 30, 5, null);
+        rollup.apply(new WarehouseChangeEvent(wh("MWH.002", "ZWOLLE-002", 30, 5, null), moved));
+
+        assertEquals(1, rollup.view(Level.CITY, "ZWOLLE").warehouses);
+        assertEquals(32, rollup.view(Level.REGION, "NOORD-BRABANT").stock);
+        assertEquals(4, rollup.view(Level.ALL, null).warehouses);
+        verify(warehouseStore, times(1)).getAll();
+    }
+
+    @Test
+    void apply_replacementArchivesOldAndCountsNewOnce() {
+        rollup.view(Level.ALL, null);
+        LocalDateTime created = LocalDateTime.of(2024, 7, 1, 0, 0);
+        Warehouse current = wh("MWH.001", "ZWOLLE-001", 40, 10, null);
+        current.createdAt = created;
+        rollup.apply(new WarehouseChangeEvent(null, current)); // same state again: idempotent
+        assertEquals(1, rollup.view(Level.SITE, "ZWOLLE-001").warehouses);
+
+        Warehouse archived = wh("MWH.001", "ZWOLLE-001", 40, 10, LocalDateTime.now());
+        archived.createdAt = created;
+        rollup.apply(new WarehouseChangeEvent(current, archived));
+        rollup.apply(new WarehouseChangeEvent(null, wh("MWH.001", "AMSTERDAM-002", 60, 10, null)));
+
+        assertEquals(0, rollup.view(Level.SITE, "ZWOLLE-001").warehouses);
+        assertEquals(2, rollup.view(Level.CITY, "AMSTERDAM").warehouses);
+        assertEquals(3, rollup.view(Level.ALL, null).warehouses);
+    }
+
+    @Test
+    void view_rebuildsAfterCatalogReload() {
+        rollup.view(Level.ALL, null);
+        LocationGateway gateway = (LocationGateway) rollup.locationResolver;
+        gateway.reload(new LocationCatalog(List.of(
+                new com.fulfilment.application.monolith.warehouses.domain.models.Location("ZWOLLE-001", 1, 40, "EAST"),
+                new com.fulfilment.application.monolith.warehouses.domain.models.Location("ZWOLLE-002", 2, 50, "EAST"))));
+
+        assertEquals(2, rollup.view(Level.REGION, "EAST").warehouses);
+        assertEquals(1, rollup.view(Level.REGION, LocationRollup.UNASSIGNED_REGION).warehouses);
+        verify(warehouseStore, times(2)).getAll();
+    }
+
+    private static Warehouse wh(String code, String location, int capacity, int stock, LocalDateTime archivedAt) {
+        Warehouse w = new Warehouse();
+        w.businessUnitCode = code;
+        w.location = location;
+        w.capacity = capacity;
+        w.stock = stock;
+        w.archivedAt = archivedAt;
+        return w;
+    }
+}
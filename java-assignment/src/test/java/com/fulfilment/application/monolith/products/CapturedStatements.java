@@ -0,0 +1,37 @@
+package com.fulfilment.application.monolith.products;
+
+import io.quarkus.hibernate.orm.PersistenceUnitExtension;
+import jakarta.enterprise.context.ApplicationScoped;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/** Hands tests the SQL Hibernate sends while a block runs on the current thread; a no-op otherwise. */
+@ApplicationScoped
+@PersistenceUnitExtension
+public class CapturedStatements implements StatementInspector {
+
+  private static final ThreadLocal<List<String>> CAPTURING = new ThreadLocal<>();
+
+  @Override
+  public String inspect(String sql) {
+    List<String> captured = CAPTURING.get();
+    if (captured != null) {
+      captured.add(sql);
+    }
+    return sql;
+  }
+
+  /** Runs {@code block} and returns the statements it sent, in order. */
+  public static List<String> during(Supplier<?> block) {
+    List<String> captured = new ArrayList<>();
+    CAPTURING.set(captured);
+    try {
+      block.get();
+    } finally {
+      CAPTURING.remove();
+    }
+    return captured;
+  }
+}
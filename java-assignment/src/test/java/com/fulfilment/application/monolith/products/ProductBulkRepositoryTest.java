@@ -0,0 +1,113 @@
+package com.fulfilment.application.monolith.products;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fulfilment.application.monolith.EmbeddedPostgresResource;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** The set-based product updates against Postgres, with their casts in the VALUES lists. */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class ProductBulkRepositoryTest {
+
+  @Inject ProductBulkRepository productBulkRepository;
+
+  @Inject EntityManager entityManager;
+
+  @AfterEach
+  void deleteProducts() {
+    QuarkusTransaction.requiringNew().run(() ->
+        entityManager.createQuery("delete from Product where name like 'BULK-%'").executeUpdate());
+  }
+
+  @Test
+  void updateById_castsEveryColumn_andKeepsWhatIsLeftOut() {
+    Product a = persist("BULK-A", 10, "5.00");
+    Product b = persist("BULK-B", 4, "7.25");
+
+    Set<Long> updated = QuarkusTransaction.requiringNew().call(() -> productBulkRepository.updateById(List.of(
+        new ProductBulkChange(a.id, null, new BigDecimal("12345678.99"), null),
+        new ProductBulkChange(b.id, null, null, 0),
+        new ProductBulkChange(Long.MAX_VALUE, null, BigDecimal.ONE, 1))));
+
+    assertEquals(Set.of(a.id, b.id), updated);
+    Product priced = find(a.id);
+    assertEquals(new BigDecimal("12345678.99"), priced.price);
+    assertEquals(10, priced.stock);
+    assertEquals(a.version + 1, priced.version);
+    Product stocked = find(b.id);
+    assertEquals(new BigDecimal("7.25"), stocked.price);
+    assertEquals(0, stocked.stock);
+  }
+
+  @Test
+  void updateByName_matchesTheNameExactly_andReturnsTheIds() {
+    Product a = persist("BULK-C", 3, "1.00");
+
+    Map<String, Long> updated = QuarkusTransaction.requiringNew().call(() -> productBulkRepository.updateByName(List.of(
+        new ProductBulkChange(null, "BULK-C", null, 8),
+        new ProductBulkChange(null, "bulk-c", null, 9),
+        new ProductBulkChange(null, "BULK-MISSING", null, 1))));
+
+    assertEquals(Map.of("BULK-C", a.id), updated);
+    assertEquals(8, find(a.id).stock);
+  }
+
+  @Test
+  void duplicateKeys_lastChangeWins_andTheRowIsUpdatedOnce() {
+    Product a = persist("BULK-D", 1, "1.00");
+
+    QuarkusTransaction.requiringNew().run(() -> {
+      productBulkRepository.updateById(List.of(
+          new ProductBulkChange(a.id, null, null, 5),
+          new ProductBulkChange(a.id, null, new BigDecimal("2.00"), 6)));
+      productBulkRepository.updateByName(List.of(
+          new ProductBulkChange(null, "BULK-D", null, 7),
+          new ProductBulkChange(null, "BULK-D", null, 8)));
+    });
+
+    Product updated = find(a.id);
+    assertEquals(8, updated.stock);
+    assertEquals(new BigDecimal("2.00"), updated.price);
+    assertEquals(a.version + 2, updated.version, "one update by id, one by name");
+  }
+
+  @Test
+  void subtractStock_stopsAtZero_bumpsTheVersion_andSkipsMissingProducts() {
+    Product a = persist("BULK-A", 10, null);
+    Product b = persist("BULK-B", 4, null);
+
+    Set<Long> updated = productBulkRepository.subtractStock(Map.of(a.id, 3L, b.id, 10L, Long.MAX_VALUE, 1L));
+
+    assertEquals(Set.of(a.id, b.id), updated);
+    Product subtracted = find(a.id);
+    assertEquals(7, subtracted.stock);
+    assertEquals(a.version + 1, subtracted.version);
+    assertEquals(0, find(b.id).stock, "more confirmed than in stock stops at zero");
+    assertEquals(Map.of(a.id, 7, b.id, 0), productBulkRepository.stockOf(Set.of(a.id, b.id, Long.MAX_VALUE)));
+  }
+
+  private Product persist(String name, int stock, String price) {
+    Product product = new Product(name);
+    product.stock = stock;
+    product.price = price == null ? null : new BigDecimal(price);
+    QuarkusTransaction.requiringNew().run(() -> entityManager.persist(product));
+    return product;
+  }
+
+  private Product find(long id) {
+    return QuarkusTransaction.requiringNew().call(() -> entityManager.createQuery("from Product where id = :id", Product.class)
+        .setParameter("id", id)
+        .getSingleResult());
+  }
+}
@@ -0,0 +1,98 @@
+package com.fulfilment.application.monolith.products;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ProductCsvStagingTest {
+
+  @Test
+  void reader_handlesQuotesEscapedQuotesLineBreaksAndCrlf() throws IOException {
+    ProductCsvReader reader = new ProductCsvReader(
+        new StringReader("a,\"b,c\",\"say \"\"hi\"\"\"\r\n\r\n\"multi\nline\",x,\n"), 100);
+
+    assertEquals(List.of("a", "b,c", "say \"hi\""), reader.next());
+    assertEquals(1, reader.line());
+    assertEquals(List.of("multi\nline", "x", ""), reader.next());
+    assertEquals(3, reader.line());
+    assertNull(reader.next());
+  }
+
+  @Test
+  void reader_flagsOverlongRecords_andContinuesWithTheNextOne() throws IOException {
+    ProductCsvReader reader = new ProductCsvReader(new StringReader("abcdefghij,klm\nok\n"), 5);
+
+    assertEquals(List.of("abcde", ""), reader.next());
+    assertTrue(reader.overlong());
+    assertEquals(List.of("ok"), reader.next());
+    assertFalse(reader.overlong());
+  }
+
+  @Test
+  void stage_writesValidRowsAsCopyCsv_withLineNumbers() throws IOException {
+    StringWriter copy = new StringWriter();
+    ProductCsvStaging staging = new ProductCsvStaging(10);
+
+    staging.stage(new StringReader("stock,name,price,description\n"
+        + "5,TONSTAD,12.5,\"Sofa, \"\"3 seat\"\"\"\n"
+        + "0,KALLAX,,\n"), copy);
+
+    assertEquals("2,\"TONSTAD\",\"Sofa, \"\"3 seat\"\"\",12.5,5\n3,\"KALLAX\",,,0\n", copy.toString());
+    assertEquals(2, staging.rows());
+    assertEquals(2, staging.staged());
+    assertEquals(0, staging.rejected());
+  }
+
+  @Test
+  void stage_rejectsInvalidRows_andKeepsGoing() throws IOException {
+    StringWriter copy = new StringWriter();
+    ProductCsvStaging staging = new ProductCsvStaging(10);
+
+    staging.stage(new StringReader("name,price,stock\n"
+        + ",1,1\n"
+        + "A,-1,1\n"
+        + "B,1.005,1\n"
+        + "C,123456789,1\n"
+        + "D,abc,1\n"
+        + "E,1,-3\n"
+        + "F,1,x\n"
+        + "G,1\n"
+        + "H,99999999.99,7\n"), copy);
+
+    assertEquals("10,\"H\",,99999999.99,7\n", copy.toString());
+    assertEquals(9, staging.rows());
+    assertEquals(8, staging.rejected());
+    List<ProductImportError> errors = staging.errors();
+    assertEquals(List.of(2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), errors.stream().map(e -> e.line).toList());
+    assertTrue(errors.get(2).message.contains("decimal places"));
+    assertFalse(staging.errorsTruncated());
+  }
+
+  @Test
+  void stage_keepsOnlyTheFirstErrors() throws IOException {
+    ProductCsvStaging staging = new ProductCsvStaging(2);
+
+    staging.stage(new StringReader("name,stock\nA,-1\nB,-1\nC,-1\n"), new StringWriter());
+
+    assertEquals(3, staging.rejected());
+    assertEquals(2, staging.errors().size());
+    assertTrue(staging.errorsTruncated());
+  }
+
+  @Test
+  void stage_rejectsBadHeaders() {
+    ProductCsvStaging staging = new ProductCsvStaging(10);
+
+    assertThrows(IllegalArgumentException.class, () -> staging.stage(new StringReader(""), new StringWriter()));
+    assertThrows(IllegalArgumentException.class,
+        () -> staging.stage(new StringReader("name,price\n"), new StringWriter()));
+    assertThrows(IllegalArgumentException.class,
+        () -> staging.stage(new StringReader("name,stock,colour\n"), new StringWriter()));
+    assertThrows(IllegalArgumentException.class,
+        () -> staging.stage(new StringReader("name,stock,name\n"), new StringWriter()));
+  }
+}
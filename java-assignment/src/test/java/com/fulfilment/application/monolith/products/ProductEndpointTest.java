@@ -37,8 +37,15 @@ public class ProductEndpointTest {
 }
 */
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.panache.common.Sort;
+import jakarta.enterprise.event.Event;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -47,8 +54,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -62,20 +77,38 @@ class ProductResourceTest {
     @Mock
     ProductRepository productRepository;
 
+    @Mock
+    Event<ProductChangeEvent> productChangeEvent;
+
+    @Mock
+    ProductImporter productImporter;
+
+    @Mock
+    ProductBulkRepository productBulkRepository;
+
+    @Mock
+    Event<ProductBatchChangeEvent> productBatchChangeEvent;
+
+    @Mock
+    ProductStockHistory productStockHistory;
+
+    @Spy
+    ProductListCache productListCache = new ProductListCache(new ObjectMapper(), 1 << 20);
+
     @InjectMocks
     ProductResource resource;
 
 
 
     @Test
-    void get_shouldReturnListSortedByName() {
+    void get_shouldReturnListSortedByName() throws Exception {
         Product p1 = product(1L, "Alpha");
         Product p2 = product(2L, "Beta");
 
         when(productRepository.listAll(any(Sort.class)))
                 .thenReturn(List.of(p1, p2));
 
-        List<Product> result = resource.get();
+        List<Product> result = read(resource.get());
 
         assertEquals(2, result.size());
         assertEquals("Alpha", result.get(0).name);
@@ -90,15 +123,170 @@ class ProductResourceTest {
     }
 
 
+    @Test
+    void get_isServedFromCache_untilAProductChangeCommits() throws Exception {
+        when(productRepository.listAll(any(Sort.class)))
+                .thenReturn(List.of(product(1L, "Alpha")), List.of(product(1L, "Alpha"), product(2L, "Beta")));
+
+        Response first = resource.get();
+        Response second = resource.get();
+
+        assertSame(first.getEntity(), second.getEntity());
+        assertEquals(MediaType.APPLICATION_JSON_TYPE, second.getMediaType());
+        verify(productRepository, times(1)).listAll(any(Sort.class));
+
+        resource.create(product(null, "Beta"));
+        verify(productChangeEvent).fire(argThat(e -> e.type == ProductChangeEvent.Type.CREATE));
+        productListCache.invalidate(); // what the AFTER_SUCCESS observer does on commit
+
+        assertEquals(2, read(resource.get()).size());
+        verify(productRepository, times(2)).listAll(any(Sort.class));
+    }
+
+    @Test
+    void search_passesFilters_andReadsOneRowMoreThanThePage() {
+        BigDecimal min = new BigDecimal("10.00");
+        BigDecimal max = new BigDecimal("20.00");
+        when(productRepository.search("ka", min, max, true, "A", 3))
+                .thenReturn(List.of(product(1L, "KALLAX"), product(2L, "KAROLA"), product(3L, "KATRINE")));
+
+        ProductPage page = resource.search("ka", min, max, true, "A", 2);
+
+        assertEquals(2, page.items.size());
+        assertTrue(page.hasNext);
+        assertEquals("KAROLA", page.next);
+    }
+
+    @Test
+    void search_lastPage_hasNoNext() {
+        when(productRepository.search(null, null, null, null, null, 101)).thenReturn(List.of(product(1L, "Alpha")));
+
+        ProductPage page = resource.search(null, null, null, null, null, 100);
+
+        assertEquals(1, page.items.size());
+        assertFalse(page.hasNext);
+        assertNull(page.next);
+    }
+
+    @Test
+    void search_rejectsBadLimitAndPriceRange() {
+        BigDecimal one = BigDecimal.ONE;
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.search(null, null, null, null, null, 0)).getResponse().getStatus());
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.search(null, null, null, null, null, 1001)).getResponse().getStatus());
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.search(null, one.negate(), null, null, null, 10)).getResponse().getStatus());
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.search(null, BigDecimal.TEN, one, null, null, 10)).getResponse().getStatus());
+        verify(productRepository, never()).search(any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void importCsv_badHeader_shouldThrow400() {
+        when(productImporter.importCsv(any())).thenThrow(new IllegalArgumentException("Unknown CSV column 'colour'."));
+
+        WebApplicationException ex = assertThrows(WebApplicationException.class,
+                () -> resource.importCsv(new ByteArrayInputStream("name,stock,colour\n".getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(400, ex.getResponse().getStatus());
+        assertTrue(ex.getMessage().contains("colour"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void bulkUpdate_appliesByIdAndByName_reportsMissingAndInvalid_lastItemWins() {
+        BigDecimal price = new BigDecimal("9.99");
+        when(productBulkRepository.updateById(any())).thenReturn(Set.of(1L));
+        when(productBulkRepository.updateByName(any())).thenReturn(Map.of("KALLAX", 2L));
+
+        ProductBulkResult result = resource.bulkUpdate(Arrays.asList(
+                new ProductBulkChange(1L, null, price, null),
+                new ProductBulkChange(2L, null, null, 4),
+                new ProductBulkChange(null, "KALLAX", null, 3),
+                new ProductBulkChange(null, "GONE", null, 1),
+                new ProductBulkChange(1L, "both", price, null),
+                new ProductBulkChange(null, "KALLAX", null, 7),
+                null));
+
+        assertEquals(2, result.updated);
+        assertEquals(List.of(2L), result.notFoundIds);
+        assertEquals(List.of("GONE"), result.notFoundNames);
+        assertEquals(List.of(4, 6), result.rejected.stream().map(r -> r.index).toList());
+
+        ArgumentCaptor<Collection<ProductBulkChange>> byName = ArgumentCaptor.forClass(Collection.class);
+        verify(productBulkRepository).updateByName(byName.capture());
+        assertEquals(List.of(7, 1), byName.getValue().stream().map(c -> c.stock).toList());
+        verify(productBatchChangeEvent).fire(argThat(e -> e.updated == 2 && e.ids.equals(Set.of(1L, 2L))));
+    }
+
+    @Test
+    void stockHistory_withoutRecordedChanges_reportsCurrentStock_andValidatesParameters() {
+        Product product = new Product("TONSTAD");
+        product.stock = 12;
+        when(productRepository.findById(1L)).thenReturn(product);
+        when(productStockHistory.retentionMs(ProductStockResolution.HOUR)).thenReturn(3_600_000L);
+
+        ProductStockTrend trend = resource.stockHistory(1L, "HOUR", null, "2024-01-02T00:00:00Z");
+
+        assertEquals(Instant.parse("2024-01-01T23:00:00Z"), trend.from);
+        assertEquals(12, trend.initial);
+        assertTrue(trend.points.isEmpty());
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.stockHistory(1L, "week", null, null)).getResponse().getStatus());
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.stockHistory(1L, "day", "yesterday", null)).getResponse().getStatus());
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.stockHistory(1L, "day", "2024-01-02T00:00:00Z", "2024-01-01T00:00:00Z"))
+                .getResponse().getStatus());
+        assertEquals(404, assertThrows(WebApplicationException.class,
+                () -> resource.stockHistory(2L, "day", null, null)).getResponse().getStatus());
+    }
+
+    @Test
+    void bulkUpdate_rejectsEmptyOrOversizedRequests() {
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.bulkUpdate(List.of())).getResponse().getStatus());
+        List<ProductBulkChange> tooMany = Collections.nCopies(10_001, new ProductBulkChange(1L, null, null, 1));
+        assertEquals(400, assertThrows(WebApplicationException.class,
+                () -> resource.bulkUpdate(tooMany)).getResponse().getStatus());
+        verifyNoInteractions(productBulkRepository);
+    }
+
+    @Test
+    void bulkUpdate_whenNothingMatches_firesNoEvent() {
+        when(productBulkRepository.updateById(any())).thenReturn(Set.of());
+
+        ProductBulkResult result = resource.bulkUpdate(List.of(new ProductBulkChange(5L, null, null, 1)));
+
+        assertEquals(0, result.updated);
+        assertEquals(List.of(5L), result.notFoundIds);
+        verify(productBulkRepository, never()).updateByName(any());
+        verify(productBatchChangeEvent, never()).fire(any());
+    }
+
+    @Test
+    void bulkChange_validation() {
+        assertNull(new ProductBulkChange(1L, null, new BigDecimal("12.50"), 0).invalidReason());
+        assertNotNull(new ProductBulkChange(null, null, null, 1).invalidReason());
+        assertNotNull(new ProductBulkChange(1L, null, null, null).invalidReason());
+        assertNotNull(new ProductBulkChange(1L, null, new BigDecimal("1.234"), null).invalidReason());
+        assertNotNull(new ProductBulkChange(1L, null, new BigDecimal("-1"), null).invalidReason());
+        assertNotNull(new ProductBulkChange(null, "A", null, -1).invalidReason());
+    }
+
     @Test
     void getSingle_whenFound_shouldReturnEntity() {
         Product p = product(10L, "Phone");
         when(productRepository.findById(10L)).thenReturn(p);
 
-        Product result = resource.getSingle(10L);
+        p.version = 4;
+        Response resp = resource.getSingle(10L);
+        Product result = (Product) resp.getEntity();
 
         assertNotNull(result);
         assertEquals("Phone", result.name);
+        assertEquals(new EntityTag("4"), resp.getEntityTag());
         verify(productRepository, times(1)).findById(10L);
     }
 
@@ -137,7 +325,7 @@ class ProductResourceTest {
     void update_whenNameMissing_shouldThrow422() {
         Product incoming = product(null, null); // name missing
         WebApplicationException ex = assertThrows(WebApplicationException.class,
-                () -> resource.update(5L, incoming));
+                () -> resource.update(5L, incoming, null));
         assertEquals(422, ex.getResponse().getStatus());
         verify(productRepository, never()).findById(anyLong());
         verify(productRepository, never()).persist((Product) any());
@@ -149,7 +337,7 @@ class ProductResourceTest {
         when(productRepository.findById(7L)).thenReturn(null);
 
         WebApplicationException ex = assertThrows(WebApplicationException.class,
-                () -> resource.update(7L, incoming));
+                () -> resource.update(7L, incoming, null));
 
         assertEquals(404, ex.getResponse().getStatus());
         verify(productRepository, times(1)).findById(7L);
@@ -171,7 +359,7 @@ class ProductResourceTest {
 
         when(productRepository.findById(3L)).thenReturn(existing);
 
-        Product result = resource.update(3L, incoming);
+        Product result = (Product) resource.update(3L, incoming, null).getEntity();
 
 
         // fields copied
@@ -197,7 +385,7 @@ class ProductResourceTest {
         when(productRepository.findById(77L)).thenReturn(null);
 
         WebApplicationException ex = assertThrows(WebApplicationException.class,
-                () -> resource.delete(77L));
+                () -> resource.delete(77L, null));
 
         assertEquals(404, ex.getResponse().getStatus());
         verify(productRepository, times(1)).findById(77L);
@@ -209,13 +397,59 @@ class ProductResourceTest {
         Product existing = product(12L, "ToDelete");
         when(productRepository.findById(12L)).thenReturn(existing);
 
-        Response resp = resource.delete(12L);
+        Response resp = resource.delete(12L, null);
 
         verify(productRepository, times(1)).delete(existing);
         assertEquals(204, resp.getStatus());
         assertNull(resp.getEntity());
     }
 
+    @Test
+    void update_whenIfMatchIsStale_shouldReturn412_withoutWriting() {
+        Product existing = product(3L, "Old");
+        existing.version = 2;
+        when(productRepository.findById(3L)).thenReturn(existing);
+        Request request = mock(Request.class);
+        when(request.evaluatePreconditions(new EntityTag("2"))).thenReturn(Response.status(412));
+
+        Response resp = resource.update(3L, product(null, "NewName"), request);
+
+        assertEquals(412, resp.getStatus());
+        assertEquals("Old", existing.name);
+        verify(productRepository, never()).persist((Product) any());
+        verify(productRepository, never()).flush();
+    }
+
+    @Test
+    void update_whenVersionChangedConcurrently_shouldThrow412() {
+        Product existing = product(3L, "Old");
+        when(productRepository.findById(3L)).thenReturn(existing);
+        doThrow(new OptimisticLockException()).when(productRepository).flush();
+
+        WebApplicationException ex = assertThrows(WebApplicationException.class,
+                () -> resource.update(3L, product(null, "NewName"), mock(Request.class)));
+
+        assertEquals(412, ex.getResponse().getStatus());
+    }
+
+    @Test
+    void delete_whenIfMatchIsStale_shouldReturn412_withoutDeleting() {
+        Product existing = product(12L, "ToDelete");
+        existing.version = 5;
+        when(productRepository.findById(12L)).thenReturn(existing);
+        Request request = mock(Request.class);
+        when(request.evaluatePreconditions(new EntityTag("5"))).thenReturn(Response.status(412));
+
+        Response resp = resource.delete(12L, request);
+
+        assertEquals(412, resp.getStatus());
+        verify(productRepository, never()).delete(any());
+    }
+
+    private static List<Product> read(Response response) throws Exception {
+        return new ObjectMapper().readValue((byte[]) response.getEntity(), new TypeReference<List<Product>>() {});
+    }
+
     // --- helper to create products with sensible defaults ---
     private static Product product(Long id, String name) {
         Product p = new Product();
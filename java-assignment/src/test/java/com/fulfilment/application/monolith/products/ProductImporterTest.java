@@ -0,0 +1,115 @@
+package com.fulfilment.application.monolith.products;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.fulfilment.application.monolith.EmbeddedPostgresResource;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Imports against the real merge statement. The importer runs its own transaction, so the products
+ * are set up and removed in transactions of their own.
+ */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class ProductImporterTest {
+
+  @Inject ProductImporter productImporter;
+
+  @Inject EntityManager entityManager;
+
+  @Inject TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+  @AfterEach
+  void deleteImported() {
+    QuarkusTransaction.requiringNew().run(() ->
+        entityManager.createQuery("delete from Product where name like 'IMPORT-%'").executeUpdate());
+  }
+
+  @Test
+  void importCsv_withoutAPriceColumn_keepsTheExistingPrices() {
+    persist("IMPORT-A", "first", "12.50", 1);
+    persist("IMPORT-B", "second", "99.00", 2);
+
+    ProductImportReport report = productImporter.importCsv(new StringReader(
+        "name,description,stock\n"
+            + "IMPORT-A,first,5\n"
+            + "IMPORT-B,renamed,2\n"
+            + "IMPORT-C,new,3\n"));
+
+    assertEquals(1, report.inserted);
+    assertEquals(2, report.updated);
+    Product a = find("IMPORT-A");
+    assertEquals(new BigDecimal("12.50"), a.price);
+    assertEquals(5, a.stock);
+    Product b = find("IMPORT-B");
+    assertEquals(new BigDecimal("99.00"), b.price);
+    assertEquals("renamed", b.description);
+    assertNull(find("IMPORT-C").price);
+  }
+
+  @Test
+  void importCsv_withAnEmptyPriceInThePriceColumn_clearsIt() {
+    persist("IMPORT-D", null, "7.00", 1);
+
+    ProductImportReport report = productImporter.importCsv(new StringReader("name,price,stock\nIMPORT-D,,1\n"));
+
+    assertEquals(1, report.updated);
+    assertNull(find("IMPORT-D").price);
+  }
+
+  @Test
+  void importCsv_unchangedStockWithoutOptionalColumns_isNotAnUpdate() {
+    persist("IMPORT-E", "kept", "3.00", 4);
+
+    ProductImportReport report = productImporter.importCsv(new StringReader("name,stock\nIMPORT-E,4\n"));
+
+    assertEquals(0, report.updated);
+    assertEquals(1, report.unchanged);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void importCsv_listsOnlyTheInsertedAndUpdatedProducts_inItsChangeEvent() {
+    long changed = persist("IMPORT-F", null, "1.00", 1);
+    persist("IMPORT-G", null, "1.00", 2);
+    Event<ProductBatchChangeEvent> event = mock(Event.class);
+    ProductImporter importer = new ProductImporter(entityManager, transactionSynchronizationRegistry, event, 10);
+
+    QuarkusTransaction.requiringNew().run(() ->
+        importer.importCsv(new StringReader("name,stock\nIMPORT-F,5\nIMPORT-G,2\nIMPORT-H,3\n")));
+
+    ArgumentCaptor<ProductBatchChangeEvent> fired = ArgumentCaptor.forClass(ProductBatchChangeEvent.class);
+    verify(event).fire(fired.capture());
+    assertEquals(1, fired.getValue().inserted);
+    assertEquals(1, fired.getValue().updated);
+    assertEquals(Set.of(changed, find("IMPORT-H").id), fired.getValue().ids, "IMPORT-G is unchanged");
+  }
+
+  private long persist(String name, String description, String price, int stock) {
+    Product product = new Product(name);
+    product.description = description;
+    product.price = new BigDecimal(price);
+    product.stock = stock;
+    QuarkusTransaction.requiringNew().run(() -> entityManager.persist(product));
+    return product.id;
+  }
+
+  private Product find(String name) {
+    return QuarkusTransaction.requiringNew().call(() -> entityManager.createQuery("from Product where name = :name", Product.class)
+        .setParameter("name", name)
+        .getSingleResult());
+  }
+}
@@ -0,0 +1,103 @@
+package com.fulfilment.application.monolith.products;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fulfilment.application.monolith.EmbeddedPostgresResource;
+import com.fulfilment.application.monolith.search.NamePrefix;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Plans of the statements {@link ProductRepository#search} actually sends, against a million
+ * products. Each statement is captured from Hibernate, prepared with the values the repository binds,
+ * and explained; none may plan a sequential scan. The seed rows are rolled back afterwards.
+ */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class ProductSearchPlanTest {
+
+  private static final int PRODUCTS = 1_000_000;
+  private static final int LIMIT = 101;
+
+  @Inject ProductRepository productRepository;
+
+  @Inject EntityManager entityManager;
+
+  private record Search(String prefix, BigDecimal minPrice, BigDecimal maxPrice, Boolean inStock, String after) {
+
+    // in the order the repository binds them: after, prefix, price range, then the page's offset and size
+    List<Object> bound() {
+      List<Object> values = new ArrayList<>();
+      if (after != null) {
+        values.add(after);
+      }
+      if (prefix != null) {
+        values.add(NamePrefix.likePattern(prefix));
+      }
+      if (minPrice != null) {
+        values.add(minPrice);
+      }
+      if (maxPrice != null) {
+        values.add(maxPrice);
+      }
+      values.add(0);
+      values.add(LIMIT);
+      return values;
+    }
+  }
+
+  @Test
+  @TestTransaction
+  void search_neverScansTheWholeTable() {
+    entityManager.createNativeQuery(
+            "INSERT INTO product(id, name, description, price, stock, version) "
+                + "SELECT g, 'P' || lpad(g::text, 7, '0'), null, (g % 100000) / 100.0, g % 7, 0 "
+                + "FROM generate_series(1000, 1000 + " + PRODUCTS + " - 1) g")
+        .executeUpdate();
+    entityManager.createNativeQuery("ANALYZE product").executeUpdate();
+
+    BigDecimal min = new BigDecimal("10.00");
+    BigDecimal max = new BigDecimal("10.50");
+    List<Search> searches = List.of(
+        new Search(null, null, null, null, "P0500000"),
+        new Search("P00123", null, null, null, null),
+        new Search("P00123", null, null, null, "P0012300"),
+        new Search(null, min, max, null, null),
+        new Search(null, min, max, null, "P0500000"),
+        new Search(null, null, null, true, null),
+        new Search(null, null, null, false, null),
+        new Search(null, null, null, false, "P0500000"),
+        new Search(null, min, max, true, null),
+        new Search("P00123", null, null, true, null));
+
+    for (Search search : searches) {
+      List<String> statements = CapturedStatements.during(() -> productRepository.search(
+          search.prefix(), search.minPrice(), search.maxPrice(), search.inStock(), search.after(), LIMIT));
+      assertEquals(1, statements.size(), () -> search + " sent " + statements);
+      String sql = statements.get(0);
+
+      String plan = explain(sql, search.bound());
+
+      assertFalse(plan.contains("Seq Scan"), () -> search + " plans a sequential scan for\n" + sql + "\n" + plan);
+    }
+  }
+
+  // a fresh prepared statement gets a custom plan for the bound values, like the repository's first executions
+  @SuppressWarnings("unchecked")
+  private String explain(String sql, List<Object> values) {
+    var query = entityManager.createNativeQuery("EXPLAIN " + sql);
+    for (int i = 0; i < values.size(); i++) {
+      query.setParameter(i + 1, values.get(i));
+    }
+    List<Object> lines = query.getResultList();
+    return lines.stream().map(String::valueOf).collect(Collectors.joining("\n"));
+  }
+}
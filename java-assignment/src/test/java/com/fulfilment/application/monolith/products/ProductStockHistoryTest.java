@@ -0,0 +1,287 @@
+package com.fulfilment.application.monolith.products;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProductStockHistoryTest {
+
+  private static final long MINUTE = 60_000;
+  private static final long HOUR = 3_600_000;
+  private static final long DAY = 86_400_000;
+  // 2024-01-01T00:00:00Z
+  private static final long START = 1_704_067_200_000L;
+
+  @TempDir Path directory;
+
+  private final AtomicLong now = new AtomicLong(START);
+  private ProductBulkRepository productBulkRepository;
+  private ProductStockHistory history;
+
+  @BeforeEach
+  void setUp() {
+    productBulkRepository = mock(ProductBulkRepository.class);
+    history = history();
+  }
+
+  private ProductStockHistory history() {
+    return new ProductStockHistory(productBulkRepository, directory, 60_000, 2 * HOUR, 2 * DAY, 30 * DAY, now::get);
+  }
+
+  private void recordAt(long epochMs, int stock) {
+    now.set(epochMs);
+    history.record(1, stock);
+  }
+
+  private static String points(ProductStockTrend trend) {
+    StringBuilder out = new StringBuilder();
+    for (ProductStockPoint point : trend.points) {
+      out.append(point.at).append(' ').append(point.min).append('/').append(point.max).append('/').append(point.last).append(';');
+    }
+    return out.toString();
+  }
+
+  @Test
+  void series_keepsMinMaxLast_includingTheLevelCarriedIntoABucket() {
+    recordAt(START, 10);
+    recordAt(START + 10_000, 4);
+    recordAt(START + 20_000, 7);
+    recordAt(START + 3 * MINUTE, 2);
+    recordAt(START + 4 * MINUTE, 2);
+
+    ProductStockTrend trend = history.query(1, ProductStockResolution.MINUTE,
+        Instant.ofEpochMilli(START), Instant.ofEpochMilli(START + 10 * MINUTE));
+
+    assertEquals("2024-01-01T00:00:00Z 4/10/7;2024-01-01T00:03:00Z 2/7/2;", points(trend));
+    assertNull(trend.initial);
+  }
+
+  @Test
+  void coarserResolutions_areDownsampledFromTheSameChanges() {
+    recordAt(START + 5 * MINUTE, 10);
+    recordAt(START + 50 * MINUTE, 3);
+    recordAt(START + HOUR + 5 * MINUTE, 8);
+    recordAt(START + DAY + HOUR, 20);
+
+    Instant from = Instant.ofEpochMilli(START);
+    Instant to = Instant.ofEpochMilli(START + 3 * DAY);
+    assertEquals("2024-01-01T00:00:00Z 3/10/3;2024-01-01T01:00:00Z 3/8/8;2024-01-02T01:00:00Z 8/20/20;",
+        points(history.query(1, ProductStockResolution.HOUR, from, to)));
+    assertEquals("2024-01-01T00:00:00Z 3/10/8;2024-01-02T00:00:00Z 8/20/20;",
+        points(history.query(1, ProductStockResolution.DAY, from, to)));
+  }
+
+  @Test
+  void query_reportsTheLevelCarriedIntoTheRange() {
+    recordAt(START, 10);
+    recordAt(START + 2 * MINUTE, 6);
+    recordAt(START + 9 * MINUTE, 9);
+
+    ProductStockTrend trend = history.query(1, ProductStockResolution.MINUTE,
+        Instant.ofEpochMilli(START + 5 * MINUTE), Instant.ofEpochMilli(START + 8 * MINUTE));
+
+    assertEquals(6, trend.initial);
+    assertEquals("", points(trend));
+  }
+
+  @Test
+  void trim_dropsBucketsPastRetention_butKeepsTheLevelAtTheCutoff() {
+    for (int minute = 0; minute < 200; minute += 10) {
+      recordAt(START + minute * MINUTE, minute);
+    }
+    now.set(START + 200 * MINUTE);
+
+    history.trim();
+
+    ProductStockTrend trend = history.query(1, ProductStockResolution.MINUTE,
+        Instant.ofEpochMilli(START), Instant.ofEpochMilli(START + 200 * MINUTE));
+    // two hours back from minute 200 is minute 80; minute 70 is kept as the level at the cutoff
+    assertEquals(70, trend.points.get(0).last);
+    assertEquals(13, trend.points.size());
+    assertNull(trend.initial);
+    recordAt(START + 201 * MINUTE, 5);
+    assertEquals(5, history.query(1, ProductStockResolution.MINUTE,
+        Instant.ofEpochMilli(START), Instant.ofEpochMilli(START + 300 * MINUTE)).points.get(13).last);
+  }
+
+  @Test
+  void trim_whenOnlyTheOpenBucketIsRecent_keepsIt() {
+    recordAt(START, 10);
+    recordAt(START + MINUTE, 11);
+    now.set(START + 10 * HOUR);
+
+    history.trim();
+
+    ProductStockTrend trend = history.query(1, ProductStockResolution.MINUTE,
+        Instant.ofEpochMilli(START + 9 * HOUR), Instant.ofEpochMilli(START + 10 * HOUR));
+    assertEquals(11, trend.initial);
+    recordAt(START + 10 * HOUR, 12);
+    assertEquals("2024-01-01T10:00:00Z 11/12/12;", points(history.query(1, ProductStockResolution.MINUTE,
+        Instant.ofEpochMilli(START + 9 * HOUR), Instant.ofEpochMilli(START + 11 * HOUR))));
+  }
+
+  @Test
+  void snapshot_roundTripsEverySeries() {
+    recordAt(START, 10);
+    recordAt(START + 2 * MINUTE, -3);
+    now.set(START + 3 * MINUTE);
+    history.record(2, 1_000_000);
+    history.snapshot();
+
+    ProductStockHistory reloaded = history();
+    reloaded.load();
+
+    Instant from = Instant.ofEpochMilli(START);
+    Instant to = Instant.ofEpochMilli(START + DAY);
+    for (ProductStockResolution resolution : ProductStockResolution.values()) {
+      assertEquals(points(history.query(1, resolution, from, to)), points(reloaded.query(1, resolution, from, to)));
+    }
+    assertEquals(1_000_000, reloaded.query(2, ProductStockResolution.DAY, from, to).points.get(0).last);
+  }
+
+  @Test
+  void load_ignoresADamagedSnapshot() throws IOException {
+    recordAt(START, 10);
+    history.snapshot();
+    Path file = directory.resolve("stock-history.bin");
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[6] ^= 1;
+    Files.write(file, bytes);
+
+    ProductStockHistory reloaded = history();
+    reloaded.load();
+
+    assertNull(reloaded.query(1, ProductStockResolution.DAY, Instant.ofEpochMilli(START), Instant.ofEpochMilli(START + DAY)));
+  }
+
+  @Test
+  void batchChange_isReadBackLater_andDeleteDropsTheHistory() {
+    when(productBulkRepository.stockOf(Set.of(1L, 2L))).thenReturn(Map.of(1L, 4, 2L, 9));
+    doAnswer(invocation -> {
+      invocation.<ProductBulkRepository.StockSink>getArgument(0).accept(1L, 5);
+      return null;
+    }).when(productBulkRepository).forEachStock(any());
+
+    history.onProductBatchChange(new ProductBatchChangeEvent(0, 2, Set.of(1L, 2L)));
+    verifyNoInteractions(productBulkRepository);
+    history.readBack();
+    now.set(START + DAY);
+    history.onProductBatchChange(new ProductBatchChangeEvent(1, 0, null));
+    history.onProductBatchChange(new ProductBatchChangeEvent(1, 0, null));
+    history.readBack();
+    Product deleted = new Product("KALLAX");
+    deleted.id = 2L;
+    history.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.DELETE, deleted));
+
+    verify(productBulkRepository, times(1)).forEachStock(any());
+    Instant from = Instant.ofEpochMilli(START);
+    Instant to = Instant.ofEpochMilli(START + 2 * DAY);
+    assertEquals("2024-01-01T00:00:00Z 4/4/4;2024-01-02T00:00:00Z 4/5/5;",
+        points(history.query(1, ProductStockResolution.DAY, from, to)));
+    assertNull(history.query(2, ProductStockResolution.DAY, from, to));
+  }
+
+  @Test
+  void write_appendsOnlyChangedProducts_untilTheLogOutgrowsTheSnapshot() throws IOException {
+    for (long id = 1; id <= 50; id++) {
+      history.record(id, (int) id);
+    }
+    history.write();
+    Path snapshot = directory.resolve("stock-history.bin");
+    Path log = directory.resolve("stock-history.log");
+    byte[] first = Files.readAllBytes(snapshot);
+    assertFalse(Files.exists(log));
+
+    now.set(START + MINUTE);
+    history.record(7, 70);
+    history.write();
+    history.write();
+    assertArrayEquals(first, Files.readAllBytes(snapshot));
+    long oneProduct = Files.size(log);
+    assertTrue(oneProduct < first.length / 10, "log bytes " + oneProduct);
+
+    Product deleted = new Product("P8");
+    deleted.id = 8L;
+    history.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.DELETE, deleted));
+    history.write();
+
+    ProductStockHistory reloaded = history();
+    reloaded.load();
+    Instant from = Instant.ofEpochMilli(START);
+    Instant to = Instant.ofEpochMilli(START + DAY);
+    assertEquals(70, reloaded.query(7, ProductStockResolution.MINUTE, from, to).points.get(1).last);
+    assertNull(reloaded.query(8, ProductStockResolution.MINUTE, from, to));
+    assertEquals(50, reloaded.query(50, ProductStockResolution.MINUTE, from, to).points.get(0).last);
+
+    for (long id = 1; id <= 50; id++) {
+      history.record(id, 0);
+    }
+    history.write();
+    history.record(1, 1);
+    history.write();
+    assertFalse(Files.exists(log), "the log should have been compacted into a new snapshot");
+  }
+
+  @Test
+  void load_replaysTheLogUpToATornFrame_andCompactsOnTheNextWrite() throws IOException {
+    recordAt(START, 10);
+    history.record(2, 20);
+    history.write();
+    recordAt(START + MINUTE, 11);
+    history.write();
+    recordAt(START + 2 * MINUTE, 12);
+    history.write();
+    Path log = directory.resolve("stock-history.log");
+    byte[] bytes = Files.readAllBytes(log);
+    Files.write(log, Arrays.copyOf(bytes, bytes.length - 3));
+
+    ProductStockHistory reloaded = history();
+    reloaded.load();
+    ProductStockTrend trend = reloaded.query(1, ProductStockResolution.MINUTE,
+        Instant.ofEpochMilli(START), Instant.ofEpochMilli(START + DAY));
+    assertEquals("2024-01-01T00:00:00Z 10/10/10;2024-01-01T00:01:00Z 10/11/11;", points(trend));
+
+    reloaded.record(2, 21);
+    reloaded.write();
+    assertFalse(Files.exists(log));
+  }
+
+  @Test
+  void load_ignoresALogLeftFromAnOlderSnapshot() throws IOException {
+    recordAt(START, 10);
+    history.write();
+    recordAt(START + MINUTE, 11);
+    history.write();
+    Path log = directory.resolve("stock-history.log");
+    byte[] stale = Files.readAllBytes(log);
+    recordAt(START + 2 * MINUTE, 3);
+    history.snapshot();
+    Files.write(log, stale); // as if the process died before the old log was deleted
+
+    ProductStockHistory reloaded = history();
+    reloaded.load();
+
+    assertEquals(3, reloaded.query(1, ProductStockResolution.DAY, Instant.ofEpochMilli(START),
+        Instant.ofEpochMilli(START + DAY)).points.get(0).last);
+  }
+
+  @Test
+  void encoding_staysCompact() {
+    for (int day = 0; day < 365; day++) {
+      recordAt(START + day * DAY, 1000 - day);
+    }
+    // minute, hour and day series with 364 closed buckets each, four bytes a bucket, plus growth slack
+    assertTrue(history.bytes() < 3 * 364 * 4 * 2, "bytes " + history.bytes());
+  }
+}
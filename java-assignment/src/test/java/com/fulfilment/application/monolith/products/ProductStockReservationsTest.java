@@ -0,0 +1,281 @@
+package com.fulfilment.application.monolith.products;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProductStockReservationsTest {
+
+  private static final long TTL_MS = 10_000;
+  private static final long TICK_MS = 100;
+
+  private ProductRepository productRepository;
+  private ProductBulkRepository productBulkRepository;
+  private final AtomicLong now = new AtomicLong(1_000_000);
+  private ProductStockReservations reservations;
+
+  @BeforeEach
+  void setUp() {
+    productRepository = mock(ProductRepository.class);
+    productBulkRepository = mock(ProductBulkRepository.class);
+    reservations = new ProductStockReservations(
+        productRepository, productBulkRepository, TTL_MS, TICK_MS, 64, 1000, 4, now::get);
+    reservations.cycle();
+  }
+
+  private void product(long id, int stock) {
+    Product product = new Product("P" + id);
+    product.id = id;
+    product.stock = stock;
+    when(productRepository.findById(id)).thenReturn(product);
+  }
+
+  @Test
+  void wheel_expiresItemsOnTheTickAfterTheirDeadline_acrossRounds() {
+    HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 4);
+    List<String> expired = new ArrayList<>();
+    wheel.advance(0, expired::add);
+    wheel.schedule("soon", 25);
+    wheel.schedule("late", 95);
+
+    wheel.advance(20, expired::add);
+    assertEquals(List.of(), expired);
+    wheel.advance(30, expired::add);
+    assertEquals(List.of("soon"), expired);
+    wheel.advance(90, expired::add);
+    assertEquals(List.of("soon"), expired);
+    wheel.advance(100, expired::add);
+    assertEquals(List.of("soon", "late"), expired);
+  }
+
+  @Test
+  void wheel_expiresPastDeadlinesOnTheNextTick() {
+    HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 4);
+    List<String> expired = new ArrayList<>();
+    wheel.advance(50, expired::add);
+    wheel.schedule("past", 0);
+
+    wheel.advance(60, expired::add);
+
+    assertEquals(List.of("past"), expired);
+  }
+
+  @Test
+  void wheel_purge_dropsMatchingItems_includingNotYetTransferredOnes() {
+    HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 4);
+    List<String> expired = new ArrayList<>();
+    wheel.advance(0, expired::add);
+    wheel.schedule("settled", 15);
+    wheel.advance(10, expired::add);
+    wheel.schedule("new-settled", 25);
+    wheel.schedule("held", 25);
+
+    wheel.purge(item -> item.endsWith("settled"));
+    wheel.advance(100, expired::add);
+
+    assertEquals(List.of("held"), expired);
+  }
+
+  @Test
+  void stripedStock_gathersAcrossStripes_andNeverOversells() {
+    StripedStock stock = new StripedStock(4, 10);
+
+    assertTrue(stock.tryTake(7));
+    assertFalse(stock.tryTake(4));
+    assertEquals(3, stock.available());
+    assertTrue(stock.tryTake(3));
+    assertEquals(0, stock.available());
+  }
+
+  @Test
+  void stripedStock_keepsDebt_untilUnitsArePutBack() {
+    StripedStock stock = new StripedStock(4, 5);
+
+    stock.adjust(-8);
+    assertEquals(-3, stock.available());
+    assertFalse(stock.tryTake(1));
+    stock.put(4);
+    assertEquals(1, stock.available());
+    assertTrue(stock.tryTake(1));
+  }
+
+  @Test
+  void stripedStock_concurrentTakes_grantExactlyTheStock() throws Exception {
+    StripedStock stock = new StripedStock(4, 10_000);
+    AtomicInteger granted = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+    for (int t = 0; t < 8; t++) {
+      pool.submit(() -> {
+        start.await();
+        for (int i = 0; i < 5000; i++) {
+          if (stock.tryTake(3)) {
+            granted.incrementAndGet();
+          }
+        }
+        return null;
+      });
+    }
+    start.countDown();
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(3333, granted.get());
+    assertEquals(1, stock.available());
+  }
+
+  @Test
+  void reserve_takesUnits_andRejectsWhenShort() {
+    product(1, 5);
+
+    ProductReservation first = reservations.reserve(1, 3);
+
+    assertNotNull(first);
+    assertEquals(1, first.productId);
+    assertEquals(now.get() + TTL_MS, first.expiresAt.toEpochMilli());
+    assertNull(reservations.reserve(1, 3));
+    assertEquals(2, reservations.available(1));
+    verify(productRepository, times(1)).findById(1L);
+  }
+
+  @Test
+  void reserve_idsAreNotReusedByAnotherInstance() {
+    product(1, 5);
+    ProductStockReservations restarted = new ProductStockReservations(
+        productRepository, productBulkRepository, TTL_MS, TICK_MS, 64, 1000, 4, now::get);
+    restarted.cycle();
+
+    ProductReservation first = reservations.reserve(1, 1);
+    ProductReservation other = restarted.reserve(1, 1);
+
+    assertNotEquals(first.id, other.id);
+    assertFalse(restarted.confirm(first.id));
+    assertTrue(reservations.confirm(first.id));
+  }
+
+  @Test
+  void reserve_unknownProduct_throws() {
+    assertThrows(NoSuchElementException.class, () -> reservations.reserve(9, 1));
+  }
+
+  @Test
+  void release_returnsUnits_once() {
+    product(1, 5);
+    ProductReservation reservation = reservations.reserve(1, 5);
+
+    assertTrue(reservations.release(reservation.id));
+    assertFalse(reservations.release(reservation.id));
+    assertFalse(reservations.confirm(reservation.id));
+    assertEquals(5, reservations.available(1));
+  }
+
+  @Test
+  void expiry_returnsUnits_andConfirmAfterExpiryFails() {
+    product(1, 5);
+    ProductReservation reservation = reservations.reserve(1, 4);
+
+    now.addAndGet(TTL_MS - TICK_MS);
+    reservations.expireDue(now.get());
+    assertEquals(1, reservations.available(1));
+
+    now.addAndGet(2 * TICK_MS);
+    reservations.expireDue(now.get());
+    assertEquals(5, reservations.available(1));
+    assertFalse(reservations.confirm(reservation.id));
+  }
+
+  @Test
+  void reconcile_subtractsConfirmedUnitsInOneBatch_andKeepsCountersInStep() {
+    product(1, 5);
+    product(2, 7);
+    reservations.confirm(reservations.reserve(1, 2).id);
+    reservations.confirm(reservations.reserve(1, 1).id);
+    reservations.confirm(reservations.reserve(2, 4).id);
+    reservations.reserve(2, 1);
+    when(productBulkRepository.stockOf(anyCollection())).thenReturn(Map.of(1L, 2, 2L, 3));
+
+    reservations.reconcile();
+
+    verify(productBulkRepository).subtractStock(Map.of(1L, 3L, 2L, 4L));
+    reservations.reconcile();
+    verify(productBulkRepository, times(1)).subtractStock(any());
+    assertEquals(2, reservations.available(1));
+    assertEquals(2, reservations.available(2));
+  }
+
+  @Test
+  void reconcile_failure_keepsConfirmedUnitsForTheNextRun() {
+    product(1, 5);
+    reservations.confirm(reservations.reserve(1, 2).id);
+    when(productBulkRepository.subtractStock(any())).thenThrow(new IllegalStateException("down")).thenReturn(null);
+
+    assertThrows(IllegalStateException.class, reservations::reconcile);
+    reservations.reconcile();
+
+    verify(productBulkRepository, times(2)).subtractStock(Map.of(1L, 2L));
+  }
+
+  @Test
+  void reconcile_movesCountersByTheStockDifference_andDropsDeletedProducts() {
+    product(1, 5);
+    product(2, 5);
+    reservations.reserve(1, 2);
+    reservations.reserve(2, 1);
+    when(productBulkRepository.stockOf(anyCollection())).thenReturn(Map.of(1L, 8));
+
+    reservations.reconcile();
+
+    assertEquals(6, reservations.available(1));
+    assertNull(reservations.available(2));
+  }
+
+  @Test
+  void reconcile_stockBelowHeldUnits_leavesNothingToReserve() {
+    product(1, 5);
+    ProductReservation reservation = reservations.reserve(1, 4);
+    when(productBulkRepository.stockOf(anyCollection())).thenReturn(Map.of(1L, 2));
+
+    reservations.reconcile();
+
+    assertEquals(-2, reservations.available(1));
+    assertNull(reservations.reserve(1, 1));
+    reservations.release(reservation.id);
+    assertEquals(2, reservations.available(1));
+  }
+
+  @Test
+  void everyCycle_picksUpStockTakenByAnotherNode_withOneQuery() {
+    product(1, 5);
+    product(2, 5);
+    reservations.reserve(1, 1);
+    reservations.reserve(2, 1);
+    when(productBulkRepository.stockOf(anyCollection()))
+        .thenReturn(Map.of(1L, 5, 2L, 5))
+        .thenReturn(Map.of(1L, 2, 2L, 5));
+
+    now.addAndGet(1000);
+    reservations.cycle();
+    assertEquals(4, reservations.available(1));
+    now.addAndGet(1000);
+    reservations.cycle();
+
+    assertEquals(1, reservations.available(1), "another node confirmed 3 units");
+    assertEquals(4, reservations.available(2));
+    verify(productBulkRepository, times(2)).stockOf(Set.of(1L, 2L));
+  }
+}
@@ -0,0 +1,14 @@
+package com.fulfilment.application.monolith.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class NamePrefixTest {
+
+  @Test
+  void likePattern_isLowerCased_andMatchesWildcardsLiterally() {
+    assertEquals("ton%", NamePrefix.likePattern("TON"));
+    assertEquals("50\\%\\_off\\\\%", NamePrefix.likePattern("50%_OFF\\"));
+  }
+}
@@ -0,0 +1,71 @@
+package com.fulfilment.application.monolith.warehouses;
+
+import com.fulfilment.application.monolith.EmbeddedPostgresResource;
+import com.fulfilment.application.monolith.warehouses.adapters.database.WarehouseRepository;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.usecases.ReplaceWarehouseUseCase;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Business unit codes against Postgres: unique among active warehouses, reused by a replacement. */
+@QuarkusTest
+@WithTestResource(EmbeddedPostgresResource.class)
+class WarehouseRepositoryTest {
+
+    private static final String CODE = "MWH.REPO-TEST";
+
+    @Inject
+    WarehouseRepository warehouseRepository;
+
+    @Inject
+    ReplaceWarehouseUseCase replaceWarehouseUseCase;
+
+    @AfterEach
+    void deleteTestWarehouses() {
+        QuarkusTransaction.requiringNew().run(() -> warehouseRepository.delete("businessUnitCode", CODE));
+    }
+
+    private static Warehouse warehouse(int capacity, int stock) {
+        Warehouse warehouse = new Warehouse();
+        warehouse.businessUnitCode = CODE;
+        warehouse.location = "ZWOLLE-001";
+        warehouse.capacity = capacity;
+        warehouse.stock = stock;
+        return warehouse;
+    }
+
+    @Test
+    void replace_archivesTheCurrentWarehouse_andCreatesItsSuccessorUnderTheSameCode() {
+        warehouseRepository.create(warehouse(10, 5));
+
+        replaceWarehouseUseCase.replace(warehouse(20, 5));
+
+        List<Warehouse> all = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.getAll().stream()
+                .filter(w -> CODE.equals(w.businessUnitCode))
+                .toList());
+        assertEquals(2, all.size());
+        assertEquals(1, all.stream().filter(w -> w.archivedAt == null).count());
+        Warehouse active = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.findByBusinessUnitCode(CODE));
+        assertNull(active.archivedAt);
+        assertEquals(20, active.capacity);
+    }
+
+    @Test
+    void create_secondActiveWarehouseWithTheSameCode_isRefused() {
+        warehouseRepository.create(warehouse(10, 5));
+
+        assertThrows(RuntimeException.class, () -> warehouseRepository.create(warehouse(10, 5)));
+
+        long active = QuarkusTransaction.requiringNew().call(() ->
+                warehouseRepository.count("businessUnitCode = ?1 and archivedAt is null", CODE));
+        assertEquals(1, active);
+    }
+}